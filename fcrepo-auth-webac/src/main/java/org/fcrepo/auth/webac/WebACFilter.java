@@ -42,6 +42,7 @@ import org.apache.shiro.subject.SimplePrincipalCollection;
 import org.apache.shiro.subject.Subject;
 import org.fcrepo.http.commons.api.rdf.HttpIdentifierConverter;
 import org.fcrepo.http.commons.session.TransactionProvider;
+import org.fcrepo.kernel.api.RdfStream;
 import org.fcrepo.kernel.api.Transaction;
 import org.fcrepo.kernel.api.TransactionManager;
 import org.fcrepo.kernel.api.exception.MalformedRdfException;
@@ -672,11 +673,14 @@ public class WebACFilter extends RequestContextFilter {
      * @return URI of the ldp:membershipResource triple or null if not found.
      */
     private URI getHasMemberFromResource(final HttpServletRequest request, final FedoraResource resource) {
-        return resource.getTriples()
-                .filter(triple -> triple.getPredicate().equals(MEMBERSHIP_RESOURCE.asNode()) && triple.getObject()
-                        .isURI())
-                .map(Triple::getObject).map(Node::getURI)
-                .findFirst().map(URI::create).orElse(null);
+        // the triples are read lazily, so close them once the first match is found
+        try (final RdfStream triples = resource.getTriples()) {
+            return triples
+                    .filter(triple -> triple.getPredicate().equals(MEMBERSHIP_RESOURCE.asNode()) && triple.getObject()
+                            .isURI())
+                    .map(Triple::getObject).map(Node::getURI)
+                    .findFirst().map(URI::create).orElse(null);
+        }
     }
 
     /**
@@ -67,6 +67,7 @@ import java.util.stream.Stream;
 import org.apache.jena.graph.Triple;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
+import org.fcrepo.kernel.api.RdfStream;
 import org.fcrepo.kernel.api.Transaction;
 import org.fcrepo.kernel.api.exception.RepositoryException;
 import org.fcrepo.kernel.api.identifiers.IdentifierConverter;
@@ -256,8 +257,12 @@ public class WebACRolesProvider {
                                                   final FedoraResource resource, final String hashPortion) {
 
         //resolve list of triples, accounting for hash-uris.
-        final List<Triple> triples = resource.getTriples().filter(
-            triple -> hashPortion == null || triple.getSubject().getURI().endsWith(hashPortion)).collect(toList());
+        final List<Triple> triples;
+        try (final RdfStream resourceTriples = resource.getTriples()) {
+            triples = resourceTriples.filter(
+                triple -> hashPortion == null || triple.getSubject().getURI().endsWith(hashPortion))
+                .collect(toList());
+        }
         //determine if there is a rdf:type vcard:Group
         final boolean hasVcardGroup = triples.stream().anyMatch(
             triple -> triple.matches(triple.getSubject(), RDF_TYPE_NODE, VCARD_GROUP_NODE));
@@ -324,7 +329,10 @@ public class WebACRolesProvider {
 
         if (aclResource.isAcl()) {
             //resolve set of subjects that are of type acl:authorization
-            final List<Triple> triples = aclResource.getTriples().collect(toList());
+            final List<Triple> triples;
+            try (final RdfStream aclTriples = aclResource.getTriples()) {
+                triples = aclTriples.collect(toList());
+            }
 
             final Set<org.apache.jena.graph.Node> authSubjects = triples.stream().filter(t -> {
                 return t.getPredicate().getURI().equals(RDF_NAMESPACE + "type") &&
@@ -86,6 +86,7 @@ import org.apache.jena.atlas.web.ContentType;
 import org.fcrepo.kernel.api.services.ContainmentTriplesService;
 import static org.slf4j.LoggerFactory.getLogger;
 
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
@@ -128,6 +129,8 @@ import org.fcrepo.http.commons.domain.MultiPrefer;
 import org.fcrepo.http.commons.domain.PreferTag;
 import org.fcrepo.http.commons.domain.Range;
 import org.fcrepo.http.commons.domain.ldp.LdpPreferTag;
+import org.fcrepo.http.commons.responses.FileRegionStreamingOutput;
+import org.fcrepo.http.commons.responses.MultipartByteRangesStreamingOutput;
 import org.fcrepo.http.commons.responses.RangeRequestInputStream;
 import org.fcrepo.http.commons.responses.RdfNamespacedStream;
 import org.fcrepo.kernel.api.FedoraTypes;
@@ -325,7 +328,7 @@ public abstract class ContentExposingResource extends FedoraBaseResource {
                 if (limit == -1) {
                     streams.add(this.containmentTriplesService.get(transaction(), resource));
                 } else {
-                    streams.add(this.containmentTriplesService.get(transaction(), resource).limit(limit));
+                    streams.add(this.containmentTriplesService.get(transaction(), resource, limit));
                 }
             }
 
@@ -375,56 +378,89 @@ public abstract class ContentExposingResource extends FedoraBaseResource {
             cc.setMaxAge(0);
             cc.setMustRevalidate(true);
             final Response.ResponseBuilder builder;
+            // we set the content-type explicitly to avoid content-negotiation from getting in the way
+            // getBinaryResourceMediaType will try to use the mime type on the resource, falling back on
+            // 'application/octet-stream' if the mime type is syntactically invalid
+            final String binaryType = getBinaryResourceMediaType(resource).toString();
+            String responseType = binaryType;
 
-            if (rangeValue != null && rangeValue.startsWith("bytes")) {
+            final List<Range> ranges = rangeValue == null ? List.of() : Range.convertAll(rangeValue);
 
-                final Range range = Range.convert(rangeValue);
+            if (ranges.size() > 1) {
 
                 final long contentSize = binary.getContentSize();
+                final List<Range> satisfiable = ranges.stream()
+                        .filter(range -> range.isSatisfiable(contentSize))
+                        .collect(Collectors.toList());
+                @SuppressWarnings("resource")
+                final InputStream content = binary.getContent();
 
-                final String endAsString;
-
-                if (range.end() == -1) {
-                    endAsString = Long.toString(contentSize - 1);
+                if (!(content instanceof FileInputStream)) {
+                    // the content can not be positioned at each range, so the ranges are ignored
+                    builder = ok(content);
+                } else if (satisfiable.isEmpty()) {
+                    content.close();
+                    builder = status(REQUESTED_RANGE_NOT_SATISFIABLE)
+                            .header("Content-Range", "bytes */" + contentSize);
                 } else {
-                    endAsString = Long.toString(range.end());
+                    final MultipartByteRangesStreamingOutput multipart = new MultipartByteRangesStreamingOutput(
+                            ((FileInputStream) content).getChannel(), satisfiable, contentSize, binaryType);
+                    responseType = multipart.getMediaType();
+                    builder = status(PARTIAL_CONTENT).entity(multipart)
+                            .header(CONTENT_LENGTH, multipart.getContentLength());
                 }
 
-                final String contentRangeValue =
-                        String.format("bytes %s-%s/%s", range.start(),
-                                endAsString, contentSize);
+            } else if (ranges.size() == 1) {
+
+                final Range range = ranges.get(0);
 
-                if (range.end() > contentSize ||
-                        (range.end() == -1 && range.start() > contentSize)) {
+                final long contentSize = binary.getContentSize();
 
+                if (!range.isSatisfiable(contentSize)) {
                     builder = status(REQUESTED_RANGE_NOT_SATISFIABLE)
-                            .header("Content-Range", contentRangeValue);
+                            .header("Content-Range", "bytes */" + contentSize);
                 } else {
-                    @SuppressWarnings("resource")
-                    final RangeRequestInputStream rangeInputStream =
-                            new RangeRequestInputStream(binary.getContent(), range.start(), range.size());
-
-                    builder = status(PARTIAL_CONTENT).entity(rangeInputStream)
-                            .header("Content-Range", contentRangeValue)
-                            .header(CONTENT_LENGTH, range.size());
+                    final long firstByte = range.firstByte(contentSize);
+                    final long lastByte = range.lastByte(contentSize);
+                    final long length = lastByte - firstByte + 1;
+                    builder = status(PARTIAL_CONTENT).entity(binaryEntity(binary, firstByte, length))
+                            .header("Content-Range", String.format("bytes %s-%s/%s", firstByte, lastByte,
+                                    contentSize))
+                            .header(CONTENT_LENGTH, length);
                 }
 
             } else {
-                @SuppressWarnings("resource")
-                final InputStream content = binary.getContent();
-                builder = ok(content);
+                builder = ok(binaryEntity(binary, 0, -1));
             }
 
-
-            // we set the content-type explicitly to avoid content-negotiation from getting in the way
-            // getBinaryResourceMediaType will try to use the mime type on the resource, falling back on
-            // 'application/octet-stream' if the mime type is syntactically invalid
-            return builder.type(getBinaryResourceMediaType(resource).toString())
+            return builder.type(responseType)
                     .cacheControl(cc)
                     .build();
 
         }
 
+    /**
+     * Get the entity delivering a region of the content of a binary. Content stored in a local file is written from
+     * its file channel, so that the region is read directly and can be sent without copying it through the JVM when
+     * the container allows it. Other content is streamed.
+     *
+     * @param binary the binary
+     * @param start the offset of the first byte to deliver
+     * @param size the number of bytes to deliver, or -1 to deliver the rest of the content
+     * @return the entity
+     * @throws IOException if the content can not be skipped to the start of the region
+     */
+    @SuppressWarnings("resource")
+    private static Object binaryEntity(final Binary binary, final long start, final long size) throws IOException {
+        final InputStream content = binary.getContent();
+        if (content instanceof FileInputStream) {
+            return new FileRegionStreamingOutput(((FileInputStream) content).getChannel(), start, size);
+        } else if (start == 0 && size == -1) {
+            return content;
+        }
+        return new RangeRequestInputStream(content, start, size);
+    }
+
     protected URI getUri(final FedoraResource resource) {
         try {
             final String uri = identifierConverter()
@@ -0,0 +1,76 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.http.api;
+
+import org.fcrepo.kernel.api.IndexRebuildStatus;
+import org.springframework.context.annotation.Scope;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Response;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+import static javax.ws.rs.core.Response.ok;
+
+/**
+ * Reports the progress of rebuilding the indexes, which may run in the background while the repository serves
+ * requests.
+ *
+ * @author bbpennel
+ * @since 6.0.0
+ */
+@Scope("request")
+@Path("/fcr:rebuild")
+public class FedoraIndexRebuild extends FedoraBaseResource {
+
+    @Inject
+    private IndexRebuildStatus indexRebuildStatus;
+
+    /**
+     * Default JAX-RS entry point
+     */
+    public FedoraIndexRebuild() {
+        super();
+    }
+
+    /**
+     * Get the status of the index rebuild
+     * @return A response object with the state and progress of the rebuild
+     */
+    @GET
+    @Produces({APPLICATION_JSON + ";qs=1.0"})
+    public Response getStatus() {
+        final Map<String, Object> status = new LinkedHashMap<>();
+        status.put("state", indexRebuildStatus.getState().name());
+        status.put("objectsIndexed", indexRebuildStatus.getObjectsIndexed());
+        status.put("objectsSkipped", indexRebuildStatus.getObjectsSkipped());
+        status.put("resourcesIndexed", indexRebuildStatus.getResourcesIndexed());
+        status.put("started", toString(indexRebuildStatus.getStarted()));
+        status.put("completed", toString(indexRebuildStatus.getCompleted()));
+        return ok(status).build();
+    }
+
+    private static String toString(final Instant instant) {
+        return instant == null ? null : instant.toString();
+    }
+}
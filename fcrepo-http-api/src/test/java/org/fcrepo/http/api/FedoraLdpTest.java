@@ -32,6 +32,8 @@ import static javax.ws.rs.core.Response.Status.CREATED;
 import static javax.ws.rs.core.Response.Status.NOT_MODIFIED;
 import static javax.ws.rs.core.Response.Status.NO_CONTENT;
 import static javax.ws.rs.core.Response.Status.OK;
+import static javax.ws.rs.core.Response.Status.PARTIAL_CONTENT;
+import static javax.ws.rs.core.Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE;
 import static javax.ws.rs.core.Response.Status.TEMPORARY_REDIRECT;
 
 import static org.apache.commons.io.IOUtils.toInputStream;
@@ -77,9 +79,13 @@ import static org.mockito.Mockito.when;
 import static org.slf4j.LoggerFactory.getLogger;
 import static org.springframework.test.util.ReflectionTestUtils.setField;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.file.Files;
 import java.security.Principal;
 import java.util.Arrays;
 import java.util.Collections;
@@ -100,6 +106,7 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.SecurityContext;
+import javax.ws.rs.core.StreamingOutput;
 
 import com.google.common.base.Charsets;
 import org.apache.commons.io.IOUtils;
@@ -138,7 +145,9 @@ import org.fcrepo.kernel.api.services.TimeMapService;
 import org.fcrepo.kernel.api.services.UpdatePropertiesService;
 import org.junit.Before;
 import org.junit.Ignore;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
@@ -166,6 +175,9 @@ public class FedoraLdpTest {
 
     private FedoraLdp testObj;
 
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
     private final List<String> nonRDFSourceLink = singletonList(
             Link.fromUri(NON_RDF_SOURCE.toString()).rel("type").build().toString());
 
@@ -815,6 +827,102 @@ public class FedoraLdpTest {
         assertEquals("xyz", IOUtils.toString((InputStream) actual.getEntity(), UTF_8));
     }
 
+    @Test
+    public void testGetWithFileBinaryRange() throws Exception {
+        final File contentFile = tempFolder.newFile();
+        Files.writeString(contentFile.toPath(), "abcdefgh");
+        final Binary mockResource = (Binary)setResource(Binary.class);
+        when(mockRequest.getMethod()).thenReturn("GET");
+        when(mockResource.getDescription()).thenReturn(mockNonRdfSourceDescription);
+        when(mockResource.getMimeType()).thenReturn("text/plain");
+        when(mockResource.getContentSize()).thenReturn(8L);
+        when(mockResource.getContent()).thenReturn(new FileInputStream(contentFile));
+        when(mockResource.getOriginalResource()).thenReturn(mockResource);
+        final Response actual = testObj.getResource("bytes=2-4");
+        assertEquals(PARTIAL_CONTENT.getStatusCode(), actual.getStatus());
+        assertEquals("bytes 2-4/8", actual.getHeaderString("Content-Range"));
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ((StreamingOutput) actual.getEntity()).write(output);
+        assertEquals("cde", output.toString(UTF_8));
+    }
+
+    @Test
+    public void testGetWithFileBinaryRangeBeyondContent() throws Exception {
+        final File contentFile = tempFolder.newFile();
+        Files.writeString(contentFile.toPath(), "abcdefgh");
+        final Binary mockResource = (Binary)setResource(Binary.class);
+        when(mockRequest.getMethod()).thenReturn("GET");
+        when(mockResource.getDescription()).thenReturn(mockNonRdfSourceDescription);
+        when(mockResource.getMimeType()).thenReturn("text/plain");
+        when(mockResource.getContentSize()).thenReturn(8L);
+        when(mockResource.getContent()).thenReturn(new FileInputStream(contentFile));
+        when(mockResource.getOriginalResource()).thenReturn(mockResource);
+        final Response actual = testObj.getResource("bytes=5-20");
+        assertEquals(PARTIAL_CONTENT.getStatusCode(), actual.getStatus());
+        assertEquals("bytes 5-7/8", actual.getHeaderString("Content-Range"));
+        assertEquals("3", actual.getHeaderString(CONTENT_LENGTH));
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ((StreamingOutput) actual.getEntity()).write(output);
+        assertEquals("fgh", output.toString(UTF_8));
+    }
+
+    @Test
+    public void testGetWithFileBinarySuffixRange() throws Exception {
+        final File contentFile = tempFolder.newFile();
+        Files.writeString(contentFile.toPath(), "abcdefgh");
+        final Binary mockResource = (Binary)setResource(Binary.class);
+        when(mockRequest.getMethod()).thenReturn("GET");
+        when(mockResource.getDescription()).thenReturn(mockNonRdfSourceDescription);
+        when(mockResource.getMimeType()).thenReturn("text/plain");
+        when(mockResource.getContentSize()).thenReturn(8L);
+        when(mockResource.getContent()).thenReturn(new FileInputStream(contentFile));
+        when(mockResource.getOriginalResource()).thenReturn(mockResource);
+        final Response actual = testObj.getResource("bytes=-2");
+        assertEquals(PARTIAL_CONTENT.getStatusCode(), actual.getStatus());
+        assertEquals("bytes 6-7/8", actual.getHeaderString("Content-Range"));
+        assertEquals("2", actual.getHeaderString(CONTENT_LENGTH));
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ((StreamingOutput) actual.getEntity()).write(output);
+        assertEquals("gh", output.toString(UTF_8));
+    }
+
+    @Test
+    public void testGetWithFileBinaryMultipleRanges() throws Exception {
+        final File contentFile = tempFolder.newFile();
+        Files.writeString(contentFile.toPath(), "abcdefgh");
+        final Binary mockResource = (Binary)setResource(Binary.class);
+        when(mockRequest.getMethod()).thenReturn("GET");
+        when(mockResource.getDescription()).thenReturn(mockNonRdfSourceDescription);
+        when(mockResource.getMimeType()).thenReturn("text/plain");
+        when(mockResource.getContentSize()).thenReturn(8L);
+        when(mockResource.getContent()).thenReturn(new FileInputStream(contentFile));
+        when(mockResource.getOriginalResource()).thenReturn(mockResource);
+        final Response actual = testObj.getResource("bytes=0-1,6-");
+        assertEquals(PARTIAL_CONTENT.getStatusCode(), actual.getStatus());
+        assertTrue(actual.getMediaType().toString().startsWith("multipart/byteranges"));
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ((StreamingOutput) actual.getEntity()).write(output);
+        final String body = output.toString(UTF_8);
+        assertTrue(body.contains("Content-Range: bytes 0-1/8\r\n\r\nab\r\n"));
+        assertTrue(body.contains("Content-Range: bytes 6-7/8\r\n\r\ngh\r\n"));
+    }
+
+    @Test
+    public void testGetWithFileBinaryUnsatisfiableRanges() throws Exception {
+        final File contentFile = tempFolder.newFile();
+        Files.writeString(contentFile.toPath(), "abcdefgh");
+        final Binary mockResource = (Binary)setResource(Binary.class);
+        when(mockRequest.getMethod()).thenReturn("GET");
+        when(mockResource.getDescription()).thenReturn(mockNonRdfSourceDescription);
+        when(mockResource.getMimeType()).thenReturn("text/plain");
+        when(mockResource.getContentSize()).thenReturn(8L);
+        when(mockResource.getContent()).thenReturn(new FileInputStream(contentFile));
+        when(mockResource.getOriginalResource()).thenReturn(mockResource);
+        final Response actual = testObj.getResource("bytes=8-9,20-");
+        assertEquals(REQUESTED_RANGE_NOT_SATISFIABLE.getStatusCode(), actual.getStatus());
+        assertEquals("bytes */8", actual.getHeaderString("Content-Range"));
+    }
+
     private void assertShouldBeAnLDPNonRDFSource() {
         assertTrue("Should be an LDP NonRDFSource",
                 mockResponse.getHeaders(LINK).contains("<" + LDP_NAMESPACE + "NonRDFSource>;rel=\"type\""));
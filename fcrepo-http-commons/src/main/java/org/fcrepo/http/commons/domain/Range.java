@@ -20,6 +20,8 @@ package org.fcrepo.http.commons.domain;
 import static java.lang.Long.parseLong;
 import static java.util.regex.Pattern.compile;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -34,15 +36,13 @@ public class Range {
 
     private final long end;
 
-    private static final Pattern rangePattern =
-        compile("^bytes\\s*=\\s*(\\d*)\\s*-\\s*(\\d*)");
+    private final long suffixLength;
 
-    /**
-     * Unbounded Range
-     */
-    private Range() {
-        this(0, -1);
-    }
+    private static final Pattern rangeSetPattern =
+        compile("^bytes\\s*=(.*)");
+
+    private static final Pattern rangeSpecPattern =
+        compile("^\\s*(\\d*)\\s*-\\s*(\\d*)\\s*");
 
     /**
      * Left-bounded range
@@ -58,8 +58,13 @@ public class Range {
      * @param end the end
      */
     private Range(final long start, final long end) {
+        this(start, end, -1L);
+    }
+
+    private Range(final long start, final long end, final long suffixLength) {
         this.start = start;
         this.end = end;
+        this.suffixLength = suffixLength;
     }
 
     /**
@@ -67,7 +72,7 @@ public class Range {
      * @return true if the range imposes limits
      */
     public boolean hasRange() {
-        return !(start == 0 && end == -1);
+        return !(start == 0 && end == -1 && suffixLength == -1);
     }
 
     /**
@@ -98,28 +103,73 @@ public class Range {
     }
 
     /**
-     * Convert an HTTP Range header to a Range object
-     * @param source the source
-     * @return range object
+     * Does the range select any of the content
+     * @param contentSize the size of the content
+     * @return true if the range starts within the content, or is a suffix of at least one byte of non-empty content
      */
-    public static Range convert(final String source) {
+    public boolean isSatisfiable(final long contentSize) {
+        if (suffixLength != -1) {
+            return suffixLength > 0 && contentSize > 0;
+        }
+        return start < contentSize && (end == -1 || end >= start);
+    }
 
-        final Matcher matcher = rangePattern.matcher(source);
+    /**
+     * First byte of the range within the content
+     * @param contentSize the size of the content
+     * @return offset of the first byte of the range, which for a suffix range is counted back from the end of the
+     *         content
+     */
+    public long firstByte(final long contentSize) {
+        if (suffixLength != -1) {
+            return Math.max(0, contentSize - suffixLength);
+        }
+        return start;
+    }
 
-        if (!matcher.matches()) {
-            return new Range();
+    /**
+     * Last byte of the range within the content
+     * @param contentSize the size of the content
+     * @return offset of the last byte of the range, limited to the end of the content
+     */
+    public long lastByte(final long contentSize) {
+        if (suffixLength != -1 || end == -1 || end >= contentSize) {
+            return contentSize - 1;
         }
+        return end;
+    }
+
+    /**
+     * Convert an HTTP Range header listing one or more byte ranges to Range objects. A range without a first byte
+     * selects the given number of bytes at the end of the content, see {@link #firstByte(long)}.
+     * @param source the source
+     * @return the ranges in the order requested, or an empty list if the header is not a valid byte range set
+     */
+    public static List<Range> convertAll(final String source) {
 
-        final String from = matcher.group(1);
-        final String to = matcher.group(2);
+        final Matcher matcher = rangeSetPattern.matcher(source);
 
-        final long start;
+        if (!matcher.matches()) {
+            return List.of();
+        }
 
-        if (from.equals("")) {
-            start = 0;
-        } else {
-            start = parseLong(from);
+        final List<Range> ranges = new ArrayList<>();
+        for (final String spec : matcher.group(1).split(",")) {
+            final Matcher specMatcher = rangeSpecPattern.matcher(spec);
+            if (!specMatcher.matches() || (specMatcher.group(1).isEmpty() && specMatcher.group(2).isEmpty())) {
+                return List.of();
+            }
+            if (specMatcher.group(1).isEmpty()) {
+                ranges.add(new Range(0, -1, parseLong(specMatcher.group(2))));
+            } else {
+                ranges.add(parse(specMatcher.group(1), specMatcher.group(2)));
+            }
         }
+        return ranges;
+    }
+
+    private static Range parse(final String from, final String to) {
+        final long start = parseLong(from);
 
         final long end;
         if (to.equals("")) {
@@ -0,0 +1,98 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.http.commons.responses;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+import javax.ws.rs.core.StreamingOutput;
+
+/**
+ * Writes a region of a file to the response. When the container exposes the response as a channel, the region is
+ * transferred by the file channel so that the operating system can send it without copying it through the JVM.
+ * Otherwise it is copied with positional reads in large chunks, so ranges are read without skipping through the file.
+ *
+ * The channel is closed once the region has been written.
+ *
+ * @author bbpennel
+ * @since 6.0.0
+ */
+public class FileRegionStreamingOutput implements StreamingOutput {
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+
+    private final long position;
+
+    private final long count;
+
+    /**
+     * @param channel the channel of the file
+     * @param position the offset in the file of the first byte to write
+     * @param count the number of bytes to write, or -1 to write to the end of the file
+     */
+    public FileRegionStreamingOutput(final FileChannel channel, final long position, final long count) {
+        this.channel = channel;
+        this.position = position;
+        this.count = count;
+    }
+
+    @Override
+    public void write(final OutputStream output) throws IOException {
+        try (channel) {
+            final long size = channel.size();
+            final long end = count < 0 ? size : Math.min(size, position + count);
+            if (output instanceof WritableByteChannel) {
+                transfer(end, (WritableByteChannel) output);
+            } else {
+                copy(end, output);
+            }
+            output.flush();
+        }
+    }
+
+    private void transfer(final long end, final WritableByteChannel target) throws IOException {
+        long offset = position;
+        while (offset < end) {
+            final long transferred = channel.transferTo(offset, end - offset, target);
+            if (transferred <= 0) {
+                break;
+            }
+            offset += transferred;
+        }
+    }
+
+    private void copy(final long end, final OutputStream output) throws IOException {
+        final byte[] chunk = new byte[(int) Math.max(0, Math.min(COPY_BUFFER_SIZE, end - position))];
+        final ByteBuffer buffer = ByteBuffer.wrap(chunk);
+        long offset = position;
+        while (offset < end) {
+            buffer.clear().limit((int) Math.min(chunk.length, end - offset));
+            final int read = channel.read(buffer, offset);
+            if (read <= 0) {
+                break;
+            }
+            output.write(chunk, 0, read);
+            offset += read;
+        }
+    }
+}
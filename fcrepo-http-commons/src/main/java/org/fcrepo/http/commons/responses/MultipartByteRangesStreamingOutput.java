@@ -0,0 +1,135 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.http.commons.responses;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import org.fcrepo.http.commons.domain.Range;
+
+/**
+ * Writes several ranges of a binary as a multipart/byteranges response. The channel is positioned at the start of
+ * each range before it is read, so no content outside of the requested ranges is read.
+ *
+ * The channel is closed once all of the ranges have been written.
+ *
+ * @author bbpennel
+ * @since 6.0.0
+ */
+public class MultipartByteRangesStreamingOutput implements StreamingOutput {
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private static final String CRLF = "\r\n";
+
+    private final SeekableByteChannel channel;
+
+    private final List<Range> ranges;
+
+    private final long contentSize;
+
+    private final String boundary;
+
+    private final List<byte[]> partHeaders;
+
+    private final byte[] closeDelimiter;
+
+    /**
+     * @param channel the channel of the content
+     * @param ranges the ranges to write, which must all be satisfiable for the content
+     * @param contentSize the size of the content
+     * @param contentType the media type of the content
+     */
+    public MultipartByteRangesStreamingOutput(final SeekableByteChannel channel, final List<Range> ranges,
+            final long contentSize, final String contentType) {
+        this.channel = channel;
+        this.ranges = ranges;
+        this.contentSize = contentSize;
+        this.boundary = UUID.randomUUID().toString();
+        this.partHeaders = new ArrayList<>(ranges.size());
+        for (final Range range : ranges) {
+            final String header = CRLF + "--" + boundary + CRLF +
+                    "Content-Type: " + contentType + CRLF +
+                    "Content-Range: bytes " + range.firstByte(contentSize) + "-" + range.lastByte(contentSize) + "/" +
+                    contentSize + CRLF + CRLF;
+            partHeaders.add(header.getBytes(US_ASCII));
+        }
+        this.closeDelimiter = (CRLF + "--" + boundary + "--" + CRLF).getBytes(US_ASCII);
+    }
+
+    /**
+     * @return the media type of the response, including its boundary
+     */
+    public String getMediaType() {
+        return "multipart/byteranges; boundary=" + boundary;
+    }
+
+    /**
+     * @return the number of bytes in the response
+     */
+    public long getContentLength() {
+        long length = closeDelimiter.length;
+        for (int i = 0; i < ranges.size(); i++) {
+            length += partHeaders.get(i).length + rangeSize(ranges.get(i));
+        }
+        return length;
+    }
+
+    @Override
+    public void write(final OutputStream output) throws IOException {
+        try (channel) {
+            final byte[] chunk = new byte[COPY_BUFFER_SIZE];
+            final ByteBuffer buffer = ByteBuffer.wrap(chunk);
+            for (int i = 0; i < ranges.size(); i++) {
+                output.write(partHeaders.get(i));
+                copy(ranges.get(i), chunk, buffer, output);
+            }
+            output.write(closeDelimiter);
+            output.flush();
+        }
+    }
+
+    private void copy(final Range range, final byte[] chunk, final ByteBuffer buffer, final OutputStream output)
+            throws IOException {
+        channel.position(range.firstByte(contentSize));
+        long remaining = rangeSize(range);
+        while (remaining > 0) {
+            buffer.clear().limit((int) Math.min(chunk.length, remaining));
+            final int read = channel.read(buffer);
+            if (read <= 0) {
+                throw new IOException("Content ended before the end of range " + range.firstByte(contentSize) + "-" +
+                        range.lastByte(contentSize));
+            }
+            output.write(chunk, 0, read);
+            remaining -= read;
+        }
+    }
+
+    private long rangeSize(final Range range) {
+        return range.lastByte(contentSize) - range.firstByte(contentSize) + 1;
+    }
+}
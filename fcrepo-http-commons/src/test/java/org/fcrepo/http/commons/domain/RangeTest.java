@@ -21,6 +21,8 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.List;
+
 import org.junit.Test;
 
 /**
@@ -39,7 +41,7 @@ public class RangeTest {
     }
     @Test
     public void testRangeParsing() {
-        final Range range = Range.convert("bytes=50-100");
+        final Range range = Range.convertAll("bytes=50-100").get(0);
 
         assertEquals(50L, range.start());
         assertEquals(100L, range.end());
@@ -50,7 +52,7 @@ public class RangeTest {
 
     @Test
     public void testUnboundedUpperRangeParsing() {
-        final Range range = Range.convert("bytes=50-");
+        final Range range = Range.convertAll("bytes=50-").get(0);
 
         assertEquals(50L, range.start());
         assertEquals(-1L, range.end());
@@ -61,23 +63,71 @@ public class RangeTest {
 
     @Test
     public void testUnboundedLowerRangeParsing() {
-        final Range range = Range.convert("bytes=-50");
+        final Range range = Range.convertAll("bytes=-50").get(0);
 
-        assertEquals(0L, range.start());
-        assertEquals(50L, range.end());
-        assertEquals(51L, range.size());
+        assertEquals(50L, range.firstByte(100));
+        assertEquals(99L, range.lastByte(100));
         assertTrue(range.hasRange());
 
     }
 
     @Test
-    public void testGarbageRangeParsing() {
-        final Range range = Range.convert("something-thats-not-a-range");
+    public void testMultipleRangeParsing() {
+        final List<Range> ranges = Range.convertAll("bytes=0-9, 50-, -20");
+
+        assertEquals(3, ranges.size());
+        assertEquals(0L, ranges.get(0).start());
+        assertEquals(9L, ranges.get(0).end());
+        assertEquals(50L, ranges.get(1).start());
+        assertEquals(-1L, ranges.get(1).end());
+        assertEquals(80L, ranges.get(2).firstByte(100));
+        assertEquals(99L, ranges.get(2).lastByte(100));
+    }
 
-        assertFalse(range.hasRange());
-        assertEquals(0L, range.start());
-        assertEquals(-1L, range.end());
-        assertEquals(-1L, range.size());
+    @Test
+    public void testSingleRangeSetParsing() {
+        final List<Range> ranges = Range.convertAll("bytes=50-100");
+
+        assertEquals(1, ranges.size());
+        assertEquals(51L, ranges.get(0).size());
+    }
+
+    @Test
+    public void testGarbageRangeSetParsing() {
+        assertTrue(Range.convertAll("something-thats-not-a-range").isEmpty());
+        assertTrue(Range.convertAll("bytes=0-9,x-y").isEmpty());
+        assertTrue(Range.convertAll("bytes=0-9,-").isEmpty());
+    }
+
+    @Test
+    public void testSatisfiable() {
+        assertTrue(Range.convertAll("bytes=5-20").get(0).isSatisfiable(10));
+        assertTrue(Range.convertAll("bytes=9-").get(0).isSatisfiable(10));
+        assertFalse(Range.convertAll("bytes=10-").get(0).isSatisfiable(10));
+        assertFalse(Range.convertAll("bytes=5-4").get(0).isSatisfiable(10));
+    }
 
+    @Test
+    public void testSuffixRange() {
+        final List<Range> ranges = Range.convertAll("bytes=0-99,-500");
+
+        assertEquals(2, ranges.size());
+        assertEquals(0L, ranges.get(0).firstByte(1000));
+        assertEquals(99L, ranges.get(0).lastByte(1000));
+        assertTrue(ranges.get(1).isSatisfiable(1000));
+        assertEquals(500L, ranges.get(1).firstByte(1000));
+        assertEquals(999L, ranges.get(1).lastByte(1000));
+        // a suffix longer than the content selects all of it
+        assertEquals(0L, ranges.get(1).firstByte(200));
+        assertEquals(199L, ranges.get(1).lastByte(200));
+        assertFalse(Range.convertAll("bytes=0-9,-0").get(1).isSatisfiable(1000));
+        assertFalse(ranges.get(1).isSatisfiable(0));
+    }
+
+    @Test
+    public void testLastByte() {
+        assertEquals(7L, Range.convertAll("bytes=5-7").get(0).lastByte(10));
+        assertEquals(9L, Range.convertAll("bytes=5-20").get(0).lastByte(10));
+        assertEquals(9L, Range.convertAll("bytes=5-").get(0).lastByte(10));
     }
 }
@@ -0,0 +1,165 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.http.commons.responses;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+
+/**
+ * Benchmark of the throughput and CPU cost of delivering a binary to a socket through a stream copy, as done for an
+ * InputStream entity, against {@link FileRegionStreamingOutput} writing to a stream and to a channel. The class name
+ * keeps it out of the default surefire run, use
+ * <code>mvn test -pl fcrepo-http-commons -Dtest=FileRegionStreamingOutputBenchmark</code> to run it.
+ *
+ * @author bbpennel
+ */
+public class FileRegionStreamingOutputBenchmark {
+
+    private static final Logger LOGGER = getLogger(FileRegionStreamingOutputBenchmark.class);
+
+    private static final int FILE_SIZE = 256 * 1024 * 1024;
+
+    private static final int WARMUP = 2;
+
+    private static final int ITERATIONS = 8;
+
+    // Buffer size used by the container to copy InputStream entities
+    private static final int STREAM_COPY_BUFFER_SIZE = 8192;
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @FunctionalInterface
+    private interface Delivery {
+        void deliver(Path file, OutputStream output) throws IOException;
+    }
+
+    @Test
+    public void benchmarkDelivery() throws Exception {
+        final Path file = tempFolder.newFile().toPath();
+        final byte[] block = new byte[1024 * 1024];
+        new Random(42).nextBytes(block);
+        try (final var out = Files.newOutputStream(file)) {
+            for (int i = 0; i < FILE_SIZE / block.length; i++) {
+                out.write(block);
+            }
+        }
+
+        final ExecutorService drainer = Executors.newSingleThreadExecutor();
+        try (final var server = ServerSocketChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                0));
+             final var client = SocketChannel.open(server.getLocalAddress())) {
+            // Discard everything sent to the socket, as a client downloading the binary would
+            drainer.submit(() -> {
+                try (final var accepted = server.accept()) {
+                    final var buffer = ByteBuffer.allocateDirect(1024 * 1024);
+                    while (accepted.read(buffer) >= 0) {
+                        buffer.clear();
+                    }
+                }
+                return null;
+            });
+
+            final OutputStream stream = Channels.newOutputStream(client);
+            final OutputStream channel = new ChannelOutputStream(client);
+
+            measure("stream copy", file, stream, (source, output) -> {
+                try (final var in = new FileInputStream(source.toFile())) {
+                    IOUtils.copyLarge(in, output, new byte[STREAM_COPY_BUFFER_SIZE]);
+                }
+            });
+            measure("file region to stream", file, stream, (source, output) ->
+                    new FileRegionStreamingOutput(FileChannel.open(source, READ), 0, -1).write(output));
+            measure("file region to channel", file, channel, (source, output) ->
+                    new FileRegionStreamingOutput(FileChannel.open(source, READ), 0, -1).write(output));
+        } finally {
+            drainer.shutdownNow();
+        }
+    }
+
+    private void measure(final String name, final Path file, final OutputStream output, final Delivery delivery)
+            throws IOException {
+        for (int i = 0; i < WARMUP; i++) {
+            delivery.deliver(file, output);
+        }
+        final long startCpu = THREADS.getCurrentThreadCpuTime();
+        final long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            delivery.deliver(file, output);
+        }
+        final double seconds = (System.nanoTime() - start) / 1e9;
+        final double cpuMillis = (THREADS.getCurrentThreadCpuTime() - startCpu) / 1e6;
+        final double gigabytes = (double) FILE_SIZE * ITERATIONS / (1024 * 1024 * 1024);
+        LOGGER.info("{}: {} MB/s, {} CPU ms/GB", name, String.format("%.0f", gigabytes * 1024 / seconds),
+                String.format("%.0f", cpuMillis / gigabytes));
+    }
+
+    /**
+     * Output stream which is also a channel, as exposed by some containers.
+     */
+    private static class ChannelOutputStream extends OutputStream implements WritableByteChannel {
+
+        private final WritableByteChannel channel;
+
+        private ChannelOutputStream(final WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            channel.write(ByteBuffer.wrap(new byte[] { (byte) b }));
+        }
+
+        @Override
+        public int write(final ByteBuffer src) throws IOException {
+            return channel.write(src);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+    }
+}
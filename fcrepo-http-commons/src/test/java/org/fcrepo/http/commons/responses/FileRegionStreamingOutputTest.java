@@ -0,0 +1,126 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.http.commons.responses;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author bbpennel
+ */
+public class FileRegionStreamingOutputTest {
+
+    private static final String CONTENT = "0123456789";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = tempFolder.newFile().toPath();
+        Files.write(file, CONTENT.getBytes(UTF_8));
+    }
+
+    @Test
+    public void testWholeFile() throws IOException {
+        final var channel = FileChannel.open(file, READ);
+        final var output = new ByteArrayOutputStream();
+        new FileRegionStreamingOutput(channel, 0, -1).write(output);
+
+        assertEquals(CONTENT, output.toString(UTF_8));
+        assertFalse("Channel must be closed once written", channel.isOpen());
+    }
+
+    @Test
+    public void testRange() throws IOException {
+        final var output = new ByteArrayOutputStream();
+        new FileRegionStreamingOutput(FileChannel.open(file, READ), 5, 3).write(output);
+
+        assertEquals("567", output.toString(UTF_8));
+    }
+
+    @Test
+    public void testRangePastEndOfFile() throws IOException {
+        final var output = new ByteArrayOutputStream();
+        new FileRegionStreamingOutput(FileChannel.open(file, READ), 8, 10).write(output);
+
+        assertEquals("89", output.toString(UTF_8));
+    }
+
+    @Test
+    public void testTransferToChannel() throws IOException {
+        final var target = tempFolder.newFile().toPath();
+        try (final var output = new ChannelOutputStream(FileChannel.open(target, CREATE, WRITE))) {
+            new FileRegionStreamingOutput(FileChannel.open(file, READ), 2, 5).write(output);
+        }
+
+        assertEquals("23456", Files.readString(target));
+    }
+
+    /**
+     * Output stream which is also a channel, as exposed by some containers.
+     */
+    private static class ChannelOutputStream extends OutputStream implements WritableByteChannel {
+
+        private final WritableByteChannel channel;
+
+        private ChannelOutputStream(final WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            channel.write(ByteBuffer.wrap(new byte[] { (byte) b }));
+        }
+
+        @Override
+        public int write(final ByteBuffer src) throws IOException {
+            return channel.write(src);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.http.commons.responses;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.READ;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.fcrepo.http.commons.domain.Range;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author bbpennel
+ */
+public class MultipartByteRangesStreamingOutputTest {
+
+    private static final String CONTENT = "0123456789";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = tempFolder.newFile().toPath();
+        Files.write(file, CONTENT.getBytes(UTF_8));
+    }
+
+    @Test
+    public void testMultipleRanges() throws IOException {
+        final var channel = FileChannel.open(file, READ);
+        final var multipart = new MultipartByteRangesStreamingOutput(channel,
+                Range.convertAll("bytes=7-8,1-2,5-"), CONTENT.length(), "text/plain");
+        final var output = new ByteArrayOutputStream();
+        multipart.write(output);
+
+        final String boundary = multipart.getMediaType().substring(multipart.getMediaType().indexOf('=') + 1);
+        assertTrue(multipart.getMediaType().startsWith("multipart/byteranges; boundary="));
+        assertEquals("\r\n--" + boundary + "\r\n" +
+                "Content-Type: text/plain\r\n" +
+                "Content-Range: bytes 7-8/10\r\n\r\n" +
+                "78" +
+                "\r\n--" + boundary + "\r\n" +
+                "Content-Type: text/plain\r\n" +
+                "Content-Range: bytes 1-2/10\r\n\r\n" +
+                "12" +
+                "\r\n--" + boundary + "\r\n" +
+                "Content-Type: text/plain\r\n" +
+                "Content-Range: bytes 5-9/10\r\n\r\n" +
+                "56789" +
+                "\r\n--" + boundary + "--\r\n", output.toString(UTF_8));
+        assertEquals(output.size(), multipart.getContentLength());
+        assertFalse("Channel must be closed once written", channel.isOpen());
+    }
+
+    @Test
+    public void testRangePastEndOfFile() throws IOException {
+        final var multipart = new MultipartByteRangesStreamingOutput(FileChannel.open(file, READ),
+                Range.convertAll("bytes=0-0,8-20"), CONTENT.length(), "text/plain");
+        final var output = new ByteArrayOutputStream();
+        multipart.write(output);
+
+        assertTrue(output.toString(UTF_8).contains("Content-Range: bytes 8-9/10\r\n\r\n89\r\n"));
+        assertEquals(output.size(), multipart.getContentLength());
+    }
+
+    @Test
+    public void testSuffixRange() throws IOException {
+        final var multipart = new MultipartByteRangesStreamingOutput(FileChannel.open(file, READ),
+                Range.convertAll("bytes=0-1,-3"), CONTENT.length(), "text/plain");
+        final var output = new ByteArrayOutputStream();
+        multipart.write(output);
+
+        assertTrue(output.toString(UTF_8).contains("Content-Range: bytes 0-1/10\r\n\r\n01\r\n"));
+        assertTrue(output.toString(UTF_8).contains("Content-Range: bytes 7-9/10\r\n\r\n789\r\n"));
+        assertEquals(output.size(), multipart.getContentLength());
+    }
+}
@@ -19,6 +19,9 @@ package org.fcrepo.kernel.api;
 
 import javax.annotation.Nonnull;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Stream;
 
 import org.fcrepo.kernel.api.identifiers.FedoraId;
@@ -41,6 +44,29 @@ public interface ContainmentIndex {
      */
     Stream<String> getContains(Transaction tx, FedoraResource fedoraResource);
 
+    /**
+     * Return a page of fedora identifiers contained by the specified fedora resource, ordered by identifier. To
+     * retrieve the next page pass the last identifier of the previous page as after.
+     *
+     * @param tx The transaction.  If no transaction, null is okay.
+     * @param fedoraResource The containing fedora resource
+     * @param after Only return identifiers ordered after this one, or null to start at the beginning.
+     * @param limit The maximum number of identifiers to return.
+     * @return A list of at most limit contained identifiers
+     */
+    List<String> getContains(Transaction tx, FedoraResource fedoraResource, String after, int limit);
+
+    /**
+     * Return a lazily populated stream of fedora identifiers contained by the specified fedora resource. Identifiers
+     * are retrieved a page at a time as the stream is consumed, so memory use does not grow with the number of
+     * children.
+     *
+     * @param tx The transaction.  If no transaction, null is okay.
+     * @param fedoraResource The containing fedora resource
+     * @return A stream of contained identifiers
+     */
+    Stream<String> streamContains(Transaction tx, FedoraResource fedoraResource);
+
     /**
      * Return a stream of fedora identifiers contained by the specified fedora resource that have deleted
      * relationships.
@@ -51,6 +77,26 @@ public interface ContainmentIndex {
      */
     Stream<String> getContainsDeleted(Transaction tx, FedoraResource fedoraResource);
 
+    /**
+     * Return a stream of fedora identifiers of every resource below the specified fedora resource, in post-order so
+     * that each identifier comes after all of its own descendants.
+     *
+     * @param tx The transaction.  If no transaction, null is okay.
+     * @param fedoraResource The root of the subtree, which is not included
+     * @return A stream of descendant identifiers
+     */
+    Stream<String> getDescendants(Transaction tx, FedoraResource fedoraResource);
+
+    /**
+     * Return a stream of fedora identifiers of every resource below the specified fedora resource through deleted
+     * relationships, in post-order so that each identifier comes after all of its own descendants.
+     *
+     * @param tx The transaction.  If no transaction, null is okay.
+     * @param fedoraResource The root of the subtree, which is not included
+     * @return A stream of descendant identifiers
+     */
+    Stream<String> getDescendantsDeleted(Transaction tx, FedoraResource fedoraResource);
+
     /**
      * Return the ID of the containing resource for resourceID.
      * @param txID The transaction. If no transaction, null is okay.
@@ -93,6 +139,29 @@ public interface ContainmentIndex {
      */
     void addContainedBy(@Nonnull final String txID, final FedoraId parent, final FedoraId child);
 
+    /**
+     * Add committed contained by relations directly as a single batch, without a transaction, replacing any existing
+     * relation of the contained resources. Intended for loading relations which are already known to be correct, such
+     * as when rebuilding the index.
+     *
+     * @param childToParent The contained resource fedoraIDs mapped to their containing resource fedoraIDs.
+     * @param deletedChildren The contained resource fedoraIDs whose relations are added as deleted.
+     */
+    void addContainedByBatch(final Map<FedoraId, FedoraId> childToParent, final Set<FedoraId> deletedChildren);
+
+    /**
+     * Remove the committed contained by relations of resources directly as a single batch, without a transaction.
+     * Intended for removing relations of resources which no longer exist, such as when rebuilding the index.
+     *
+     * @param children The contained resource fedoraIDs.
+     */
+    void removeContainedByBatch(final Set<FedoraId> children);
+
+    /**
+     * Remove all relationships, committed or in a transaction.
+     */
+    void reset();
+
     /**
      * Commit the changes made in the transaction.
      * @param tx The transaction.
@@ -0,0 +1,78 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.kernel.api;
+
+import java.time.Instant;
+
+/**
+ * Reports the progress of rebuilding the indexes from persistent storage. Until a rebuild is complete the indexes
+ * may be missing resources which exist in persistent storage.
+ *
+ * @author bbpennel
+ * @since 6.0.0
+ */
+public interface IndexRebuildStatus {
+
+    /**
+     * The state of the indexes.
+     */
+    enum State {
+        /**
+         * A rebuild is running.
+         */
+        IN_PROGRESS,
+        /**
+         * A rebuild was started and is not running, but did not complete.
+         */
+        INCOMPLETE,
+        /**
+         * The last rebuild completed, or no rebuild was needed.
+         */
+        COMPLETE
+    }
+
+    /**
+     * @return the state of the indexes.
+     */
+    State getState();
+
+    /**
+     * @return the number of objects read from persistent storage and indexed by the current or last rebuild.
+     */
+    long getObjectsIndexed();
+
+    /**
+     * @return the number of objects skipped by the current or last rebuild because they were already indexed.
+     */
+    long getObjectsSkipped();
+
+    /**
+     * @return the number of resources indexed by the current or last rebuild.
+     */
+    long getResourcesIndexed();
+
+    /**
+     * @return when the current or last rebuild started, or null if no rebuild has run since start-up.
+     */
+    Instant getStarted();
+
+    /**
+     * @return when the last rebuild completed, or null if it is running or did not complete.
+     */
+    Instant getCompleted();
+}
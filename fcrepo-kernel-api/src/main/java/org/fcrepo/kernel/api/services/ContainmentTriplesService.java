@@ -39,4 +39,14 @@ public interface ContainmentTriplesService {
      * @return A stream of containment triples for the resource.
      */
     Stream<Triple> get(Transaction tx, FedoraResource resource);
+
+    /**
+     * Retrieve at most limit containment triples.
+     *
+     * @param tx The transaction or null if none.
+     * @param resource The fedora container resource in which children resources are contained.
+     * @param limit The maximum number of containment triples to return.
+     * @return A stream of containment triples for the resource.
+     */
+    Stream<Triple> get(Transaction tx, FedoraResource resource, int limit);
 }
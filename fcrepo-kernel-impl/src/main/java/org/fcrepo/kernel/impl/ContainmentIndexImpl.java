@@ -17,15 +17,21 @@
  */
 package org.fcrepo.kernel.impl;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import org.fcrepo.kernel.api.ContainmentIndex;
+import org.fcrepo.kernel.impl.ContainmentOperationLog.Operation;
 import org.fcrepo.kernel.api.Transaction;
 import org.fcrepo.kernel.api.exception.RepositoryRuntimeException;
 import org.fcrepo.kernel.api.identifiers.FedoraId;
 import org.fcrepo.kernel.api.models.FedoraResource;
 import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.DefaultResourceLoader;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
 import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
 import org.springframework.stereotype.Component;
@@ -39,11 +45,37 @@ import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import javax.sql.DataSource;
 import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import java.util.stream.Stream;
 
+import static java.lang.String.format;
+import static java.util.Spliterator.NONNULL;
+import static java.util.Spliterator.ORDERED;
+import static java.util.Spliterators.spliteratorUnknownSize;
+import static java.util.stream.Collectors.toCollection;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.StreamSupport.stream;
 import static org.fcrepo.kernel.api.FedoraTypes.FEDORA_ID_PREFIX;
+import static org.fcrepo.kernel.impl.ContainmentOperationLog.Operation.ADD;
+import static org.fcrepo.kernel.impl.ContainmentOperationLog.Operation.DELETE;
+import static org.fcrepo.kernel.impl.ContainmentOperationLog.Operation.PURGE;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
@@ -62,6 +94,57 @@ public class ContainmentIndexImpl implements ContainmentIndex {
     @Inject
     private PlatformTransactionManager platformTransactionManager;
 
+    /**
+     * Maximum number of committed child to parent relationships to cache, these also answer resourceExists.
+     */
+    @Value("${fcrepo.containment.cache.size:100000}")
+    private long parentCacheSize;
+
+    /**
+     * Maximum number of committed child ids, summed across all cached containers, to hold in the children cache.
+     */
+    @Value("${fcrepo.containment.cache.children.weight:500000}")
+    private long childrenCacheWeight;
+
+    /**
+     * Number of children to retrieve per query when streaming the children of a resource.
+     */
+    @Value("${fcrepo.containment.fetch.size:1000}")
+    private int fetchSize;
+
+    /**
+     * Number of containment operations a transaction may hold in memory before they are moved to the transaction
+     * operations table.
+     */
+    @Value("${fcrepo.containment.transaction.spill.size:200000}")
+    private int transactionSpillSize;
+
+    /*
+     * Transaction id to the containment operations made in that transaction.
+     */
+    private final Map<String, ContainmentOperationLog> transactionLogs = new ConcurrentHashMap<>();
+
+    /*
+     * Committed (non-transactional) parent id to the list of its children.
+     */
+    private Cache<String, List<String>> childrenCache;
+
+    /*
+     * Committed (non-transactional) child id to its parent id, an empty value means the child does not exist.
+     */
+    private Cache<String, Optional<String>> parentCache;
+
+    /*
+     * Incremented after every commit, used to avoid caching a value which was read before a commit completed.
+     */
+    private final AtomicLong commitSequence = new AtomicLong();
+
+    /*
+     * Held while invalidating the caches and while caching a value read at a sequence, so that a value can not be
+     * cached after the invalidation of a commit made since it was read.
+     */
+    private final Object cacheLock = new Object();
+
     private static final String RESOURCES_TABLE = "resources";
 
     private static final String TRANSACTION_OPERATIONS_TABLE = "transaction_operations";
@@ -97,6 +180,33 @@ public class ContainmentIndexImpl implements ContainmentIndex {
             " WHERE " + PARENT_COLUMN + " = :parent AND " + FEDORA_ID_COLUMN + " = x." + FEDORA_ID_COLUMN +
             " AND " + TRANSACTION_ID_COLUMN + " = :transactionId AND " + OPERATION_COLUMN + " IN ('delete', 'purge'))";
 
+    /*
+     * Select a page of children of a resource that are not marked as deleted, ordered by id.
+     */
+    private static String selectChildrenPage(final String idOrder) {
+        return SELECT_CHILDREN + " AND " + format(idOrder, FEDORA_ID_COLUMN) + " > :after" +
+                " ORDER BY " + format(idOrder, FEDORA_ID_COLUMN) + " LIMIT :limit";
+    }
+
+    /*
+     * Select a page of children of a resource in the transaction, ordered by id.
+     */
+    private static String selectChildrenPageInTransaction(final String idOrder) {
+        return SELECT_CHILDREN_IN_TRANSACTION + " AND " + format(idOrder, "x." + FEDORA_ID_COLUMN) + " > :after" +
+                " ORDER BY " + format(idOrder, "x." + FEDORA_ID_COLUMN) + " LIMIT :limit";
+    }
+
+    /*
+     * Select every relationship in the subtree below a resource, whether deleted or not.
+     */
+    private static final String SELECT_DESCENDANTS = "WITH RECURSIVE descendants (" + FEDORA_ID_COLUMN + ", " +
+            PARENT_COLUMN + ", " + IS_DELETED_COLUMN + ") AS" +
+            " (SELECT " + FEDORA_ID_COLUMN + ", " + PARENT_COLUMN + ", " + IS_DELETED_COLUMN + " FROM " +
+            RESOURCES_TABLE + " WHERE " + PARENT_COLUMN + " = :parent" +
+            " UNION ALL SELECT r." + FEDORA_ID_COLUMN + ", r." + PARENT_COLUMN + ", r." + IS_DELETED_COLUMN +
+            " FROM " + RESOURCES_TABLE + " r JOIN descendants d ON r." + PARENT_COLUMN + " = d." + FEDORA_ID_COLUMN +
+            ") SELECT " + FEDORA_ID_COLUMN + ", " + PARENT_COLUMN + ", " + IS_DELETED_COLUMN + " FROM descendants";
+
     /*
      * Select all children of a resource that are marked for deletion.
      */
@@ -181,6 +291,28 @@ public class ContainmentIndexImpl implements ContainmentIndex {
             " WHERE " + FEDORA_ID_COLUMN + " = :child AND " + PARENT_COLUMN + " = :parent" +
             " AND " + TRANSACTION_ID_COLUMN + " = :transactionId AND " + OPERATION_COLUMN + " = 'purge'";
 
+    /*
+     * Select the parents of a set of resources from the main table, in any state.
+     */
+    private static final String SELECT_PARENTS_OF = "SELECT DISTINCT " + PARENT_COLUMN + " FROM " + RESOURCES_TABLE +
+            " WHERE " + FEDORA_ID_COLUMN + " IN (:ids)";
+
+    /*
+     * Remove the records of a set of resources from the main table.
+     */
+    private static final String DELETE_RESOURCES = "DELETE FROM " + RESOURCES_TABLE + " WHERE " + FEDORA_ID_COLUMN +
+            " IN (:ids)";
+
+    /*
+     * Remove all records from the transaction table.
+     */
+    private static final String DELETE_ALL_TRANSACTIONS = "DELETE FROM " + TRANSACTION_OPERATIONS_TABLE;
+
+    /*
+     * Remove all records from the main table.
+     */
+    private static final String DELETE_ALL_RESOURCES = "DELETE FROM " + RESOURCES_TABLE;
+
    /*
     * Delete all rows from the transaction operation table for this transaction.
     */
@@ -215,12 +347,6 @@ public class ContainmentIndexImpl implements ContainmentIndex {
             " AND " + RESOURCES_TABLE + "." + PARENT_COLUMN + " = " + TRANSACTION_OPERATIONS_TABLE + "." +
             PARENT_COLUMN + ")";
 
-    /*
-     * Query if a resource exists in the main table and is not deleted.
-     */
-    private static final String RESOURCE_EXISTS = "SELECT " + FEDORA_ID_COLUMN + " FROM " + RESOURCES_TABLE +
-            " WHERE " + FEDORA_ID_COLUMN + " = :child AND " + IS_DELETED_COLUMN + " = FALSE";
-
     /*
      * Resource exists as a record in the transaction operations table with an 'add' operation and not also
      * exists as a 'delete' operation.
@@ -235,6 +361,32 @@ public class ContainmentIndexImpl implements ContainmentIndex {
             " WHERE " + FEDORA_ID_COLUMN + " = :child AND " + TRANSACTION_ID_COLUMN + " = :transactionId" +
             " AND " + OPERATION_COLUMN + " = 'delete')";
 
+    /*
+     * Of a set of IDs, select those which exist and are not deleted.
+     */
+    private static final String SELECT_EXISTING = "SELECT " + FEDORA_ID_COLUMN + " FROM " + RESOURCES_TABLE +
+            " WHERE " + FEDORA_ID_COLUMN + " IN (:ids) AND " + IS_DELETED_COLUMN + " = FALSE";
+
+    /*
+     * Of a set of IDs, select those which have a record in the main table in any state.
+     */
+    private static final String SELECT_EXISTING_INCLUDING_DELETED = "SELECT " + FEDORA_ID_COLUMN + " FROM " +
+            RESOURCES_TABLE + " WHERE " + FEDORA_ID_COLUMN + " IN (:ids)";
+
+    /*
+     * Of a set of IDs, select those which exist in the main table or are added in the transaction and are not
+     * deleted in the transaction.
+     */
+    private static final String SELECT_EXISTING_IN_TRANSACTION = "SELECT x." + FEDORA_ID_COLUMN + " FROM" +
+            " (SELECT " + FEDORA_ID_COLUMN + " FROM " + RESOURCES_TABLE + " WHERE " + FEDORA_ID_COLUMN + " IN (:ids)" +
+            " UNION SELECT " + FEDORA_ID_COLUMN + " FROM " + TRANSACTION_OPERATIONS_TABLE +
+            " WHERE " + FEDORA_ID_COLUMN + " IN (:ids) AND " + TRANSACTION_ID_COLUMN + " = :transactionId" +
+            " AND " + OPERATION_COLUMN + " = 'add') x" +
+            " WHERE NOT EXISTS " +
+            " (SELECT 1 FROM " + TRANSACTION_OPERATIONS_TABLE + " t" +
+            " WHERE t." + FEDORA_ID_COLUMN + " = x." + FEDORA_ID_COLUMN +
+            " AND t." + TRANSACTION_ID_COLUMN + " = :transactionId AND t." + OPERATION_COLUMN + " = 'delete')";
+
     /*
      * Get the parent ID for this resource from the main table if not deleted.
      */
@@ -287,36 +439,106 @@ public class ContainmentIndexImpl implements ContainmentIndex {
             TRANSACTION_OPERATIONS_TABLE + " WHERE " + FEDORA_ID_COLUMN + " = :child AND " + TRANSACTION_ID_COLUMN
             + " = :transactionId AND " + OPERATION_COLUMN + " = 'add'";
 
+    /*
+     * Select all parent child pairs touched by this transaction.
+     */
+    private static final String SELECT_TRANSACTION_RECORDS = "SELECT " + FEDORA_ID_COLUMN + ", " + PARENT_COLUMN +
+            " FROM " + TRANSACTION_OPERATIONS_TABLE + " WHERE " + TRANSACTION_ID_COLUMN + " = :transactionId";
+
+    /*
+     * Get the parent ID for this resource from the main table whether or not it is deleted.
+     */
+    private static final String PARENT_EXISTS_INCLUDING_DELETED = "SELECT " + PARENT_COLUMN + " FROM " +
+            RESOURCES_TABLE + " WHERE " + FEDORA_ID_COLUMN + " = :child";
+
+    /*
+     * Insert an operation of any type to the transaction operation table.
+     */
+    private static final String INSERT_OPERATION_IN_TRANSACTION = "INSERT INTO " + TRANSACTION_OPERATIONS_TABLE +
+            " ( " + PARENT_COLUMN + ", " + FEDORA_ID_COLUMN + ", " + TRANSACTION_ID_COLUMN + ", " + OPERATION_COLUMN +
+            " ) VALUES (:parent, :child, :transactionId, :operation)";
+
+    /*
+     * Add a parent child relationship to the main table.
+     */
+    private static final String COMMIT_ADD_RECORD = "INSERT INTO " + RESOURCES_TABLE + " ( " + FEDORA_ID_COLUMN +
+            ", " + PARENT_COLUMN + " ) VALUES (:child, :parent)";
+
+    /*
+     * Add a deleted parent child relationship to the main table.
+     */
+    private static final String COMMIT_ADD_DELETED_RECORD = "INSERT INTO " + RESOURCES_TABLE + " ( " +
+            FEDORA_ID_COLUMN + ", " + PARENT_COLUMN + ", " + IS_DELETED_COLUMN + " ) VALUES (:child, :parent, TRUE)";
+
+    /*
+     * Mark a parent child relationship deleted in the main table.
+     */
+    private static final String COMMIT_DELETE_RECORD = "UPDATE " + RESOURCES_TABLE + " SET " + IS_DELETED_COLUMN +
+            " = TRUE WHERE " + FEDORA_ID_COLUMN + " = :child AND " + PARENT_COLUMN + " = :parent";
+
+    /*
+     * Remove a parent child relationship from the main table.
+     */
+    private static final String COMMIT_PURGE_RECORD = "DELETE FROM " + RESOURCES_TABLE + " WHERE " +
+            FEDORA_ID_COLUMN + " = :child AND " + PARENT_COLUMN + " = :parent";
+
     private static final Map<String, String> DDL_MAP = Map.of(
             "MySQL", "sql/mysql-containment.sql",
             "H2", "sql/default-containment.sql",
-            "PostgreSQL", "sql/default-containment.sql",
-            "MariaDB", "sql/default-containment.sql"
+            "PostgreSQL", "sql/postgresql-containment.sql",
+            "MariaDB", "sql/mariadb-containment.sql"
     );
 
+    /*
+     * Expression ordering ids by their characters, as String.compareTo does, by database platform. Pages of children
+     * are merged with the children added in a transaction in this order, so it must not depend on the collation of the
+     * database.
+     */
+    private static final Map<String, String> ID_ORDER_MAP = Map.of(
+            "MySQL", "CAST(%s AS BINARY)",
+            "H2", "%s",
+            "PostgreSQL", "%s COLLATE \"C\"",
+            "MariaDB", "CAST(%s AS BINARY)"
+    );
+
+    private String selectChildrenPage;
+
+    private String selectChildrenPageInTransaction;
+
     /**
      * Connect to the database
      */
     @PostConstruct
     private void setup() {
         jdbcTemplate = getNamedParameterJdbcTemplate();
+        childrenCache = CacheBuilder.newBuilder()
+                .maximumWeight(childrenCacheWeight)
+                .weigher((final String parent, final List<String> children) -> children.size() + 1)
+                .recordStats()
+                .build();
+        parentCache = CacheBuilder.newBuilder()
+                .maximumSize(parentCacheSize)
+                .recordStats()
+                .build();
 
-        final var ddl = lookupDdl();
+        final var productName = lookupProductName();
+        final var ddl = DDL_MAP.get(productName);
+        if (ddl == null) {
+            throw new IllegalStateException("Unknown database platform: " + productName);
+        }
+        selectChildrenPage = selectChildrenPage(ID_ORDER_MAP.get(productName));
+        selectChildrenPageInTransaction = selectChildrenPageInTransaction(ID_ORDER_MAP.get(productName));
         LOGGER.info("Applying ddl: {}", ddl);
         DatabasePopulatorUtils.execute(
                 new ResourceDatabasePopulator(new DefaultResourceLoader().getResource("classpath:" + ddl)),
                 dataSource);
     }
 
-    private String lookupDdl() {
+    private String lookupProductName() {
         try (final var connection = dataSource.getConnection()) {
             final var productName = connection.getMetaData().getDatabaseProductName();
             LOGGER.debug("Identified database as: {}", productName);
-            final var ddl = DDL_MAP.get(productName);
-            if (ddl == null) {
-                throw new IllegalStateException("Unknown database platform: " + productName);
-            }
-            return ddl;
+            return productName;
         } catch (final SQLException e) {
             throw new RuntimeException(e);
         }
@@ -330,23 +552,121 @@ public class ContainmentIndexImpl implements ContainmentIndex {
     public Stream<String> getContains(final Transaction tx, final FedoraResource fedoraResource) {
         final String transactionId = (tx != null) ? tx.getId() : null;
         final String resourceId = fedoraResource.getFedoraId().getFullId();
-        final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
-        parameterSource.addValue("parent", resourceId);
 
         final List<String> children;
         if (transactionId != null) {
             // we are in a transaction
-            parameterSource.addValue("transactionId", transactionId);
-            children = jdbcTemplate.queryForList(SELECT_CHILDREN_IN_TRANSACTION, parameterSource, String.class);
+            children = getChildrenInTransaction(transactionId, resourceId);
         } else {
             // not in a transaction
-            children = jdbcTemplate.queryForList(SELECT_CHILDREN, parameterSource, String.class);
+            children = getCommittedChildren(resourceId);
         }
         LOGGER.debug("getContains for {} in transaction {} found {} children", resourceId, transactionId,
                 children.size());
         return children.stream();
     }
 
+    /**
+     * Get the children of a resource as seen from inside a transaction.
+     * @param txID the transaction id.
+     * @param parentID the parent id.
+     * @return the list of child ids.
+     */
+    private List<String> getChildrenInTransaction(final String txID, final String parentID) {
+        final List<String> committed = getCommittedChildren(parentID);
+        final ContainmentOperationLog log = transactionLogs.get(txID);
+        if (log == null) {
+            return committed;
+        }
+        synchronized (log) {
+            if (!log.isSpilled()) {
+                final Set<String> children = new LinkedHashSet<>(committed);
+                children.addAll(log.getChildren(ADD, parentID));
+                children.removeAll(log.getChildren(DELETE, parentID));
+                children.removeAll(log.getChildren(PURGE, parentID));
+                return new ArrayList<>(children);
+            }
+        }
+        final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
+        parameterSource.addValue("parent", parentID);
+        parameterSource.addValue("transactionId", txID);
+        return jdbcTemplate.queryForList(SELECT_CHILDREN_IN_TRANSACTION, parameterSource, String.class);
+    }
+
+    @Override
+    public List<String> getContains(final Transaction tx, final FedoraResource fedoraResource, final String after,
+                                    final int limit) {
+        final String transactionId = (tx != null) ? tx.getId() : null;
+        final String resourceId = fedoraResource.getFedoraId().getFullId();
+        final ContainmentOperationLog log = transactionId != null ? transactionLogs.get(transactionId) : null;
+        if (log == null) {
+            return getChildrenPage(null, resourceId, after, limit);
+        }
+        final Set<String> added;
+        final Set<String> removed;
+        synchronized (log) {
+            if (log.isSpilled()) {
+                return getChildrenPage(transactionId, resourceId, after, limit);
+            }
+            added = log.getChildren(ADD, resourceId);
+            removed = log.getChildren(DELETE, resourceId);
+            removed.addAll(log.getChildren(PURGE, resourceId));
+        }
+        // Merge the first committed children not removed in the transaction with those added in it.
+        final TreeSet<String> children = new TreeSet<>();
+        String cursor = after;
+        List<String> committed;
+        do {
+            committed = getChildrenPage(null, resourceId, cursor, limit);
+            committed.stream().filter(c -> !removed.contains(c)).forEach(children::add);
+            if (!committed.isEmpty()) {
+                cursor = committed.get(committed.size() - 1);
+            }
+        } while (committed.size() == limit && children.size() < limit);
+        added.stream().filter(c -> after == null || c.compareTo(after) > 0).forEach(children::add);
+        children.removeAll(removed);
+        return children.stream().limit(limit).collect(toList());
+    }
+
+    /**
+     * Query a page of children ordered by id.
+     * @param txID the transaction id whose operations are in the transaction operations table, or null.
+     * @param parentID the parent id.
+     * @param after only return ids ordered after this one, or null to start at the beginning.
+     * @param limit the maximum number of ids to return.
+     * @return the list of child ids.
+     */
+    private List<String> getChildrenPage(final String txID, final String parentID, final String after,
+                                         final int limit) {
+        final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
+        parameterSource.addValue("parent", parentID);
+        // Every id sorts after the empty string.
+        parameterSource.addValue("after", after == null ? "" : after);
+        parameterSource.addValue("limit", limit);
+        if (txID != null) {
+            parameterSource.addValue("transactionId", txID);
+            return jdbcTemplate.queryForList(selectChildrenPageInTransaction, parameterSource, String.class);
+        }
+        return jdbcTemplate.queryForList(selectChildrenPage, parameterSource, String.class);
+    }
+
+    @Override
+    public Stream<String> streamContains(final Transaction tx, final FedoraResource fedoraResource) {
+        if (tx == null) {
+            final List<String> cached = childrenCache.getIfPresent(fedoraResource.getFedoraId().getFullId());
+            if (cached != null) {
+                // in the same order as the pages
+                return cached.stream().sorted();
+            }
+        }
+        // Each page is its own keyset query so no connection is held open while the stream is consumed.
+        return Stream.iterate(getContains(tx, fedoraResource, null, fetchSize),
+                page -> !page.isEmpty(),
+                page -> page.size() < fetchSize ? List.of() :
+                        getContains(tx, fedoraResource, page.get(page.size() - 1), fetchSize))
+                .flatMap(List::stream);
+    }
+
     @Override
     public Stream<String> getContainsDeleted(final Transaction tx, final FedoraResource fedoraResource) {
         final String transactionId = (tx != null) ? tx.getId() : null;
@@ -357,8 +677,7 @@ public class ContainmentIndexImpl implements ContainmentIndex {
         final List<String> children;
         if (transactionId != null) {
             // we are in a transaction
-            parameterSource.addValue("transactionId", transactionId);
-            children = jdbcTemplate.queryForList(SELECT_DELETED_CHILDREN_IN_TRANSACTION, parameterSource, String.class);
+            children = getDeletedChildrenInTransaction(transactionId, resourceId);
         } else {
             // not in a transaction
             children = jdbcTemplate.queryForList(SELECT_DELETED_CHILDREN, parameterSource, String.class);
@@ -368,72 +687,324 @@ public class ContainmentIndexImpl implements ContainmentIndex {
         return children.stream();
     }
 
+    /**
+     * Get the children of a resource with deleted relationships as seen from inside a transaction.
+     * @param txID the transaction id.
+     * @param parentID the parent id.
+     * @return the list of child ids.
+     */
+    private List<String> getDeletedChildrenInTransaction(final String txID, final String parentID) {
+        final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
+        parameterSource.addValue("parent", parentID);
+        final List<String> committed = jdbcTemplate.queryForList(SELECT_DELETED_CHILDREN, parameterSource,
+                String.class);
+        final ContainmentOperationLog log = transactionLogs.get(txID);
+        if (log == null) {
+            return committed;
+        }
+        synchronized (log) {
+            if (!log.isSpilled()) {
+                final Set<String> children = new LinkedHashSet<>(committed);
+                children.addAll(log.getChildren(DELETE, parentID));
+                children.removeAll(log.getChildren(ADD, parentID));
+                return new ArrayList<>(children);
+            }
+        }
+        parameterSource.addValue("transactionId", txID);
+        return jdbcTemplate.queryForList(SELECT_DELETED_CHILDREN_IN_TRANSACTION, parameterSource, String.class);
+    }
+
+    @Override
+    public Stream<String> getDescendants(final Transaction tx, final FedoraResource fedoraResource) {
+        return getDescendants(tx, fedoraResource, false);
+    }
+
+    @Override
+    public Stream<String> getDescendantsDeleted(final Transaction tx, final FedoraResource fedoraResource) {
+        return getDescendants(tx, fedoraResource, true);
+    }
+
+    /**
+     * Get the descendants of a resource in post-order. The committed subtree is read with one recursive query, and is
+     * walked as the stream is consumed, applying the transaction's operations at each level as getContains and
+     * getContainsDeleted do. Only the ids of the committed subtree are held in memory, not the walk.
+     * @param tx the transaction, or null if none.
+     * @param fedoraResource the root of the subtree.
+     * @param deleted whether to follow deleted rather than current relationships.
+     * @return the descendant ids.
+     */
+    private Stream<String> getDescendants(final Transaction tx, final FedoraResource fedoraResource,
+                                          final boolean deleted) {
+        final String transactionId = (tx != null) ? tx.getId() : null;
+        final String resourceId = fedoraResource.getFedoraId().getFullId();
+        final ContainmentOperationLog log = transactionId != null ? transactionLogs.get(transactionId) : null;
+
+        // Committed children in the subtree by parent, for both current and deleted relationships since a transaction
+        // may have changed either.
+        final Map<Boolean, Map<String, List<String>>> committed = Map.of(false, new HashMap<>(), true, new HashMap<>());
+        final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
+        parameterSource.addValue("parent", resourceId);
+        jdbcTemplate.query(SELECT_DESCENDANTS, parameterSource, rs -> {
+            committed.get(rs.getBoolean(IS_DELETED_COLUMN))
+                    .computeIfAbsent(rs.getString(PARENT_COLUMN), k -> new ArrayList<>())
+                    .add(rs.getString(FEDORA_ID_COLUMN));
+        });
+
+        final Function<String, List<String>> childrenOf = parentID -> {
+            final List<String> committedChildren = committed.get(deleted).getOrDefault(parentID, List.of());
+            if (log == null) {
+                return committedChildren;
+            }
+            synchronized (log) {
+                if (!log.isSpilled()) {
+                    final Set<String> children = new LinkedHashSet<>(committedChildren);
+                    if (deleted) {
+                        children.addAll(log.getChildren(DELETE, parentID));
+                        children.removeAll(log.getChildren(ADD, parentID));
+                    } else {
+                        children.addAll(log.getChildren(ADD, parentID));
+                        children.removeAll(log.getChildren(DELETE, parentID));
+                        children.removeAll(log.getChildren(PURGE, parentID));
+                    }
+                    return new ArrayList<>(children);
+                }
+            }
+            // The transaction's operations are in the database, so fall back to asking for each level.
+            return deleted ? getDeletedChildrenInTransaction(transactionId, parentID) :
+                    getChildrenInTransaction(transactionId, parentID);
+        };
+
+        LOGGER.debug("getDescendants for {} in transaction {} read {} committed relationships", resourceId,
+                transactionId, committed.get(false).values().stream().mapToInt(List::size).sum() +
+                        committed.get(true).values().stream().mapToInt(List::size).sum());
+        return stream(spliteratorUnknownSize(new PostOrderIterator(resourceId, childrenOf), ORDERED | NONNULL),
+                false);
+    }
+
+    /**
+     * Iterative post-order walk of a subtree, so deep trees do not exhaust the stack. The children of a resource are
+     * only looked up when the walk reaches it.
+     */
+    private static class PostOrderIterator implements Iterator<String> {
+
+        private final Function<String, List<String>> childrenOf;
+
+        private final Deque<Iterator<String>> pending = new ArrayDeque<>();
+
+        private final Deque<String> path = new ArrayDeque<>();
+
+        private String next;
+
+        PostOrderIterator(final String rootId, final Function<String, List<String>> childrenOf) {
+            this.childrenOf = childrenOf;
+            pending.push(childrenOf.apply(rootId).iterator());
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && !pending.isEmpty()) {
+                final Iterator<String> siblings = pending.peek();
+                if (siblings.hasNext()) {
+                    final String child = siblings.next();
+                    path.push(child);
+                    pending.push(childrenOf.apply(child).iterator());
+                } else {
+                    pending.pop();
+                    if (!path.isEmpty()) {
+                        next = path.pop();
+                    }
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final String descendant = next;
+            next = null;
+            return descendant;
+        }
+    }
+
     @Override
     public String getContainedBy(final String txID, final FedoraId resource) {
         final String resourceID = resource.getFullId();
+        if (txID == null) {
+            return getCommittedParent(resourceID).orElse(null);
+        }
+        final ContainmentOperationLog log = transactionLogs.get(txID);
+        if (log != null) {
+            synchronized (log) {
+                if (log.isSpilled()) {
+                    final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
+                    parameterSource.addValue("child", resourceID);
+                    parameterSource.addValue("transactionId", txID);
+                    return jdbcTemplate.queryForList(PARENT_EXISTS_IN_TRANSACTION, parameterSource, String.class)
+                            .stream().findFirst().orElse(null);
+                }
+                if (!log.getParents(DELETE, resourceID).isEmpty()) {
+                    return null;
+                }
+                final Set<String> added = log.getParents(ADD, resourceID);
+                if (!added.isEmpty()) {
+                    return added.iterator().next();
+                }
+            }
+        }
+        return getCommittedParentIncludingDeleted(resourceID);
+    }
+
+    /**
+     * Get the children of a committed resource, using the cache if possible.
+     * @param parentID the parent id.
+     * @return the unmodifiable list of child ids.
+     */
+    private List<String> getCommittedChildren(final String parentID) {
+        final List<String> cached = childrenCache.getIfPresent(parentID);
+        if (cached != null) {
+            return cached;
+        }
+        final long sequence = commitSequence.get();
         final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
-        parameterSource.addValue("child", resourceID);
-        final List<String> parentID;
-        if (txID != null) {
-            parameterSource.addValue("transactionId", txID);
-            parentID = jdbcTemplate.queryForList(PARENT_EXISTS_IN_TRANSACTION, parameterSource, String.class);
-        } else {
-            parentID = jdbcTemplate.queryForList(PARENT_EXISTS, parameterSource, String.class);
+        parameterSource.addValue("parent", parentID);
+        final List<String> children = Collections.unmodifiableList(
+                jdbcTemplate.queryForList(SELECT_CHILDREN, parameterSource, String.class));
+        synchronized (cacheLock) {
+            if (sequence == commitSequence.get()) {
+                childrenCache.put(parentID, children);
+            }
         }
-        return parentID.stream().findFirst().orElse(null);
+        return children;
+    }
+
+    /**
+     * Get the parent of a committed resource, using the cache if possible.
+     * @param childID the child id.
+     * @return the parent id or empty if the resource does not exist.
+     */
+    private Optional<String> getCommittedParent(final String childID) {
+        final Optional<String> cached = parentCache.getIfPresent(childID);
+        if (cached != null) {
+            return cached;
+        }
+        final long sequence = commitSequence.get();
+        final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
+        parameterSource.addValue("child", childID);
+        final Optional<String> parent = jdbcTemplate.queryForList(PARENT_EXISTS, parameterSource, String.class)
+                .stream().findFirst();
+        synchronized (cacheLock) {
+            if (sequence == commitSequence.get()) {
+                parentCache.put(childID, parent);
+            }
+        }
+        return parent;
+    }
+
+    /**
+     * Get the parent of a committed resource whether or not the relationship is marked as deleted.
+     * @param childID the child id.
+     * @return the parent id or null if the resource is not in the index.
+     */
+    private String getCommittedParentIncludingDeleted(final String childID) {
+        final Optional<String> parent = getCommittedParent(childID);
+        if (parent.isPresent()) {
+            return parent.get();
+        }
+        final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
+        parameterSource.addValue("child", childID);
+        return jdbcTemplate.queryForList(PARENT_EXISTS_INCLUDING_DELETED, parameterSource, String.class).stream()
+                .findFirst().orElse(null);
     }
 
     @Override
     public void addContainedBy(@Nonnull final String txID, final FedoraId parent, final FedoraId child) {
         final String parentID = parent.getFullId();
         final String childID = child.getFullId();
-        final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
-        parameterSource.addValue("parent", parentID);
-        parameterSource.addValue("child", childID);
-        parameterSource.addValue("transactionId", txID);
-        final boolean purgedInTxn = !jdbcTemplate.queryForList(IS_CHILD_PURGED_IN_TRANSACTION, parameterSource)
-                .isEmpty();
-        if (purgedInTxn) {
-            // We purged it, but are re-adding it so remove the purge operation.
-            jdbcTemplate.update(UNDO_PURGE_CHILD_IN_TRANSACTION, parameterSource);
+        final ContainmentOperationLog log = getTransactionLog(txID);
+        synchronized (log) {
+            if (log.isSpilled()) {
+                final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
+                parameterSource.addValue("parent", parentID);
+                parameterSource.addValue("child", childID);
+                parameterSource.addValue("transactionId", txID);
+                final boolean purgedInTxn = !jdbcTemplate.queryForList(IS_CHILD_PURGED_IN_TRANSACTION,
+                        parameterSource).isEmpty();
+                if (purgedInTxn) {
+                    // We purged it, but are re-adding it so remove the purge operation.
+                    jdbcTemplate.update(UNDO_PURGE_CHILD_IN_TRANSACTION, parameterSource);
+                }
+                jdbcTemplate.update(INSERT_CHILD_IN_TRANSACTION, parameterSource);
+                return;
+            }
+            // If we purged it, but are re-adding it then remove the purge operation.
+            log.remove(PURGE, parentID, childID);
+            log.add(ADD, parentID, childID);
+            spillIfNeeded(txID, log);
         }
-        jdbcTemplate.update(INSERT_CHILD_IN_TRANSACTION, parameterSource);
     }
 
     @Override
     public void removeContainedBy(@Nonnull final String txID, final FedoraId parent, final FedoraId child) {
         final String parentID = parent.getFullId();
         final String childID = child.getFullId();
-        final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
-        parameterSource.addValue("parent", parentID);
-        parameterSource.addValue("child", childID);
-        parameterSource.addValue("transactionId", txID);
-        final boolean addedInTxn = !jdbcTemplate.queryForList(IS_CHILD_ADDED_IN_TRANSACTION, parameterSource)
-                .isEmpty();
-        if (addedInTxn) {
-            jdbcTemplate.update(UNDO_INSERT_CHILD_IN_TRANSACTION, parameterSource);
-        } else {
-            jdbcTemplate.update(DELETE_CHILD_IN_TRANSACTION, parameterSource);
+        final ContainmentOperationLog log = getTransactionLog(txID);
+        synchronized (log) {
+            if (log.isSpilled()) {
+                final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
+                parameterSource.addValue("parent", parentID);
+                parameterSource.addValue("child", childID);
+                parameterSource.addValue("transactionId", txID);
+                final boolean addedInTxn = !jdbcTemplate.queryForList(IS_CHILD_ADDED_IN_TRANSACTION,
+                        parameterSource).isEmpty();
+                if (addedInTxn) {
+                    jdbcTemplate.update(UNDO_INSERT_CHILD_IN_TRANSACTION, parameterSource);
+                } else {
+                    jdbcTemplate.update(DELETE_CHILD_IN_TRANSACTION, parameterSource);
+                }
+                return;
+            }
+            if (!log.remove(ADD, parentID, childID)) {
+                log.add(DELETE, parentID, childID);
+                spillIfNeeded(txID, log);
+            }
         }
     }
 
     @Override
     public void removeResource(@Nonnull final String txID, final FedoraId resource) {
         final String resourceID = resource.getFullId();
-        final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
-        parameterSource.addValue("child", resourceID);
-        parameterSource.addValue("transactionId", txID);
-        final boolean addedInTxn = !jdbcTemplate.queryForList(IS_CHILD_ADDED_IN_TRANSACTION_NO_PARENT,
-                parameterSource).isEmpty();
-        if (addedInTxn) {
-            jdbcTemplate.update(UNDO_INSERT_CHILD_IN_TRANSACTION_NO_PARENT, parameterSource);
-        } else {
-            final String parent = getContainedBy(txID, resource);
-            if (parent != null) {
-                LOGGER.debug("Marking containment relationship between parent ({}) and child ({}) deleted", parent,
-                        resourceID);
-                parameterSource.addValue("parent", parent);
-                jdbcTemplate.update(DELETE_CHILD_IN_TRANSACTION, parameterSource);
+        final ContainmentOperationLog log = getTransactionLog(txID);
+        synchronized (log) {
+            if (log.isSpilled()) {
+                final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
+                parameterSource.addValue("child", resourceID);
+                parameterSource.addValue("transactionId", txID);
+                final boolean addedInTxn = !jdbcTemplate.queryForList(IS_CHILD_ADDED_IN_TRANSACTION_NO_PARENT,
+                        parameterSource).isEmpty();
+                if (addedInTxn) {
+                    jdbcTemplate.update(UNDO_INSERT_CHILD_IN_TRANSACTION_NO_PARENT, parameterSource);
+                } else {
+                    final String parent = getContainedBy(txID, resource);
+                    if (parent != null) {
+                        LOGGER.debug("Marking containment relationship between parent ({}) and child ({}) deleted",
+                                parent, resourceID);
+                        parameterSource.addValue("parent", parent);
+                        jdbcTemplate.update(DELETE_CHILD_IN_TRANSACTION, parameterSource);
+                    }
+                }
+                return;
+            }
+            if (log.removeChild(ADD, resourceID).isEmpty()) {
+                final String parent = getContainedBy(txID, resource);
+                if (parent != null) {
+                    LOGGER.debug("Marking containment relationship between parent ({}) and child ({}) deleted",
+                            parent, resourceID);
+                    log.add(DELETE, parent, resourceID);
+                    spillIfNeeded(txID, log);
+                }
             }
         }
     }
@@ -441,19 +1012,33 @@ public class ContainmentIndexImpl implements ContainmentIndex {
     @Override
     public void purgeResource(@Nonnull final String txID, final FedoraId resource) {
         final String resourceID = resource.getFullId();
-        final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
-        parameterSource.addValue("child", resourceID);
-        parameterSource.addValue("transactionId", txID);
-        final String parent = getContainedByDeleted(txID, resource);
-        final boolean deletedInTxn = !jdbcTemplate.queryForList(IS_CHILD_DELETED_IN_TRANSACTION_NO_PARENT,
-                parameterSource).isEmpty();
-        if (deletedInTxn) {
-            jdbcTemplate.update(UNDO_DELETE_CHILD_IN_TRANSACTION_NO_PARENT, parameterSource);
-        }
-        if (parent != null) {
-            LOGGER.debug("Removing containment relationship between parent ({}) and child ({})", parent, resourceID);
-            parameterSource.addValue("parent", parent);
-            jdbcTemplate.update(PURGE_CHILD_IN_TRANSACTION, parameterSource);
+        final ContainmentOperationLog log = getTransactionLog(txID);
+        synchronized (log) {
+            final String parent = getContainedByDeleted(txID, resource);
+            if (log.isSpilled()) {
+                final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
+                parameterSource.addValue("child", resourceID);
+                parameterSource.addValue("transactionId", txID);
+                final boolean deletedInTxn = !jdbcTemplate.queryForList(IS_CHILD_DELETED_IN_TRANSACTION_NO_PARENT,
+                        parameterSource).isEmpty();
+                if (deletedInTxn) {
+                    jdbcTemplate.update(UNDO_DELETE_CHILD_IN_TRANSACTION_NO_PARENT, parameterSource);
+                }
+                if (parent != null) {
+                    LOGGER.debug("Removing containment relationship between parent ({}) and child ({})", parent,
+                            resourceID);
+                    parameterSource.addValue("parent", parent);
+                    jdbcTemplate.update(PURGE_CHILD_IN_TRANSACTION, parameterSource);
+                }
+                return;
+            }
+            log.removeChild(DELETE, resourceID);
+            if (parent != null) {
+                LOGGER.debug("Removing containment relationship between parent ({}) and child ({})", parent,
+                        resourceID);
+                log.add(PURGE, parent, resourceID);
+                spillIfNeeded(txID, log);
+            }
         }
     }
 
@@ -467,52 +1052,233 @@ public class ContainmentIndexImpl implements ContainmentIndex {
         final String resourceID = resource.getFullId();
         final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
         parameterSource.addValue("child", resourceID);
-        final List<String> parentID;
-        if (txID != null) {
-            parameterSource.addValue("transactionId", txID);
-            parentID = jdbcTemplate.queryForList(PARENT_EXISTS_DELETED_IN_TRANSACTION, parameterSource, String.class);
-        } else {
-            parentID = jdbcTemplate.queryForList(PARENT_EXISTS_DELETED, parameterSource, String.class);
+        if (txID == null) {
+            return jdbcTemplate.queryForList(PARENT_EXISTS_DELETED, parameterSource, String.class).stream()
+                    .findFirst().orElse(null);
         }
-        return parentID.stream().findFirst().orElse(null);
+        final ContainmentOperationLog log = transactionLogs.get(txID);
+        if (log != null) {
+            synchronized (log) {
+                if (log.isSpilled()) {
+                    parameterSource.addValue("transactionId", txID);
+                    return jdbcTemplate.queryForList(PARENT_EXISTS_DELETED_IN_TRANSACTION, parameterSource,
+                            String.class).stream().findFirst().orElse(null);
+                }
+                if (!log.getParents(ADD, resourceID).isEmpty()) {
+                    return null;
+                }
+                final Set<String> deleted = log.getParents(DELETE, resourceID);
+                if (!deleted.isEmpty()) {
+                    return deleted.iterator().next();
+                }
+            }
+        }
+        return getCommittedParentIncludingDeleted(resourceID);
+    }
+
+    /**
+     * Get the operation log for a transaction, creating it if this is the first change in the transaction.
+     * @param txID the transaction id.
+     * @return the operation log.
+     */
+    private ContainmentOperationLog getTransactionLog(final String txID) {
+        return transactionLogs.computeIfAbsent(txID, k -> new ContainmentOperationLog());
+    }
+
+    /**
+     * Move the operations of a transaction to the transaction operations table once there are too many to hold in
+     * memory, all further operations for the transaction then go directly to the table.
+     * @param txID the transaction id.
+     * @param log the operation log of the transaction.
+     */
+    private void spillIfNeeded(final String txID, final ContainmentOperationLog log) {
+        if (log.size() <= transactionSpillSize) {
+            return;
+        }
+        LOGGER.debug("Spilling {} containment operations for transaction {} to the {} table", log.size(), txID,
+                TRANSACTION_OPERATIONS_TABLE);
+        final SqlParameterSource[] batch = log.getRecords().stream().map(record -> new MapSqlParameterSource()
+                .addValue("parent", record.getParent())
+                .addValue("child", record.getChild())
+                .addValue("transactionId", txID)
+                .addValue("operation", record.getOperation().getValue()))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(INSERT_OPERATION_IN_TRANSACTION, batch);
+        log.markSpilled();
     }
 
     @Override
     public void commitTransaction(final Transaction tx) {
         if (tx != null) {
             final String txId = tx.getId();
+            final ContainmentOperationLog log = txId != null ? transactionLogs.get(txId) : null;
+            if (log == null) {
+                // Nothing changed in this transaction.
+                return;
+            }
             final TransactionTemplate transactionTemplate = new TransactionTemplate(platformTransactionManager);
             final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
             parameterSource.addValue("transactionId", txId);
             // Seemingly setting the name ensures that we don't re-use a transaction.
             transactionTemplate.setName("tx-" + txId);
             transactionTemplate.setPropagationBehavior(TransactionTemplate.PROPAGATION_REQUIRED);
-            transactionTemplate.execute(
-                new TransactionCallbackWithoutResult() {
-                    protected void doInTransactionWithoutResult(final TransactionStatus status) {
-                        try {
-                            jdbcTemplate.update(COMMIT_PURGE_RECORDS, parameterSource);
-                            jdbcTemplate.update(COMMIT_DELETE_RECORDS, parameterSource);
-                            jdbcTemplate.update(COMMIT_ADD_RECORDS, parameterSource);
-                            jdbcTemplate.update(DELETE_ENTIRE_TRANSACTION, parameterSource);
-                        } catch (final Exception e) {
-                            status.setRollbackOnly();
-                            LOGGER.warn("Unable to commit containment index transaction {}: {}", txId, e.getMessage());
-                            throw new RepositoryRuntimeException("Unable to commit containment index transaction", e);
+            final Set<String> touchedIds = new HashSet<>();
+            synchronized (log) {
+                transactionTemplate.execute(
+                    new TransactionCallbackWithoutResult() {
+                        protected void doInTransactionWithoutResult(final TransactionStatus status) {
+                            try {
+                                if (log.isSpilled()) {
+                                    jdbcTemplate.query(SELECT_TRANSACTION_RECORDS, parameterSource, rs -> {
+                                        touchedIds.add(rs.getString(FEDORA_ID_COLUMN));
+                                        touchedIds.add(rs.getString(PARENT_COLUMN));
+                                    });
+                                    jdbcTemplate.update(COMMIT_PURGE_RECORDS, parameterSource);
+                                    jdbcTemplate.update(COMMIT_DELETE_RECORDS, parameterSource);
+                                    jdbcTemplate.update(COMMIT_ADD_RECORDS, parameterSource);
+                                    jdbcTemplate.update(DELETE_ENTIRE_TRANSACTION, parameterSource);
+                                } else {
+                                    commitOperations(log.getRecords(), touchedIds);
+                                }
+                            } catch (final Exception e) {
+                                status.setRollbackOnly();
+                                LOGGER.warn("Unable to commit containment index transaction {}: {}", txId,
+                                        e.getMessage());
+                                throw new RepositoryRuntimeException("Unable to commit containment index transaction",
+                                        e);
+                            }
                         }
                     }
-                }
-            );
+                );
+                transactionLogs.remove(txId);
+            }
+            invalidateCaches(touchedIds);
+        }
+    }
+
+    /**
+     * Write the in-memory operations of a transaction to the resources table with one batch per operation.
+     * @param records the operations of the transaction.
+     * @param touchedIds collects the parent and child ids of every operation.
+     */
+    private void commitOperations(final List<ContainmentOperationLog.Record> records, final Set<String> touchedIds) {
+        final Map<Operation, List<SqlParameterSource>> batches = new EnumMap<>(Operation.class);
+        for (final Operation operation : Operation.values()) {
+            batches.put(operation, new ArrayList<>());
+        }
+        for (final ContainmentOperationLog.Record record : records) {
+            touchedIds.add(record.getParent());
+            touchedIds.add(record.getChild());
+            batches.get(record.getOperation()).add(new MapSqlParameterSource()
+                    .addValue("parent", record.getParent())
+                    .addValue("child", record.getChild()));
+        }
+        batchUpdate(COMMIT_PURGE_RECORD, batches.get(PURGE));
+        batchUpdate(COMMIT_DELETE_RECORD, batches.get(DELETE));
+        batchUpdate(COMMIT_ADD_RECORD, batches.get(ADD));
+    }
+
+    private void batchUpdate(final String sql, final List<SqlParameterSource> batch) {
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate(sql, batch.toArray(new SqlParameterSource[0]));
+        }
+    }
+
+    @Override
+    public void addContainedByBatch(final Map<FedoraId, FedoraId> childToParent,
+                                    final Set<FedoraId> deletedChildren) {
+        if (childToParent.isEmpty()) {
+            return;
+        }
+        final Set<String> touchedIds = new HashSet<>();
+        final List<String> children = new ArrayList<>(childToParent.size());
+        final List<SqlParameterSource> batch = new ArrayList<>(childToParent.size());
+        final List<SqlParameterSource> deletedBatch = new ArrayList<>(deletedChildren.size());
+        childToParent.forEach((child, parent) -> {
+            touchedIds.add(parent.getFullId());
+            touchedIds.add(child.getFullId());
+            children.add(child.getFullId());
+            (deletedChildren.contains(child) ? deletedBatch : batch).add(new MapSqlParameterSource()
+                    .addValue("parent", parent.getFullId())
+                    .addValue("child", child.getFullId()));
+        });
+        // Existing parents of the children, which also need their cached children invalidated.
+        final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
+        parameterSource.addValue("ids", children);
+        final TransactionTemplate transactionTemplate = new TransactionTemplate(platformTransactionManager);
+        transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+            protected void doInTransactionWithoutResult(final TransactionStatus status) {
+                touchedIds.addAll(jdbcTemplate.queryForList(SELECT_PARENTS_OF, parameterSource, String.class));
+                jdbcTemplate.update(DELETE_RESOURCES, parameterSource);
+                batchUpdate(COMMIT_ADD_RECORD, batch);
+                batchUpdate(COMMIT_ADD_DELETED_RECORD, deletedBatch);
+            }
+        });
+        invalidateCaches(touchedIds);
+        LOGGER.debug("Added batch of {} containment relationships, {} deleted", children.size(),
+                deletedBatch.size());
+    }
+
+    @Override
+    public void removeContainedByBatch(final Set<FedoraId> children) {
+        if (children.isEmpty()) {
+            return;
+        }
+        final Set<String> touchedIds = children.stream().map(FedoraId::getFullId).collect(toCollection(HashSet::new));
+        final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
+        parameterSource.addValue("ids", List.copyOf(touchedIds));
+        final TransactionTemplate transactionTemplate = new TransactionTemplate(platformTransactionManager);
+        transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+            protected void doInTransactionWithoutResult(final TransactionStatus status) {
+                touchedIds.addAll(jdbcTemplate.queryForList(SELECT_PARENTS_OF, parameterSource, String.class));
+                jdbcTemplate.update(DELETE_RESOURCES, parameterSource);
+            }
+        });
+        invalidateCaches(touchedIds);
+        LOGGER.debug("Removed batch of {} containment relationships", children.size());
+    }
+
+    @Override
+    public void reset() {
+        final TransactionTemplate transactionTemplate = new TransactionTemplate(platformTransactionManager);
+        transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+            protected void doInTransactionWithoutResult(final TransactionStatus status) {
+                jdbcTemplate.update(DELETE_ALL_TRANSACTIONS, Collections.emptyMap());
+                jdbcTemplate.update(DELETE_ALL_RESOURCES, Collections.emptyMap());
+            }
+        });
+        transactionLogs.clear();
+        synchronized (cacheLock) {
+            commitSequence.incrementAndGet();
+            childrenCache.invalidateAll();
+            parentCache.invalidateAll();
+        }
+        LOGGER.info("Reset the containment index");
+    }
+
+    /**
+     * Remove the committed relationships of the resources touched by a transaction from the caches.
+     * @param touchedIds the parent and child ids added, deleted or purged by the transaction.
+     */
+    private void invalidateCaches(final Set<String> touchedIds) {
+        synchronized (cacheLock) {
+            commitSequence.incrementAndGet();
+            childrenCache.invalidateAll(touchedIds);
+            parentCache.invalidateAll(touchedIds);
         }
+        LOGGER.debug("Invalidated {} containment cache keys", touchedIds.size());
     }
 
     @Override
     public void rollbackTransaction(final Transaction tx) {
         if (tx != null) {
             final String txId = tx.getId();
-            final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
-            parameterSource.addValue("transactionId", txId);
-            jdbcTemplate.update(DELETE_ENTIRE_TRANSACTION, parameterSource);
+            final ContainmentOperationLog log = txId != null ? transactionLogs.remove(txId) : null;
+            if (log != null && log.isSpilled()) {
+                final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
+                parameterSource.addValue("transactionId", txId);
+                jdbcTemplate.update(DELETE_ENTIRE_TRANSACTION, parameterSource);
+            }
         }
     }
 
@@ -525,17 +1291,29 @@ public class ContainmentIndexImpl implements ContainmentIndex {
             // Root always exists.
             return true;
         }
-        final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
-        parameterSource.addValue("child", resourceID);
-        final boolean exists;
-        if (txID != null) {
-            parameterSource.addValue("transactionId", txID);
-            exists = !jdbcTemplate.queryForList(RESOURCE_EXISTS_IN_TRANSACTION, parameterSource, String.class)
-                    .isEmpty();
-        } else {
-            exists = !jdbcTemplate.queryForList(RESOURCE_EXISTS, parameterSource, String.class).isEmpty();
+        if (txID == null) {
+            // A committed resource exists exactly when it has a parent which is not deleted.
+            return getCommittedParent(resourceID).isPresent();
+        }
+        final ContainmentOperationLog log = transactionLogs.get(txID);
+        if (log != null) {
+            synchronized (log) {
+                if (log.isSpilled()) {
+                    final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
+                    parameterSource.addValue("child", resourceID);
+                    parameterSource.addValue("transactionId", txID);
+                    return !jdbcTemplate.queryForList(RESOURCE_EXISTS_IN_TRANSACTION, parameterSource, String.class)
+                            .isEmpty();
+                }
+                if (!log.getParents(DELETE, resourceID).isEmpty()) {
+                    return false;
+                }
+                if (!log.getParents(ADD, resourceID).isEmpty()) {
+                    return true;
+                }
+            }
         }
-        return exists;
+        return getCommittedParentIncludingDeleted(resourceID) != null;
     }
 
     @Override
@@ -548,18 +1326,94 @@ public class ContainmentIndexImpl implements ContainmentIndex {
         if (parent != null) {
             return FedoraId.create(parent);
         }
+        // Every ancestor path below the repository root, closest first.
+        final List<FedoraId> ancestors = new ArrayList<>();
         String fullId = fedoraId.getFullId();
         while (fullId.contains("/")) {
             fullId = fedoraId.getResourceId().substring(0, fullId.lastIndexOf("/"));
             if (fullId.equals(FEDORA_ID_PREFIX)) {
-                return FedoraId.getRepositoryRootId();
+                break;
+            }
+            ancestors.add(FedoraId.create(fullId));
+        }
+        final Set<String> existing = getExisting(txID, ancestors);
+        return ancestors.stream().filter(ancestor -> existing.contains(ancestor.getContainingId())).findFirst()
+                .orElse(FedoraId.getRepositoryRootId());
+    }
+
+    /**
+     * Resolve which of a list of resources exist with at most one query, with the same meaning as resourceExists.
+     * @param txID the transaction id, or null if none.
+     * @param ids the resources, closest ancestor first.
+     * @return the containing ids of the resources which exist.
+     */
+    private Set<String> getExisting(final String txID, final List<FedoraId> ids) {
+        final Set<String> existing = new HashSet<>();
+        final List<String> unresolved = new ArrayList<>();
+        final ContainmentOperationLog log = txID == null ? null : transactionLogs.get(txID);
+        if (log != null) {
+            synchronized (log) {
+                if (log.isSpilled()) {
+                    final List<String> containingIds = ids.stream().map(FedoraId::getContainingId).collect(toList());
+                    if (!containingIds.isEmpty()) {
+                        final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
+                        parameterSource.addValue("ids", containingIds);
+                        parameterSource.addValue("transactionId", txID);
+                        existing.addAll(jdbcTemplate.queryForList(SELECT_EXISTING_IN_TRANSACTION, parameterSource,
+                                String.class));
+                    }
+                    return existing;
+                }
+                for (final FedoraId id : ids) {
+                    final String resourceID = id.getContainingId();
+                    if (!log.getParents(DELETE, resourceID).isEmpty()) {
+                        continue;
+                    }
+                    if (!log.getParents(ADD, resourceID).isEmpty()) {
+                        existing.add(resourceID);
+                        continue;
+                    }
+                    unresolved.add(resourceID);
+                }
             }
-            final FedoraId testID = FedoraId.create(fullId);
-            if (resourceExists(txID, testID)) {
-                return testID;
+        } else if (txID == null) {
+            // Use cached answers until the first one we don't know, as anything further up may not need checking.
+            for (final FedoraId id : ids) {
+                final String resourceID = id.getContainingId();
+                final Optional<String> cached = unresolved.isEmpty() ? parentCache.getIfPresent(resourceID) : null;
+                if (cached == null) {
+                    unresolved.add(resourceID);
+                } else if (cached.isPresent()) {
+                    existing.add(resourceID);
+                    return existing;
+                }
             }
+        } else {
+            ids.forEach(id -> unresolved.add(id.getContainingId()));
         }
-        return FedoraId.getRepositoryRootId();
+        if (!unresolved.isEmpty()) {
+            final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
+            parameterSource.addValue("ids", unresolved);
+            existing.addAll(jdbcTemplate.queryForList(txID == null ? SELECT_EXISTING :
+                    SELECT_EXISTING_INCLUDING_DELETED, parameterSource, String.class));
+        }
+        return existing;
+    }
+
+    /**
+     * Statistics for the committed parent to children cache.
+     * @return hit, miss and eviction counts
+     */
+    public CacheStats getChildrenCacheStats() {
+        return childrenCache.stats();
+    }
+
+    /**
+     * Statistics for the committed child to parent cache, which also answers resourceExists.
+     * @return hit, miss and eviction counts
+     */
+    public CacheStats getParentCacheStats() {
+        return parentCache.stats();
     }
 
     /**
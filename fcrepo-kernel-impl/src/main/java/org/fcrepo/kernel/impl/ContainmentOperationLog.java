@@ -0,0 +1,213 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.kernel.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory record of the containment operations made in a single transaction, indexed by both parent and child so
+ * the in-transaction view of the containment index can be answered without querying the transaction operations table.
+ * Once a log is spilled its operations live in the transaction operations table and the log only marks that fact.
+ *
+ * @author bbpennel
+ */
+class ContainmentOperationLog {
+
+    /**
+     * Containment operations, with the value used in the operation column of the transaction operations table.
+     */
+    enum Operation {
+        ADD("add"),
+        DELETE("delete"),
+        PURGE("purge");
+
+        private final String value;
+
+        Operation(final String value) {
+            this.value = value;
+        }
+
+        String getValue() {
+            return value;
+        }
+    }
+
+    /**
+     * A single operation on a parent child relationship.
+     */
+    static class Record {
+
+        private final Operation operation;
+
+        private final String parent;
+
+        private final String child;
+
+        private Record(final Operation operation, final String parent, final String child) {
+            this.operation = operation;
+            this.parent = parent;
+            this.child = child;
+        }
+
+        Operation getOperation() {
+            return operation;
+        }
+
+        String getParent() {
+            return parent;
+        }
+
+        String getChild() {
+            return child;
+        }
+    }
+
+    private final Map<Operation, Map<String, Set<String>>> childrenByParent = new EnumMap<>(Operation.class);
+
+    private final Map<Operation, Map<String, Set<String>>> parentsByChild = new EnumMap<>(Operation.class);
+
+    private int size = 0;
+
+    private boolean spilled = false;
+
+    ContainmentOperationLog() {
+        for (final Operation operation : Operation.values()) {
+            childrenByParent.put(operation, new HashMap<>());
+            parentsByChild.put(operation, new HashMap<>());
+        }
+    }
+
+    /**
+     * Record an operation.
+     * @param operation the operation.
+     * @param parent the parent id.
+     * @param child the child id.
+     */
+    synchronized void add(final Operation operation, final String parent, final String child) {
+        if (childrenByParent.get(operation).computeIfAbsent(parent, k -> new LinkedHashSet<>()).add(child)) {
+            parentsByChild.get(operation).computeIfAbsent(child, k -> new LinkedHashSet<>()).add(parent);
+            size += 1;
+        }
+    }
+
+    /**
+     * Remove an operation.
+     * @param operation the operation.
+     * @param parent the parent id.
+     * @param child the child id.
+     * @return true if the operation had been recorded.
+     */
+    synchronized boolean remove(final Operation operation, final String parent, final String child) {
+        if (!removeFrom(childrenByParent.get(operation), parent, child)) {
+            return false;
+        }
+        removeFrom(parentsByChild.get(operation), child, parent);
+        size -= 1;
+        return true;
+    }
+
+    /**
+     * Remove an operation for a child regardless of its parent.
+     * @param operation the operation.
+     * @param child the child id.
+     * @return the parents the operation had been recorded for.
+     */
+    synchronized Set<String> removeChild(final Operation operation, final String child) {
+        final Set<String> parents = parentsByChild.get(operation).remove(child);
+        if (parents == null) {
+            return Collections.emptySet();
+        }
+        parents.forEach(parent -> removeFrom(childrenByParent.get(operation), parent, child));
+        size -= parents.size();
+        return parents;
+    }
+
+    /**
+     * @param operation the operation.
+     * @param parent the parent id.
+     * @return the children of the parent with this operation.
+     */
+    synchronized Set<String> getChildren(final Operation operation, final String parent) {
+        return copyOf(childrenByParent.get(operation).get(parent));
+    }
+
+    /**
+     * @param operation the operation.
+     * @param child the child id.
+     * @return the parents of the child with this operation.
+     */
+    synchronized Set<String> getParents(final Operation operation, final String child) {
+        return copyOf(parentsByChild.get(operation).get(child));
+    }
+
+    /**
+     * @return all recorded operations.
+     */
+    synchronized List<Record> getRecords() {
+        final List<Record> records = new ArrayList<>(size);
+        childrenByParent.forEach((operation, parents) -> parents.forEach((parent, children) ->
+                children.forEach(child -> records.add(new Record(operation, parent, child)))));
+        return records;
+    }
+
+    /**
+     * @return the number of recorded operations.
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return true if the operations for this transaction have been moved to the transaction operations table.
+     */
+    synchronized boolean isSpilled() {
+        return spilled;
+    }
+
+    /**
+     * Discard the in-memory operations after they have been written to the transaction operations table.
+     */
+    synchronized void markSpilled() {
+        childrenByParent.values().forEach(Map::clear);
+        parentsByChild.values().forEach(Map::clear);
+        size = 0;
+        spilled = true;
+    }
+
+    private static boolean removeFrom(final Map<String, Set<String>> index, final String key, final String value) {
+        final Set<String> values = index.get(key);
+        if (values == null || !values.remove(value)) {
+            return false;
+        }
+        if (values.isEmpty()) {
+            index.remove(key);
+        }
+        return true;
+    }
+
+    private static Set<String> copyOf(final Set<String> values) {
+        return values == null ? Collections.emptySet() : new LinkedHashSet<>(values);
+    }
+}
@@ -86,6 +86,7 @@ public class TransactionImpl implements Transaction {
             this.getContainmentIndex().commitTransaction(this);
             this.getEventAccumulator().emitEvents(id, baseUri, userAgent);
             this.committed = true;
+            releasePersistentSession();
         } catch (final PersistentStorageException ex) {
             // Rollback on commit failure
             rollback();
@@ -112,6 +113,8 @@ public class TransactionImpl implements Transaction {
             this.getEventAccumulator().clearEvents(id);
         } catch (final PersistentStorageException ex) {
             throw new RepositoryRuntimeException("failed to rollback transaction " + id, ex);
+        } finally {
+            releasePersistentSession();
         }
     }
 
@@ -201,6 +204,10 @@ public class TransactionImpl implements Transaction {
         return this.txManager.getPersistentStorageSessionManager().getSession(this.id);
     }
 
+    private void releasePersistentSession() {
+        this.txManager.getPersistentStorageSessionManager().removeSession(this.id);
+    }
+
     private void failIfExpired() {
         if (hasExpired()) {
             throw new TransactionClosedException("Transaction with transactionId: " + id + " expired!");
@@ -71,6 +71,8 @@ public class TransactionManagerImpl implements TransactionManager {
             if (tx.isCommitted() || tx.isRolledBack()) {
                 if (tx.hasExpired()) {
                     txIt.remove();
+                    // Release any persistent session opened by reads after the transaction was closed
+                    pSessionManager.removeSession(txEntry.getKey());
                 }
             } else if (tx.hasExpired()) {
                 // If the tx has expired but is not already closed, then rollback
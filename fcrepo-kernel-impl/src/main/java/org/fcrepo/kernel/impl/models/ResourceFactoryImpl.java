@@ -18,6 +18,7 @@
 package org.fcrepo.kernel.impl.models;
 
 import org.fcrepo.kernel.api.ContainmentIndex;
+import org.fcrepo.kernel.api.IndexRebuildStatus;
 import org.fcrepo.kernel.api.Transaction;
 import org.fcrepo.kernel.api.exception.PathNotFoundException;
 import org.fcrepo.kernel.api.exception.RepositoryRuntimeException;
@@ -63,6 +64,9 @@ public class ResourceFactoryImpl implements ResourceFactory {
     @Inject
     private ContainmentIndex containmentIndex;
 
+    @Inject
+    private IndexRebuildStatus indexRebuildStatus;
+
     @Override
     public FedoraResource getResource(final FedoraId fedoraID)
             throws PathNotFoundException {
@@ -97,30 +101,38 @@ public class ResourceFactoryImpl implements ResourceFactory {
             // containment index doesn't handle versions and only tells us if the resource (not acl) is there,
             // so don't bother checking for them.
             final String transactionId = transaction == null ? null : transaction.getId();
-            return containmentIndex.resourceExists(transactionId, fedoraId);
+            if (containmentIndex.resourceExists(transactionId, fedoraId)) {
+                return true;
+            }
+            // While the index is being rebuilt it may not contain the resource yet, so check persistent storage.
+            return indexRebuildStatus.getState() != IndexRebuildStatus.State.COMPLETE &&
+                    existsInStorage(transaction, fedoraId);
         } else {
+            return existsInStorage(transaction, fedoraId);
+        }
+    }
 
-            final PersistentStorageSession psSession = getSession(transaction);
+    private boolean existsInStorage(final Transaction transaction, final FedoraId fedoraId) {
+        final PersistentStorageSession psSession = getSession(transaction);
 
-            try {
-                // Resource ID for metadata or ACL contains their individual endopoints (ie. fcr:metadata, fcr:acl)
-                final String id = fedoraId.getResourceId();
-                final ResourceHeaders headers = psSession.getHeaders(id, fedoraId.getMementoInstant());
-                return !headers.isDeleted();
-            } catch (final PersistentItemNotFoundException e) {
-                // Object doesn't exist.
-                return false;
-            } catch (final PersistentStorageException e) {
-                // Other error, pass along.
-                throw new RepositoryRuntimeException(e);
-            } finally {
-                if (transaction == null) {
-                    // Commit session (if read-only) so it doesn't hang around.
-                    try {
-                        psSession.commit();
-                    } catch (final PersistentStorageException e) {
-                        LOGGER.error("Error committing session, message: {}", e.getMessage());
-                    }
+        try {
+            // Resource ID for metadata or ACL contains their individual endopoints (ie. fcr:metadata, fcr:acl)
+            final String id = fedoraId.getResourceId();
+            final ResourceHeaders headers = psSession.getHeaders(id, fedoraId.getMementoInstant());
+            return !headers.isDeleted();
+        } catch (final PersistentItemNotFoundException e) {
+            // Object doesn't exist.
+            return false;
+        } catch (final PersistentStorageException e) {
+            // Other error, pass along.
+            throw new RepositoryRuntimeException(e);
+        } finally {
+            if (transaction == null) {
+                // Commit session (if read-only) so it doesn't hang around.
+                try {
+                    psSession.commit();
+                } catch (final PersistentStorageException e) {
+                    LOGGER.error("Error committing session, message: {}", e.getMessage());
                 }
             }
         }
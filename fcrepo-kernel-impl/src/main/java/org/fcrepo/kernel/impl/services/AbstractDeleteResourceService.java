@@ -78,10 +78,10 @@ abstract public class AbstractDeleteResourceService extends AbstractService {
     }
 
     /**
-     * Code to perform the recursion of containers.
+     * Act upon the resource and everything it contains, children before their parents.
      * @param tx the transaction
      * @param pSession the persistent storage session
-     * @param fedoraResource the current resource to check for any children.
+     * @param fedoraResource the root of the subtree to act upon.
      * @param userPrincipal the user performing the action.
      * @throws PersistentStorageException any problems accessing the underlying storage.
      */
@@ -92,11 +92,12 @@ abstract public class AbstractDeleteResourceService extends AbstractService {
         final FedoraId fedoraId = fedoraResource.getFedoraId();
 
         if (fedoraResource instanceof Container) {
-            final Stream<String> children = getContained(tx, fedoraResource);
-            children.forEach(childResourceId -> {
+            // The whole subtree comes from one containment query, in post-order.
+            final Stream<String> descendants = getDescendants(tx, fedoraResource);
+            descendants.forEach(descendantId -> {
                 try {
-                    final FedoraResource res = resourceFactory.getResource(tx, FedoraId.create(childResourceId));
-                    deleteDepthFirst(tx, pSession, res, userPrincipal);
+                    final FedoraResource res = resourceFactory.getResource(tx, FedoraId.create(descendantId));
+                    deleteResource(tx, pSession, res, userPrincipal);
                 } catch (final PathNotFoundException ex) {
                     log.error("Path not found for {}: {}", fedoraId.getFullId(), ex.getMessage());
                     throw new PathNotFoundRuntimeException(ex);
@@ -105,7 +106,24 @@ abstract public class AbstractDeleteResourceService extends AbstractService {
                             ex);
                 }
             });
-        } else if (fedoraResource instanceof Binary) {
+        }
+
+        deleteResource(tx, pSession, fedoraResource, userPrincipal);
+    }
+
+    /**
+     * Act upon a single resource and the resources which belong to it, but not the resources it contains.
+     * @param tx the transaction
+     * @param pSession the persistent storage session
+     * @param fedoraResource the resource to act upon.
+     * @param userPrincipal the user performing the action.
+     * @throws PersistentStorageException any problems accessing the underlying storage.
+     */
+    private void deleteResource(final Transaction tx, final PersistentStorageSession pSession,
+                                final FedoraResource fedoraResource, final String userPrincipal)
+            throws PersistentStorageException {
+
+        if (fedoraResource instanceof Binary) {
             //delete/purge described resource if binary
             doAction(tx, pSession, fedoraResource.getDescribedResource().getFedoraId(), userPrincipal);
         }
@@ -119,16 +137,16 @@ abstract public class AbstractDeleteResourceService extends AbstractService {
         }
 
         //delete/purge the resource itself
-        doAction(tx, pSession, fedoraId, userPrincipal);
+        doAction(tx, pSession, fedoraResource.getFedoraId(), userPrincipal);
     }
 
     /**
-     * Get the contained resources to act upon.
+     * Get all the resources below a resource to act upon, in post-order.
      * @param tx the transaction this occurs in.
-     * @param resource the parent resource to find contained resources for.
-     * @return stream of child ids.
+     * @param resource the root resource to find descendants for.
+     * @return stream of descendant ids.
      */
-    abstract protected Stream<String> getContained(final Transaction tx, final FedoraResource resource);
+    abstract protected Stream<String> getDescendants(final Transaction tx, final FedoraResource resource);
 
     /**
      * Perform the actual delete or purge action
@@ -45,8 +45,16 @@ public class ContainmentTriplesServiceImpl implements ContainmentTriplesService
 
     @Override
     public Stream<Triple> get(final Transaction tx, final FedoraResource resource) {
+        return toTriples(resource, containmentIndex.streamContains(tx, resource));
+    }
+
+    @Override
+    public Stream<Triple> get(final Transaction tx, final FedoraResource resource, final int limit) {
+        return toTriples(resource, containmentIndex.streamContains(tx, resource).limit(limit));
+    }
+
+    private Stream<Triple> toTriples(final FedoraResource resource, final Stream<String> children) {
         final Node currentNode = createURI(resource.getFedoraId().getFullId());
-        return containmentIndex.getContains(tx, resource).map(c ->
-                new Triple(currentNode, CONTAINS.asNode(), createURI(c)));
+        return children.map(c -> new Triple(currentNode, CONTAINS.asNode(), createURI(c)));
     }
 }
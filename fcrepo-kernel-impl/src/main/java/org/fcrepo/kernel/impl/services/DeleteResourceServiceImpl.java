@@ -46,8 +46,8 @@ public class DeleteResourceServiceImpl extends AbstractDeleteResourceService imp
     private DeleteResourceOperationFactory deleteResourceFactory;
 
     @Override
-    protected Stream<String> getContained(final Transaction tx, final FedoraResource resource) {
-        return containmentIndex.getContains(tx, resource);
+    protected Stream<String> getDescendants(final Transaction tx, final FedoraResource resource) {
+        return containmentIndex.getDescendants(tx, resource);
     }
 
     @Override
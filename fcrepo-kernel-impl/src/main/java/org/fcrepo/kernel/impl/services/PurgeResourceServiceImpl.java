@@ -47,8 +47,8 @@ public class PurgeResourceServiceImpl extends AbstractDeleteResourceService impl
     private DeleteResourceOperationFactory deleteResourceFactory;
 
     @Override
-    protected Stream<String> getContained(final Transaction tx, final FedoraResource resource) {
-        return containmentIndex.getContainsDeleted(tx, resource);
+    protected Stream<String> getDescendants(final Transaction tx, final FedoraResource resource) {
+        return containmentIndex.getDescendantsDeleted(tx, resource);
     }
 
     @Override
@@ -1,4 +1,4 @@
--- DDL for setting up containment tables in H2, MariaDB 10.5, and PostgreSQL 12.3
+-- DDL for setting up containment tables in H2
 -- MySQL 8 will only supports varchar up to 503 characters
 
 -- Holds the ID and its parent.
@@ -8,9 +8,12 @@ CREATE TABLE IF NOT EXISTS resources (
     is_deleted boolean NOT NULL DEFAULT(FALSE)
 );
 
--- Create an index to speed searches for children of a parent.
-CREATE INDEX IF NOT EXISTS resources_idx
-    ON resources (parent, is_deleted);
+-- Create an index to speed searches for children of a parent, and to page through them in id order.
+CREATE INDEX IF NOT EXISTS resources_idx2
+    ON resources (parent, is_deleted, fedora_id);
+
+-- Drop the narrower index created by earlier versions, which resources_idx2 replaces.
+DROP INDEX IF EXISTS resources_idx;
 
 -- Holds operations to add or delete records from the RESOURCES_TABLE.
 CREATE TABLE IF NOT EXISTS transaction_operations (
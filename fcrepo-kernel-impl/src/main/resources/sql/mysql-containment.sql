@@ -8,7 +8,8 @@ CREATE TABLE IF NOT EXISTS resources (
     is_deleted boolean NOT NULL DEFAULT(FALSE)
 );
 
--- Create an index to speed searches for children of a parent.
+-- Create an index to speed searches for children of a parent. InnoDB secondary indexes include the primary key, so
+-- this index also pages through the children of a parent in id order.
 SET @exist := (SELECT COUNT(*) FROM information_schema.statistics
     WHERE table_name = 'resources' AND index_name = 'resources_idx' AND table_schema = database());
 SET @sqlstmt := IF (@exist > 0, 'SELECT ''INFO: Index already exists.''',
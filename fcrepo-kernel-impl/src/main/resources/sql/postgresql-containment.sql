@@ -0,0 +1,33 @@
+-- DDL for setting up containment tables in PostgreSQL 12.3
+-- MySQL 8 will only supports varchar up to 503 characters
+
+-- Holds the ID and its parent.
+CREATE TABLE IF NOT EXISTS resources (
+    fedora_id varchar(503) NOT NULL PRIMARY KEY,
+    parent varchar(503) NOT NULL,
+    is_deleted boolean NOT NULL DEFAULT(FALSE)
+);
+
+-- Create an index to speed searches for children of a parent, and to page through them in id order. Pages are
+-- ordered by the "C" collation, which compares ids the same way as Java, rather than by the database locale.
+CREATE INDEX IF NOT EXISTS resources_idx2
+    ON resources (parent, is_deleted, fedora_id COLLATE "C");
+
+-- Drop the narrower index created by earlier versions, which resources_idx2 replaces.
+DROP INDEX IF EXISTS resources_idx;
+
+-- Holds operations to add or delete records from the RESOURCES_TABLE.
+CREATE TABLE IF NOT EXISTS transaction_operations (
+    fedora_id varchar(503) NOT NULL,
+    parent varchar(503) NOT NULL,
+    transaction_id varchar(255) NOT NULL,
+    operation varchar(10) NOT NULL
+);
+
+-- Create an index to speed searches for records related to adding/excluding transaction records
+CREATE INDEX IF NOT EXISTS transaction_operations_idx1
+    ON transaction_operations (parent, transaction_id, operation);
+
+-- Create an index to speed finding records related to a transaction.
+CREATE INDEX IF NOT EXISTS transaction_operations_idx2
+    ON transaction_operations (transaction_id);
\ No newline at end of file
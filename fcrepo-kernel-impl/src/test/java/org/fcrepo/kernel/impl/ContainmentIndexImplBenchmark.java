@@ -0,0 +1,91 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.kernel.impl;
+
+import org.fcrepo.kernel.api.Transaction;
+import org.fcrepo.kernel.api.identifiers.FedoraId;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import javax.inject.Inject;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Microbenchmark of getContainerIdByPath latency against the depth of the path below the closest existing ancestor.
+ * The class name keeps it out of the default surefire run, use
+ * <code>mvn test -pl fcrepo-kernel-impl -Dtest=ContainmentIndexImplBenchmark</code> to run it.
+ *
+ * @author bbpennel
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration("/containmentIndexTest.xml")
+public class ContainmentIndexImplBenchmark {
+
+    private static final Logger LOGGER = getLogger(ContainmentIndexImplBenchmark.class);
+
+    private static final int[] DEPTHS = { 1, 2, 4, 8, 16, 32, 64 };
+
+    private static final int WARMUP = 200;
+
+    private static final int ITERATIONS = 2000;
+
+    @Inject
+    private ContainmentIndexImpl containmentIndex;
+
+    private final Transaction transaction = mock(Transaction.class);
+
+    @After
+    public void cleanUp() {
+        containmentIndex.rollbackTransaction(transaction);
+    }
+
+    @Test
+    public void benchmarkGetContainerIdByPath() {
+        when(transaction.getId()).thenReturn(UUID.randomUUID().toString());
+        final FedoraId parentId = FedoraId.create(UUID.randomUUID().toString());
+        containmentIndex.addContainedBy(transaction.getId(), FedoraId.getRepositoryRootId(), parentId);
+        containmentIndex.commitTransaction(transaction);
+
+        for (final int depth : DEPTHS) {
+            final StringBuilder path = new StringBuilder(parentId.getFullId());
+            for (int i = 0; i < depth; i++) {
+                path.append("/level").append(i);
+            }
+            final FedoraId id = FedoraId.create(path.toString());
+            for (int i = 0; i < WARMUP; i++) {
+                containmentIndex.getContainerIdByPath(null, id);
+            }
+            final long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                assertEquals(parentId, containmentIndex.getContainerIdByPath(null, id));
+            }
+            final long elapsed = System.nanoTime() - start;
+            LOGGER.info("getContainerIdByPath at depth {}: {} us/op", depth, elapsed / ITERATIONS / 1000.0);
+        }
+    }
+}
@@ -39,10 +39,16 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static java.util.stream.Collectors.toList;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.util.ReflectionTestUtils.getField;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 @RunWith(SpringJUnit4ClassRunner.class)
@@ -546,6 +552,328 @@ public class ContainmentIndexImplTest {
         assertTrue(containmentIndex.resourceExists(null, child1.getFedoraId()));
         assertTrue(containmentIndex.resourceExists(null, fedoraID));
     }
-}
 
+    @Test
+    public void testCommittedLookupsAreCached() {
+        stubObject("parent1");
+        stubObject("child1");
+        stubObject("transaction1");
+        containmentIndex.addContainedBy(transaction1.getId(), parent1.getFedoraId(), child1.getFedoraId());
+        containmentIndex.commitTransaction(transaction1);
+        final long childrenHits = containmentIndex.getChildrenCacheStats().hitCount();
+        final long parentHits = containmentIndex.getParentCacheStats().hitCount();
+        assertEquals(1, containmentIndex.getContains(null, parent1).count());
+        assertEquals(1, containmentIndex.getContains(null, parent1).count());
+        assertEquals(childrenHits + 1, containmentIndex.getChildrenCacheStats().hitCount());
+        assertEquals(parent1.getFedoraId().getFullId(),
+                containmentIndex.getContainedBy(null, child1.getFedoraId()));
+        assertTrue(containmentIndex.resourceExists(null, child1.getFedoraId()));
+        assertEquals(parentHits + 1, containmentIndex.getParentCacheStats().hitCount());
+    }
+
+    @Test
+    public void testCommitInvalidatesCachedLookups() {
+        stubObject("parent1");
+        stubObject("child1");
+        stubObject("child2");
+        stubObject("transaction1");
+        // Cache the answers before anything exists.
+        assertEquals(0, containmentIndex.getContains(null, parent1).count());
+        assertFalse(containmentIndex.resourceExists(null, child1.getFedoraId()));
+        containmentIndex.addContainedBy(transaction1.getId(), parent1.getFedoraId(), child1.getFedoraId());
+        containmentIndex.addContainedBy(transaction1.getId(), parent1.getFedoraId(), child2.getFedoraId());
+        containmentIndex.commitTransaction(transaction1);
+        assertEquals(2, containmentIndex.getContains(null, parent1).count());
+        assertTrue(containmentIndex.resourceExists(null, child1.getFedoraId()));
+        // Cache the answers again and then delete and purge a child.
+        containmentIndex.removeResource(transaction1.getId(), child1.getFedoraId());
+        containmentIndex.commitTransaction(transaction1);
+        assertEquals(1, containmentIndex.getContains(null, parent1).count());
+        assertFalse(containmentIndex.resourceExists(null, child1.getFedoraId()));
+        assertNull(containmentIndex.getContainedBy(null, child1.getFedoraId()));
+        containmentIndex.purgeResource(transaction1.getId(), child1.getFedoraId());
+        containmentIndex.commitTransaction(transaction1);
+        assertEquals(0, containmentIndex.getContainsDeleted(null, parent1).count());
+        assertEquals(child2.getFedoraId().getFullId(),
+                containmentIndex.getContains(null, parent1).findFirst().get());
+    }
+
+    @Test
+    public void testRollbackDoesNotChangeCachedLookups() {
+        stubObject("parent1");
+        stubObject("child1");
+        stubObject("transaction1");
+        assertEquals(0, containmentIndex.getContains(null, parent1).count());
+        containmentIndex.addContainedBy(transaction1.getId(), parent1.getFedoraId(), child1.getFedoraId());
+        assertEquals(1, containmentIndex.getContains(transaction1, parent1).count());
+        assertEquals(0, containmentIndex.getContains(null, parent1).count());
+        containmentIndex.rollbackTransaction(transaction1);
+        assertEquals(0, containmentIndex.getContains(null, parent1).count());
+        assertFalse(containmentIndex.resourceExists(null, child1.getFedoraId()));
+    }
+
+    @Test
+    public void testGetContainsPages() {
+        stubObject("parent1");
+        stubObject("transaction1");
+        final List<String> children = new ArrayList<>();
+        for (var i = 0; i < 5; i += 1) {
+            final FedoraId child = FedoraId.create(UUID.randomUUID().toString());
+            children.add(child.getFullId());
+            containmentIndex.addContainedBy(transaction1.getId(), parent1.getFedoraId(), child);
+        }
+        children.sort(String::compareTo);
+        // Pages are visible in the transaction before commit.
+        assertEquals(children.subList(0, 2), containmentIndex.getContains(transaction1, parent1, null, 2));
+        assertEquals(0, containmentIndex.getContains(null, parent1, null, 2).size());
+        containmentIndex.commitTransaction(transaction1);
+        assertEquals(children.subList(0, 2), containmentIndex.getContains(null, parent1, null, 2));
+        assertEquals(children.subList(2, 4), containmentIndex.getContains(null, parent1, children.get(1), 2));
+        assertEquals(children.subList(4, 5), containmentIndex.getContains(null, parent1, children.get(3), 2));
+        assertEquals(0, containmentIndex.getContains(null, parent1, children.get(4), 2).size());
+        // Deleted children are excluded from pages in the transaction.
+        containmentIndex.removeContainedBy(transaction1.getId(), parent1.getFedoraId(),
+                FedoraId.create(children.get(0)));
+        assertEquals(children.subList(1, 3), containmentIndex.getContains(transaction1, parent1, null, 2));
+    }
+
+    @Test
+    public void testStreamContainsAcrossPages() {
+        stubObject("parent1");
+        stubObject("transaction1");
+        final int fetchSize = (int) getField(containmentIndex, "fetchSize");
+        setField(containmentIndex, "fetchSize", 2);
+        try {
+            final List<String> children = new ArrayList<>();
+            for (var i = 0; i < 5; i += 1) {
+                final FedoraId child = FedoraId.create(UUID.randomUUID().toString());
+                children.add(child.getFullId());
+                containmentIndex.addContainedBy(transaction1.getId(), parent1.getFedoraId(), child);
+            }
+            children.sort(String::compareTo);
+            assertEquals(children, containmentIndex.streamContains(transaction1, parent1).collect(toList()));
+            assertEquals(0, containmentIndex.streamContains(null, parent1).count());
+            containmentIndex.commitTransaction(transaction1);
+            assertEquals(children, containmentIndex.streamContains(null, parent1).collect(toList()));
+            assertEquals(children.subList(0, 3),
+                    containmentIndex.streamContains(null, parent1).limit(3).collect(toList()));
+            // Once the children are cached they are still streamed in the order of the pages.
+            containmentIndex.getContains(null, parent1).count();
+            assertEquals(children, containmentIndex.streamContains(null, parent1).collect(toList()));
+        } finally {
+            setField(containmentIndex, "fetchSize", fetchSize);
+        }
+    }
 
+    @Test
+    public void testSpillTransactionToTable() {
+        stubObject("parent1");
+        stubObject("child1");
+        stubObject("child2");
+        stubObject("transaction1");
+        final int spillSize = (int) getField(containmentIndex, "transactionSpillSize");
+        setField(containmentIndex, "transactionSpillSize", 1);
+        try {
+            containmentIndex.addContainedBy(transaction1.getId(), parent1.getFedoraId(), child1.getFedoraId());
+            // The second operation exceeds the spill size, so both move to the table.
+            containmentIndex.addContainedBy(transaction1.getId(), parent1.getFedoraId(), child2.getFedoraId());
+            assertEquals(2, containmentIndex.getContains(transaction1, parent1).count());
+            assertEquals(0, containmentIndex.getContains(null, parent1).count());
+            assertTrue(containmentIndex.resourceExists(transaction1.getId(), child2.getFedoraId()));
+            assertEquals(parent1.getFedoraId().getFullId(),
+                    containmentIndex.getContainedBy(transaction1.getId(), child1.getFedoraId()));
+            containmentIndex.removeContainedBy(transaction1.getId(), parent1.getFedoraId(), child1.getFedoraId());
+            assertEquals(1, containmentIndex.getContains(transaction1, parent1).count());
+            containmentIndex.commitTransaction(transaction1);
+            assertEquals(1, containmentIndex.getContains(null, parent1).count());
+            assertEquals(child2.getFedoraId().getFullId(),
+                    containmentIndex.getContains(null, parent1).findFirst().get());
+            assertFalse(containmentIndex.resourceExists(null, child1.getFedoraId()));
+        } finally {
+            setField(containmentIndex, "transactionSpillSize", spillSize);
+        }
+    }
+
+    @Test
+    public void testRollbackSpilledTransaction() {
+        stubObject("parent1");
+        stubObject("child1");
+        stubObject("child2");
+        stubObject("transaction1");
+        final int spillSize = (int) getField(containmentIndex, "transactionSpillSize");
+        setField(containmentIndex, "transactionSpillSize", 1);
+        try {
+            containmentIndex.addContainedBy(transaction1.getId(), parent1.getFedoraId(), child1.getFedoraId());
+            containmentIndex.addContainedBy(transaction1.getId(), parent1.getFedoraId(), child2.getFedoraId());
+            assertEquals(2, containmentIndex.getContains(transaction1, parent1).count());
+            containmentIndex.rollbackTransaction(transaction1);
+            assertEquals(0, containmentIndex.getContains(transaction1, parent1).count());
+            containmentIndex.commitTransaction(transaction1);
+            assertEquals(0, containmentIndex.getContains(null, parent1).count());
+        } finally {
+            setField(containmentIndex, "transactionSpillSize", spillSize);
+        }
+    }
+
+    @Test
+    public void testGetContainerIdByPath() {
+        stubObject("parent1");
+        stubObject("transaction1");
+        final FedoraId parentId = parent1.getFedoraId();
+        final FedoraId deepChild = FedoraId.create(parentId.getFullId() + "/a/b/c/d");
+        final FedoraId middle = FedoraId.create(parentId.getFullId() + "/a/b");
+        // Nothing exists so the repository root is the container.
+        assertEquals(FedoraId.getRepositoryRootId(), containmentIndex.getContainerIdByPath(null, deepChild));
+        containmentIndex.addContainedBy(transaction1.getId(), FedoraId.getRepositoryRootId(), parentId);
+        containmentIndex.commitTransaction(transaction1);
+        assertEquals(parentId, containmentIndex.getContainerIdByPath(null, deepChild));
+        // Ask again so the closest ancestors are answered from the cache.
+        assertEquals(parentId, containmentIndex.getContainerIdByPath(null, deepChild));
+        containmentIndex.addContainedBy(transaction1.getId(), parentId, middle);
+        containmentIndex.commitTransaction(transaction1);
+        assertEquals(middle, containmentIndex.getContainerIdByPath(null, deepChild));
+        assertEquals(parentId, containmentIndex.getContainerIdByPath(null,
+                FedoraId.create(parentId.getFullId() + "/a")));
+    }
+
+    @Test
+    public void testGetContainerIdByPathInTransaction() {
+        stubObject("parent1");
+        stubObject("transaction1");
+        final FedoraId parentId = parent1.getFedoraId();
+        final FedoraId deepChild = FedoraId.create(parentId.getFullId() + "/a/b/c/d");
+        final FedoraId middle = FedoraId.create(parentId.getFullId() + "/a/b");
+        stubObject("transaction2");
+        containmentIndex.addContainedBy(transaction2.getId(), FedoraId.getRepositoryRootId(), parentId);
+        containmentIndex.commitTransaction(transaction2);
+        containmentIndex.addContainedBy(transaction1.getId(), parentId, middle);
+        assertEquals(middle, containmentIndex.getContainerIdByPath(transaction1.getId(), deepChild));
+        assertEquals(parentId, containmentIndex.getContainerIdByPath(null, deepChild));
+        containmentIndex.commitTransaction(transaction1);
+        assertEquals(middle, containmentIndex.getContainerIdByPath(null, deepChild));
+        // Deleting in a transaction hides the ancestor only in that transaction.
+        containmentIndex.removeResource(transaction1.getId(), middle);
+        assertEquals(parentId, containmentIndex.getContainerIdByPath(transaction1.getId(), deepChild));
+        assertEquals(middle, containmentIndex.getContainerIdByPath(null, deepChild));
+    }
+
+    @Test
+    public void testGetContainerIdByPathSpilledTransaction() {
+        stubObject("parent1");
+        stubObject("transaction1");
+        final FedoraId parentId = parent1.getFedoraId();
+        final FedoraId deepChild = FedoraId.create(parentId.getFullId() + "/a/b/c/d");
+        final FedoraId middle = FedoraId.create(parentId.getFullId() + "/a/b");
+        final int spillSize = (int) getField(containmentIndex, "transactionSpillSize");
+        setField(containmentIndex, "transactionSpillSize", 1);
+        try {
+            containmentIndex.addContainedBy(transaction1.getId(), FedoraId.getRepositoryRootId(), parentId);
+            containmentIndex.addContainedBy(transaction1.getId(), parentId, middle);
+            assertEquals(middle, containmentIndex.getContainerIdByPath(transaction1.getId(), deepChild));
+            containmentIndex.removeContainedBy(transaction1.getId(), parentId, middle);
+            assertEquals(parentId, containmentIndex.getContainerIdByPath(transaction1.getId(), deepChild));
+            assertEquals(FedoraId.getRepositoryRootId(), containmentIndex.getContainerIdByPath(null, deepChild));
+        } finally {
+            setField(containmentIndex, "transactionSpillSize", spillSize);
+        }
+    }
+
+    @Test
+    public void testGetDescendants() {
+        stubObject("parent1");
+        stubObject("transaction1");
+        final FedoraId parentId = parent1.getFedoraId();
+        final FedoraId childA = FedoraId.create(parentId.getFullId() + "/a");
+        final FedoraId grandchildA = FedoraId.create(parentId.getFullId() + "/a/1");
+        final FedoraId greatGrandchildA = FedoraId.create(parentId.getFullId() + "/a/1/x");
+        final FedoraId childB = FedoraId.create(parentId.getFullId() + "/b");
+        containmentIndex.addContainedBy(transaction1.getId(), parentId, childA);
+        containmentIndex.addContainedBy(transaction1.getId(), childA, grandchildA);
+        containmentIndex.addContainedBy(transaction1.getId(), grandchildA, greatGrandchildA);
+        // Visible inside the transaction before it is committed.
+        assertPostOrder(containmentIndex.getDescendants(transaction1, parent1).collect(toList()), parentId,
+                childA, grandchildA, greatGrandchildA);
+        assertEquals(0, containmentIndex.getDescendants(null, parent1).count());
+        containmentIndex.commitTransaction(transaction1);
+        assertPostOrder(containmentIndex.getDescendants(null, parent1).collect(toList()), parentId,
+                childA, grandchildA, greatGrandchildA);
+
+        // Changes in a transaction are applied at every level of the committed tree.
+        containmentIndex.addContainedBy(transaction1.getId(), parentId, childB);
+        containmentIndex.removeResource(transaction1.getId(), grandchildA);
+        final List<String> inTransaction = containmentIndex.getDescendants(transaction1, parent1).collect(toList());
+        assertEquals(2, inTransaction.size());
+        assertTrue(inTransaction.containsAll(List.of(childA.getFullId(), childB.getFullId())));
+        assertEquals(3, containmentIndex.getDescendants(null, parent1).count());
+
+        // Deleted relationships are followed from the deleted resources' former parent.
+        containmentIndex.removeResource(transaction1.getId(), greatGrandchildA);
+        when(child1.getFedoraId()).thenReturn(childA);
+        assertEquals(List.of(greatGrandchildA.getFullId(), grandchildA.getFullId()),
+                containmentIndex.getDescendantsDeleted(transaction1, child1).collect(toList()));
+        assertEquals(0, containmentIndex.getDescendantsDeleted(null, child1).count());
+        containmentIndex.commitTransaction(transaction1);
+        assertEquals(List.of(greatGrandchildA.getFullId(), grandchildA.getFullId()),
+                containmentIndex.getDescendantsDeleted(null, child1).collect(toList()));
+    }
+
+    @Test
+    public void testAddContainedByBatchAndReset() {
+        stubObject("parent1");
+        stubObject("child1");
+        stubObject("child2");
+        stubObject("transaction1");
+        // Cache the absence of the children before loading them.
+        assertFalse(containmentIndex.resourceExists(null, child1.getFedoraId()));
+        assertEquals(0, containmentIndex.getContains(null, parent1).count());
+        containmentIndex.addContainedByBatch(Map.of(child1.getFedoraId(), parent1.getFedoraId(),
+                child2.getFedoraId(), parent1.getFedoraId()), Set.of());
+        assertTrue(containmentIndex.resourceExists(null, child1.getFedoraId()));
+        assertEquals(2, containmentIndex.getContains(null, parent1).count());
+
+        // Loading a child again replaces its existing relationship.
+        stubObject("parent2");
+        assertEquals(0, containmentIndex.getContains(null, parent2).count());
+        containmentIndex.addContainedByBatch(Map.of(child1.getFedoraId(), parent2.getFedoraId()), Set.of());
+        assertEquals(1, containmentIndex.getContains(null, parent1).count());
+        assertEquals(1, containmentIndex.getContains(null, parent2).count());
+        assertEquals(parent2.getFedoraId().getFullId(), containmentIndex.getContainedBy(null, child1.getFedoraId()));
+
+        // Deleted children are loaded as deleted relationships.
+        containmentIndex.addContainedByBatch(Map.of(child2.getFedoraId(), parent1.getFedoraId()),
+                Set.of(child2.getFedoraId()));
+        assertFalse(containmentIndex.resourceExists(null, child2.getFedoraId()));
+        assertEquals(0, containmentIndex.getContains(null, parent1).count());
+        assertEquals(List.of(child2.getFedoraId().getFullId()),
+                containmentIndex.getContainsDeleted(null, parent1).collect(toList()));
+
+        // Removing a child removes its relationship in any state.
+        containmentIndex.removeContainedByBatch(Set.of(child1.getFedoraId(), child2.getFedoraId()));
+        assertEquals(0, containmentIndex.getContains(null, parent2).count());
+        assertEquals(0, containmentIndex.getContainsDeleted(null, parent1).count());
+        assertFalse(containmentIndex.resourceExists(null, child1.getFedoraId()));
+
+        containmentIndex.addContainedBy(transaction1.getId(), FedoraId.getRepositoryRootId(), parent1.getFedoraId());
+        containmentIndex.reset();
+        assertFalse(containmentIndex.resourceExists(null, child1.getFedoraId()));
+        assertEquals(0, containmentIndex.getContains(null, parent1).count());
+        assertFalse(containmentIndex.resourceExists(transaction1.getId(), parent1.getFedoraId()));
+    }
+
+    /**
+     * Assert that the descendants are exactly the expected ids and every id comes after its own descendants.
+     */
+    private void assertPostOrder(final List<String> descendants, final FedoraId root, final FedoraId... expected) {
+        assertEquals(expected.length, descendants.size());
+        for (final FedoraId id : expected) {
+            final int index = descendants.indexOf(id.getFullId());
+            assertTrue(index >= 0);
+            for (final FedoraId other : expected) {
+                if (other.getFullId().startsWith(id.getFullId() + "/")) {
+                    assertTrue(descendants.indexOf(other.getFullId()) < index);
+                }
+            }
+        }
+        assertFalse(descendants.contains(root.getFullId()));
+    }
+}
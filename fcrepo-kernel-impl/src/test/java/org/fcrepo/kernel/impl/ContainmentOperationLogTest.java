@@ -0,0 +1,88 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.kernel.impl;
+
+import static org.fcrepo.kernel.impl.ContainmentOperationLog.Operation.ADD;
+import static org.fcrepo.kernel.impl.ContainmentOperationLog.Operation.DELETE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author bbpennel
+ */
+public class ContainmentOperationLogTest {
+
+    private ContainmentOperationLog log;
+
+    @Before
+    public void setUp() {
+        log = new ContainmentOperationLog();
+    }
+
+    @Test
+    public void testAddIndexesParentAndChild() {
+        log.add(ADD, "parent", "child1");
+        log.add(ADD, "parent", "child2");
+        log.add(ADD, "parent", "child2");
+        assertEquals(2, log.size());
+        assertEquals(Set.of("child1", "child2"), log.getChildren(ADD, "parent"));
+        assertEquals(Set.of("parent"), log.getParents(ADD, "child1"));
+        assertTrue(log.getChildren(DELETE, "parent").isEmpty());
+        assertEquals(2, log.getRecords().size());
+    }
+
+    @Test
+    public void testRemove() {
+        log.add(ADD, "parent", "child1");
+        assertFalse(log.remove(DELETE, "parent", "child1"));
+        assertTrue(log.remove(ADD, "parent", "child1"));
+        assertFalse(log.remove(ADD, "parent", "child1"));
+        assertEquals(0, log.size());
+        assertTrue(log.getChildren(ADD, "parent").isEmpty());
+        assertTrue(log.getParents(ADD, "child1").isEmpty());
+    }
+
+    @Test
+    public void testRemoveChild() {
+        log.add(ADD, "parent1", "child");
+        log.add(ADD, "parent2", "child");
+        log.add(ADD, "parent1", "other");
+        assertEquals(Set.of("parent1", "parent2"), log.removeChild(ADD, "child"));
+        assertEquals(1, log.size());
+        assertEquals(Set.of("other"), log.getChildren(ADD, "parent1"));
+        assertTrue(log.getChildren(ADD, "parent2").isEmpty());
+        assertTrue(log.removeChild(ADD, "child").isEmpty());
+    }
+
+    @Test
+    public void testMarkSpilled() {
+        log.add(ADD, "parent", "child");
+        log.add(DELETE, "parent", "child2");
+        assertFalse(log.isSpilled());
+        log.markSpilled();
+        assertTrue(log.isSpilled());
+        assertEquals(0, log.size());
+        assertTrue(log.getRecords().isEmpty());
+    }
+}
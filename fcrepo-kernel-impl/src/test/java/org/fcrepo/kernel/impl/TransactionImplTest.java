@@ -97,6 +97,7 @@ public class TransactionImplTest {
     public void testCommit() throws Exception {
         testTx.commit();
         verify(psSession).commit();
+        verify(pssManager).removeSession("123");
     }
 
     @Test
@@ -141,6 +142,7 @@ public class TransactionImplTest {
         } finally {
             verify(psSession).commit();
             verify(psSession).rollback();
+            verify(pssManager).removeSession("123");
         }
     }
 
@@ -155,6 +157,18 @@ public class TransactionImplTest {
     public void testRollback() throws Exception {
         testTx.rollback();
         verify(psSession).rollback();
+        verify(pssManager).removeSession("123");
+    }
+
+    @Test(expected = RepositoryRuntimeException.class)
+    public void testRollbackFailureRemovesSession() throws Exception {
+        doThrow(new PersistentStorageException("Failed")).when(psSession).rollback();
+        try {
+            testTx.rollback();
+        } finally {
+            assertTrue(testTx.isRolledBack());
+            verify(pssManager).removeSession("123");
+        }
     }
 
     @Test(expected = TransactionRuntimeException.class)
@@ -21,6 +21,8 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.util.ReflectionTestUtils.setField;
@@ -150,6 +152,10 @@ public class TransactionManagerImplTest {
             //expected
         }
 
+        // Sessions are released as the transactions close
+        verify(pssManager).removeSession(commitTx.getId());
+        verify(pssManager).removeSession(rollbackTx.getId());
+
         // Force expiration of the closed transactions, rather than waiting for it
         commitTx.expire();
         rollbackTx.expire();
@@ -169,6 +175,11 @@ public class TransactionManagerImplTest {
             //expected
         }
 
+        // Sessions reopened after the transactions closed are released by the cleanup
+        verify(pssManager, times(2)).removeSession(commitTx.getId());
+        verify(pssManager, times(2)).removeSession(rollbackTx.getId());
+        verify(pssManager, never()).removeSession(continuingTx.getId());
+
         assertNotNull("Continuing transaction must be present",
                 testTxManager.get(continuingTx.getId()));
     }
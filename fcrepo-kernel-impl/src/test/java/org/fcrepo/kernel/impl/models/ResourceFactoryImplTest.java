@@ -46,6 +46,7 @@ import java.util.UUID;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.ResourceFactory;
 import org.fcrepo.kernel.api.ContainmentIndex;
+import org.fcrepo.kernel.api.IndexRebuildStatus;
 import org.fcrepo.kernel.api.Transaction;
 import org.fcrepo.kernel.api.exception.PathNotFoundException;
 import org.fcrepo.kernel.api.exception.RepositoryRuntimeException;
@@ -127,6 +128,9 @@ public class ResourceFactoryImplTest {
     @Inject
     private ContainmentIndex containmentIndex;
 
+    @Mock
+    private IndexRebuildStatus indexRebuildStatus;
+
     @InjectMocks
     private ResourceFactoryImpl factory;
 
@@ -145,6 +149,8 @@ public class ResourceFactoryImplTest {
 
         setField(factory, "persistentStorageSessionManager", sessionManager);
         setField(factory, "containmentIndex", containmentIndex);
+        setField(factory, "indexRebuildStatus", indexRebuildStatus);
+        when(indexRebuildStatus.getState()).thenReturn(IndexRebuildStatus.State.COMPLETE);
 
         resourceHeaders = new ResourceHeadersImpl();
         resourceHeaders.setId(fedoraIdStr);
@@ -402,6 +408,15 @@ public class ResourceFactoryImplTest {
         assertFalse(answer);
     }
 
+    @Test
+    public void doesResourceExist_NotIndexed_DuringRebuild() throws Exception {
+        assertFalse(factory.doesResourceExist(null, fedoraId));
+        when(indexRebuildStatus.getState()).thenReturn(IndexRebuildStatus.State.IN_PROGRESS);
+        assertTrue(factory.doesResourceExist(null, fedoraId));
+        resourceHeaders.setDeleted(true);
+        assertFalse(factory.doesResourceExist(null, fedoraId));
+    }
+
     /**
      * Only Mementos go to the persistence layer.
      */
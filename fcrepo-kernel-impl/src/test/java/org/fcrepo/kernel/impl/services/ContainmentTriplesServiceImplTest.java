@@ -130,6 +130,16 @@ public class ContainmentTriplesServiceImplTest {
         matchModels(expectedModel, received);
     }
 
+    @Test
+    public void testLimitChildren() {
+        for (var foo = 0; foo < 10; foo += 1) {
+            final FedoraId child = FedoraId.create(UUID.randomUUID().toString());
+            containmentIndex.addContainedBy(transaction.getId(), parentResource.getFedoraId(), child);
+        }
+        assertEquals(3, containmentTriplesService.get(transaction, parentResource, 3).count());
+        assertEquals(10, containmentTriplesService.get(transaction, parentResource, 20).count());
+    }
+
     @Test
     public void testAddAndRemove() {
         final FedoraId child = FedoraId.create(UUID.randomUUID().toString());
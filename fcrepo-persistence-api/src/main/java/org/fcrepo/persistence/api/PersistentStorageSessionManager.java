@@ -42,4 +42,12 @@ public interface PersistentStorageSessionManager {
      */
     PersistentStorageSession getReadOnlySession();
 
+    /**
+     * Release a PersistentStorageSession once it has been committed or rolled back. A later call to getSession with
+     * the same ID creates a new session. Has no effect if there is no session with the given ID.
+     *
+     * @param sessionId the externally generated session ID.
+     */
+    void removeSession(final String sessionId);
+
 }
@@ -22,8 +22,10 @@ import static org.apache.commons.codec.binary.Hex.encodeHexString;
 import static org.apache.commons.lang3.StringUtils.substringAfterLast;
 import static org.fcrepo.kernel.api.utils.ContentDigest.getAlgorithm;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.URI;
 import java.security.DigestInputStream;
 import java.security.MessageDigest;
@@ -32,6 +34,11 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.stream.Collectors;
 
 import org.fcrepo.kernel.api.exception.InvalidChecksumException;
@@ -44,15 +51,28 @@ import org.fcrepo.kernel.api.utils.ContentDigest.DIGEST_ALGORITHM;
  * Wrapper for an InputStream that allows for the computation and evaluation
  * of multiple digests at once
  *
+ * The digests are either computed as the stream is read, or when a digest executor is provided, computed in
+ * parallel with each other on the executor while the stream continues to be read.
+ *
  * @author bbpennel
  */
 public class MultiDigestInputStreamWrapper {
 
+    // Number of bytes read before they are handed to the digest executor
+    private static final int DIGEST_CHUNK_SIZE = 256 * 1024;
+
+    // Maximum number of chunks read but not yet digested
+    private static final int MAX_DIGEST_CHUNKS = 8;
+
     private final InputStream sourceStream;
 
     private final Map<String, String> algToDigest;
 
-    private final Map<String, DigestInputStream> algToDigestStream;
+    private final Map<String, MessageDigest> algToMessageDigest;
+
+    private final Executor digestExecutor;
+
+    private ParallelDigestInputStream parallelDigestStream;
 
     private boolean streamRetrieved;
 
@@ -67,9 +87,23 @@ public class MultiDigestInputStreamWrapper {
      */
     public MultiDigestInputStreamWrapper(final InputStream sourceStream, final Collection<URI> digests,
             final Collection<DIGEST_ALGORITHM> wantDigests) {
+        this(sourceStream, digests, wantDigests, null);
+    }
+
+    /**
+     * Construct a MultiDigestInputStreamWrapper which computes the digests on an executor
+     *
+     * @param sourceStream the original source input stream
+     * @param digests collection of digests for the input stream
+     * @param wantDigests list of additional digest algorithms to compute for the input stream
+     * @param digestExecutor executor on which to compute the digests, or null to compute them as the stream is read
+     */
+    public MultiDigestInputStreamWrapper(final InputStream sourceStream, final Collection<URI> digests,
+            final Collection<DIGEST_ALGORITHM> wantDigests, final Executor digestExecutor) {
         this.sourceStream = sourceStream;
+        this.digestExecutor = digestExecutor;
         algToDigest = new HashMap<>();
-        algToDigestStream = new HashMap<>();
+        algToMessageDigest = new HashMap<>();
 
         if (digests != null) {
             for (final URI digestUri : digests) {
@@ -96,17 +130,23 @@ public class MultiDigestInputStreamWrapper {
      */
     public InputStream getInputStream() {
         streamRetrieved = true;
-        InputStream digestStream = sourceStream;
         for (final String algorithm : algToDigest.keySet()) {
             try {
-                // Progressively wrap the original stream in layers of digest streams
-                digestStream = new DigestInputStream(
-                        digestStream, MessageDigest.getInstance(algorithm));
+                algToMessageDigest.put(algorithm, MessageDigest.getInstance(algorithm));
             } catch (final NoSuchAlgorithmException e) {
                 throw new UnsupportedAlgorithmException("Unsupported digest algorithm: " + algorithm, e);
             }
+        }
+
+        if (digestExecutor != null) {
+            parallelDigestStream = new ParallelDigestInputStream(sourceStream);
+            return parallelDigestStream;
+        }
 
-            algToDigestStream.put(algorithm, (DigestInputStream) digestStream);
+        InputStream digestStream = sourceStream;
+        for (final MessageDigest messageDigest : algToMessageDigest.values()) {
+            // Progressively wrap the original stream in layers of digest streams
+            digestStream = new DigestInputStream(digestStream, messageDigest);
         }
         return digestStream;
     }
@@ -168,10 +208,123 @@ public class MultiDigestInputStreamWrapper {
             }
         }
 
+        if (parallelDigestStream != null) {
+            parallelDigestStream.awaitDigests();
+        }
+
         computedDigests = new HashMap<>();
-        algToDigestStream.forEach((algorithm, digestStream) -> {
-            final String computed = encodeHexString(digestStream.getMessageDigest().digest());
+        algToMessageDigest.forEach((algorithm, messageDigest) -> {
+            final String computed = encodeHexString(messageDigest.digest());
             computedDigests.put(algorithm, computed);
         });
     }
+
+    /**
+     * Stream which collects the bytes read into chunks, and updates each digest with the chunks in order on the
+     * digest executor. The digests are updated in parallel with each other and with the reading of the stream, and
+     * reading blocks while too many chunks are waiting to be digested.
+     */
+    private class ParallelDigestInputStream extends FilterInputStream {
+
+        private final BlockingQueue<byte[]> freeChunks = new LinkedBlockingQueue<>();
+
+        private final Map<MessageDigest, CompletableFuture<Void>> digested = new HashMap<>();
+
+        private int allocatedChunks;
+
+        private byte[] chunk;
+
+        private int chunkLength;
+
+        private ParallelDigestInputStream(final InputStream in) {
+            super(in);
+            algToMessageDigest.values().forEach(md -> digested.put(md, CompletableFuture.completedFuture(null)));
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = in.read();
+            if (b == -1) {
+                submitChunk();
+            } else {
+                append(new byte[] { (byte) b }, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            final int read = in.read(b, off, len);
+            if (read == -1) {
+                submitChunk();
+            } else {
+                append(b, off, read);
+            }
+            return read;
+        }
+
+        private void append(final byte[] b, final int off, final int len) throws IOException {
+            int appended = 0;
+            while (appended < len) {
+                if (chunk == null) {
+                    chunk = nextChunk();
+                }
+                final int length = Math.min(len - appended, chunk.length - chunkLength);
+                System.arraycopy(b, off + appended, chunk, chunkLength, length);
+                chunkLength += length;
+                appended += length;
+                if (chunkLength == chunk.length) {
+                    submitChunk();
+                }
+            }
+        }
+
+        private byte[] nextChunk() throws IOException {
+            final byte[] free = freeChunks.poll();
+            if (free != null) {
+                return free;
+            }
+            if (allocatedChunks < MAX_DIGEST_CHUNKS) {
+                allocatedChunks++;
+                return new byte[DIGEST_CHUNK_SIZE];
+            }
+            try {
+                return freeChunks.take();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for digests to be computed");
+            }
+        }
+
+        /*
+         * Hand the current chunk to each digest, returning the chunk to be reused once all of the digests have been
+         * updated with it.
+         */
+        private void submitChunk() {
+            if (chunkLength == 0) {
+                return;
+            }
+            final byte[] submitted = chunk;
+            final int length = chunkLength;
+            chunk = null;
+            chunkLength = 0;
+
+            digested.replaceAll((md, previous) -> previous.thenRunAsync(
+                    () -> md.update(submitted, 0, length), digestExecutor));
+            CompletableFuture.allOf(digested.values().toArray(CompletableFuture[]::new))
+                    .whenComplete((result, e) -> freeChunks.add(submitted));
+        }
+
+        /*
+         * Wait for the digests to be updated with all of the bytes read
+         */
+        private void awaitDigests() {
+            submitChunk();
+            try {
+                CompletableFuture.allOf(digested.values().toArray(CompletableFuture[]::new)).join();
+            } catch (final CompletionException e) {
+                throw new RepositoryRuntimeException("Failed to calculate digests", e.getCause());
+            }
+        }
+    }
 }
@@ -22,12 +22,14 @@ import static com.fasterxml.jackson.databind.SerializationFeature.WRITE_DATES_AS
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 
 import org.fcrepo.kernel.api.exception.RepositoryRuntimeException;
 import org.fcrepo.kernel.api.models.ResourceHeaders;
 import org.fcrepo.persistence.api.exceptions.PersistentStorageException;
 
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
@@ -52,6 +54,9 @@ public class ResourceHeaderSerializationUtils {
 
     private static final ObjectWriter HEADER_WRITER = HEADER_MAPPER.writerFor(ResourceHeaders.class);
 
+    private static final ObjectWriter HEADER_STREAM_WRITER = HEADER_WRITER
+            .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
     private ResourceHeaderSerializationUtils() {
     }
 
@@ -88,4 +93,19 @@ public class ResourceHeaderSerializationUtils {
             throw new RepositoryRuntimeException("Failed to serialize headers", e);
         }
     }
+
+    /**
+     * Serializes the provided headers as JSON directly to an OutputStream. The stream is left open.
+     *
+     * @param headers resource headers to serialize
+     * @param out stream to write the JSON to
+     * @throws IOException thrown if unable to write to the stream
+     */
+    public static void serializeHeaders(final ResourceHeaders headers, final OutputStream out) throws IOException {
+        if (headers == null) {
+            throw new IllegalArgumentException("Must provide non-null resource headers object");
+        }
+
+        HEADER_STREAM_WRITER.writeValue(out, headers);
+    }
 }
@@ -20,16 +20,24 @@ package org.fcrepo.persistence.common;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.net.URI;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.apache.commons.io.IOUtils;
 import org.fcrepo.kernel.api.exception.InvalidChecksumException;
 import org.fcrepo.kernel.api.exception.RepositoryRuntimeException;
 import org.fcrepo.kernel.api.utils.ContentDigest.DIGEST_ALGORITHM;
+import org.junit.After;
 import org.junit.Test;
 
 /**
@@ -55,6 +63,8 @@ public class MultiDigestInputStreamWrapperTest {
 
     private final InputStream contentStream = new ByteArrayInputStream(CONTENT.getBytes());
 
+    private final ExecutorService digestExecutor = Executors.newFixedThreadPool(2);
+
     @Test
     public void checkFixity_SingleDigests_Success() throws Exception {
         final var digests = asList(SHA1_URI);
@@ -226,4 +236,59 @@ public class MultiDigestInputStreamWrapperTest {
         final var computed = wrapper.getDigests();
         assertTrue(computed.contains(SHA512_URI));
     }
+
+    @Test
+    public void checkFixity_ParallelDigests_Success() throws Exception {
+        final var digests = asList(MD5_URI, SHA1_URI, SHA512_URI, SHA512256_URI);
+        final var wrapper = new MultiDigestInputStreamWrapper(contentStream, digests, null, digestExecutor);
+
+        IOUtils.toString(wrapper.getInputStream(), UTF_8);
+
+        wrapper.checkFixity();
+    }
+
+    @Test(expected = InvalidChecksumException.class)
+    public void checkFixity_ParallelDigests_InvalidDigest() throws Exception {
+        final var digests = asList(MD5_URI, URI.create("urn:sha1:totallybusted"));
+        final var wrapper = new MultiDigestInputStreamWrapper(contentStream, digests, null, digestExecutor);
+
+        IOUtils.toString(wrapper.getInputStream(), UTF_8);
+
+        wrapper.checkFixity();
+    }
+
+    @Test
+    public void getDigests_ParallelDigests_LargeContent() throws Exception {
+        // Larger than all of the chunks which may be waiting to be digested at once
+        final var content = new byte[5 * 1024 * 1024 + 17];
+        new Random(42).nextBytes(content);
+        final var wantDigests = asList(DIGEST_ALGORITHM.SHA1, DIGEST_ALGORITHM.SHA512);
+
+        final var expected = new MultiDigestInputStreamWrapper(new ByteArrayInputStream(content), null, wantDigests);
+        final var wrapper = new MultiDigestInputStreamWrapper(new ByteArrayInputStream(content), null, wantDigests,
+                digestExecutor);
+
+        final var read = new ByteArrayOutputStream();
+        try (final var stream = wrapper.getInputStream()) {
+            read.write(stream.read());
+            IOUtils.copy(stream, read);
+        }
+
+        assertArrayEquals(content, read.toByteArray());
+        assertEquals(new HashSet<>(expected.getDigests()), new HashSet<>(wrapper.getDigests()));
+    }
+
+    @Test
+    public void getDigests_ParallelDigests_BeforeRead() throws Exception {
+        final var wantDigests = asList(DIGEST_ALGORITHM.SHA512);
+        final var wrapper = new MultiDigestInputStreamWrapper(contentStream, null, wantDigests, digestExecutor);
+
+        final var computed = wrapper.getDigests();
+        assertTrue(computed.contains(SHA512_URI));
+    }
+
+    @After
+    public void shutdown() {
+        digestExecutor.shutdown();
+    }
 }
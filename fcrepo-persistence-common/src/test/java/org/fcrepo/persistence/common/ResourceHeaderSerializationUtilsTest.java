@@ -30,9 +30,11 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.net.URI;
 import java.time.Instant;
 import java.util.Collection;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.io.IOUtils;
 import org.fcrepo.persistence.api.exceptions.PersistentStorageException;
@@ -97,6 +99,25 @@ public class ResourceHeaderSerializationUtilsTest {
         assertTrue(serialized.contains("\"lastModifiedDate\":\"" + MODIFIED_DATE + "\""));
     }
 
+    @Test
+    public void serializeHeaders_ToOutputStream() throws Exception {
+        final var headers = newResourceHeaders(PARENT_ID, RESOURCE_ID, BASIC_CONTAINER.toString());
+        headers.setCreatedDate(Instant.parse(CREATED_DATE));
+
+        final var closed = new AtomicBoolean();
+        final var out = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        };
+        serializeHeaders(headers, out);
+
+        assertFalse("Stream must be left open", closed.get());
+        assertEquals(IOUtils.toString(serializeHeaders(headers), "UTF-8"), out.toString("UTF-8"));
+        assertEquals(RESOURCE_ID, deserializeHeaders(new ByteArrayInputStream(out.toByteArray())).getId());
+    }
+
     @Test(expected = PersistentStorageException.class)
     public void deserializeHeaders_InvalidContent() throws Exception {
         final var contentStream = new ByteArrayInputStream("Totally not headers".getBytes());
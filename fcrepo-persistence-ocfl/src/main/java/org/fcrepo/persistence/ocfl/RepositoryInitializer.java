@@ -28,13 +28,13 @@ import org.fcrepo.kernel.api.rdf.DefaultRdfStream;
 import org.fcrepo.persistence.api.PersistentStorageSession;
 import org.fcrepo.persistence.api.exceptions.PersistentItemNotFoundException;
 import org.fcrepo.persistence.api.exceptions.PersistentStorageException;
+import org.fcrepo.persistence.ocfl.api.FedoraToOCFLObjectIndex;
 import org.fcrepo.persistence.ocfl.api.IndexBuilder;
-import org.fcrepo.persistence.ocfl.impl.OCFLConstants;
 import org.fcrepo.persistence.ocfl.impl.OCFLPersistentSessionManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import java.io.File;
 import java.util.stream.Stream;
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
@@ -63,7 +63,19 @@ public class RepositoryInitializer {
     private IndexBuilder indexBuilder;
 
     @Inject
-    private OCFLConstants ocflConstants;
+    private FedoraToOCFLObjectIndex fedoraToOCFLObjectIndex;
+
+    /**
+     * Controls whether OCFL objects which changed since they were indexed are re-indexed on start-up
+     */
+    @Value("${fcrepo.index.rebuild.incremental:false}")
+    private boolean incrementalRebuild;
+
+    /**
+     * Controls whether the index is rebuilt in the background while the repository serves requests
+     */
+    @Value("${fcrepo.index.rebuild.online:false}")
+    private boolean onlineRebuild;
 
     /**
      * Initializes the repository
@@ -74,12 +86,17 @@ public class RepositoryInitializer {
         final PersistentStorageSession session = this.sessionManager.getSession("initializationSession" +
                                                                                  System.currentTimeMillis());
 
-        final File fedoraToOcflIndexFile = this.ocflConstants.getFedoraToOCFLIndexFile();
-        if (!fedoraToOcflIndexFile.exists()) {
-            LOGGER.info("The Fedora to OCFL Index not found at {}. Rebuilding...", fedoraToOcflIndexFile);
-            indexBuilder.rebuild();
+        if (fedoraToOCFLObjectIndex.isEmpty()) {
+            LOGGER.info("The Fedora to OCFL Index is empty. Rebuilding...");
+            rebuildIndex(false);
+        } else if (indexBuilder.isRebuildIncomplete()) {
+            LOGGER.info("The previous index rebuild did not complete. Resuming...");
+            rebuildIndex(true);
+        } else if (incrementalRebuild) {
+            LOGGER.info("The Fedora to OCFL Index already exists. Indexing changed objects...");
+            rebuildIndex(true);
         } else {
-            LOGGER.info("The Fedora to OCFL Index already exists at {}. Skipping rebuild.", fedoraToOcflIndexFile);
+            LOGGER.info("The Fedora to OCFL Index already exists. Skipping rebuild.");
         }
 
         try {
@@ -106,4 +123,15 @@ public class RepositoryInitializer {
         }
     }
 
+    private void rebuildIndex(final boolean changedOnly) {
+        if (onlineRebuild) {
+            LOGGER.info("Rebuilding the index in the background, missing index entries will be resolved on demand.");
+            indexBuilder.rebuildInBackground(changedOnly);
+        } else if (changedOnly) {
+            indexBuilder.rebuildChanged();
+        } else {
+            indexBuilder.rebuild();
+        }
+    }
+
 }
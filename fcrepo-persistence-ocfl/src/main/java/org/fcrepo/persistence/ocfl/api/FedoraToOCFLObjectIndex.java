@@ -19,6 +19,9 @@ package org.fcrepo.persistence.ocfl.api;
 
 import org.fcrepo.persistence.ocfl.impl.FedoraOCFLMapping;
 
+import java.util.Map;
+import java.util.Set;
+
 /**
  * @author dbernstein
  * @since 6.0.0
@@ -53,6 +56,38 @@ public interface FedoraToOCFLObjectIndex {
     public FedoraOCFLMapping addMapping(final String fedoraResourceIdentifier, final String fedoraRootObjectIdentifier,
                            final String ocflObjectId);
 
+    /**
+     * Adds mappings to the index as a single batch, replacing any existing mappings of the fedora resources.
+     *
+     * @param mappings The fedora resource identifiers mapped to the OCFL objects which contain them
+     */
+    public void addMappings(final Map<String, FedoraOCFLMapping> mappings);
+
+    /**
+     * Removes the mappings of fedora resources from the index as a single batch.
+     *
+     * @param fedoraResourceIdentifiers The fedora resource identifiers
+     */
+    public void removeMappings(final Set<String> fedoraResourceIdentifiers);
+
+    /**
+     * Retrieve the fedora resources mapped to OCFL objects.
+     *
+     * @param ocflObjectIds The ocfl object ids
+     * @return the identifiers of the fedora resources contained by the OCFL objects
+     */
+    public Set<String> getFedoraIds(final Set<String> ocflObjectIds);
+
+    /**
+     * @return the ids of all OCFL objects with mappings in the index.
+     */
+    public Set<String> getOcflObjectIds();
+
+    /**
+     * @return true if the index does not contain any mappings.
+     */
+    public boolean isEmpty();
+
     /**
      * Remove all persistent state associated with the index.
      */
@@ -29,8 +29,37 @@ package org.fcrepo.persistence.ocfl.api;
 public interface IndexBuilder {
 
     /**
-     * Rebuild the index.
+     * Rebuild the index from scratch.
      */
     public void rebuild();
+
+    /**
+     * Index only the OCFL objects which have changed since they were last indexed, or were never indexed. Used both to
+     * resume a rebuild which did not complete and to bring a complete index up to date.
+     */
+    public void rebuildChanged();
+
+    /**
+     * @return true if a rebuild was started and did not complete.
+     */
+    public boolean isRebuildIncomplete();
+
+    /**
+     * Start rebuilding the index in a background thread, returning once any existing index state has been reset.
+     * Until the rebuild completes, lookups which miss the index are resolved from the OCFL objects on demand.
+     *
+     * @param changedOnly true to index only the OCFL objects which have changed, as {@link #rebuildChanged()} does,
+     *                    false to rebuild the index from scratch.
+     */
+    public void rebuildInBackground(final boolean changedOnly);
+
+    /**
+     * Index the OCFL object which contains the fedora resource, along with the OCFL objects of its ancestors, if an
+     * index rebuild has not completed. Does nothing once the index is complete.
+     *
+     * @param fedoraResourceIdentifier the fedora resource identifier
+     * @return true if any OCFL object was indexed.
+     */
+    public boolean indexOnDemand(final String fedoraResourceIdentifier);
 }
 
@@ -23,7 +23,9 @@ import org.fcrepo.persistence.api.CommitOption;
 import org.fcrepo.persistence.api.WriteOutcome;
 import org.fcrepo.persistence.api.exceptions.PersistentStorageException;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.time.Instant;
 import java.util.List;
 import java.util.stream.Stream;
@@ -45,6 +47,17 @@ public interface OCFLObjectSession {
      */
     WriteOutcome write(String subpath, InputStream stream) throws PersistentStorageException;
 
+    /**
+     * Write content to the specified subpath by serializing it directly to the staged file, without first
+     * buffering the whole content in memory.
+     *
+     * @param subpath path of the resource to write, relative to the OCFL object
+     * @param writer writes the content to the stream of the staged file
+     * @return information about the data written.
+     * @throws PersistentStorageException thrown if unable to persist content
+     */
+    WriteOutcome write(String subpath, ContentWriter writer) throws PersistentStorageException;
+
     /**
      * Delete a file from this ocfl object.
      *
@@ -97,8 +110,11 @@ public interface OCFLObjectSession {
     /**
      * Verify that the change set in this session can be committed. A PersistentStorageException is thrown if there
      * are any conflicts that would prevent a commit.
+     *
+     * @throws PersistentStorageException if the change set can not be committed, or a
+     *         PersistentItemConflictException if the object was changed by a concurrent transaction.
      */
-    void prepare();
+    void prepare() throws PersistentStorageException;
 
     /**
      * Commit the change set from this session to the OCFL object, following the strategy suggested by commitOption.
@@ -156,4 +172,25 @@ public interface OCFLObjectSession {
      * @return the digest algorithm used by the OCFL object
      */
     DIGEST_ALGORITHM getObjectDigestAlgorithm();
+
+    /**
+     * Get the number of bytes of content currently staged in this session and not yet committed
+     *
+     * @return the staged bytes
+     */
+    long getStagedSize();
+
+    /**
+     * Serializes content to the stream of a file being written in an OCFL object session.
+     */
+    @FunctionalInterface
+    interface ContentWriter {
+        /**
+         * Write the content. The stream is closed by the session once the content has been written.
+         *
+         * @param out stream of the file being written
+         * @throws IOException if unable to write the content
+         */
+        void writeTo(OutputStream out) throws IOException;
+    }
 }
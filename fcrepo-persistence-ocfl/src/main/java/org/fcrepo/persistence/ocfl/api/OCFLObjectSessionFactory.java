@@ -17,6 +17,8 @@
  */
 package org.fcrepo.persistence.ocfl.api;
 
+import org.fcrepo.persistence.api.exceptions.PersistentStorageException;
+
 /**
  * A factory interface for creating {@link org.fcrepo.persistence.ocfl.api.OCFLObjectSession}.
  * @author dbernstein
@@ -29,6 +31,8 @@ public interface OCFLObjectSessionFactory {
      * @param ocflId The OCFL Object identifier
      * @param persistentStorageSessionId The id of the persistent storage session associated with this session.
      * @return The newly created session.
+     * @throws PersistentStorageException if the session could not join the object.
      */
-    OCFLObjectSession create(final String ocflId, final String persistentStorageSessionId);
+    OCFLObjectSession create(final String ocflId, final String persistentStorageSessionId)
+            throws PersistentStorageException;
 }
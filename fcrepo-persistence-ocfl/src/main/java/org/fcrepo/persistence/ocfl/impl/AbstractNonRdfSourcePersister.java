@@ -18,6 +18,7 @@
 package org.fcrepo.persistence.ocfl.impl;
 
 import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static org.fcrepo.kernel.api.RdfLexicon.NON_RDF_SOURCE;
 import static org.fcrepo.kernel.api.operations.ResourceOperationType.CREATE;
 import static org.fcrepo.persistence.common.ResourceHeaderUtils.newResourceHeaders;
@@ -29,7 +30,10 @@ import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.relati
 import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.resolveOCFLSubpath;
 
 import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.fcrepo.kernel.api.models.ResourceHeaders;
 import org.fcrepo.kernel.api.operations.CreateResourceOperation;
 import org.fcrepo.kernel.api.operations.NonRdfSourceOperation;
@@ -56,6 +60,15 @@ abstract class AbstractNonRdfSourcePersister extends AbstractPersister {
 
     private static final Logger log = LoggerFactory.getLogger(AbstractNonRdfSourcePersister.class);
 
+    /*
+     * Computes the digests of binaries in parallel with writing them to the staging directory. Idle workers are
+     * released, so the pool only holds threads while binaries are being written.
+     */
+    private static final ExecutorService DIGEST_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+            .setNameFormat("fcrepo-ocfl-digest-%d")
+            .setDaemon(true)
+            .build());
+
     /**
      * Constructor
      */
@@ -93,9 +106,11 @@ abstract class AbstractNonRdfSourcePersister extends AbstractPersister {
             final var multiDigestWrapper = new MultiDigestInputStreamWrapper(
                     nonRdfSourceOperation.getContentStream(),
                     providedDigests,
-                    Arrays.asList(objectSession.getObjectDigestAlgorithm()));
+                    Arrays.asList(objectSession.getObjectDigestAlgorithm()),
+                    DIGEST_EXECUTOR);
             final var contentStream = multiDigestWrapper.getInputStream();
 
+            final long start = System.nanoTime();
             outcome = (FileWriteOutcome) objectSession.write(subpath, contentStream);
 
             // Verify that the content matches the provided digests
@@ -104,6 +119,7 @@ abstract class AbstractNonRdfSourcePersister extends AbstractPersister {
             }
             // Store the computed and verified digests in the write outcome
             outcome.setDigests(multiDigestWrapper.getDigests());
+            logThroughput(resourceId, outcome.getContentSize(), System.nanoTime() - start);
         }
 
         // Write resource headers
@@ -183,6 +199,14 @@ abstract class AbstractNonRdfSourcePersister extends AbstractPersister {
         }
     }
 
+    private static void logThroughput(final String resourceId, final long size, final long elapsedNanos) {
+        if (log.isDebugEnabled()) {
+            final double seconds = Math.max(elapsedNanos, 1) / 1e9;
+            log.debug("Ingested {} bytes for {} in {} ms ({} MB/s)", size, resourceId,
+                    NANOSECONDS.toMillis(elapsedNanos), format("%.1f", size / seconds / (1024 * 1024)));
+        }
+    }
+
     /**
      * @param op the operation
      * @return Returns true if the operation involved persisting an external binary
@@ -76,8 +76,7 @@ abstract class AbstractPersister implements Persister {
      */
     protected static void writeHeaders(final OCFLObjectSession session, final ResourceHeaders headers,
             final String subpath) throws PersistentStorageException {
-        final var headerStream = serializeHeaders(headers);
-        session.write(getSidecarSubpath(subpath), headerStream);
+        session.write(getSidecarSubpath(subpath), out -> serializeHeaders(headers, out));
     }
 
     /**
@@ -0,0 +1,278 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.ocfl.impl;
+
+import org.fcrepo.persistence.api.exceptions.PersistentStorageException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Forces the files written by commits to OCFL objects to the storage device, according to a {@link DurabilityMode}.
+ *
+ * In the async and group modes the files are forced by a single flusher thread. The flusher collects the commits
+ * made within the flush window after the first waiting commit, and forces the distinct files and directories of all
+ * of them in one pass, so that an inventory or directory changed by many commits is forced once per window.
+ *
+ * @author bbpennel
+ * @since 6.0.0
+ */
+public class CommitFlusher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CommitFlusher.class);
+
+    // Queued to stop the flusher thread once the commits queued before it are forced
+    private static final Flush STOP = new Flush(List.of());
+
+    private final DurabilityMode mode;
+
+    private final long windowNanos;
+
+    private final BlockingQueue<Flush> pending = new LinkedBlockingQueue<>();
+
+    private final Thread flusherThread;
+
+    private volatile boolean shutdown;
+
+    private final AtomicLong commitCount = new AtomicLong();
+
+    private final AtomicLong flushCount = new AtomicLong();
+
+    private final AtomicLong forcedCount = new AtomicLong();
+
+    private final AtomicLong failureCount = new AtomicLong();
+
+    /*
+     * Files of a commit waiting to be forced
+     */
+    private static class Flush {
+        private final Collection<Path> paths;
+
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private Flush(final Collection<Path> paths) {
+            this.paths = paths;
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param mode the durability mode
+     * @param windowMillis the time in milliseconds over which commits are collected before their files are forced,
+     *        in the async and group modes
+     */
+    public CommitFlusher(final DurabilityMode mode, final long windowMillis) {
+        this.mode = mode;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        if (mode == DurabilityMode.ASYNC || mode == DurabilityMode.GROUP) {
+            flusherThread = new Thread(this::runFlusher, "ocfl-commit-flusher");
+            flusherThread.setDaemon(true);
+            flusherThread.start();
+        } else {
+            flusherThread = null;
+        }
+        LOGGER.info("OCFL commits are made durable with mode {}", mode);
+    }
+
+    /**
+     * @return the durability mode
+     */
+    public DurabilityMode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return true if committed files are forced to the storage device
+     */
+    public boolean isEnabled() {
+        return mode != DurabilityMode.NONE;
+    }
+
+    /**
+     * Force the files written by a commit to the storage device, returning once they are durable if the mode
+     * requires it. Paths which do not exist are ignored.
+     *
+     * @param paths the files and directories written by the commit
+     * @throws PersistentStorageException if the files could not be forced
+     */
+    public void flush(final Collection<Path> paths) throws PersistentStorageException {
+        if (!isEnabled() || paths.isEmpty()) {
+            return;
+        }
+        commitCount.incrementAndGet();
+
+        if (mode == DurabilityMode.FSYNC || shutdown) {
+            try {
+                force(new LinkedHashSet<>(paths));
+            } catch (final IOException e) {
+                failureCount.incrementAndGet();
+                throw new PersistentStorageException("Failed to force committed files to storage", e);
+            }
+            return;
+        }
+
+        final var flush = new Flush(paths);
+        pending.add(flush);
+        if (shutdown) {
+            // The flusher may have stopped before this commit was queued
+            forcePending();
+        }
+        if (mode == DurabilityMode.ASYNC) {
+            return;
+        }
+
+        try {
+            flush.done.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PersistentStorageException("Interrupted while waiting for committed files to be forced", e);
+        } catch (final ExecutionException e) {
+            throw new PersistentStorageException("Failed to force committed files to storage", e.getCause());
+        }
+    }
+
+    private void runFlusher() {
+        boolean stopping = false;
+        while (!stopping) {
+            final List<Flush> group = new ArrayList<>();
+            try {
+                Flush next = pending.take();
+                final long deadline = System.nanoTime() + windowNanos;
+                while (next != null) {
+                    if (next == STOP) {
+                        stopping = true;
+                        break;
+                    }
+                    group.add(next);
+                    final long remaining = deadline - System.nanoTime();
+                    next = remaining > 0 ? pending.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                }
+            } catch (final InterruptedException e) {
+                // The interrupt is not restored, as it would close the channels of the files still to be forced
+                stopping = true;
+            }
+            if (stopping) {
+                pending.drainTo(group);
+            }
+            forceGroup(group);
+        }
+    }
+
+    private void forceGroup(final List<Flush> group) {
+        if (group.isEmpty()) {
+            return;
+        }
+        final Set<Path> paths = new LinkedHashSet<>();
+        group.forEach(flush -> paths.addAll(flush.paths));
+        try {
+            force(paths);
+            flushCount.incrementAndGet();
+            group.forEach(flush -> flush.done.complete(null));
+        } catch (final IOException | RuntimeException e) {
+            LOGGER.error("Failed to force the files of {} commits to storage", group.size(), e);
+            failureCount.addAndGet(group.size());
+            group.forEach(flush -> flush.done.completeExceptionally(e));
+        }
+    }
+
+    private void force(final Set<Path> paths) throws IOException {
+        for (final Path path : paths) {
+            try (final var channel = FileChannel.open(path, READ)) {
+                channel.force(true);
+                forcedCount.incrementAndGet();
+            } catch (final NoSuchFileException e) {
+                LOGGER.debug("Not forcing {}, it no longer exists", path);
+            } catch (final IOException e) {
+                // Directories can not be opened on all platforms
+                if (!Files.isDirectory(path)) {
+                    throw e;
+                }
+                LOGGER.debug("Unable to force directory {}", path, e);
+            }
+        }
+    }
+
+    /**
+     * Stop the flusher thread, forcing the files of any commits which are still waiting.
+     */
+    public void shutdown() {
+        shutdown = true;
+        if (flusherThread != null) {
+            pending.add(STOP);
+            try {
+                flusherThread.join(TimeUnit.SECONDS.toMillis(30));
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        forcePending();
+    }
+
+    private void forcePending() {
+        final List<Flush> remaining = new ArrayList<>();
+        pending.drainTo(remaining);
+        forceGroup(remaining);
+    }
+
+    /**
+     * @return the number of commits whose files were flushed
+     */
+    public long getCommitCount() {
+        return commitCount.get();
+    }
+
+    /**
+     * @return the number of passes in which the files of one or more queued commits were forced
+     */
+    public long getFlushCount() {
+        return flushCount.get();
+    }
+
+    /**
+     * @return the number of files and directories forced
+     */
+    public long getForcedCount() {
+        return forcedCount.get();
+    }
+
+    /**
+     * @return the number of commits whose files could not be forced, which may not survive a crash
+     */
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+}
@@ -24,45 +24,62 @@ import edu.wisc.library.ocfl.api.model.CommitInfo;
 import edu.wisc.library.ocfl.api.model.DigestAlgorithm;
 import edu.wisc.library.ocfl.api.model.FileChangeType;
 import edu.wisc.library.ocfl.api.model.FileDetails;
+import edu.wisc.library.ocfl.api.model.ObjectDetails;
 import edu.wisc.library.ocfl.api.model.ObjectVersionId;
 import edu.wisc.library.ocfl.api.model.VersionDetails;
 import edu.wisc.library.ocfl.api.model.VersionId;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.DeferredFileOutputStream;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.SystemUtils;
+import org.fcrepo.kernel.api.exception.RepositoryRuntimeException;
 import org.fcrepo.kernel.api.exception.UnsupportedAlgorithmException;
 import org.fcrepo.kernel.api.utils.ContentDigest;
 import org.fcrepo.kernel.api.utils.ContentDigest.DIGEST_ALGORITHM;
 import org.fcrepo.persistence.api.CommitOption;
 import org.fcrepo.persistence.api.WriteOutcome;
+import org.fcrepo.persistence.api.exceptions.PersistentItemConflictException;
 import org.fcrepo.persistence.api.exceptions.PersistentItemNotFoundException;
 import org.fcrepo.persistence.api.exceptions.PersistentSessionClosedException;
 import org.fcrepo.persistence.api.exceptions.PersistentStorageException;
 import org.fcrepo.persistence.common.FileWriteOutcome;
+import org.fcrepo.persistence.common.MemoryWriteOutcome;
 import org.fcrepo.persistence.ocfl.api.OCFLObjectSession;
 import org.fcrepo.persistence.ocfl.api.OCFLVersion;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
 import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -70,23 +87,81 @@ import java.util.stream.Stream;
 import static edu.wisc.library.ocfl.api.OcflOption.MOVE_SOURCE;
 import static edu.wisc.library.ocfl.api.OcflOption.OVERWRITE;
 import static java.lang.String.format;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
 import static org.fcrepo.persistence.api.CommitOption.NEW_VERSION;
+import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.MUTABLE_HEAD_DIRECTORY;
+import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.resolveObjectRootPath;
 
 /**
  * Default implementation of an OCFL object session, which stages changes to the
  * file system prior to committing.
  *
+ * Serialized content no larger than the memory staging threshold is staged in memory instead, and is only
+ * written to the OCFL object when the session is committed.
+ *
+ * When the storage root of the OCFL repository is known, committed files are read directly from their path on disk,
+ * so that they can be delivered from their file channel.
+ *
+ * When version stamps are provided, the session joins the stamp of its object when it is created, and prepare fails
+ * with a conflict if another session has committed changes to the object since then.
+ *
+ * When a mutable HEAD compactor is provided, revisions committed to the mutable HEAD are recorded with it, so that
+ * the mutable HEAD is compacted once it has grown too large.
+ *
+ * When a commit flusher is provided and the storage root is known, the files and directories written by a commit are
+ * handed to the flusher once the commit completes, so that they are forced to storage according to its durability
+ * mode.
+ *
  * @author bbpennel
  */
 public class DefaultOCFLObjectSession implements OCFLObjectSession {
 
     private static final Logger log = LoggerFactory.getLogger(DefaultOCFLObjectSession.class);
 
+    // Subpath under which the description of the object is cached
+    private static final String INVENTORY_SUBPATH = "inventory.json";
+
+    // Name of the inventory files of an OCFL object, which is the prefix of their sidecar files
+    private static final String INVENTORY_FILE = "inventory.json";
+
+    // Directory holding the inventory of the mutable HEAD, within the mutable HEAD directory
+    private static final String MUTABLE_HEAD_INVENTORY_DIRECTORY = "head";
+
+    // Size of the chunks in which content streams are written to the staging path
+    private static final int TRANSFER_BUFFER_SIZE = 1024 * 1024;
+
+    // Transfer buffers which are not in use, shared by all sessions
+    private static final BlockingQueue<TransferBuffer> TRANSFER_BUFFERS = new ArrayBlockingQueue<>(16);
+
+    /*
+     * Buffers for copying a content stream to the staging path. Streams can only be read into a heap array, which is
+     * then copied into the direct buffer written to the file.
+     */
+    private static class TransferBuffer {
+        private final byte[] chunk = new byte[TRANSFER_BUFFER_SIZE];
+
+        private final ByteBuffer direct = ByteBuffer.allocateDirect(TRANSFER_BUFFER_SIZE);
+    }
+
     private final String objectIdentifier;
 
     // Path where changes to the OCFL object in this session are staged
     private final Path stagingPath;
 
+    // Maximum size in bytes of serialized content staged in memory, or 0 to stage all content on disk
+    private final int memoryStagingThreshold;
+
+    // Encoded subpath to the content staged in memory, which is never also staged on disk
+    private final Map<String, byte[]> memoryStaged = new ConcurrentHashMap<>();
+
+    // Encoded subpath to the number of bytes staged for it, in memory or on disk
+    private final Map<String, Long> stagedSizes = new ConcurrentHashMap<>();
+
+    // Total number of bytes staged, counted as content is written rather than measured from the staging path
+    private final AtomicLong stagedSize = new AtomicLong();
+
     private Set<String> deletePaths;
 
     private boolean objectDeleted;
@@ -96,6 +171,25 @@ public class DefaultOCFLObjectSession implements OCFLObjectSession {
 
     private final MutableOcflRepository ocflRepository;
 
+    private final InventoryCache inventoryCache;
+
+    // Root of the local OCFL storage which committed files are read from, or null to read through the repository
+    private final Path storageRootPath;
+
+    // Version stamps of the objects being changed, or null if the session does not check for conflicts
+    private final OCFLObjectVersionStamps versionStamps;
+
+    // Version of the object when this session joined its stamp
+    private final long joinedVersion;
+
+    private boolean joined;
+
+    // Compactor recording the revisions committed to the mutable HEAD, or null if they are not recorded
+    private final MutableHeadCompactor mutableHeadCompactor;
+
+    // Flusher forcing committed files to storage, or null if they are left to the operating system
+    private final CommitFlusher commitFlusher;
+
     private CommitOption commitOption;
 
     private final Instant created;
@@ -109,16 +203,143 @@ public class DefaultOCFLObjectSession implements OCFLObjectSession {
      */
     public DefaultOCFLObjectSession(final String objectIdentifier, final Path stagingPath,
             final MutableOcflRepository ocflRepository, final CommitOption commitOption) {
-        this.objectIdentifier = objectIdentifier;
-        this.stagingPath = stagingPath.resolve(encode(objectIdentifier));
-        this.ocflRepository = ocflRepository;
-        this.commitOption = commitOption;
+        this(new Builder(objectIdentifier, stagingPath, ocflRepository, commitOption), 0);
+    }
+
+    private DefaultOCFLObjectSession(final Builder builder, final long joinedVersion) {
+        this.objectIdentifier = builder.objectIdentifier;
+        this.stagingPath = builder.stagingPath.resolve(encode(objectIdentifier));
+        this.memoryStagingThreshold = builder.memoryStagingThreshold;
+        this.ocflRepository = builder.ocflRepository;
+        this.inventoryCache = builder.inventoryCache;
+        this.storageRootPath = builder.storageRootPath;
+        this.versionStamps = builder.versionStamps;
+        this.joinedVersion = joinedVersion;
+        this.joined = versionStamps != null;
+        this.mutableHeadCompactor = builder.mutableHeadCompactor;
+        this.commitFlusher = builder.commitFlusher;
+        this.commitOption = builder.commitOption;
         this.deletePaths = new HashSet<>();
         this.objectDeleted = false;
         this.sessionClosed = false;
         this.created = Instant.now();
     }
 
+    /**
+     * Start building an OCFL object session, which by default shares no state with other sessions
+     *
+     * @param objectIdentifier identifier for the OCFL object
+     * @param stagingPath path in which changes to the OCFL object will be staged.
+     * @param ocflRepository the OCFL repository in which the object is stored.
+     * @param commitOption the commit option to use
+     * @return the builder
+     */
+    public static Builder builder(final String objectIdentifier, final Path stagingPath,
+            final MutableOcflRepository ocflRepository, final CommitOption commitOption) {
+        return new Builder(objectIdentifier, stagingPath, ocflRepository, commitOption);
+    }
+
+    /**
+     * Builds an OCFL object session with the optional state it shares with other sessions
+     */
+    public static class Builder {
+
+        private final String objectIdentifier;
+
+        private final Path stagingPath;
+
+        private final MutableOcflRepository ocflRepository;
+
+        private final CommitOption commitOption;
+
+        private InventoryCache inventoryCache = new InventoryCache(0);
+
+        private int memoryStagingThreshold;
+
+        private Path storageRootPath;
+
+        private OCFLObjectVersionStamps versionStamps;
+
+        private MutableHeadCompactor mutableHeadCompactor;
+
+        private CommitFlusher commitFlusher;
+
+        private Builder(final String objectIdentifier, final Path stagingPath,
+                final MutableOcflRepository ocflRepository, final CommitOption commitOption) {
+            this.objectIdentifier = objectIdentifier;
+            this.stagingPath = stagingPath;
+            this.ocflRepository = ocflRepository;
+            this.commitOption = commitOption;
+        }
+
+        /**
+         * @param inventoryCache the cache of OCFL object descriptions shared between sessions
+         * @return this builder
+         */
+        public Builder inventoryCache(final InventoryCache inventoryCache) {
+            this.inventoryCache = inventoryCache;
+            return this;
+        }
+
+        /**
+         * @param memoryStagingThreshold the maximum size in bytes of serialized content to stage in memory, or 0 to
+         *        stage all content on disk
+         * @return this builder
+         */
+        public Builder memoryStagingThreshold(final int memoryStagingThreshold) {
+            this.memoryStagingThreshold = memoryStagingThreshold;
+            return this;
+        }
+
+        /**
+         * @param storageRootPath the storage root of the OCFL repository on the local file system, or null if
+         *        committed files must be read through the repository
+         * @return this builder
+         */
+        public Builder storageRootPath(final Path storageRootPath) {
+            this.storageRootPath = storageRootPath;
+            return this;
+        }
+
+        /**
+         * @param versionStamps the version stamps used to detect conflicting changes to the object, or null if
+         *        conflicts are not checked
+         * @return this builder
+         */
+        public Builder versionStamps(final OCFLObjectVersionStamps versionStamps) {
+            this.versionStamps = versionStamps;
+            return this;
+        }
+
+        /**
+         * @param mutableHeadCompactor the compactor to record revisions of the mutable HEAD with, and whose
+         *        compactions of the object are waited for before reading it, or null
+         * @return this builder
+         */
+        public Builder mutableHeadCompactor(final MutableHeadCompactor mutableHeadCompactor) {
+            this.mutableHeadCompactor = mutableHeadCompactor;
+            return this;
+        }
+
+        /**
+         * @param commitFlusher the flusher forcing committed files to storage, or null
+         * @return this builder
+         */
+        public Builder commitFlusher(final CommitFlusher commitFlusher) {
+            this.commitFlusher = commitFlusher;
+            return this;
+        }
+
+        /**
+         * @return the session, joined to the version stamp of its object if version stamps were given
+         * @throws PersistentItemConflictException if the object could not be joined before the lock timeout
+         */
+        public DefaultOCFLObjectSession build() throws PersistentItemConflictException {
+            final long joinedVersion = versionStamps == null ? 0 : versionStamps.join(objectIdentifier);
+            return new DefaultOCFLObjectSession(this, joinedVersion);
+        }
+    }
+
     private String encode(final String value) {
         if (SystemUtils.IS_OS_WINDOWS) {
             final String encoded;
@@ -147,6 +368,142 @@ public class DefaultOCFLObjectSession implements OCFLObjectSession {
     @Override
     public synchronized WriteOutcome write(final String subpath, final InputStream stream)
             throws PersistentStorageException {
+        try {
+            final var stagedPath = prepareStagedPath(subpath);
+            try {
+                // write contents to subpath within the staging path
+                final long size = transfer(stream, stagedPath);
+                memoryStaged.remove(encode(subpath));
+                recordStaged(encode(subpath), size);
+            } catch (final IOException e) {
+                throw new PersistentStorageException("Unable to persist content to " + stagedPath, e);
+            }
+
+            return new FileWriteOutcome(stagedPath);
+        } finally {
+            try {
+                stream.close();
+            } catch (final IOException e) {
+                log.error("Failed to close inputstream while writing {}", subpath, e);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * If the content can not be written in full, the partially written file is removed from the staging path.
+     */
+    @Override
+    public synchronized WriteOutcome write(final String subpath, final ContentWriter writer)
+            throws PersistentStorageException {
+        if (memoryStagingThreshold > 0) {
+            return writeToMemory(subpath, writer);
+        }
+
+        final var stagedPath = prepareStagedPath(subpath);
+        long size = 0;
+        var written = false;
+        try (final var counted = new CountingOutputStream(Files.newOutputStream(stagedPath));
+             final var out = new BufferedOutputStream(counted)) {
+            writer.writeTo(out);
+            out.flush();
+            size = counted.getByteCount();
+            written = true;
+        } catch (final IOException e) {
+            throw new PersistentStorageException("Unable to persist content to " + stagedPath, e);
+        } finally {
+            if (!written) {
+                deletePartiallyWritten(stagedPath);
+            }
+        }
+
+        recordStaged(encode(subpath), size);
+        return new FileWriteOutcome(stagedPath);
+    }
+
+    /*
+     * Copies a stream to a file in large chunks through a direct buffer, which avoids the many small writes of a
+     * stream copy and does not leave a large temporary direct buffer cached on each writing thread. Returns the number
+     * of bytes copied.
+     */
+    private static long transfer(final InputStream stream, final Path stagedPath) throws IOException {
+        var buffer = TRANSFER_BUFFERS.poll();
+        if (buffer == null) {
+            buffer = new TransferBuffer();
+        }
+        long total = 0;
+        try (final var channel = FileChannel.open(stagedPath, CREATE, TRUNCATE_EXISTING, WRITE)) {
+            int read;
+            while ((read = stream.readNBytes(buffer.chunk, 0, buffer.chunk.length)) > 0) {
+                total += read;
+                buffer.direct.clear();
+                buffer.direct.put(buffer.chunk, 0, read);
+                buffer.direct.flip();
+                while (buffer.direct.hasRemaining()) {
+                    channel.write(buffer.direct);
+                }
+            }
+        } finally {
+            TRANSFER_BUFFERS.offer(buffer);
+        }
+        return total;
+    }
+
+    /*
+     * Writes content to memory, switching to the staged file once the content exceeds the memory staging threshold.
+     * The staging directory is only created if the content is written to the staged file.
+     */
+    private WriteOutcome writeToMemory(final String subpath, final ContentWriter writer)
+            throws PersistentStorageException {
+        assertSessionOpen();
+
+        final var encodedSubpath = encode(subpath);
+        final var stagedPath = resolveStagedPath(encodedSubpath);
+        final var deferred = new DeferredFileOutputStream(memoryStagingThreshold, stagedPath.toFile());
+        var written = false;
+        try (final var out = new BufferedOutputStream(deferred)) {
+            writer.writeTo(out);
+            out.flush();
+            written = true;
+        } catch (final IOException e) {
+            throw new PersistentStorageException("Unable to persist content to " + stagedPath, e);
+        } finally {
+            if (!written && !deferred.isInMemory()) {
+                deletePartiallyWritten(stagedPath);
+            }
+        }
+
+        recordStaged(encodedSubpath, deferred.getByteCount());
+        if (!deferred.isInMemory()) {
+            memoryStaged.remove(encodedSubpath);
+            return new FileWriteOutcome(stagedPath);
+        }
+
+        // Replace any content previously staged on disk for this subpath
+        try {
+            Files.deleteIfExists(stagedPath);
+        } catch (final IOException e) {
+            throw new PersistentStorageException("Unable to replace staged content " + stagedPath, e);
+        }
+        final byte[] content = deferred.getData();
+        memoryStaged.put(encodedSubpath, content);
+        return new MemoryWriteOutcome(content.length, Instant.now());
+    }
+
+    private void deletePartiallyWritten(final Path stagedPath) {
+        try {
+            Files.deleteIfExists(stagedPath);
+        } catch (final IOException e) {
+            log.error("Failed to clean up partially written file {}", stagedPath, e);
+        }
+    }
+
+    /*
+     * Resolves the path in the staging directory where the content of a subpath will be written, creating any
+     * missing parent directories.
+     */
+    private Path prepareStagedPath(final String subpath) throws PersistentStorageException {
         final var encodedSubpath = encode(subpath);
 
         // Check that the staging path exists now that we are writing.
@@ -155,26 +512,15 @@ public class DefaultOCFLObjectSession implements OCFLObjectSession {
         }
         // Determine the staging path for the incoming content
         final var stagedPath = resolveStagedPath(encodedSubpath);
-        try {
-            assertSessionOpen();
-
-            final var parentPath = stagedPath.getParent();
+        assertSessionOpen();
 
+        try {
             // Fill in any missing parent directories
-            Files.createDirectories(parentPath);
-            // write contents to subpath within the staging path
-            Files.copy(stream, stagedPath, StandardCopyOption.REPLACE_EXISTING);
-
-            return new FileWriteOutcome(stagedPath);
+            Files.createDirectories(stagedPath.getParent());
         } catch (final IOException e) {
             throw new PersistentStorageException("Unable to persist content to " + stagedPath, e);
-        } finally {
-            try {
-                stream.close();
-            } catch (final IOException e) {
-                log.error("Failed to close inputstream while writing {}", subpath, e);
-            }
         }
+        return stagedPath;
     }
 
     /**
@@ -190,10 +536,13 @@ public class DefaultOCFLObjectSession implements OCFLObjectSession {
         final var encodedSubpath = encode(subpath);
 
         final var stagedPath = resolveStagedPath(encodedSubpath);
-        final var hasStagedChanges = hasStagedChanges(stagedPath);
+        final var stagedInMemory = memoryStaged.remove(encodedSubpath) != null;
+        clearStaged(encodedSubpath);
+        final var stagedOnDisk = hasStagedChanges(stagedPath);
+        final var hasStagedChanges = stagedInMemory || stagedOnDisk;
 
         // If the subpath exists in the staging path for this session, then delete from there
-        if (hasStagedChanges) {
+        if (stagedOnDisk) {
             // delete the file from the staging path
             try {
                 Files.delete(stagedPath);
@@ -235,6 +584,8 @@ public class DefaultOCFLObjectSession implements OCFLObjectSession {
     }
 
     private void cleanupStaging() throws PersistentStorageException {
+        memoryStaged.clear();
+        clearStaged();
         try {
             final var stagingDir = stagingPath.toFile();
             if (stagingDir.exists()) {
@@ -245,18 +596,17 @@ public class DefaultOCFLObjectSession implements OCFLObjectSession {
         }
     }
 
-    private boolean newInSession(final String encodedSubpath) {
+    private boolean newInSession(final String encodedSubpath) throws PersistentStorageException {
         // If the object was deleted in this session, then content can only be new
         if (objectDeleted) {
             return true;
         }
         // If the object isn't created yet, then there is no history for the subpath
-        if (!ocflRepository.containsObject(objectIdentifier)) {
+        if (isNewObject()) {
             return true;
         }
         // determine if this subpath exists in the OCFL object
-        return !ocflRepository.getObject(ObjectVersionId.head(objectIdentifier))
-                .containsFile(encodedSubpath);
+        return !describeObject().getHeadVersion().containsFile(encodedSubpath);
     }
 
     /**
@@ -269,8 +619,11 @@ public class DefaultOCFLObjectSession implements OCFLObjectSession {
         final var encodedSubpath = encode(subpath);
 
         final var stagedPath = resolveStagedPath(encodedSubpath);
+        final var stagedContent = memoryStaged.get(encodedSubpath);
 
-        if (hasStagedChanges(stagedPath)) {
+        if (stagedContent != null) {
+            return new ByteArrayInputStream(stagedContent);
+        } else if (hasStagedChanges(stagedPath)) {
             // prioritize read of the staged version of the file
             try {
                 return new FileInputStream(stagedPath.toFile());
@@ -304,9 +657,17 @@ public class DefaultOCFLObjectSession implements OCFLObjectSession {
     }
 
     private InputStream readVersion(final String subpath, final ObjectVersionId version)
-            throws PersistentItemNotFoundException {
+            throws PersistentStorageException {
+        awaitCompaction();
         final var encodedSubpath = encode(subpath);
 
+        if (storageRootPath != null) {
+            final var localStream = readLocalFile(subpath, encodedSubpath, version);
+            if (localStream != null) {
+                return localStream;
+            }
+        }
+
         try {
             // read the head version of the file from the ocfl object
             final var file = ocflRepository.getObject(version)
@@ -324,6 +685,42 @@ public class DefaultOCFLObjectSession implements OCFLObjectSession {
         }
     }
 
+    /*
+     * Open a committed file directly from the local storage root, resolving its path from the cached description of
+     * the object, or return null if it can not be read directly.
+     */
+    private InputStream readLocalFile(final String subpath, final String encodedSubpath,
+                                      final ObjectVersionId version) throws PersistentStorageException {
+        final var details = describeObject();
+        final var versionDetails = version.isHead() ? details.getHeadVersion()
+                : details.getVersion(version.getVersionId());
+        if (versionDetails == null) {
+            return null;
+        }
+        final var file = versionDetails.getFile(encodedSubpath);
+        if (file == null) {
+            throw new PersistentItemNotFoundException(format("Could not find %s within object %s version %s",
+                    subpath, objectIdentifier, version.getVersionId()));
+        }
+        return openLocalFile(file.getStorageRelativePath());
+    }
+
+    /*
+     * Open a committed file from its path in the local storage root, or return null if it can not be read directly.
+     */
+    private InputStream openLocalFile(final String storageRelativePath) {
+        final var localPath = storageRootPath.resolve(storageRelativePath);
+        if (!Files.isRegularFile(localPath)) {
+            return null;
+        }
+        try {
+            return new FileInputStream(localPath.toFile());
+        } catch (final FileNotFoundException e) {
+            log.debug("Unable to open {} directly, reading through the repository", localPath, e);
+            return null;
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -344,8 +741,27 @@ public class DefaultOCFLObjectSession implements OCFLObjectSession {
      * {@inheritDoc}
      */
     @Override
-    public synchronized void prepare() {
-        // TODO check for conflicts and lock the object
+    public synchronized void prepare() throws PersistentStorageException {
+        assertSessionOpen();
+
+        if (joined && hasChanges()) {
+            versionStamps.prepare(objectIdentifier, joinedVersion, this);
+        }
+    }
+
+    private boolean hasChanges() {
+        return objectDeleted || !isStagingEmpty() || !deletePaths.isEmpty() ||
+                (commitOption == NEW_VERSION && !isNewObject() && ocflRepository.hasStagedChanges(objectIdentifier));
+    }
+
+    /*
+     * Release the version stamp of the object, marking it as changed if this session prepared and committed it
+     */
+    private void releaseVersionStamp(final boolean committed) {
+        if (joined) {
+            joined = false;
+            versionStamps.release(objectIdentifier, this, committed);
+        }
     }
 
     /**
@@ -362,26 +778,141 @@ public class DefaultOCFLObjectSession implements OCFLObjectSession {
         // Close the session
         sessionClosed = true;
 
-        // Perform requested deletion of the object
-        if (objectDeleted) {
-            deleteExistingObject();
-            // no new state provided for the object, this is just committing the delete
-            if (isStagingEmpty()) {
-                return null;
+        final long stagedSize = mutableHeadCompactor == null ? 0 : getStagedSize();
+        final Set<String> stagedSubpaths = isFlushed() ? getStagedSubpaths() : Set.of();
+
+        boolean committed = false;
+        try {
+            // Perform requested deletion of the object
+            if (objectDeleted) {
+                deleteExistingObject();
+                // no new state provided for the object, this is just committing the delete
+                if (isStagingEmpty()) {
+                    return null;
+                }
+                // new state exists, object is being recreated after delete
             }
-            // new state exists, object is being recreated after delete
-        }
 
-        // Determine if a new object needs to be created
-        if (isNewObject()) {
-            return commitNewObject(commitOption);
-        } else {
-            return commitUpdates(commitOption);
+            // Determine if a new object needs to be created
+            final String versionId;
+            if (isNewObject()) {
+                versionId = commitNewObject(commitOption);
+            } else {
+                versionId = commitUpdates(commitOption);
+            }
+            inventoryCache.invalidate(objectIdentifier);
+            committed = true;
+            recordMutableHeadRevision(stagedSize);
+            flushCommittedFiles(stagedSubpaths);
+            return versionId;
+        } finally {
+            if (!committed) {
+                // Even a failed commit may have changed the inventory
+                inventoryCache.invalidate(objectIdentifier);
+            }
+            memoryStaged.clear();
+            clearStaged();
+            releaseVersionStamp(true);
         }
     }
 
     private void deleteExistingObject() {
         ocflRepository.purgeObject(objectIdentifier);
+        inventoryCache.invalidate(objectIdentifier);
+        if (mutableHeadCompactor != null) {
+            mutableHeadCompactor.clear(objectIdentifier);
+        }
+    }
+
+    /*
+     * Record a revision committed to the mutable HEAD with the compactor. Committing to a new version also commits
+     * the mutable HEAD, leaving nothing to compact.
+     */
+    private void recordMutableHeadRevision(final long stagedSize) {
+        if (mutableHeadCompactor == null) {
+            return;
+        }
+        if (commitOption == NEW_VERSION) {
+            mutableHeadCompactor.clear(objectIdentifier);
+        } else if (stagedSize > 0 || !deletePaths.isEmpty()) {
+            mutableHeadCompactor.recordRevision(objectIdentifier, stagedSize);
+        }
+    }
+
+    private boolean isFlushed() {
+        return commitFlusher != null && commitFlusher.isEnabled() && storageRootPath != null;
+    }
+
+    /*
+     * Encoded subpaths of the content staged by this session
+     */
+    private Set<String> getStagedSubpaths() throws PersistentStorageException {
+        final Set<String> subpaths = new HashSet<>(memoryStaged.keySet());
+        if (!isDiskStagingEmpty()) {
+            try (final var files = Files.walk(stagingPath)) {
+                files.filter(Files::isRegularFile)
+                        .map(file -> FilenameUtils.separatorsToUnix(stagingPath.relativize(file).toString()))
+                        .forEach(subpaths::add);
+            } catch (final IOException e) {
+                throw new PersistentStorageException("Unable to list staged files of " + objectIdentifier, e);
+            }
+        }
+        return subpaths;
+    }
+
+    /*
+     * Flush the content files written by the commit, along with the inventories of the object and the directories
+     * containing them, located from the storage paths of the files in the HEAD of the object. The committed inventory
+     * is read through the inventory cache, so it is not read again by the next session. The commit has succeeded by
+     * the time the files are flushed, so a failure to flush them is logged and counted by the flusher rather than
+     * failing the commit.
+     */
+    private void flushCommittedFiles(final Set<String> stagedSubpaths) {
+        if (!isFlushed()) {
+            return;
+        }
+
+        try {
+            Path objectRoot = null;
+            final List<Path> contentFiles = new ArrayList<>();
+            for (final var file : describeObject().getHeadVersion().getFiles()) {
+                if (objectRoot == null) {
+                    objectRoot = resolveObjectRootPath(storageRootPath, file.getStorageRelativePath(),
+                            file.getPath());
+                }
+                if (stagedSubpaths.contains(file.getPath())) {
+                    contentFiles.add(storageRootPath.resolve(file.getStorageRelativePath()));
+                }
+            }
+            if (objectRoot == null) {
+                return;
+            }
+
+            final Set<Path> paths = new LinkedHashSet<>();
+            for (final Path contentFile : contentFiles) {
+                paths.add(contentFile);
+                for (Path dir = contentFile.getParent(); dir != null && dir.startsWith(objectRoot);
+                        dir = dir.getParent()) {
+                    paths.add(dir);
+                }
+            }
+            for (final Path inventoryDir : List.of(objectRoot, objectRoot.resolve(MUTABLE_HEAD_DIRECTORY)
+                    .resolve(MUTABLE_HEAD_INVENTORY_DIRECTORY))) {
+                if (Files.isDirectory(inventoryDir)) {
+                    try (final var files = Files.list(inventoryDir)) {
+                        files.filter(file -> file.getFileName().toString().startsWith(INVENTORY_FILE))
+                                .forEach(paths::add);
+                    }
+                    paths.add(inventoryDir);
+                }
+            }
+            paths.add(objectRoot.resolve(MUTABLE_HEAD_DIRECTORY));
+            paths.add(objectRoot.getParent());
+
+            commitFlusher.flush(paths);
+        } catch (final PersistentStorageException | IOException e) {
+            log.error("Committed {}, but its files could not be forced to storage", objectIdentifier, e);
+        }
     }
 
     private String commitNewObject(final CommitOption commitOption) throws PersistentStorageException {
@@ -393,7 +924,8 @@ public class DefaultOCFLObjectSession implements OCFLObjectSession {
         }
 
         if (NEW_VERSION.equals(commitOption)) {
-            // perform commit to new version
+            // perform commit to new version, which requires all of the content to be on disk
+            writeMemoryStagedToDisk();
             return ocflRepository.putObject(ObjectVersionId.head(objectIdentifier),
                     stagingPath,
                     commitInfo,
@@ -403,24 +935,27 @@ public class DefaultOCFLObjectSession implements OCFLObjectSession {
         } else {
             // perform commit to head version
             return ocflRepository.stageChanges(ObjectVersionId.head(objectIdentifier), commitInfo, updater -> {
-                updater.addPath(stagingPath, "", MOVE_SOURCE);
+                if (!isDiskStagingEmpty()) {
+                    updater.addPath(stagingPath, "", MOVE_SOURCE);
+                }
+                addMemoryStaged(updater);
             }).getVersionId().toString();
         }
     }
 
-    private String commitUpdates(final CommitOption commitOption) {
+    private String commitUpdates(final CommitOption commitOption) throws PersistentStorageException {
         // Nothing to do if there are no staged files, no deletes, and not committing the mutable HEAD
         if (isStagingEmpty() && deletePaths.isEmpty() &&
                 !(commitOption == NEW_VERSION && ocflRepository.hasStagedChanges(objectIdentifier))) {
-            return ocflRepository.describeVersion(ObjectVersionId.head(objectIdentifier))
-                    .getVersionId().toString();
+            return describeObject().getHeadVersionId().toString();
         }
 
         // Updater which pushes all updated files and then performs queued deletes
         final Consumer<OcflObjectUpdater> commitChangeUpdater = updater -> {
-            if (!isStagingEmpty()) {
+            if (!isDiskStagingEmpty()) {
                 updater.addPath(stagingPath, "", MOVE_SOURCE, OVERWRITE);
             }
+            addMemoryStaged(updater);
             deletePaths.forEach(updater::removeFile);
         };
 
@@ -458,6 +993,7 @@ public class DefaultOCFLObjectSession implements OCFLObjectSession {
     public synchronized void close() throws PersistentStorageException {
         sessionClosed = true;
 
+        releaseVersionStamp(false);
         cleanupStaging();
     }
 
@@ -466,7 +1002,7 @@ public class DefaultOCFLObjectSession implements OCFLObjectSession {
         assertSessionOpen();
         //get a list of all versions in the object.
         try {
-            return this.ocflRepository.describeObject(this.objectIdentifier)
+            return describeObject()
                     .getVersionMap().values().stream()
                     // do not include mutable versions
                     .filter(version -> !version.isMutable())
@@ -480,7 +1016,7 @@ public class DefaultOCFLObjectSession implements OCFLObjectSession {
                                 .setCreatedBy(getCreatedBy(version.getCommitInfo()))
                                 .setCreated(toMementoInstant(version.getCreated()));
                     }).collect(Collectors.toList());
-        } catch (final NotFoundException e) {
+        } catch (final PersistentItemNotFoundException e) {
             throw new PersistentItemNotFoundException(format(
                     "Could not list versions, object %s was not found.",
                     objectIdentifier), e);
@@ -498,7 +1034,7 @@ public class DefaultOCFLObjectSession implements OCFLObjectSession {
         final var encodedSubpath = encode(subpath);
 
         try {
-            final var headDesc = ocflRepository.describeVersion(ObjectVersionId.head(objectIdentifier));
+            final var headDesc = describeObject().getHeadVersion();
 
             return ocflRepository.fileChangeHistory(objectIdentifier, encodedSubpath).getFileChanges().stream()
                     .filter(change -> change.getChangeType() == FileChangeType.UPDATE)
@@ -511,7 +1047,7 @@ public class DefaultOCFLObjectSession implements OCFLObjectSession {
                                 .setCreatedBy(getCreatedBy(change.getCommitInfo()))
                                 .setCreated(toMementoInstant(change.getTimestamp()));
                     }).collect(Collectors.toList());
-        } catch (final NotFoundException e) {
+        } catch (final NotFoundException | PersistentItemNotFoundException e) {
             throw new PersistentItemNotFoundException(format(
                     "Could not list versions, object %s subpath %s was not found.",
                     objectIdentifier, subpath), e);
@@ -522,7 +1058,7 @@ public class DefaultOCFLObjectSession implements OCFLObjectSession {
     public Stream<String> listHeadSubpaths() throws PersistentStorageException {
         assertSessionOpen();
 
-        return this.ocflRepository.describeVersion(ObjectVersionId.head(this.objectIdentifier))
+        return describeObject().getHeadVersion()
                 .getFiles().stream()
                 .map(FileDetails::getPath)
                 .map(this::decode);
@@ -541,16 +1077,94 @@ public class DefaultOCFLObjectSession implements OCFLObjectSession {
         }
     }
 
+    @Override
+    public long getStagedSize() {
+        return stagedSize.get();
+    }
+
+    private void recordStaged(final String encodedSubpath, final long size) {
+        final Long previous = stagedSizes.put(encodedSubpath, size);
+        stagedSize.addAndGet(previous == null ? size : size - previous);
+    }
+
+    private void clearStaged(final String encodedSubpath) {
+        final Long previous = stagedSizes.remove(encodedSubpath);
+        if (previous != null) {
+            stagedSize.addAndGet(-previous);
+        }
+    }
+
+    private void clearStaged() {
+        stagedSizes.clear();
+        stagedSize.set(0);
+    }
+
     private boolean isStagingEmpty() {
+        return memoryStaged.isEmpty() && isDiskStagingEmpty();
+    }
+
+    private boolean isDiskStagingEmpty() {
         return !stagingPath.toFile().exists() || Objects.requireNonNull(stagingPath.toFile().listFiles()).length == 0;
     }
 
+    /*
+     * Add the content staged in memory to the OCFL object being updated.
+     */
+    private void addMemoryStaged(final OcflObjectUpdater updater) {
+        memoryStaged.forEach((encodedSubpath, content) ->
+                updater.writeFile(new ByteArrayInputStream(content), encodedSubpath, OVERWRITE));
+    }
+
+    /*
+     * Write the content staged in memory to the staging path, for commits which read the staging path directly.
+     */
+    private void writeMemoryStagedToDisk() throws PersistentStorageException {
+        for (final var entry : memoryStaged.entrySet()) {
+            final var stagedPath = resolveStagedPath(entry.getKey());
+            try {
+                Files.createDirectories(stagedPath.getParent());
+                Files.write(stagedPath, entry.getValue());
+            } catch (final IOException e) {
+                throw new PersistentStorageException("Unable to persist content to " + stagedPath, e);
+            }
+        }
+        memoryStaged.clear();
+    }
+
     private boolean hasStagedChanges(final Path path) {
         return path.toFile().exists();
     }
 
     private boolean isNewObject() {
-        return !ocflRepository.containsObject(objectIdentifier);
+        return inventoryCache.getIfPresent(inventoryKey()) == null && !ocflRepository.containsObject(objectIdentifier);
+    }
+
+    private String inventoryKey() {
+        return inventoryCache.key(objectIdentifier, INVENTORY_SUBPATH, null);
+    }
+
+    /*
+     * Describe the committed state of the object, reading its inventory only if the description is not cached.
+     */
+    private ObjectDetails describeObject() throws PersistentStorageException {
+        awaitCompaction();
+        return inventoryCache.get(objectIdentifier, INVENTORY_SUBPATH, null, () -> {
+            try {
+                return ocflRepository.describeObject(objectIdentifier);
+            } catch (final NotFoundException e) {
+                throw new PersistentItemNotFoundException(format("Object %s was not found", objectIdentifier), e);
+            }
+        });
+    }
+
+    /*
+     * Wait for a compaction of the mutable HEAD of the object to stage its state again, so that its last version is
+     * not read in place of its mutable HEAD.
+     */
+    private void awaitCompaction() throws PersistentStorageException {
+        if (mutableHeadCompactor != null) {
+            mutableHeadCompactor.awaitStaged(objectIdentifier);
+        }
     }
 
     private Path resolveStagedPath(final String encodedSubpath) {
@@ -582,7 +1196,12 @@ public class DefaultOCFLObjectSession implements OCFLObjectSession {
         if (isNewObject()) {
             return ContentDigest.DEFAULT_DIGEST_ALGORITHM;
         }
-        final DigestAlgorithm ocflAlg = ocflRepository.describeObject(this.objectIdentifier).getDigestAlgorithm();
+        final DigestAlgorithm ocflAlg;
+        try {
+            ocflAlg = describeObject().getDigestAlgorithm();
+        } catch (final PersistentStorageException e) {
+            throw new RepositoryRuntimeException(e);
+        }
         final DIGEST_ALGORITHM fcrepoAlg = DIGEST_ALGORITHM.fromAlgorithm(ocflAlg.getJavaStandardName());
         if (DIGEST_ALGORITHM.MISSING.equals(fcrepoAlg)) {
             throw new UnsupportedAlgorithmException(String.format("OCFL object %s specifies a digest algorithm "
@@ -21,8 +21,10 @@ import static org.fcrepo.persistence.api.CommitOption.NEW_VERSION;
 import static org.fcrepo.persistence.api.CommitOption.UNVERSIONED;
 
 import java.io.File;
+import java.nio.file.Path;
 
 import org.fcrepo.persistence.api.CommitOption;
+import org.fcrepo.persistence.api.exceptions.PersistentStorageException;
 import org.fcrepo.persistence.ocfl.api.OCFLObjectSession;
 import org.fcrepo.persistence.ocfl.api.OCFLObjectSessionFactory;
 
@@ -52,11 +54,33 @@ public class DefaultOCFLObjectSessionFactory implements OCFLObjectSessionFactory
     @Value("${fcrepo.autoversioning.enabled:true}")
     private boolean autoVersioningEnabled;
 
+    /**
+     * Maximum size in bytes of serialized RDF and headers which are staged in memory until commit, rather than on
+     * disk. 0 stages all content on disk.
+     */
+    @Value("${fcrepo.ocfl.staging.memory.threshold:0}")
+    private int memoryStagingThreshold;
+
     private File ocflStagingDir;
 
     @Inject
     private MutableOcflRepository ocflRepository;
 
+    @Inject
+    private InventoryCache inventoryCache;
+
+    @Inject
+    private OCFLConstants ocflConstants;
+
+    @Inject
+    private OCFLObjectVersionStamps versionStamps;
+
+    @Inject
+    private MutableHeadCompactor mutableHeadCompactor;
+
+    @Inject
+    private CommitFlusher commitFlusher;
+
     /**
      * Default Constructor.  You can set the ocfl staging, storage root, and work directories by setting the following
      * system properties: fcrepo.ocfl.staging.dir, fcrepo.ocfl.storage.root.dir, and  fcrepo.ocfl.work.dir.  If these
@@ -80,12 +104,34 @@ public class DefaultOCFLObjectSessionFactory implements OCFLObjectSessionFactory
     }
 
     @Override
-    public OCFLObjectSession create(final String ocflId, final String persistentStorageSessionId) {
+    public OCFLObjectSession create(final String ocflId, final String persistentStorageSessionId)
+            throws PersistentStorageException {
 
         final File stagingDirectory = new File(this.ocflStagingDir,
                 persistentStorageSessionId == null ? "read-only" : persistentStorageSessionId);
-        return new DefaultOCFLObjectSession(ocflId, stagingDirectory.toPath(),
-                this.ocflRepository, defaultCommitOption());
+        // read-only sessions never commit, so do not check for conflicts or flush, but still wait for compactions
+        final boolean readOnly = persistentStorageSessionId == null;
+        final var builder = DefaultOCFLObjectSession.builder(ocflId, stagingDirectory.toPath(),
+                this.ocflRepository, defaultCommitOption())
+                .inventoryCache(this.inventoryCache)
+                .memoryStagingThreshold(this.memoryStagingThreshold)
+                .storageRootPath(storageRootPath())
+                .mutableHeadCompactor(this.mutableHeadCompactor);
+        if (!readOnly) {
+            builder.versionStamps(this.versionStamps)
+                    .commitFlusher(this.commitFlusher);
+        }
+        return builder.build();
+    }
+
+    /*
+     * The storage root from which committed files are read directly, or null to read them through the repository.
+     */
+    private Path storageRootPath() {
+        if (ocflConstants == null) {
+            return null;
+        }
+        return ocflConstants.getStorageRootDir().toPath();
     }
 
     private CommitOption defaultCommitOption() {
@@ -0,0 +1,63 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.ocfl.impl;
+
+/**
+ * Controls when the files written by a commit to an OCFL object are forced to the storage device.
+ *
+ * @author bbpennel
+ * @since 6.0.0
+ */
+public enum DurabilityMode {
+
+    /**
+     * Files are never forced, and reach the storage device whenever the operating system writes them back.
+     */
+    NONE,
+
+    /**
+     * Files are forced in the background within the flush window after they are committed. Commits do not wait for
+     * them, so a crash may lose the commits of the last window.
+     */
+    ASYNC,
+
+    /**
+     * Commits wait for their files to be forced together with the files of all other commits made within the same
+     * flush window, so that concurrent commits share the cost of forcing the storage device.
+     */
+    GROUP,
+
+    /**
+     * Every commit forces its own files before it completes.
+     */
+    FSYNC;
+
+    /**
+     * @param value the name of a mode, in any case
+     * @return the durability mode
+     * @throws IllegalArgumentException if the value is not the name of a mode
+     */
+    public static DurabilityMode fromString(final String value) {
+        for (final DurabilityMode mode : values()) {
+            if (mode.name().equalsIgnoreCase(value.trim())) {
+                return mode;
+            }
+        }
+        throw new IllegalArgumentException("Unknown OCFL durability mode: " + value);
+    }
+}
@@ -17,23 +17,39 @@
  */
 package org.fcrepo.persistence.ocfl.impl;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.fcrepo.persistence.ocfl.api.FedoraOCFLMappingNotFoundException;
 import org.fcrepo.persistence.ocfl.api.FedoraToOCFLObjectIndex;
+import org.fcrepo.persistence.ocfl.api.IndexBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
 import org.springframework.stereotype.Component;
 
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.nio.file.Files;
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.sql.DataSource;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
- * An simple in-memory implementation of the {@link org.fcrepo.persistence.ocfl.api.FedoraToOCFLObjectIndex}
+ * A database backed implementation of the {@link org.fcrepo.persistence.ocfl.api.FedoraToOCFLObjectIndex}, which
+ * holds the most recently used mappings in memory.
  *
  * @author dbernstein
  * @since 6.0.0
@@ -43,37 +59,128 @@ public class FedoraToOCFLObjectIndexImpl implements FedoraToOCFLObjectIndex {
 
     private static Logger LOGGER = LoggerFactory.getLogger(FedoraToOCFLObjectIndexImpl.class);
 
-    private Map<String, FedoraOCFLMapping> fedoraOCFLMappingMap = Collections.synchronizedMap(new HashMap<>());
+    private static final String MAPPING_TABLE = "ocfl_id_map";
+
+    private static final String FEDORA_ID_COLUMN = "fedora_id";
+
+    private static final String FEDORA_ROOT_ID_COLUMN = "fedora_root_id";
+
+    private static final String OCFL_ID_COLUMN = "ocfl_id";
+
+    private static final Map<String, String> DDL_MAP = Map.of(
+            "MySQL", "sql/mysql-ocfl-index.sql",
+            "H2", "sql/default-ocfl-index.sql",
+            "PostgreSQL", "sql/default-ocfl-index.sql",
+            "MariaDB", "sql/default-ocfl-index.sql"
+    );
+
+    /*
+     * Get the mapping of a fedora resource.
+     */
+    private static final String SELECT_MAPPING = "SELECT " + FEDORA_ROOT_ID_COLUMN + ", " + OCFL_ID_COLUMN +
+            " FROM " + MAPPING_TABLE + " WHERE " + FEDORA_ID_COLUMN + " = :fedoraId";
+
+    /*
+     * Get the resources of a set of OCFL objects.
+     */
+    private static final String SELECT_FEDORA_IDS = "SELECT " + FEDORA_ID_COLUMN + " FROM " + MAPPING_TABLE +
+            " WHERE " + OCFL_ID_COLUMN + " IN (:ocflIds)";
+
+    /*
+     * Get the OCFL objects with mappings.
+     */
+    private static final String SELECT_OCFL_IDS = "SELECT DISTINCT " + OCFL_ID_COLUMN + " FROM " + MAPPING_TABLE;
+
+    /*
+     * Check for any mapping.
+     */
+    private static final String SELECT_ANY_MAPPING = "SELECT " + FEDORA_ID_COLUMN + " FROM " + MAPPING_TABLE +
+            " LIMIT 1";
+
+    private static final String INSERT_MAPPING = "INSERT INTO " + MAPPING_TABLE + " (" + FEDORA_ID_COLUMN + ", " +
+            FEDORA_ROOT_ID_COLUMN + ", " + OCFL_ID_COLUMN + ") VALUES (:fedoraId, :fedoraRootId, :ocflId)";
+
+    /*
+     * Add a mapping, replacing any existing mapping of the fedora resource, by database platform.
+     */
+    private static final Map<String, String> UPSERT_MAPPING_MAP = Map.of(
+            "H2", "MERGE INTO " + MAPPING_TABLE + " (" + FEDORA_ID_COLUMN + ", " + FEDORA_ROOT_ID_COLUMN + ", " +
+                    OCFL_ID_COLUMN + ") KEY (" + FEDORA_ID_COLUMN + ") VALUES (:fedoraId, :fedoraRootId, :ocflId)",
+            "PostgreSQL", INSERT_MAPPING + " ON CONFLICT (" + FEDORA_ID_COLUMN + ") DO UPDATE SET " +
+                    FEDORA_ROOT_ID_COLUMN + " = EXCLUDED." + FEDORA_ROOT_ID_COLUMN + ", " +
+                    OCFL_ID_COLUMN + " = EXCLUDED." + OCFL_ID_COLUMN,
+            "MySQL", INSERT_MAPPING + " ON DUPLICATE KEY UPDATE " +
+                    FEDORA_ROOT_ID_COLUMN + " = VALUES(" + FEDORA_ROOT_ID_COLUMN + "), " +
+                    OCFL_ID_COLUMN + " = VALUES(" + OCFL_ID_COLUMN + ")",
+            "MariaDB", INSERT_MAPPING + " ON DUPLICATE KEY UPDATE " +
+                    FEDORA_ROOT_ID_COLUMN + " = VALUES(" + FEDORA_ROOT_ID_COLUMN + "), " +
+                    OCFL_ID_COLUMN + " = VALUES(" + OCFL_ID_COLUMN + ")"
+    );
+
+    /*
+     * Remove the mappings of a set of fedora resources.
+     */
+    private static final String DELETE_MAPPINGS = "DELETE FROM " + MAPPING_TABLE + " WHERE " + FEDORA_ID_COLUMN +
+            " IN (:fedoraIds)";
+
+    /*
+     * Remove all mappings.
+     */
+    private static final String DELETE_ALL_MAPPINGS = "DELETE FROM " + MAPPING_TABLE;
 
-    private final File fedoraToOcflIndexFile;
+    @Inject
+    private DataSource dataSource;
 
     /**
-     * Constructor.
-     *
-     * On disk index file is a text file with 3 values per line separated by tabs.
-     * 1. fedora identifier (ie. info:fedora/parent/object1 or info:fedora/object1)
-     * 2. fedora root object ID (ie. info:fedora/parent or info:fedora/object1). Used for root of Archival groups.
-     * 3. OCFL object ID (ie. parent/object1 or object1)
-     *
-     * @throws IOException If we can't access the file.
+     * Resolves mappings missing from the index while it is being rebuilt.
      */
-    public FedoraToOCFLObjectIndexImpl() throws IOException {
-        fedoraToOcflIndexFile = new OCFLConstants().getFedoraToOCFLIndexFile();
-        if (fedoraToOcflIndexFile.exists() && fedoraToOcflIndexFile.canRead()) {
-            try (var lines = Files.lines(fedoraToOcflIndexFile.toPath())) {
-               lines.filter(l -> {
-                    final String m = l.split("\t")[0];
-                    return (!fedoraOCFLMappingMap.containsKey(m));
-                }).forEach(l -> {
-                    final String[] map = l.split("\t");
-                    if (map.length == 3) {
-                        final FedoraOCFLMapping ocflMapping = new FedoraOCFLMapping(map[1], map[2]);
-                        fedoraOCFLMappingMap.put(map[0], ocflMapping);
-                    } else {
-                        LOGGER.warn("Expected 3 tab-separated values, found {}. Ignoring line.", map.length);
-                    }
-                });
-            }
+    @Inject
+    private Provider<IndexBuilder> indexBuilder;
+
+    /**
+     * Maximum number of mappings to hold in memory.
+     */
+    @Value("${fcrepo.ocfl.index.cache.size:100000}")
+    private long cacheSize;
+
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    private String upsertMapping;
+
+    /*
+     * Fedora resource id to its mapping, for the most recently used mappings.
+     */
+    private Cache<String, FedoraOCFLMapping> mappingCache;
+
+    /**
+     * Connect to the database and create the index table if it does not exist.
+     */
+    @PostConstruct
+    public void setup() {
+        jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+        mappingCache = CacheBuilder.newBuilder()
+                .maximumSize(cacheSize)
+                .build();
+
+        final var productName = lookupProductName();
+        final var ddl = DDL_MAP.get(productName);
+        if (ddl == null) {
+            throw new IllegalStateException("Unknown database platform: " + productName);
+        }
+        upsertMapping = UPSERT_MAPPING_MAP.get(productName);
+        LOGGER.info("Applying ddl: {}", ddl);
+        DatabasePopulatorUtils.execute(
+                new ResourceDatabasePopulator(new DefaultResourceLoader().getResource("classpath:" + ddl)),
+                dataSource);
+    }
+
+    private String lookupProductName() {
+        try (final var connection = dataSource.getConnection()) {
+            final var productName = connection.getMetaData().getDatabaseProductName();
+            LOGGER.debug("Identified database as: {}", productName);
+            return productName;
+        } catch (final SQLException e) {
+            throw new RuntimeException(e);
         }
     }
 
@@ -82,62 +189,100 @@ public class FedoraToOCFLObjectIndexImpl implements FedoraToOCFLObjectIndex {
             throws FedoraOCFLMappingNotFoundException {
 
         LOGGER.debug("getting {}", fedoraResourceIdentifier);
-        final FedoraOCFLMapping m = fedoraOCFLMappingMap.get(fedoraResourceIdentifier);
+        var m = mappingCache.getIfPresent(fedoraResourceIdentifier);
         if (m == null) {
-            throw new FedoraOCFLMappingNotFoundException(fedoraResourceIdentifier);
+            m = selectMapping(fedoraResourceIdentifier);
+            if (m == null && indexBuilder != null && indexBuilder.get().indexOnDemand(fedoraResourceIdentifier)) {
+                m = selectMapping(fedoraResourceIdentifier);
+            }
+            if (m == null) {
+                throw new FedoraOCFLMappingNotFoundException(fedoraResourceIdentifier);
+            }
+            mappingCache.put(fedoraResourceIdentifier, m);
         }
 
         return m;
     }
 
+    private FedoraOCFLMapping selectMapping(final String fedoraResourceIdentifier) {
+        final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
+        parameterSource.addValue("fedoraId", fedoraResourceIdentifier);
+        final List<FedoraOCFLMapping> mappings = jdbcTemplate.query(SELECT_MAPPING, parameterSource,
+                (rs, rowNum) -> new FedoraOCFLMapping(rs.getString(FEDORA_ROOT_ID_COLUMN),
+                        rs.getString(OCFL_ID_COLUMN)));
+        return mappings.isEmpty() ? null : mappings.get(0);
+    }
+
     @Override
     public FedoraOCFLMapping addMapping(final String fedoraResourceIdentifier,
                                         final String fedoraRootObjectResourceId,
                                         final String ocflObjectId) {
-        FedoraOCFLMapping mapping = fedoraOCFLMappingMap.get(fedoraRootObjectResourceId);
-
+        final var mappings = new LinkedHashMap<String, FedoraOCFLMapping>();
+        var mapping = mappingCache.getIfPresent(fedoraRootObjectResourceId);
         if (mapping == null) {
+            // the OCFL object id is minted from the root resource, so writing the root mapping again is harmless
             mapping = new FedoraOCFLMapping(fedoraRootObjectResourceId, ocflObjectId);
-            fedoraOCFLMappingMap.put(fedoraRootObjectResourceId, mapping);
-            writeMappingToDisk(fedoraRootObjectResourceId, mapping);
+            mappings.put(fedoraRootObjectResourceId, mapping);
         }
 
         if (!fedoraResourceIdentifier.equals(fedoraRootObjectResourceId)) {
-            fedoraOCFLMappingMap.put(fedoraResourceIdentifier, mapping);
-            writeMappingToDisk(fedoraResourceIdentifier, mapping);
+            mappings.put(fedoraResourceIdentifier, mapping);
         }
+        addMappings(mappings);
 
         LOGGER.debug("added mapping {} for {}", mapping, fedoraResourceIdentifier);
         return mapping;
     }
 
-    /**
-     * Write any added mappings to the on-disk index.
-     * @param fedoraId The internal Fedora identifier.
-     * @param fedoraOCFLMapping The Fedora to OCFL mapping object.
-     */
-    private void writeMappingToDisk(final String fedoraId, final FedoraOCFLMapping fedoraOCFLMapping) {
-        try {
-            if (!fedoraToOcflIndexFile.exists()) {
-                final File dir = fedoraToOcflIndexFile.getParentFile();
-                if (!dir.exists()) {
-                    dir.mkdirs();
-                }
-            }
-            try (var fw = new FileWriter(fedoraToOcflIndexFile, true); var output= new BufferedWriter(fw)) {
-                output.write(String.format("%s\t%s\t%s\n", fedoraId, fedoraOCFLMapping.getRootObjectIdentifier(),
-                        fedoraOCFLMapping.getOcflObjectId()));
-            }
-        } catch (IOException exception) {
-            LOGGER.warn("Unable to create/write on disk FedoraToOCFL Mapping at {}", fedoraToOcflIndexFile);
+    @Override
+    public void addMappings(final Map<String, FedoraOCFLMapping> mappings) {
+        if (mappings.isEmpty()) {
+            return;
         }
+        final List<SqlParameterSource> batch = new ArrayList<>(mappings.size());
+        mappings.forEach((fedoraId, mapping) -> batch.add(new MapSqlParameterSource()
+                .addValue("fedoraId", fedoraId)
+                .addValue("fedoraRootId", mapping.getRootObjectIdentifier())
+                .addValue("ocflId", mapping.getOcflObjectId())));
+        jdbcTemplate.batchUpdate(upsertMapping, batch.toArray(new SqlParameterSource[0]));
+        mappingCache.putAll(mappings);
     }
 
     @Override
-    public void reset() {
-        fedoraOCFLMappingMap.clear();
-        if (fedoraToOcflIndexFile.exists()) {
-            fedoraToOcflIndexFile.delete();
+    public void removeMappings(final Set<String> fedoraResourceIdentifiers) {
+        if (fedoraResourceIdentifiers.isEmpty()) {
+            return;
+        }
+        final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
+        parameterSource.addValue("fedoraIds", fedoraResourceIdentifiers);
+        jdbcTemplate.update(DELETE_MAPPINGS, parameterSource);
+        mappingCache.invalidateAll(fedoraResourceIdentifiers);
+    }
+
+    @Override
+    public Set<String> getFedoraIds(final Set<String> ocflObjectIds) {
+        if (ocflObjectIds.isEmpty()) {
+            return Set.of();
         }
+        final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
+        parameterSource.addValue("ocflIds", ocflObjectIds);
+        return new HashSet<>(jdbcTemplate.queryForList(SELECT_FEDORA_IDS, parameterSource, String.class));
+    }
+
+    @Override
+    public Set<String> getOcflObjectIds() {
+        return new HashSet<>(jdbcTemplate.queryForList(SELECT_OCFL_IDS, Collections.emptyMap(), String.class));
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return jdbcTemplate.queryForList(SELECT_ANY_MAPPING, Collections.emptyMap(), String.class).isEmpty();
+    }
+
+    @Override
+    public void reset() {
+        jdbcTemplate.update(DELETE_ALL_MAPPINGS, Collections.emptyMap());
+        mappingCache.invalidateAll();
+        LOGGER.info("Reset the fedora to OCFL index");
     }
 }
@@ -18,26 +18,46 @@
 package org.fcrepo.persistence.ocfl.impl;
 
 import edu.wisc.library.ocfl.api.OcflRepository;
+import edu.wisc.library.ocfl.api.model.ObjectVersionId;
 import org.fcrepo.kernel.api.ContainmentIndex;
-import org.fcrepo.kernel.api.TransactionManager;
+import org.fcrepo.kernel.api.IndexRebuildStatus;
 import org.fcrepo.kernel.api.exception.RepositoryRuntimeException;
 import org.fcrepo.kernel.api.identifiers.FedoraId;
 import org.fcrepo.persistence.api.exceptions.PersistentStorageException;
 import org.fcrepo.persistence.ocfl.api.FedoraToOCFLObjectIndex;
 import org.fcrepo.persistence.ocfl.api.IndexBuilder;
+import org.fcrepo.persistence.ocfl.api.OCFLObjectSession;
 import org.fcrepo.persistence.ocfl.api.OCFLObjectSessionFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.inject.Inject;
+import java.io.File;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 
 import static java.lang.String.format;
 
+import static org.fcrepo.kernel.api.FedoraTypes.FEDORA_ID_PREFIX;
 import static org.fcrepo.persistence.common.ResourceHeaderSerializationUtils.deserializeHeaders;
 import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.isSidecarSubpath;
+import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.mintOCFLObjectId;
 
 /**
  * An implementation of {@link IndexBuilder}.  This implementation rebuilds the following indexable state derived
@@ -45,14 +65,75 @@ import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.isSide
  * 1) the link between a {@link org.fcrepo.kernel.api.identifiers.FedoraId} and an OCFL object identifier
  * 2) the containment relationships bewteen {@link org.fcrepo.kernel.api.identifiers.FedoraId}s
  *
+ * OCFL objects are read in parallel by a pool of workers, and the resulting index entries are written in batches
+ * directly to the committed state of the indexes. Each object is recorded in an {@link IndexRebuildCheckpoint} once
+ * its entries are written, so that an interrupted rebuild can be resumed by indexing only the objects which are not
+ * recorded in their current state.
+ *
+ * A rebuild may run in the background while the repository serves requests. Until it completes, a lookup which misses
+ * the index is resolved by indexing the OCFL objects along the path of the requested resource on demand.
+ *
+ * The entries of an object are written while the object is locked against sessions which could commit it, and only if
+ * the object has not changed since it was read, so that a rebuild never overwrites the entries of a concurrent commit.
+ * Objects which changed, or which are in use by a session, are read again once the listing is complete.
+ *
+ * The entries of an object replace all of its existing entries, so resources removed from an object since it was last
+ * indexed are removed from the indexes. Once the listing is complete, the entries of objects which are no longer in
+ * the OCFL repository are removed as well.
+ *
  * @author dbernstein
  * @since 6.0.0
  */
 @Component
-public class IndexBuilderImpl implements IndexBuilder {
+public class IndexBuilderImpl implements IndexBuilder, IndexRebuildStatus {
 
     private static Logger LOGGER = LoggerFactory.getLogger(IndexBuilderImpl.class);
 
+    // Number of times objects which could not be written because of concurrent commits are read again
+    private static final int DEFERRED_ATTEMPTS = 10;
+
+    // Delay before reading again the objects which could not be written
+    private static final long DEFERRED_RETRY_MILLIS = 1000;
+
+    /**
+     * Number of OCFL objects to read at the same time, 0 uses one worker per available processor.
+     */
+    @Value("${fcrepo.index.rebuild.threads:0}")
+    private int threads;
+
+    /**
+     * Number of index entries to collect before writing them to the indexes.
+     */
+    @Value("${fcrepo.index.rebuild.batch.size:1000}")
+    private int batchSize;
+
+    /**
+     * Minimum number of seconds between progress reports.
+     */
+    @Value("${fcrepo.index.rebuild.report.interval:30}")
+    private long reportInterval;
+
+    private File checkpointFile = new OCFLConstants().getIndexRebuildCheckpointFile();
+
+    private IndexRebuildCheckpoint checkpoint;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    private final AtomicLong objectCount = new AtomicLong();
+
+    private final AtomicLong skippedCount = new AtomicLong();
+
+    private final AtomicLong resourceCount = new AtomicLong();
+
+    private volatile Instant started;
+
+    private volatile Instant completed;
+
+    /**
+     * OCFL objects indexed on demand during the current rebuild, so repeated lookups do not read them again.
+     */
+    private final Set<String> indexedOnDemand = ConcurrentHashMap.newKeySet();
+
     @Inject
     private OCFLObjectSessionFactory objectSessionFactory;
 
@@ -63,86 +144,558 @@ public class IndexBuilderImpl implements IndexBuilder {
     private ContainmentIndex containmentIndex;
 
     @Inject
-    private TransactionManager transactionManager;
+    private OcflRepository ocflRepository;
 
     @Inject
-    private OcflRepository ocflRepository;
+    private OCFLObjectVersionStamps versionStamps;
 
     @Override
     public void rebuild() {
+        index(start(false));
+    }
+
+    @Override
+    public void rebuildChanged() {
+        index(start(true));
+    }
+
+    @Override
+    public void rebuildInBackground(final boolean changedOnly) {
+        final var checkpoint = start(changedOnly);
+        final var thread = new Thread(() -> {
+            try {
+                index(checkpoint);
+            } catch (final RuntimeException e) {
+                LOGGER.error("Index rebuild failed, missing index entries will be resolved on demand until the " +
+                        "rebuild is resumed", e);
+            }
+        }, "fcrepo-index-rebuild");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public boolean isRebuildIncomplete() {
+        return getCheckpoint().isIncomplete();
+    }
 
-        LOGGER.info("Initiating index rebuild.");
-        fedoraToOCFLObjectIndex.reset();
-        final var transaction = transactionManager.create();
-        final var txId = transaction.getId();
-        LOGGER.debug("Reading object ids...");
+    @Override
+    public boolean indexOnDemand(final String fedoraResourceIdentifier) {
+        if (getState() == State.COMPLETE) {
+            return false;
+        }
+
+        final var checkpoint = getCheckpoint();
+        final var batch = new IndexBatch(checkpoint);
+        var indexed = false;
+        for (final var rootId : getPossibleRootIds(fedoraResourceIdentifier)) {
+            final String ocflId;
+            try {
+                ocflId = mintOCFLObjectId(rootId);
+            } catch (final RepositoryRuntimeException e) {
+                // reserved identifier, which cannot be the root of an OCFL object
+                continue;
+            }
+            if (indexedOnDemand.contains(ocflId) || !ocflRepository.containsObject(ocflId)) {
+                continue;
+            }
+            final var inventoryState = getInventoryState(ocflId);
+            if (!checkpoint.isIndexed(ocflId, inventoryState)) {
+                LOGGER.debug("Indexing {} on demand for {}", ocflId, fedoraResourceIdentifier);
+                indexObject(ocflId, inventoryState, batch);
+                indexed = true;
+            }
+            indexedOnDemand.add(ocflId);
+        }
+        batch.flush();
+        // objects in use by a session are indexed by a later lookup
+        indexedOnDemand.removeAll(batch.takeDeferred());
+        return indexed;
+    }
+
+    @Override
+    public State getState() {
+        if (running.get()) {
+            return State.IN_PROGRESS;
+        }
+        return isRebuildIncomplete() ? State.INCOMPLETE : State.COMPLETE;
+    }
+
+    @Override
+    public long getObjectsIndexed() {
+        return objectCount.get();
+    }
+
+    @Override
+    public long getObjectsSkipped() {
+        return skippedCount.get();
+    }
+
+    @Override
+    public long getResourcesIndexed() {
+        return resourceCount.get();
+    }
+
+    @Override
+    public Instant getStarted() {
+        return started;
+    }
+
+    @Override
+    public Instant getCompleted() {
+        return completed;
+    }
+
+    /**
+     * Start an index run, resetting the indexes unless only changed objects are to be indexed.
+     * @param changedOnly true to keep the existing index state.
+     * @return the checkpoint of the run.
+     */
+    private IndexRebuildCheckpoint start(final boolean changedOnly) {
+        if (!running.compareAndSet(false, true)) {
+            throw new RepositoryRuntimeException("An index rebuild is already in progress");
+        }
+        objectCount.set(0);
+        skippedCount.set(0);
+        resourceCount.set(0);
+        started = Instant.now();
+        completed = null;
+
+        final var checkpoint = getCheckpoint();
+        if (changedOnly) {
+            LOGGER.info("Initiating index rebuild of changed objects, {} objects previously indexed.",
+                    checkpoint.size());
+        } else {
+            LOGGER.info("Initiating index rebuild.");
+            fedoraToOCFLObjectIndex.reset();
+            containmentIndex.reset();
+        }
+        indexedOnDemand.clear();
+        checkpoint.start(!changedOnly);
+        return checkpoint;
+    }
+
+    private synchronized IndexRebuildCheckpoint getCheckpoint() {
+        if (checkpoint == null) {
+            checkpoint = new IndexRebuildCheckpoint(checkpointFile);
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Index the OCFL objects, recording each one in the checkpoint once its index entries are written. Objects which
+     * the checkpoint records as indexed in their current state are skipped.
+     * @param checkpoint the checkpoint of the rebuild.
+     */
+    private void index(final IndexRebuildCheckpoint checkpoint) {
+        try {
+            indexObjects(checkpoint);
+            completed = Instant.now();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void indexObjects(final IndexRebuildCheckpoint checkpoint) {
+        final var workers = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        final var executor = Executors.newFixedThreadPool(workers);
+        // Bound the objects waiting to be read so the listing does not get far ahead of the workers.
+        final var inFlight = new Semaphore(workers * 2);
+        final var batch = new IndexBatch(checkpoint);
+        final var listedIds = ConcurrentHashMap.<String>newKeySet();
+        final var failure = new AtomicReference<RuntimeException>();
+        final long start = System.nanoTime();
+        var lastReport = start;
+        LOGGER.info("Reading object ids with {} workers...", workers);
 
         try (final var ocflIds = ocflRepository.listObjectIds()) {
-            ocflIds.forEach(ocflId -> {
-                LOGGER.debug("Reading {}", ocflId);
-                final var objSession = objectSessionFactory.create(ocflId, null);
-
-                //list all the subpaths
-                try (final var subpaths = objSession.listHeadSubpaths()) {
-
-                    final var rootId = new AtomicReference<String>();
-                    final var fedoraIds = new ArrayList<String>();
-
-                    subpaths.forEach(subpath -> {
-                        if (isSidecarSubpath(subpath)) {
-                            //we're only interested in sidecar subpaths
-                            try {
-                                final var headers = deserializeHeaders(objSession.read(subpath));
-                                final var fedoraId = FedoraId.create(headers.getId());
-                                fedoraIds.add(fedoraId.getFullId());
-                                if (headers.isArchivalGroup() || headers.isObjectRoot()) {
-                                    rootId.set(headers.getId());
-                                }
+            final var iterator = ocflIds.iterator();
+            while (iterator.hasNext() && failure.get() == null) {
+                final var ocflId = iterator.next();
+                listedIds.add(ocflId);
+                inFlight.acquireUninterruptibly();
+                executor.execute(() -> {
+                    try {
+                        if (failure.get() == null) {
+                            final var inventoryState = getInventoryState(ocflId);
+                            if (checkpoint.isIndexed(ocflId, inventoryState)) {
+                                skippedCount.incrementAndGet();
+                            } else {
+                                resourceCount.addAndGet(indexObject(ocflId, inventoryState, batch));
+                                objectCount.incrementAndGet();
+                            }
+                        }
+                    } catch (final RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+                final var now = System.nanoTime();
+                if (now - lastReport >= TimeUnit.SECONDS.toNanos(reportInterval)) {
+                    lastReport = now;
+                    reportProgress("Index rebuild in progress", objectCount.get(), skippedCount.get(),
+                            resourceCount.get(), now - start);
+                }
+            }
+        } finally {
+            executor.shutdown();
+            awaitTermination(executor);
+        }
 
-                                if (!fedoraId.isRepositoryRoot()) {
-                                    var parentId = headers.getParent();
+        if (failure.get() != null) {
+            // Entries already collected are still written, so a resumed rebuild does not need to repeat them.
+            try {
+                batch.flush();
+            } catch (final RuntimeException e) {
+                failure.get().addSuppressed(e);
+            }
+            throw failure.get();
+        }
+        batch.flush();
+        final var deferredIndexed = indexDeferred(batch);
+        batch.prune(listedIds);
+        if (!deferredIndexed) {
+            return;
+        }
+        checkpoint.complete();
+        reportProgress("Index rebuild complete", objectCount.get(), skippedCount.get(), resourceCount.get(),
+                System.nanoTime() - start);
+    }
+
+    /**
+     * Read again the objects whose entries could not be written because they were changed or in use by a session,
+     * until they are all written or the attempts are exhausted.
+     * @param batch the batch of the rebuild.
+     * @return true if the entries of all objects were written.
+     */
+    private boolean indexDeferred(final IndexBatch batch) {
+        for (int attempt = 0; attempt < DEFERRED_ATTEMPTS; attempt++) {
+            final var deferred = batch.takeDeferred();
+            if (deferred.isEmpty()) {
+                return true;
+            }
+            LOGGER.debug("Reading {} objects again which were changed during the index rebuild", deferred.size());
+            try {
+                TimeUnit.MILLISECONDS.sleep(DEFERRED_RETRY_MILLIS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RepositoryRuntimeException("Interrupted while rebuilding the index", e);
+            }
+            for (final var ocflId : deferred) {
+                if (ocflRepository.containsObject(ocflId)) {
+                    indexObject(ocflId, getInventoryState(ocflId), batch);
+                }
+            }
+            batch.flush();
+        }
+        final var remaining = batch.takeDeferred();
+        if (remaining.isEmpty()) {
+            return true;
+        }
+        LOGGER.warn("Index rebuild incomplete, {} objects were in use by sessions throughout. They are indexed on " +
+                "demand until the rebuild is resumed", remaining.size());
+        return false;
+    }
+
+    /**
+     * The head version of an OCFL object and when it was created, which changes whenever the inventory does.
+     * @param ocflId the OCFL object id.
+     * @return the state of the object's inventory.
+     */
+    private String getInventoryState(final String ocflId) {
+        final var head = ocflRepository.describeVersion(ObjectVersionId.head(ocflId));
+        return head.getVersionId() + "@" + head.getCreated();
+    }
+
+    /**
+     * The fedora identifiers of the resources which could be the root of an OCFL object containing the resource, from
+     * the resource itself up to the repository root.
+     * @param fedoraResourceIdentifier the fedora resource identifier.
+     * @return the possible root identifiers, closest first.
+     */
+    private static List<String> getPossibleRootIds(final String fedoraResourceIdentifier) {
+        final var rootIds = new ArrayList<String>();
+        var id = FedoraId.create(fedoraResourceIdentifier).getContainingId();
+        while (id.startsWith(FEDORA_ID_PREFIX + "/")) {
+            rootIds.add(id);
+            id = id.substring(0, id.lastIndexOf('/'));
+        }
+        rootIds.add(FEDORA_ID_PREFIX);
+        return rootIds;
+    }
+
+    /**
+     * Read the sidecars of a single OCFL object and add its index entries to the batch.
+     * @param ocflId the OCFL object id.
+     * @param inventoryState the state of the object's inventory before it was read.
+     * @param batch the batch to add the entries to.
+     * @return the number of fedora resources in the object.
+     */
+    private int indexObject(final String ocflId, final String inventoryState, final IndexBatch batch) {
+        LOGGER.debug("Reading {}", ocflId);
+        final var objSession = createReadOnlySession(ocflId);
+
+        //list all the subpaths
+        try (final var subpaths = objSession.listHeadSubpaths()) {
+
+            final var rootId = new AtomicReference<String>();
+            final var fedoraIds = new ArrayList<String>();
+            final var childToParent = new HashMap<FedoraId, FedoraId>();
+            final var deleted = new HashSet<FedoraId>();
+
+            subpaths.forEach(subpath -> {
+                if (isSidecarSubpath(subpath)) {
+                    //we're only interested in sidecar subpaths
+                    try {
+                        final var headers = deserializeHeaders(objSession.read(subpath));
+                        final var fedoraId = FedoraId.create(headers.getId());
+                        fedoraIds.add(fedoraId.getFullId());
+                        if (headers.isDeleted()) {
+                            deleted.add(fedoraId);
+                        }
+                        if (headers.isArchivalGroup() || headers.isObjectRoot()) {
+                            rootId.set(headers.getId());
+                        }
 
-                                    if (parentId == null) {
-                                        if (headers.isObjectRoot()) {
-                                            parentId = FedoraId.getRepositoryRootId().getFullId();
-                                        }
-                                    }
+                        if (!fedoraId.isRepositoryRoot()) {
+                            var parentId = headers.getParent();
 
-                                    if (parentId != null) {
-                                        this.containmentIndex.addContainedBy(txId, FedoraId.create(parentId),
-                                                FedoraId.create(headers.getId()));
-                                    }
+                            if (parentId == null) {
+                                if (headers.isObjectRoot()) {
+                                    parentId = FedoraId.getRepositoryRootId().getFullId();
                                 }
+                            }
 
-                            } catch (PersistentStorageException e) {
-                                throw new RepositoryRuntimeException(format("fedora-to-ocfl index rebuild failed: %s",
-                                        e.getMessage()), e);
+                            if (parentId != null) {
+                                childToParent.put(FedoraId.create(headers.getId()), FedoraId.create(parentId));
                             }
                         }
-                    });
 
-                    // if a resource is not an AG then there should only be a single resource per OCFL object
-                    if (fedoraIds.size() == 1 && rootId.get() == null) {
-                        rootId.set(fedoraIds.get(0));
+                    } catch (PersistentStorageException e) {
+                        throw new RepositoryRuntimeException(format("fedora-to-ocfl index rebuild failed: %s",
+                                e.getMessage()), e);
                     }
+                }
+            });
 
-                    fedoraIds.forEach(fedoraIdentifier -> {
-                        var rootFedoraIdentifier = rootId.get();
-                        if (rootFedoraIdentifier == null) {
-                            rootFedoraIdentifier = fedoraIdentifier;
-                        }
-                        fedoraToOCFLObjectIndex.addMapping(fedoraIdentifier, rootFedoraIdentifier, ocflId);
-                        LOGGER.debug("Rebuilt fedora-to-ocfl object index entry for {}", fedoraIdentifier);
-                    });
+            // if a resource is not an AG then there should only be a single resource per OCFL object
+            if (fedoraIds.size() == 1 && rootId.get() == null) {
+                rootId.set(fedoraIds.get(0));
+            }
 
-                } catch (final PersistentStorageException e) {
-                    throw new RepositoryRuntimeException("Failed to rebuild fedora-to-ocfl index: " +
-                            e.getMessage(), e);
+            final var mappings = new HashMap<String, FedoraOCFLMapping>(fedoraIds.size());
+            fedoraIds.forEach(fedoraIdentifier -> {
+                var rootFedoraIdentifier = rootId.get();
+                if (rootFedoraIdentifier == null) {
+                    rootFedoraIdentifier = fedoraIdentifier;
                 }
+                mappings.put(fedoraIdentifier, new FedoraOCFLMapping(rootFedoraIdentifier, ocflId));
             });
+
+            batch.add(new ObjectEntries(ocflId, inventoryState, childToParent, deleted, mappings));
+            return fedoraIds.size();
+
+        } catch (final PersistentStorageException e) {
+            throw new RepositoryRuntimeException("Failed to rebuild fedora-to-ocfl index: " +
+                    e.getMessage(), e);
+        }
+    }
+
+    private OCFLObjectSession createReadOnlySession(final String ocflId) {
+        try {
+            return objectSessionFactory.create(ocflId, null);
+        } catch (final PersistentStorageException e) {
+            throw new RepositoryRuntimeException("Failed to rebuild fedora-to-ocfl index: " + e.getMessage(), e);
+        }
+    }
+
+    private static Set<FedoraId> toFedoraIds(final Set<String> ids) {
+        return ids.stream().map(FedoraId::create).collect(Collectors.toCollection(HashSet::new));
+    }
+
+    private void reportProgress(final String message, final long objects, final long skipped, final long resources,
+                                final long elapsedNanos) {
+        final double seconds = Math.max(elapsedNanos, 1) / 1e9;
+        LOGGER.info("{}: {} objects ({} resources) indexed and {} unchanged objects skipped in {} seconds, " +
+                "{} objects/sec", message, objects, resources, skipped, format("%.1f", seconds),
+                format("%.1f", (objects + skipped) / seconds));
+    }
+
+    private static void awaitTermination(final ExecutorService executor) {
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOGGER.debug("Waiting for index rebuild workers to finish");
+            }
+        } catch (final InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new RepositoryRuntimeException("Interrupted while rebuilding the index", e);
+        }
+    }
+
+    /**
+     * The index entries of a single OCFL object, as read in a known state of its inventory.
+     */
+    private static class ObjectEntries {
+
+        private final String ocflId;
+
+        private final String inventoryState;
+
+        private final Map<FedoraId, FedoraId> childToParent;
+
+        private final Set<FedoraId> deleted;
+
+        private final Map<String, FedoraOCFLMapping> mappings;
+
+        ObjectEntries(final String ocflId, final String inventoryState, final Map<FedoraId, FedoraId> childToParent,
+                      final Set<FedoraId> deleted, final Map<String, FedoraOCFLMapping> mappings) {
+            this.ocflId = ocflId;
+            this.inventoryState = inventoryState;
+            this.childToParent = childToParent;
+            this.deleted = deleted;
+            this.mappings = mappings;
+        }
+
+        int size() {
+            return childToParent.size() + mappings.size();
+        }
+    }
+
+    /**
+     * Index entries collected from the workers, written out each time batchSize entries have been collected. Writes
+     * are made by one worker at a time while the others continue reading objects, and the objects are recorded in the
+     * checkpoint after their entries are written.
+     *
+     * While a batch is written its objects are locked exclusively, so that no session can commit them until their
+     * entries are written. The entries of objects which are in use by a session, or which have changed since they
+     * were read, are dropped and the objects are deferred to be read again.
+     */
+    private class IndexBatch {
+
+        private final IndexRebuildCheckpoint checkpoint;
+
+        private List<ObjectEntries> objects = new ArrayList<>();
+
+        private int size;
+
+        private final Set<String> deferred = ConcurrentHashMap.newKeySet();
+
+        private final Object writeLock = new Object();
+
+        IndexBatch(final IndexRebuildCheckpoint checkpoint) {
+            this.checkpoint = checkpoint;
         }
 
-        containmentIndex.commitTransaction(transaction);
-        LOGGER.info("Index rebuild complete");
+        void add(final ObjectEntries entries) {
+            final List<ObjectEntries> fullObjects;
+            synchronized (this) {
+                objects.add(entries);
+                size += entries.size();
+                if (size < batchSize) {
+                    return;
+                }
+                fullObjects = objects;
+                objects = new ArrayList<>();
+                size = 0;
+            }
+            write(fullObjects);
+        }
+
+        void flush() {
+            final List<ObjectEntries> remainingObjects;
+            synchronized (this) {
+                remainingObjects = objects;
+                objects = new ArrayList<>();
+                size = 0;
+            }
+            write(remainingObjects);
+        }
+
+        /**
+         * @return the ids of the objects whose entries were dropped since the last call
+         */
+        Set<String> takeDeferred() {
+            final var taken = Set.copyOf(deferred);
+            deferred.removeAll(taken);
+            return taken;
+        }
+
+        /**
+         * Remove the entries of the objects which are indexed or recorded in the checkpoint, but are no longer in the
+         * OCFL repository. Objects in use by a session are left in place, as they may be about to be created.
+         * @param listedIds the ids of the objects listed by the OCFL repository.
+         */
+        void prune(final Set<String> listedIds) {
+            final var removedIds = new HashSet<>(fedoraToOCFLObjectIndex.getOcflObjectIds());
+            removedIds.addAll(checkpoint.getObjectIds());
+            removedIds.removeAll(listedIds);
+            if (removedIds.isEmpty()) {
+                return;
+            }
+            synchronized (writeLock) {
+                for (final var ocflId : removedIds) {
+                    if (!versionStamps.tryLockExclusive(ocflId)) {
+                        continue;
+                    }
+                    try {
+                        if (!ocflRepository.containsObject(ocflId)) {
+                            LOGGER.debug("Removing index entries of {}, which is no longer in the repository",
+                                    ocflId);
+                            final var fedoraIds = fedoraToOCFLObjectIndex.getFedoraIds(Set.of(ocflId));
+                            containmentIndex.removeContainedByBatch(toFedoraIds(fedoraIds));
+                            fedoraToOCFLObjectIndex.removeMappings(fedoraIds);
+                            checkpoint.remove(Set.of(ocflId));
+                        }
+                    } finally {
+                        versionStamps.unlockExclusive(ocflId);
+                    }
+                }
+            }
+        }
+
+        private void write(final List<ObjectEntries> batchObjects) {
+            synchronized (writeLock) {
+                final var locked = new ArrayList<String>(batchObjects.size());
+                try {
+                    final var batchInventoryStates = new HashMap<String, String>();
+                    final var batchChildToParent = new HashMap<FedoraId, FedoraId>();
+                    final var batchDeleted = new HashSet<FedoraId>();
+                    final var batchMappings = new HashMap<String, FedoraOCFLMapping>();
+                    for (final var entries : batchObjects) {
+                        if (!versionStamps.tryLockExclusive(entries.ocflId)) {
+                            deferred.add(entries.ocflId);
+                            continue;
+                        }
+                        locked.add(entries.ocflId);
+                        if (!ocflRepository.containsObject(entries.ocflId)
+                                || !entries.inventoryState.equals(getInventoryState(entries.ocflId))) {
+                            deferred.add(entries.ocflId);
+                            continue;
+                        }
+                        batchInventoryStates.put(entries.ocflId, entries.inventoryState);
+                        batchChildToParent.putAll(entries.childToParent);
+                        batchDeleted.addAll(entries.deleted);
+                        batchMappings.putAll(entries.mappings);
+                    }
+                    // Resources indexed before which are no longer in their objects. Their containment is removed
+                    // first, so that a retry after a failure still finds them through their mappings.
+                    final var staleIds = new HashSet<>(
+                            fedoraToOCFLObjectIndex.getFedoraIds(batchInventoryStates.keySet()));
+                    final var staleContainment = toFedoraIds(staleIds);
+                    staleContainment.removeAll(batchChildToParent.keySet());
+                    staleIds.removeAll(batchMappings.keySet());
+                    containmentIndex.removeContainedByBatch(staleContainment);
+                    containmentIndex.addContainedByBatch(batchChildToParent, batchDeleted);
+                    fedoraToOCFLObjectIndex.removeMappings(staleIds);
+                    fedoraToOCFLObjectIndex.addMappings(batchMappings);
+                    LOGGER.debug("Rebuilt {} fedora-to-ocfl object index entries", batchMappings.size());
+                    checkpoint.record(batchInventoryStates);
+                } finally {
+                    locked.forEach(versionStamps::unlockExclusive);
+                }
+            }
+        }
     }
 }
@@ -0,0 +1,198 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.ocfl.impl;
+
+import org.fcrepo.kernel.api.exception.RepositoryRuntimeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Records the progress of an index rebuild, so that an interrupted rebuild can be resumed and a complete index can
+ * be brought up to date by indexing only the OCFL objects which changed.
+ *
+ * The on disk checkpoint is a text file, appended to as the rebuild progresses, with either a marker line or 2 values
+ * per line separated by tabs.
+ * 1. OCFL object ID (ie. parent/object1 or object1)
+ * 2. the state of the object's inventory when it was indexed
+ * The marker lines record when an index run started and completed, the last of them is the current state. A line
+ * with the removed marker and an OCFL object ID records that the object no longer exists.
+ *
+ * @author bbpennel
+ * @since 6.0.0
+ */
+public class IndexRebuildCheckpoint {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IndexRebuildCheckpoint.class);
+
+    private static final String STARTED = "#started";
+
+    private static final String COMPLETE = "#complete";
+
+    private static final String REMOVED = "#removed";
+
+    private final File checkpointFile;
+
+    private final Map<String, String> inventoryStates = new ConcurrentHashMap<>();
+
+    private volatile boolean started = false;
+
+    private volatile boolean complete = false;
+
+    /**
+     * Constructor, reads the checkpoint file if it exists.
+     *
+     * @param checkpointFile the checkpoint file.
+     */
+    public IndexRebuildCheckpoint(final File checkpointFile) {
+        this.checkpointFile = checkpointFile;
+        if (checkpointFile.exists() && checkpointFile.canRead()) {
+            try (var lines = Files.lines(checkpointFile.toPath())) {
+                lines.forEach(l -> {
+                    if (STARTED.equals(l)) {
+                        started = true;
+                        complete = false;
+                    } else if (COMPLETE.equals(l)) {
+                        complete = true;
+                    } else {
+                        final String[] entry = l.split("\t");
+                        if (entry.length == 2 && REMOVED.equals(entry[0])) {
+                            inventoryStates.remove(entry[1]);
+                        } else if (entry.length == 2) {
+                            inventoryStates.put(entry[0], entry[1]);
+                        } else {
+                            LOGGER.warn("Expected 2 tab-separated values, found {}. Ignoring line.", entry.length);
+                        }
+                    }
+                });
+            } catch (final IOException e) {
+                throw new RepositoryRuntimeException("Unable to read index rebuild checkpoint " + checkpointFile, e);
+            }
+        }
+    }
+
+    /**
+     * @return true if an index run was started and did not complete.
+     */
+    public boolean isIncomplete() {
+        return started && !complete;
+    }
+
+    /**
+     * Check whether an OCFL object was indexed in its current state.
+     *
+     * @param ocflObjectId the OCFL object id.
+     * @param inventoryState the current state of the object's inventory.
+     * @return true if the object was indexed when its inventory was in this state.
+     */
+    public boolean isIndexed(final String ocflObjectId, final String inventoryState) {
+        return inventoryState.equals(inventoryStates.get(ocflObjectId));
+    }
+
+    /**
+     * @return the number of OCFL objects recorded as indexed.
+     */
+    public int size() {
+        return inventoryStates.size();
+    }
+
+    /**
+     * @return the ids of the OCFL objects recorded as indexed.
+     */
+    public Set<String> getObjectIds() {
+        return Set.copyOf(inventoryStates.keySet());
+    }
+
+    /**
+     * Record the start of an index run.
+     *
+     * @param fromScratch true to discard the objects recorded by earlier runs.
+     */
+    public synchronized void start(final boolean fromScratch) {
+        if (fromScratch) {
+            inventoryStates.clear();
+            if (checkpointFile.exists()) {
+                checkpointFile.delete();
+            }
+        }
+        started = true;
+        complete = false;
+        append(List.of(STARTED));
+    }
+
+    /**
+     * Record OCFL objects as indexed. Must only be called once their index entries have been written.
+     *
+     * @param objects the OCFL object ids mapped to the state of their inventories when they were indexed.
+     */
+    public synchronized void record(final Map<String, String> objects) {
+        if (objects.isEmpty()) {
+            return;
+        }
+        inventoryStates.putAll(objects);
+        append(objects.entrySet().stream().map(e -> e.getKey() + "\t" + e.getValue())
+                .collect(toList()));
+    }
+
+    /**
+     * Record OCFL objects as removed, so they are indexed again if they are restored.
+     *
+     * @param ocflObjectIds the OCFL object ids.
+     */
+    public synchronized void remove(final Set<String> ocflObjectIds) {
+        if (ocflObjectIds.isEmpty()) {
+            return;
+        }
+        inventoryStates.keySet().removeAll(ocflObjectIds);
+        append(ocflObjectIds.stream().map(id -> REMOVED + "\t" + id).collect(toList()));
+    }
+
+    /**
+     * Record the completion of an index run.
+     */
+    public synchronized void complete() {
+        complete = true;
+        append(List.of(COMPLETE));
+    }
+
+    private void append(final List<String> lines) {
+        final File dir = checkpointFile.getParentFile();
+        if (dir != null && !dir.exists()) {
+            dir.mkdirs();
+        }
+        try (var fw = new FileWriter(checkpointFile, true); var output = new BufferedWriter(fw)) {
+            for (final String line : lines) {
+                output.write(line);
+                output.write("\n");
+            }
+        } catch (final IOException e) {
+            throw new RepositoryRuntimeException("Unable to write index rebuild checkpoint " + checkpointFile, e);
+        }
+    }
+}
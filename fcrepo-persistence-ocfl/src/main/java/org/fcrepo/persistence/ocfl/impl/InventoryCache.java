@@ -0,0 +1,61 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.ocfl.impl;
+
+import edu.wisc.library.ocfl.api.model.ObjectDetails;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+
+/**
+ * Holds the descriptions of the most recently read OCFL objects, shared by all OCFL object sessions, so that the
+ * inventory of an object is not read and parsed again for each operation on it. The cache is bounded by the number of
+ * files listed in the versions of the described objects. The hit count of the cache is the number of inventory reads
+ * it has saved.
+ *
+ * @author bbpennel
+ * @since 6.0.0
+ */
+@Component
+public class InventoryCache extends OCFLObjectCache<ObjectDetails> {
+
+    private static final long MAXIMUM_OBJECTS = 100000;
+
+    /**
+     * Constructor
+     *
+     * @param maximumSize the maximum number of version files listed by the descriptions held in memory.
+     */
+    @Inject
+    public InventoryCache(@Value("${fcrepo.ocfl.inventory.cache.size:1000000}") final long maximumSize) {
+        super(MAXIMUM_OBJECTS, maximumSize, InventoryCache::estimateSize);
+    }
+
+    /**
+     * Estimate the size of an object description, as the number of files listed in all of its versions.
+     *
+     * @param details the object description
+     * @return the estimated size
+     */
+    static long estimateSize(final ObjectDetails details) {
+        return details.getVersionMap().values().stream()
+                .mapToLong(version -> version.getFiles().size() + 1)
+                .sum();
+    }
+}
@@ -0,0 +1,569 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.ocfl.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import edu.wisc.library.ocfl.api.MutableOcflRepository;
+import edu.wisc.library.ocfl.api.model.CommitInfo;
+import edu.wisc.library.ocfl.api.model.FileDetails;
+import edu.wisc.library.ocfl.api.model.ObjectVersionId;
+import org.apache.commons.io.FileUtils;
+import org.fcrepo.kernel.api.exception.InterruptedRuntimeException;
+import org.fcrepo.persistence.api.exceptions.PersistentItemConflictException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static edu.wisc.library.ocfl.api.OcflOption.OVERWRITE;
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.MUTABLE_HEAD_DIRECTORY;
+import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.resolveObjectRootPath;
+
+/**
+ * Compacts the mutable HEAD of OCFL objects in the background. Every change committed to the mutable HEAD of an object
+ * adds another revision to it, growing the inventory and storage of the object until the HEAD is committed as a
+ * version. Objects whose mutable HEAD has gained more than a number of revisions or bytes since it was last compacted
+ * are consolidated into a single revision with the same content.
+ *
+ * An object is compacted by exporting its HEAD state, purging its mutable HEAD, and staging the exported state again.
+ * The export and a journal entry naming the object are forced to storage before the mutable HEAD is purged, and are
+ * only removed once the export has been staged. A compaction interrupted by a crash is completed from its journal entry
+ * when the compactor starts, and one which failed is retried each time the compactor runs. The object stays locked
+ * until then, so that no change is staged over the purged mutable HEAD.
+ *
+ * Objects are only compacted while no transaction has a session on them, and are locked while compacted, so that
+ * transactions wait for the compaction to finish rather than conflicting with it. Reads outside of transactions wait
+ * while the mutable HEAD of an object is purged and staged again, so that they do not see its last version in place of
+ * its mutable HEAD, and the cached state of the object is invalidated before they continue.
+ *
+ * Revisions are counted as they are committed, so revisions from before the repository started are only considered
+ * once the object is changed again.
+ *
+ * @author bbpennel
+ * @since 6.0.0
+ */
+@Component
+@ManagedResource
+public class MutableHeadCompactor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MutableHeadCompactor.class);
+
+    private static final String MUTABLE_HEAD_INVENTORY = "head/inventory.json";
+
+    private static final String COMPACTION_DIR = "compaction";
+
+    private static final String JOURNAL_SUFFIX = ".compacting";
+
+    private static final long MAXIMUM_OBJECTS = 100000;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Controls whether the mutable HEADs of objects are compacted
+     */
+    @Value("${fcrepo.ocfl.compaction.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * Number of revisions after which the mutable HEAD of an object is compacted
+     */
+    @Value("${fcrepo.ocfl.compaction.revisions:100}")
+    private int revisionThreshold;
+
+    /**
+     * Number of bytes staged to the mutable HEAD of an object after which it is compacted
+     */
+    @Value("${fcrepo.ocfl.compaction.size:67108864}")
+    private long sizeThreshold;
+
+    /**
+     * Maximum number of objects compacted each time the compactor runs
+     */
+    @Value("${fcrepo.ocfl.compaction.batch.size:10}")
+    private int batchSize;
+
+    /**
+     * Maximum number of milliseconds a read waits for the mutable HEAD of an object to be staged again
+     */
+    @Value("${fcrepo.ocfl.lock.timeout:30000}")
+    private long lockTimeout;
+
+    @Inject
+    private MutableOcflRepository ocflRepository;
+
+    @Inject
+    private InventoryCache inventoryCache;
+
+    @Inject
+    private OCFLObjectVersionStamps versionStamps;
+
+    @Inject
+    private OCFLConstants ocflConstants;
+
+    @Inject
+    private ResourceHeadersCache headersCache;
+
+    @Inject
+    private TriplesCache triplesCache;
+
+    @Inject
+    private VersionIndexCache versionsCache;
+
+    /*
+     * Objects whose mutable HEAD was purged but not staged again, which stay locked until they are recovered
+     */
+    private final Set<String> unrecovered = ConcurrentHashMap.newKeySet();
+
+    /*
+     * Objects whose mutable HEAD is being purged and staged again, which are not read until it has been staged
+     */
+    private final Set<String> restaging = ConcurrentHashMap.newKeySet();
+
+    /*
+     * OCFL object id to the changes committed to its mutable HEAD since it was last compacted
+     */
+    private final Cache<String, MutableHead> heads = CacheBuilder.newBuilder().maximumSize(MAXIMUM_OBJECTS).build();
+
+    private final AtomicLong compactedCount = new AtomicLong();
+
+    private final AtomicLong reclaimedBytes = new AtomicLong();
+
+    private final AtomicLong reclaimedInventoryEntries = new AtomicLong();
+
+    /*
+     * Changes committed to the mutable HEAD of an object
+     */
+    private static class MutableHead {
+        private final int revisions;
+
+        private final long size;
+
+        private MutableHead(final int revisions, final long size) {
+            this.revisions = revisions;
+            this.size = size;
+        }
+    }
+
+    /*
+     * Storage used by the mutable HEAD of an object
+     */
+    private static class MutableHeadUsage {
+        private static final MutableHeadUsage NONE = new MutableHeadUsage(0, 0);
+
+        private final long bytes;
+
+        private final long inventoryEntries;
+
+        private MutableHeadUsage(final long bytes, final long inventoryEntries) {
+            this.bytes = bytes;
+            this.inventoryEntries = inventoryEntries;
+        }
+    }
+
+    /**
+     * Record a revision committed to the mutable HEAD of an OCFL object.
+     *
+     * @param ocflId the OCFL object id
+     * @param size the number of bytes staged by the revision
+     */
+    void recordRevision(final String ocflId, final long size) {
+        heads.asMap().compute(ocflId, (id, head) -> head == null ?
+                new MutableHead(1, size) : new MutableHead(head.revisions + 1, head.size + size));
+    }
+
+    /**
+     * Stop tracking the mutable HEAD of an OCFL object, after it has been committed as a version or the object has
+     * been deleted.
+     *
+     * @param ocflId the OCFL object id
+     */
+    void clear(final String ocflId) {
+        heads.invalidate(ocflId);
+    }
+
+    /**
+     * Wait for the mutable HEAD of an OCFL object to be staged again, if it is being compacted.
+     *
+     * @param ocflId the OCFL object id
+     * @throws PersistentItemConflictException if the mutable HEAD is not staged within the lock timeout
+     */
+    void awaitStaged(final String ocflId) throws PersistentItemConflictException {
+        if (!restaging.contains(ocflId)) {
+            return;
+        }
+
+        final long deadline = System.nanoTime() + MILLISECONDS.toNanos(lockTimeout);
+        synchronized (restaging) {
+            while (restaging.contains(ocflId)) {
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new PersistentItemConflictException(format(
+                            "OCFL object %s is being compacted, the request may be retried", ocflId));
+                }
+                try {
+                    restaging.wait(NANOSECONDS.toMillis(remaining) + 1);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedRuntimeException(e);
+                }
+            }
+        }
+    }
+
+    /*
+     * Allow an object to be read again once its mutable HEAD has been staged, or could not be
+     */
+    private void releaseReaders(final String ocflId) {
+        invalidateCaches(ocflId);
+        synchronized (restaging) {
+            restaging.remove(ocflId);
+            restaging.notifyAll();
+        }
+    }
+
+    /**
+     * Complete the compactions which were interrupted before their exported state was staged again.
+     */
+    @PostConstruct
+    public void recoverCompactions() {
+        final Path compactionDir = getCompactionDir();
+        if (!Files.isDirectory(compactionDir)) {
+            return;
+        }
+
+        final List<Path> entries;
+        try (final var paths = Files.list(compactionDir)) {
+            entries = paths.collect(Collectors.toList());
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        for (final Path entry : entries) {
+            if (entry.getFileName().toString().endsWith(JOURNAL_SUFFIX)) {
+                recover(entry);
+            } else if (!Files.exists(journalOf(entry))) {
+                // An export which was abandoned before its mutable HEAD was purged
+                FileUtils.deleteQuietly(entry.toFile());
+            }
+        }
+    }
+
+    private void recover(final Path journal) {
+        final String ocflId;
+        try {
+            ocflId = Files.readString(journal, UTF_8);
+        } catch (final IOException e) {
+            LOGGER.error("Unable to read compaction journal {}", journal, e);
+            return;
+        }
+        if (!unrecovered.contains(ocflId) && !versionStamps.tryLockExclusive(ocflId)) {
+            LOGGER.debug("Not recovering compaction of {}, it is in use by a transaction", ocflId);
+            return;
+        }
+
+        final Path exportPath = journal.resolveSibling(journal.getFileName().toString()
+                .substring(0, journal.getFileName().toString().length() - JOURNAL_SUFFIX.length()));
+        try {
+            // The mutable HEAD was restaged, or never purged, if it has staged changes
+            if (!ocflRepository.hasStagedChanges(ocflId)) {
+                LOGGER.warn("Staging the interrupted compaction of the mutable HEAD of {} from {}", ocflId,
+                        exportPath);
+                restage(ocflId, exportPath);
+            }
+            discard(journal, exportPath);
+            unrecovered.remove(ocflId);
+        } catch (final RuntimeException e) {
+            LOGGER.error("Failed to recover the compaction of the mutable HEAD of {}, its state is preserved in {}",
+                    ocflId, exportPath, e);
+            unrecovered.add(ocflId);
+        } finally {
+            invalidateCaches(ocflId);
+            if (!unrecovered.contains(ocflId)) {
+                versionStamps.unlockExclusive(ocflId);
+            }
+        }
+    }
+
+    /**
+     * Compact the mutable HEADs which have exceeded the revision or size threshold, up to the batch size.
+     */
+    @Scheduled(fixedDelayString = "${fcrepo.ocfl.compaction.interval:300000}")
+    public void compactMutableHeads() {
+        if (!unrecovered.isEmpty()) {
+            recoverCompactions();
+        }
+        if (!enabled) {
+            return;
+        }
+
+        final List<String> candidates = heads.asMap().entrySet().stream()
+                .filter(entry -> entry.getValue().revisions >= revisionThreshold ||
+                        entry.getValue().size >= sizeThreshold)
+                .map(Map.Entry::getKey)
+                .limit(batchSize)
+                .collect(Collectors.toList());
+
+        for (final String ocflId : candidates) {
+            compact(ocflId);
+        }
+    }
+
+    /**
+     * Compact the mutable HEAD of an OCFL object, unless a transaction has a session on the object.
+     *
+     * @param ocflId the OCFL object id
+     * @return true if the mutable HEAD was compacted
+     */
+    boolean compact(final String ocflId) {
+        if (!versionStamps.tryLockExclusive(ocflId)) {
+            LOGGER.debug("Not compacting mutable HEAD of {}, it is in use by a transaction", ocflId);
+            return false;
+        }
+
+        try {
+            if (!ocflRepository.hasStagedChanges(ocflId)) {
+                return false;
+            }
+
+            final long start = System.nanoTime();
+            final var before = measure(ocflId);
+            consolidate(ocflId);
+            final var after = measure(ocflId);
+
+            compactedCount.incrementAndGet();
+            reclaimedBytes.addAndGet(before.bytes - after.bytes);
+            reclaimedInventoryEntries.addAndGet(before.inventoryEntries - after.inventoryEntries);
+            LOGGER.info("Compacted mutable HEAD of {} in {} ms, reclaimed {} bytes and {} inventory entries", ocflId,
+                    (System.nanoTime() - start) / 1000000, before.bytes - after.bytes,
+                    before.inventoryEntries - after.inventoryEntries);
+            return true;
+        } catch (final RuntimeException e) {
+            LOGGER.error("Failed to compact mutable HEAD of {}", ocflId, e);
+            return false;
+        } finally {
+            // A failed compaction is not retried until the object is changed again
+            heads.invalidate(ocflId);
+            invalidateCaches(ocflId);
+            if (!unrecovered.contains(ocflId)) {
+                versionStamps.unlockExclusive(ocflId);
+            }
+        }
+    }
+
+    private void invalidateCaches(final String ocflId) {
+        inventoryCache.invalidate(ocflId);
+        headersCache.invalidate(ocflId);
+        triplesCache.invalidate(ocflId);
+        versionsCache.invalidate(ocflId);
+    }
+
+    /*
+     * Replace the mutable HEAD of an object with a single revision containing its current state
+     */
+    private void consolidate(final String ocflId) {
+        final Path compactionDir = getCompactionDir();
+        final Path exportPath = compactionDir.resolve(UUID.randomUUID().toString());
+        final Path journal = journalOf(exportPath);
+        try {
+            Files.createDirectories(compactionDir);
+            ocflRepository.getObject(ObjectVersionId.head(ocflId), exportPath);
+            forceTree(exportPath);
+            Files.writeString(journal, ocflId, UTF_8);
+            force(journal);
+            force(compactionDir);
+        } catch (final IOException e) {
+            FileUtils.deleteQuietly(journal.toFile());
+            FileUtils.deleteQuietly(exportPath.toFile());
+            throw new UncheckedIOException(e);
+        }
+
+        unrecovered.add(ocflId);
+        restaging.add(ocflId);
+        try {
+            ocflRepository.purgeStagedChanges(ocflId);
+            restage(ocflId, exportPath);
+        } catch (final RuntimeException e) {
+            LOGGER.error("Failed to stage the compacted mutable HEAD of {}, its state is preserved in {} and it is " +
+                    "locked until staged again", ocflId, exportPath);
+            throw e;
+        } finally {
+            releaseReaders(ocflId);
+        }
+        discard(journal, exportPath);
+        unrecovered.remove(ocflId);
+    }
+
+    /*
+     * Stage the exported state of an object over its last version. The export is copied rather than moved, so that it
+     * is intact until its journal entry is removed.
+     */
+    private void restage(final String ocflId, final Path exportPath) {
+        // Files of the last version which were removed in the mutable HEAD
+        final Set<String> removedPaths = ocflRepository.describeObject(ocflId).getHeadVersion().getFiles()
+                .stream()
+                .map(FileDetails::getPath)
+                .filter(path -> !Files.exists(exportPath.resolve(path)))
+                .collect(Collectors.toSet());
+        final boolean hasFiles = hasFiles(exportPath);
+
+        ocflRepository.stageChanges(ObjectVersionId.head(ocflId),
+                new CommitInfo().setMessage("compacted mutable head"), updater -> {
+                    if (hasFiles) {
+                        updater.addPath(exportPath, "", OVERWRITE);
+                    }
+                    removedPaths.forEach(updater::removeFile);
+                });
+    }
+
+    private static void discard(final Path journal, final Path exportPath) {
+        try {
+            Files.deleteIfExists(journal);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        FileUtils.deleteQuietly(exportPath.toFile());
+    }
+
+    private Path getCompactionDir() {
+        return ocflConstants.getStagingDir().toPath().resolve(COMPACTION_DIR);
+    }
+
+    private static Path journalOf(final Path exportPath) {
+        return exportPath.resolveSibling(exportPath.getFileName() + JOURNAL_SUFFIX);
+    }
+
+    private static void forceTree(final Path root) throws IOException {
+        try (final var paths = Files.walk(root)) {
+            for (final Iterator<Path> iterator = paths.iterator(); iterator.hasNext(); ) {
+                force(iterator.next());
+            }
+        }
+    }
+
+    private static void force(final Path path) throws IOException {
+        try (final var channel = FileChannel.open(path, READ)) {
+            channel.force(true);
+        } catch (final IOException e) {
+            // Directories can not be opened on all platforms
+            if (!Files.isDirectory(path)) {
+                throw e;
+            }
+        }
+    }
+
+    private static boolean hasFiles(final Path path) {
+        try (final var files = Files.list(path)) {
+            return files.findAny().isPresent();
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /*
+     * Measure the storage used by the mutable HEAD of an object, located from the storage paths of its files
+     */
+    private MutableHeadUsage measure(final String ocflId) {
+        final Path headDir = locateMutableHead(ocflId);
+        if (headDir == null || !Files.isDirectory(headDir)) {
+            return MutableHeadUsage.NONE;
+        }
+
+        long inventoryEntries = 0;
+        final Path inventory = headDir.resolve(MUTABLE_HEAD_INVENTORY);
+        if (Files.isRegularFile(inventory)) {
+            try {
+                final JsonNode manifest = MAPPER.readTree(inventory.toFile()).path("manifest");
+                for (final Iterator<JsonNode> paths = manifest.elements(); paths.hasNext(); ) {
+                    inventoryEntries += paths.next().size();
+                }
+            } catch (final IOException e) {
+                LOGGER.warn("Unable to read the mutable HEAD inventory of {}", ocflId, e);
+            }
+        }
+        return new MutableHeadUsage(FileUtils.sizeOfDirectory(headDir.toFile()), inventoryEntries);
+    }
+
+    private Path locateMutableHead(final String ocflId) {
+        final Path storageRoot = ocflConstants.getStorageRootDir().toPath();
+        for (final var file : ocflRepository.getObject(ObjectVersionId.head(ocflId)).getFiles()) {
+            final Path objectRoot = resolveObjectRootPath(storageRoot, file.getStorageRelativePath(), file.getPath());
+            if (objectRoot != null) {
+                return objectRoot.resolve(MUTABLE_HEAD_DIRECTORY);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the number of mutable HEADs compacted
+     */
+    @ManagedAttribute(description = "Number of mutable HEADs compacted")
+    public long getCompactedCount() {
+        return compactedCount.get();
+    }
+
+    /**
+     * @return the number of bytes of storage reclaimed by compacting mutable HEADs
+     */
+    @ManagedAttribute(description = "Bytes of storage reclaimed by compaction")
+    public long getReclaimedBytes() {
+        return reclaimedBytes.get();
+    }
+
+    /**
+     * @return the number of inventory manifest entries reclaimed by compacting mutable HEADs
+     */
+    @ManagedAttribute(description = "Inventory manifest entries reclaimed by compaction")
+    public long getReclaimedInventoryEntries() {
+        return reclaimedInventoryEntries.get();
+    }
+
+    /**
+     * @return the number of objects whose mutable HEAD changes are being tracked
+     */
+    @ManagedAttribute(description = "Number of objects whose mutable HEAD changes are tracked")
+    public long getTrackedObjectCount() {
+        return heads.size();
+    }
+}
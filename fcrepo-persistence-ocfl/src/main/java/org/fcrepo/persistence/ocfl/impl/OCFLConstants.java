@@ -31,10 +31,10 @@ import static org.apache.commons.lang3.SystemUtils.JAVA_IO_TMPDIR;
  */
 public final class OCFLConstants {
 
-    private static final String OCFL_STAGING_DIR_KEY = "fcrepo.ocfl.staging.dir";
+    public static final String OCFL_STAGING_DIR_KEY = "fcrepo.ocfl.staging.dir";
     public static final String OCFL_STORAGE_ROOT_DIR_KEY = "fcrepo.ocfl.storage.root.dir";
     public static final String OCFL_WORK_DIR_KEY = "fcrepo.ocfl.work.dir";
-    private static final String FEDORA_TO_OCFL_INDEX_FILENAME = "fedoraToOcflIndex.tsv";
+    private static final String INDEX_REBUILD_CHECKPOINT_FILENAME = "indexRebuildCheckpoint.tsv";
 
     /**
      * Return the system property key path as file or a file of the temporary directory + "system property key"
@@ -76,10 +76,10 @@ public final class OCFLConstants {
     }
 
     /**
-     * Fedora to OCFL index file
-     * @return Fedora to OCFL index file
+     * Index rebuild checkpoint file
+     * @return Index rebuild checkpoint file
      */
-    public File getFedoraToOCFLIndexFile() {
-        return new File(getWorkDir() + File.separator +  FEDORA_TO_OCFL_INDEX_FILENAME);
+    public File getIndexRebuildCheckpointFile() {
+        return new File(getWorkDir() + File.separator + INDEX_REBUILD_CHECKPOINT_FILENAME);
     }
 }
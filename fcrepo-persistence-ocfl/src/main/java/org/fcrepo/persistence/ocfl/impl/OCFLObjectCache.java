@@ -0,0 +1,203 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.ocfl.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.fcrepo.persistence.api.exceptions.PersistentStorageException;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+/**
+ * Holds values read from the committed files of OCFL objects, shared by all persistent storage sessions. Values are
+ * keyed by OCFL object, subpath and version, where the version is null for the head of the object.
+ *
+ * Each OCFL object is assigned a generation which is part of the key of all of its entries. Invalidating an object
+ * drops its generation so that its entries can no longer be reached, and they are evicted as the cache fills.
+ * Generations are never reused, so an object which is invalidated and read again can not see its old entries.
+ *
+ * The cached values are shared, and must not be modified.
+ *
+ * @param <V> the type of the cached values
+ * @author bbpennel
+ * @since 6.0.0
+ */
+@ManagedResource
+public class OCFLObjectCache<V> {
+
+    private static final String HEAD = "";
+
+    private final AtomicLong generationCounter = new AtomicLong();
+
+    /*
+     * OCFL object id to the generation of the entries for the object.
+     */
+    private final Cache<String, Long> generations;
+
+    private final Cache<String, V> cache;
+
+    private final ToLongFunction<V> weigher;
+
+    private final AtomicLong weight = new AtomicLong();
+
+    /**
+     * Loads a value from persistent storage.
+     *
+     * @param <V> the type of the value
+     */
+    @FunctionalInterface
+    interface Loader<V> {
+        /**
+         * @return the value read from persistent storage.
+         * @throws PersistentStorageException if the value can not be read.
+         */
+        V load() throws PersistentStorageException;
+    }
+
+    /**
+     * Constructor
+     *
+     * @param maximumObjects the maximum number of OCFL objects to hold values for.
+     * @param maximumWeight the maximum total weight of the values to hold.
+     * @param weigher the weight of a value.
+     */
+    protected OCFLObjectCache(final long maximumObjects, final long maximumWeight, final ToLongFunction<V> weigher) {
+        this.generations = CacheBuilder.newBuilder().maximumSize(maximumObjects).build();
+        this.weigher = weigher;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maximumWeight)
+                .<String, V>weigher((key, value) -> (int) Math.min(weigher.applyAsLong(value), Integer.MAX_VALUE))
+                .removalListener(n -> weight.addAndGet(-weigher.applyAsLong(n.getValue())))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Get a value, loading and caching it if it is not cached.
+     *
+     * @param ocflId the OCFL object id.
+     * @param subpath the subpath of the file the value is read from.
+     * @param versionId the OCFL version id, or null for the head of the object.
+     * @param loader reads the value when it is not cached.
+     * @return the value.
+     * @throws PersistentStorageException if the value is not cached and can not be read.
+     */
+    V get(final String ocflId, final String subpath, final String versionId, final Loader<V> loader)
+            throws PersistentStorageException {
+        final String key = key(ocflId, subpath, versionId);
+        try {
+            return cache.get(key, () -> {
+                final V value = loader.load();
+                weight.addAndGet(weigher.applyAsLong(value));
+                return value;
+            });
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof PersistentStorageException) {
+                throw (PersistentStorageException) e.getCause();
+            }
+            throw new PersistentStorageException("Failed to read " + subpath + " in " + ocflId, e.getCause());
+        } catch (final UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Get the key of a value in the current generation of its OCFL object. The key must be resolved before reading
+     * the value, so that values read before the object is invalidated are never cached under its next generation.
+     *
+     * @param ocflId the OCFL object id.
+     * @param subpath the subpath of the file the value is read from.
+     * @param versionId the OCFL version id, or null for the head of the object.
+     * @return the key
+     */
+    String key(final String ocflId, final String subpath, final String versionId) {
+        return getGeneration(ocflId) + "/" + (versionId == null ? HEAD : versionId) + "/" + ocflId + "/" + subpath;
+    }
+
+    /**
+     * @param key the key of the value.
+     * @return the cached value, or null if it is not cached.
+     */
+    V getIfPresent(final String key) {
+        return cache.getIfPresent(key);
+    }
+
+    /**
+     * Cache a value which has been read.
+     *
+     * @param key the key of the value, resolved before it was read.
+     * @param value the value.
+     */
+    void put(final String key, final V value) {
+        weight.addAndGet(weigher.applyAsLong(value));
+        cache.put(key, value);
+    }
+
+    /**
+     * Invalidate all of the cached values of an OCFL object, after it has been changed.
+     *
+     * @param ocflId the OCFL object id.
+     */
+    void invalidate(final String ocflId) {
+        generations.invalidate(ocflId);
+    }
+
+    /**
+     * @return the ratio of reads which were served from the cache.
+     */
+    @ManagedAttribute(description = "Ratio of reads served from the cache")
+    public double getHitRate() {
+        return cache.stats().hitRate();
+    }
+
+    /**
+     * @return the number of reads which were served from the cache.
+     */
+    @ManagedAttribute(description = "Number of reads served from the cache")
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    /**
+     * @return the number of values in the cache, including invalidated values not yet evicted.
+     */
+    @ManagedAttribute(description = "Number of values in the cache")
+    public long getSize() {
+        return cache.size();
+    }
+
+    /**
+     * @return the total weight of the values in the cache.
+     */
+    @ManagedAttribute(description = "Total weight of the values in the cache")
+    public long getWeight() {
+        return weight.get();
+    }
+
+    private long getGeneration(final String ocflId) {
+        return generations.asMap().computeIfAbsent(ocflId, k -> generationCounter.incrementAndGet());
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.ocfl.impl;
+
+import org.fcrepo.kernel.api.exception.InterruptedRuntimeException;
+import org.fcrepo.persistence.api.exceptions.PersistentItemConflictException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Version stamps of the OCFL objects being changed by transactions, shared by all persistent storage sessions. Used
+ * to validate that no other transaction has changed an OCFL object between when a transaction first used the object
+ * and when it commits its changes.
+ *
+ * Each OCFL object session joins the stamp of its object when it is created, and prepares before it commits. Prepare
+ * fails with a conflict if the object has been committed by another session since this session joined, or if another
+ * session has prepared the object and not yet finished committing it. Conflicting transactions fail immediately, and
+ * may be retried, rather than waiting for each other.
+ *
+ * An object may also be locked exclusively while no sessions are joined to it, for maintenance which must not overlap
+ * with any transaction. Sessions created for the object while it is locked wait for the lock to be released before
+ * joining, and fail with a conflict which may be retried if it is not released within the lock timeout.
+ *
+ * Stamps are only held for objects which have sessions joined to them, or which are locked.
+ *
+ * @author bbpennel
+ * @since 6.0.0
+ */
+@Component
+@ManagedResource
+public class OCFLObjectVersionStamps {
+
+    /**
+     * Maximum number of milliseconds a session waits to join an object which is locked exclusively
+     */
+    @Value("${fcrepo.ocfl.lock.timeout:30000}")
+    private long lockTimeout;
+
+    private final Map<String, Stamp> stamps = new ConcurrentHashMap<>();
+
+    private final LongAdder prepareCount = new LongAdder();
+
+    private final LongAdder conflictCount = new LongAdder();
+
+    /*
+     * Stamp of an OCFL object, only modified while computing its entry in the map.
+     */
+    private static class Stamp {
+        // Number of commits to the object while it has had sessions joined
+        private long version;
+
+        // Number of sessions joined to the object
+        private int sessions;
+
+        // Session which has prepared the object and not yet released it
+        private Object preparedBy;
+
+        // Indicates that the object is locked exclusively, and may not be joined
+        private boolean exclusive;
+    }
+
+    // Interval at which sessions waiting for an exclusive lock recheck it
+    private static final long EXCLUSIVE_WAIT_MILLIS = 50;
+
+    /**
+     * Join the stamp of an OCFL object.
+     *
+     * @param ocflId the OCFL object id
+     * @return the version of the object when it was joined, to validate when preparing
+     * @throws PersistentItemConflictException if the object stays locked exclusively for longer than the lock timeout
+     */
+    long join(final String ocflId) throws PersistentItemConflictException {
+        final long deadline = System.nanoTime() + MILLISECONDS.toNanos(lockTimeout);
+        final var joinedVersion = new AtomicLong(-1);
+        while (true) {
+            stamps.compute(ocflId, (id, stamp) -> {
+                final var joined = stamp == null ? new Stamp() : stamp;
+                if (!joined.exclusive) {
+                    joined.sessions++;
+                    joinedVersion.set(joined.version);
+                }
+                return joined;
+            });
+            if (joinedVersion.get() >= 0) {
+                return joinedVersion.get();
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                throw new PersistentItemConflictException(format(
+                        "OCFL object %s is locked for maintenance, the transaction may be retried", ocflId));
+            }
+            awaitExclusiveRelease();
+        }
+    }
+
+    private synchronized void awaitExclusiveRelease() {
+        try {
+            wait(EXCLUSIVE_WAIT_MILLIS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedRuntimeException(e);
+        }
+    }
+
+    /**
+     * Lock an OCFL object exclusively, if no sessions are joined to it.
+     *
+     * @param ocflId the OCFL object id
+     * @return true if the object was locked, false if sessions are joined to it or it is already locked
+     */
+    boolean tryLockExclusive(final String ocflId) {
+        final var locked = new AtomicBoolean();
+        stamps.computeIfAbsent(ocflId, id -> {
+            final var stamp = new Stamp();
+            stamp.exclusive = true;
+            locked.set(true);
+            return stamp;
+        });
+        return locked.get();
+    }
+
+    /**
+     * Release an exclusive lock on an OCFL object, allowing waiting sessions to join it.
+     *
+     * @param ocflId the OCFL object id
+     */
+    void unlockExclusive(final String ocflId) {
+        stamps.computeIfPresent(ocflId, (id, stamp) -> stamp.exclusive ? null : stamp);
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Prepare a session to commit an OCFL object, reserving the object until the session is released.
+     *
+     * @param ocflId the OCFL object id
+     * @param joinedVersion the version of the object when the session joined it
+     * @param session the session preparing the object
+     * @throws PersistentItemConflictException if the object has changed since the session joined it, or if it is
+     *         prepared by another session
+     */
+    void prepare(final String ocflId, final long joinedVersion, final Object session)
+            throws PersistentItemConflictException {
+        prepareCount.increment();
+        final var prepared = new AtomicBoolean();
+        stamps.computeIfPresent(ocflId, (id, stamp) -> {
+            if (stamp.version == joinedVersion && (stamp.preparedBy == null || stamp.preparedBy == session)) {
+                stamp.preparedBy = session;
+                prepared.set(true);
+            }
+            return stamp;
+        });
+        if (!prepared.get()) {
+            conflictCount.increment();
+            throw new PersistentItemConflictException(format(
+                    "OCFL object %s was changed by a concurrent transaction, the transaction may be retried",
+                    ocflId));
+        }
+    }
+
+    /**
+     * Release a session from the stamp of an OCFL object. If the session prepared the object and then attempted to
+     * commit it, the object is considered changed, since even a failed commit may have changed it.
+     *
+     * @param ocflId the OCFL object id
+     * @param session the session
+     * @param committed true if the session attempted to commit the object
+     */
+    void release(final String ocflId, final Object session, final boolean committed) {
+        stamps.computeIfPresent(ocflId, (id, stamp) -> {
+            if (stamp.preparedBy == session) {
+                stamp.preparedBy = null;
+                if (committed) {
+                    stamp.version++;
+                }
+            }
+            stamp.sessions--;
+            return stamp.sessions > 0 ? stamp : null;
+        });
+    }
+
+    /**
+     * @return the number of sessions which have prepared to commit an OCFL object
+     */
+    @ManagedAttribute(description = "Number of object sessions prepared to commit")
+    public long getPrepareCount() {
+        return prepareCount.sum();
+    }
+
+    /**
+     * @return the number of prepares which failed due to a conflicting transaction
+     */
+    @ManagedAttribute(description = "Number of prepares which failed due to a conflicting transaction")
+    public long getConflictCount() {
+        return conflictCount.sum();
+    }
+
+    /**
+     * @return the ratio of prepares which failed due to a conflicting transaction
+     */
+    @ManagedAttribute(description = "Ratio of prepares which failed due to a conflicting transaction")
+    public double getConflictRate() {
+        final long prepares = getPrepareCount();
+        return prepares == 0 ? 0.0 : (double) getConflictCount() / prepares;
+    }
+
+    /**
+     * @return the number of OCFL objects which have sessions joined to them, or which are locked
+     */
+    @ManagedAttribute(description = "Number of OCFL objects joined by sessions or locked")
+    public int getObjectCount() {
+        return stamps.size();
+    }
+}
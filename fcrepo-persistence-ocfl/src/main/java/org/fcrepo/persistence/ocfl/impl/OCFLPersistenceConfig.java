@@ -18,21 +18,35 @@
 package org.fcrepo.persistence.ocfl.impl;
 
 import edu.wisc.library.ocfl.api.MutableOcflRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.EnableMBeanExport;
+import org.springframework.jmx.support.RegistrationPolicy;
 
+import java.io.File;
+
+import static org.fcrepo.persistence.ocfl.impl.OCFLConstants.OCFL_STAGING_DIR_KEY;
+import static org.fcrepo.persistence.ocfl.impl.OCFLConstants.OCFL_WORK_DIR_KEY;
 import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.createRepository;
+import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.isOnSameFileStore;
 
 /**
- * A Configuration for OCFL dependencies
+ * A Configuration for OCFL dependencies. The statistics of the OCFL sessions, caches and compactor are published as
+ * JMX attributes of their beans.
  *
  * @author dbernstein
  * @since 6.0.0
  */
 
 @Configuration
+@EnableMBeanExport(registration = RegistrationPolicy.REPLACE_EXISTING)
 public class OCFLPersistenceConfig {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(OCFLPersistenceConfig.class);
+
     /**
      * Create an OCFL Repository
      * @return the repository
@@ -40,7 +54,33 @@ public class OCFLPersistenceConfig {
     @Bean
     public MutableOcflRepository repository() {
         final OCFLConstants constants = new OCFLConstants();
-        return createRepository(constants.getStorageRootDir(), constants.getWorkDir());
+        final var repository = createRepository(constants.getStorageRootDir(), constants.getWorkDir());
+        final var stagingDir = constants.getStagingDir();
+        stagingDir.mkdirs();
+        warnIfCopiedOnCommit(stagingDir, constants.getStorageRootDir(), OCFL_STAGING_DIR_KEY);
+        warnIfCopiedOnCommit(constants.getWorkDir(), constants.getStorageRootDir(), OCFL_WORK_DIR_KEY);
+        return repository;
+    }
+
+    private static void warnIfCopiedOnCommit(final File dir, final File storageRootDir, final String propertyKey) {
+        if (!isOnSameFileStore(dir, storageRootDir)) {
+            LOGGER.warn("{} is not on the same file system as the OCFL storage root {}, so content will be copied"
+                    + " rather than moved into the storage root on commit. Set {} to a directory on the same file"
+                    + " system to avoid the copy", dir, storageRootDir, propertyKey);
+        }
+    }
+
+    /**
+     * Create the flusher which forces the files written by commits to OCFL objects to storage
+     * @param durabilityMode the durability mode, one of none, async, group or fsync
+     * @param windowMillis the time in milliseconds over which commits are collected before they are forced, in the
+     *        async and group modes
+     * @return the commit flusher
+     */
+    @Bean(destroyMethod = "shutdown")
+    public CommitFlusher commitFlusher(@Value("${fcrepo.ocfl.durability:none}") final String durabilityMode,
+                                       @Value("${fcrepo.ocfl.durability.window:10}") final long windowMillis) {
+        return new CommitFlusher(DurabilityMode.fromString(durabilityMode), windowMillis);
     }
 
     @Bean
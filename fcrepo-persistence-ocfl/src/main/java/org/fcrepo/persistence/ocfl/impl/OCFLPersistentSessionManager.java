@@ -17,15 +17,23 @@
  */
 package org.fcrepo.persistence.ocfl.impl;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.fcrepo.persistence.api.PersistentStorageSession;
 import org.fcrepo.persistence.api.PersistentStorageSessionManager;
 import org.fcrepo.persistence.ocfl.api.FedoraToOCFLObjectIndex;
 import org.fcrepo.persistence.ocfl.api.OCFLObjectSessionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * OCFL implementation of PersistentStorageSessionManager
@@ -35,11 +43,12 @@ import java.util.concurrent.ConcurrentHashMap;
  * @since 2019-09-20
  */
 @Component
+@ManagedResource
 public class OCFLPersistentSessionManager implements PersistentStorageSessionManager {
 
-    private volatile PersistentStorageSession readOnlySession;
+    private volatile OCFLPersistentStorageSession readOnlySession;
 
-    private Map<String, PersistentStorageSession> sessionMap;
+    private Map<String, OCFLPersistentStorageSession> sessionMap;
 
     @Inject
     private OCFLObjectSessionFactory objectSessionFactory;
@@ -47,6 +56,31 @@ public class OCFLPersistentSessionManager implements PersistentStorageSessionMan
     @Inject
     private FedoraToOCFLObjectIndex fedoraOcflIndex;
 
+    @Inject
+    private ResourceHeadersCache headersCache;
+
+    @Inject
+    private TriplesCache triplesCache;
+
+    @Inject
+    private VersionIndexCache versionsCache;
+
+    /**
+     * Number of OCFL objects of a transaction to commit at the same time. 0 uses one worker per available processor,
+     * and 1 commits the objects one at a time in the order they were changed.
+     */
+    @Value("${fcrepo.persistence.commit.threads:0}")
+    private int commitThreads;
+
+    private ExecutorService commitExecutor;
+
+    /**
+     * Maximum number of OCFL object sessions held by the read-only session, which are evicted least recently used
+     * first.
+     */
+    @Value("${fcrepo.ocfl.readonly.sessions.size:10000}")
+    private long readOnlyObjectSessions;
+
     /**
      * Default constructor
      */
@@ -64,7 +98,11 @@ public class OCFLPersistentSessionManager implements PersistentStorageSessionMan
         return sessionMap.computeIfAbsent(sessionId, key -> new OCFLPersistentStorageSession(
                 key,
                 fedoraOcflIndex,
-                objectSessionFactory));
+                objectSessionFactory,
+                headersCache,
+                triplesCache,
+                versionsCache,
+                getCommitExecutor()));
     }
 
     @Override
@@ -75,7 +113,8 @@ public class OCFLPersistentSessionManager implements PersistentStorageSessionMan
             synchronized (this) {
                 localSession = this.readOnlySession;
                 if (localSession == null) {
-                    this.readOnlySession = new OCFLPersistentStorageSession(fedoraOcflIndex, objectSessionFactory);
+                    this.readOnlySession = new OCFLPersistentStorageSession(fedoraOcflIndex, objectSessionFactory,
+                            headersCache, triplesCache, versionsCache, readOnlyObjectSessions);
                     localSession = this.readOnlySession;
                 }
             }
@@ -83,4 +122,57 @@ public class OCFLPersistentSessionManager implements PersistentStorageSessionMan
 
         return localSession;
     }
+
+    @Override
+    public void removeSession(final String sessionId) {
+        if (sessionId != null) {
+            sessionMap.remove(sessionId);
+        }
+    }
+
+    /**
+     * @return the number of transaction sessions currently held, excluding the read-only session.
+     */
+    @ManagedAttribute(description = "Number of transaction sessions held")
+    public long getSessionCount() {
+        return sessionMap.size();
+    }
+
+    /**
+     * @return the number of bytes staged by the transaction sessions currently held and not yet committed.
+     */
+    @ManagedAttribute(description = "Bytes staged by transaction sessions and not yet committed")
+    public long getStagedSize() {
+        return sessionMap.values().stream().mapToLong(OCFLPersistentStorageSession::getStagedSize).sum();
+    }
+
+    /**
+     * @return the number of OCFL object sessions currently held by the read-only session.
+     */
+    @ManagedAttribute(description = "Number of OCFL object sessions held by the read-only session")
+    public long getReadOnlyObjectSessionCount() {
+        final var localSession = this.readOnlySession;
+        return localSession == null ? 0 : localSession.getObjectSessionCount();
+    }
+
+    private synchronized Executor getCommitExecutor() {
+        final var workers = commitThreads > 0 ? commitThreads : Runtime.getRuntime().availableProcessors();
+        if (commitExecutor == null && workers > 1) {
+            commitExecutor = Executors.newFixedThreadPool(workers, new ThreadFactoryBuilder()
+                    .setNameFormat("fcrepo-ocfl-commit-%d")
+                    .setDaemon(true)
+                    .build());
+        }
+        return commitExecutor;
+    }
+
+    /**
+     * Stop the commit workers.
+     */
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (commitExecutor != null) {
+            commitExecutor.shutdown();
+        }
+    }
 }
@@ -19,14 +19,16 @@ package org.fcrepo.persistence.ocfl.impl;
 
 import static java.lang.String.format;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.apache.jena.graph.NodeFactory.createURI;
 import static org.fcrepo.kernel.api.RdfLexicon.NON_RDF_SOURCE;
 import static org.fcrepo.persistence.api.CommitOption.NEW_VERSION;
 import static org.fcrepo.persistence.common.ResourceHeaderSerializationUtils.deserializeHeaders;
 import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.getSidecarSubpath;
 import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.resolveExtensions;
-import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.resolveVersionId;
 import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.getBinaryStream;
-import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.getRdfStream;
+import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.streamTriples;
+import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.resolveTopic;
 import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.resovleOCFLSubpathFromResourceId;
 
 import java.io.InputStream;
@@ -37,10 +39,13 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 
+import com.google.common.cache.CacheBuilder;
 import org.fcrepo.kernel.api.RdfStream;
 import org.fcrepo.kernel.api.models.ResourceHeaders;
 import org.fcrepo.kernel.api.operations.ResourceOperation;
+import org.fcrepo.kernel.api.rdf.DefaultRdfStream;
 import org.fcrepo.persistence.api.PersistentStorageSession;
+import org.fcrepo.persistence.api.exceptions.PersistentItemConflictException;
 import org.fcrepo.persistence.api.exceptions.PersistentItemNotFoundException;
 import org.fcrepo.persistence.api.exceptions.PersistentSessionClosedException;
 import org.fcrepo.persistence.api.exceptions.PersistentStorageException;
@@ -52,9 +57,12 @@ import org.fcrepo.persistence.ocfl.api.Persister;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Phaser;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
 
 
@@ -89,6 +97,23 @@ public class OCFLPersistentStorageSession implements PersistentStorageSession {
 
     private final OCFLObjectSessionFactory objectSessionFactory;
 
+    private final ResourceHeadersCache headersCache;
+
+    private final TriplesCache triplesCache;
+
+    private final VersionIndexCache versionsCache;
+
+    /*
+     * Prepares and commits the OCFL objects of the session in parallel, or null to commit them one at a time.
+     */
+    private final Executor commitExecutor;
+
+    /*
+     * OCFL object id to the headers read from the object since it was last changed in this session, for the objects
+     * with uncommitted changes. Reads of these objects must not use or populate the shared caches.
+     */
+    private final Map<String, Map<String, ResourceHeaders>> stagedHeaders = new ConcurrentHashMap<>();
+
     private static Comparator<OCFLObjectSession> CREATION_TIME_ORDER =
             (final OCFLObjectSession o1, final OCFLObjectSession o2)->o1.getCreated().compareTo(o2.getCreated());
 
@@ -110,13 +135,75 @@ public class OCFLPersistentStorageSession implements PersistentStorageSession {
      * @param sessionId            session id.
      * @param fedoraOcflIndex      the index
      * @param objectSessionFactory the session factory
+     * @param headersCache         the cache of committed headers shared between sessions
+     * @param triplesCache         the cache of committed triples shared between sessions
+     * @param versionsCache        the cache of version indexes shared between sessions
+     * @param commitExecutor       the executor which commits OCFL objects in parallel, or null to commit them in order
+     */
+    protected OCFLPersistentStorageSession(final String sessionId, final FedoraToOCFLObjectIndex fedoraOcflIndex,
+                                           final OCFLObjectSessionFactory objectSessionFactory,
+                                           final ResourceHeadersCache headersCache,
+                                           final TriplesCache triplesCache,
+                                           final VersionIndexCache versionsCache,
+                                           final Executor commitExecutor) {
+        this(sessionId, fedoraOcflIndex, objectSessionFactory, headersCache, triplesCache, versionsCache,
+                commitExecutor, new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Constructor for a session which does not share its caches, and commits its OCFL objects in order.
+     *
+     * @param sessionId            session id.
+     * @param fedoraOcflIndex      the index
+     * @param objectSessionFactory the session factory
      */
     protected OCFLPersistentStorageSession(final String sessionId, final FedoraToOCFLObjectIndex fedoraOcflIndex,
                                            final OCFLObjectSessionFactory objectSessionFactory) {
+        this(sessionId, fedoraOcflIndex, objectSessionFactory, new ResourceHeadersCache(0), new TriplesCache(0),
+                new VersionIndexCache(0), null);
+    }
+
+    /**
+     * Constructor for a read-only session. The read-only session lives as long as the repository, so it only holds on
+     * to the OCFL object sessions of the most recently read objects. Read-only object sessions have nothing staged, so
+     * evicted object sessions are dropped rather than closed, as they may still be in use by a reader.
+     *
+     * @param fedoraOcflIndex      the index
+     * @param objectSessionFactory the session factory
+     * @param headersCache         the cache of committed headers shared between sessions
+     * @param triplesCache         the cache of committed triples shared between sessions
+     * @param versionsCache        the cache of version indexes shared between sessions
+     * @param maximumObjectSessions the maximum number of OCFL object sessions to hold
+     */
+    protected OCFLPersistentStorageSession(final FedoraToOCFLObjectIndex fedoraOcflIndex,
+                                           final OCFLObjectSessionFactory objectSessionFactory,
+                                           final ResourceHeadersCache headersCache,
+                                           final TriplesCache triplesCache,
+                                           final VersionIndexCache versionsCache,
+                                           final long maximumObjectSessions) {
+        this(null, fedoraOcflIndex, objectSessionFactory, headersCache, triplesCache, versionsCache, null,
+                CacheBuilder.newBuilder().maximumSize(maximumObjectSessions)
+                        .<String, OCFLObjectSession>build().asMap());
+    }
+
+    /*
+     * Constructor which holds the OCFL object sessions in the provided map
+     */
+    private OCFLPersistentStorageSession(final String sessionId, final FedoraToOCFLObjectIndex fedoraOcflIndex,
+                                         final OCFLObjectSessionFactory objectSessionFactory,
+                                         final ResourceHeadersCache headersCache,
+                                         final TriplesCache triplesCache,
+                                         final VersionIndexCache versionsCache,
+                                         final Executor commitExecutor,
+                                         final Map<String, OCFLObjectSession> sessionMap) {
         this.sessionId = sessionId;
         this.fedoraOcflIndex = fedoraOcflIndex;
         this.objectSessionFactory = objectSessionFactory;
-        this.sessionMap = new ConcurrentHashMap<>();
+        this.headersCache = headersCache;
+        this.triplesCache = triplesCache;
+        this.versionsCache = versionsCache;
+        this.commitExecutor = commitExecutor;
+        this.sessionMap = sessionMap;
 
         //load the persister list if empty
         persisterList.add(new CreateRDFSourcePersister(this.fedoraOcflIndex));
@@ -126,23 +213,25 @@ public class OCFLPersistentStorageSession implements PersistentStorageSession {
         persisterList.add(new DeleteResourcePersister(this.fedoraOcflIndex));
         persisterList.add(new CreateVersionPersister(this.fedoraOcflIndex));
         persisterList.add(new PurgeResourcePersister(this.fedoraOcflIndex));
+    }
 
+    @Override
+    public String getId() {
+        return this.sessionId;
     }
 
     /**
-     * Constructor
-     *
-     * @param fedoraOcflIndex      the index
-     * @param objectSessionFactory the session factory
+     * @return the number of OCFL object sessions held by this session.
      */
-    protected OCFLPersistentStorageSession(final FedoraToOCFLObjectIndex fedoraOcflIndex,
-                                           final OCFLObjectSessionFactory objectSessionFactory) {
-        this(null, fedoraOcflIndex, objectSessionFactory);
+    public long getObjectSessionCount() {
+        return sessionMap.size();
     }
 
-    @Override
-    public String getId() {
-        return this.sessionId;
+    /**
+     * @return the number of bytes staged by the OCFL object sessions of this session and not yet committed.
+     */
+    public long getStagedSize() {
+        return sessionMap.values().stream().mapToLong(OCFLObjectSession::getStagedSize).sum();
     }
 
     @Override
@@ -161,7 +250,11 @@ public class OCFLPersistentStorageSession implements PersistentStorageSession {
             }
 
             //perform the operation
-            persister.persist(this, operation);
+            try {
+                persister.persist(this, operation);
+            } finally {
+                stageChanges(operation.getResourceId());
+            }
 
         } finally {
             phaser.arriveAndDeregister();
@@ -169,6 +262,21 @@ public class OCFLPersistentStorageSession implements PersistentStorageSession {
 
     }
 
+    /**
+     * Record that the OCFL object containing a resource has uncommitted changes, discarding any headers read from it
+     * before the change.
+     *
+     * @param resourceId the id of the changed resource
+     */
+    private void stageChanges(final String resourceId) {
+        try {
+            stagedHeaders.put(fedoraOcflIndex.getMapping(resourceId).getOcflObjectId(), new ConcurrentHashMap<>());
+        } catch (final FedoraOCFLMappingNotFoundException e) {
+            // Without the mapping the changed object is unknown, so treat every object in the session as changed.
+            sessionMap.keySet().forEach(ocflId -> stagedHeaders.put(ocflId, new ConcurrentHashMap<>()));
+        }
+    }
+
     private void ensureCommitNotStarted() throws PersistentSessionClosedException {
         if (!state.equals(State.COMMIT_NOT_STARTED)) {
             throw new PersistentSessionClosedException("The session cannot be committed in the  " + state + " state");
@@ -176,9 +284,20 @@ public class OCFLPersistentStorageSession implements PersistentStorageSession {
     }
 
 
-    OCFLObjectSession findOrCreateSession(final String ocflId) {
-        return this.sessionMap.computeIfAbsent(ocflId,
-                key -> this.objectSessionFactory.create(key, getId()));
+    OCFLObjectSession findOrCreateSession(final String ocflId) throws PersistentStorageException {
+        final var existing = this.sessionMap.get(ocflId);
+        if (existing != null) {
+            return existing;
+        }
+
+        // Created outside of the map, since creating a session may wait for its object to be unlocked
+        final var created = this.objectSessionFactory.create(ocflId, getId());
+        final var concurrent = this.sessionMap.putIfAbsent(ocflId, created);
+        if (concurrent == null) {
+            return created;
+        }
+        created.close();
+        return concurrent;
     }
 
     @Override
@@ -188,20 +307,31 @@ public class OCFLPersistentStorageSession implements PersistentStorageSession {
         ensureCommitNotStarted();
 
         final FedoraOCFLMapping mapping = getFedoraOCFLMapping(identifier);
-        final OCFLObjectSession objSession = findOrCreateSession(mapping.getOcflObjectId());
+        final var ocflId = mapping.getOcflObjectId();
+        final OCFLObjectSession objSession = findOrCreateSession(ocflId);
         final var rootIdentifier = mapping.getRootObjectIdentifier();
         final var ocflSubpath = resovleOCFLSubpathFromResourceId(rootIdentifier, identifier);
         final var sidecarSubpath = getSidecarSubpath(ocflSubpath);
 
-        final InputStream headerStream;
         if (version != null) {
-            final var versionId = resolveVersionId(objSession, version);
-            headerStream = objSession.read(sidecarSubpath, versionId);
-        } else {
-            headerStream = objSession.read(sidecarSubpath);
+            // Versions are immutable, so they may be cached even if the head has uncommitted changes.
+            final var versionId = resolveVersionId(ocflId, objSession, version);
+            return headersCache.get(ocflId, sidecarSubpath, versionId,
+                    () -> deserializeHeaders(objSession.read(sidecarSubpath, versionId)));
         }
 
-        return deserializeHeaders(headerStream);
+        final var staged = stagedHeaders.get(ocflId);
+        if (staged != null) {
+            var headers = staged.get(sidecarSubpath);
+            if (headers == null) {
+                headers = deserializeHeaders(objSession.read(sidecarSubpath));
+                staged.put(sidecarSubpath, headers);
+            }
+            return headers;
+        }
+
+        return headersCache.get(ocflId, sidecarSubpath, null,
+                () -> deserializeHeaders(objSession.read(sidecarSubpath)));
     }
 
     private FedoraOCFLMapping getFedoraOCFLMapping(final String identifier) throws PersistentStorageException {
@@ -219,10 +349,24 @@ public class OCFLPersistentStorageSession implements PersistentStorageSession {
 
         final var mapping = getFedoraOCFLMapping(identifier);
         final var rootIdentifier = mapping.getRootObjectIdentifier();
-        final var objSession = findOrCreateSession(mapping.getOcflObjectId());
+        final var ocflId = mapping.getOcflObjectId();
+        final var objSession = findOrCreateSession(ocflId);
         final var ocflSubpath = resovleOCFLSubpathFromResourceId(rootIdentifier, identifier);
         final var filePath = resolveExtensions(ocflSubpath, true);
-        return getRdfStream(identifier, objSession, filePath, version);
+        final var versionId = resolveVersionId(ocflId, objSession, version);
+
+        final var topic = createURI(resolveTopic(identifier));
+        if (versionId == null && stagedHeaders.containsKey(ocflId)) {
+            return new DefaultRdfStream(topic, streamTriples(objSession, filePath, null));
+        }
+
+        final var key = triplesCache.key(ocflId, filePath, versionId);
+        final var cached = triplesCache.getIfPresent(key);
+        if (cached != null) {
+            return new DefaultRdfStream(topic, cached.stream());
+        }
+        return new DefaultRdfStream(topic, triplesCache.cacheOnRead(key, streamTriples(objSession, filePath,
+                versionId)));
     }
 
     @Override
@@ -242,7 +386,27 @@ public class OCFLPersistentStorageSession implements PersistentStorageSession {
             );
         }
 
-        return OCFLPersistentStorageUtils.listVersions(objSession, subpath);
+        return getVersionIndex(mapping.getOcflObjectId(), objSession, subpath).listVersions();
+    }
+
+    /*
+     * Resolve the OCFL version created at an instant, or null for the head of the object.
+     */
+    private String resolveVersionId(final String ocflId, final OCFLObjectSession objSession, final Instant version)
+            throws PersistentStorageException {
+        if (version == null) {
+            return null;
+        }
+        return OCFLPersistentStorageUtils.resolveVersionId(getVersionIndex(ocflId, objSession, null), version);
+    }
+
+    /*
+     * Get the index of the committed versions of an OCFL object, or of a file within it if a subpath is provided.
+     */
+    private OCFLVersionIndex getVersionIndex(final String ocflId, final OCFLObjectSession objSession,
+                                             final String subpath) throws PersistentStorageException {
+        return versionsCache.get(ocflId, subpath == null ? "" : subpath, null,
+                () -> new OCFLVersionIndex(ocflId, objSession.listVersions(subpath)));
     }
 
     @Override
@@ -252,10 +416,12 @@ public class OCFLPersistentStorageSession implements PersistentStorageSession {
 
         final var mapping = getFedoraOCFLMapping(identifier);
         final var rootIdentifier = mapping.getRootObjectIdentifier();
-        final var objSession = findOrCreateSession(mapping.getOcflObjectId());
+        final var ocflId = mapping.getOcflObjectId();
+        final var objSession = findOrCreateSession(ocflId);
         final var ocflSubpath = resovleOCFLSubpathFromResourceId(rootIdentifier, identifier);
+        final var versionId = resolveVersionId(ocflId, objSession, version);
 
-        return getBinaryStream(objSession, ocflSubpath, version);
+        return getBinaryStream(objSession, ocflSubpath, versionId);
     }
 
     @Override
@@ -281,36 +447,91 @@ public class OCFLPersistentStorageSession implements PersistentStorageSession {
         final List<OCFLObjectSession> sessions = new ArrayList<>(this.sessionMap.values());
 
         //order in order of session creation time. (supports testing)
+        //OCFL objects do not depend on each other, so the order only holds when committing one at a time.
         Collections.sort(sessions, CREATION_TIME_ORDER);
 
+        final long start = System.nanoTime();
         try {
             LOGGER.debug("Preparing commit...");
 
-            for (final OCFLObjectSession objectSession : sessions) {
-                objectSession.prepare();
-            }
+            forEachSession(sessions, OCFLObjectSession::prepare);
 
             LOGGER.debug("Prepare succeeded.");
+        } catch (final PersistentItemConflictException e) {
+            // Conflicts are reported as they are, so that the transaction can be retried
+            this.state = State.PREPARE_FAILED;
+            throw e;
         } catch (final Exception e) {
             this.state = State.PREPARE_FAILED;
             throw new PersistentStorageException("Commit failed due to : " + e.getMessage(), e);
         }
+        final long prepared = System.nanoTime();
 
         try {
-            this.sessionsToRollback = new ArrayList<>(sessions.size());
-
+            this.sessionsToRollback = Collections.synchronizedList(new ArrayList<>(sessions.size()));
 
             //perform commit
-            for (final OCFLObjectSession objectSession : sessions) {
+            forEachSession(sessions, objectSession -> {
                 objectSession.commit();
                 sessionsToRollback.add(objectSession);
-            }
+            });
 
             state = State.COMMITTED;
-            LOGGER.info("Successfully committed {}", this);
+            LOGGER.info("Successfully committed {}: {} objects prepared in {} ms and committed in {} ms", this,
+                    sessions.size(), NANOSECONDS.toMillis(prepared - start),
+                    NANOSECONDS.toMillis(System.nanoTime() - prepared));
         } catch (final Exception e) {
             this.state = State.COMMIT_FAILED;
             throw new PersistentStorageException("Commit failed due to : " + e.getMessage(), e);
+        } finally {
+            // Even a failed commit may have changed some of the objects
+            stagedHeaders.keySet().forEach(ocflId -> {
+                headersCache.invalidate(ocflId);
+                triplesCache.invalidate(ocflId);
+                versionsCache.invalidate(ocflId);
+            });
+        }
+    }
+
+    /**
+     * An action on an OCFL object session
+     */
+    @FunctionalInterface
+    private interface ObjectSessionAction {
+        void apply(OCFLObjectSession objectSession) throws PersistentStorageException;
+    }
+
+    /**
+     * Apply an action to each OCFL object session, in parallel if there is a commit executor. Once an action fails
+     * the actions which have not started are skipped, and the first failure is thrown after the started actions
+     * complete.
+     *
+     * @param sessions the OCFL object sessions
+     * @param action the action
+     * @throws Exception the first failure
+     */
+    private void forEachSession(final List<OCFLObjectSession> sessions, final ObjectSessionAction action)
+            throws Exception {
+        if (commitExecutor == null || sessions.size() < 2) {
+            for (final OCFLObjectSession objectSession : sessions) {
+                action.apply(objectSession);
+            }
+            return;
+        }
+
+        final var failure = new AtomicReference<Exception>();
+        CompletableFuture.allOf(sessions.stream().map(objectSession -> CompletableFuture.runAsync(() -> {
+            if (failure.get() == null) {
+                try {
+                    action.apply(objectSession);
+                } catch (final Exception e) {
+                    failure.compareAndSet(null, e);
+                }
+            }
+        }, commitExecutor)).toArray(CompletableFuture[]::new)).join();
+
+        if (failure.get() != null) {
+            throw failure.get();
         }
     }
 
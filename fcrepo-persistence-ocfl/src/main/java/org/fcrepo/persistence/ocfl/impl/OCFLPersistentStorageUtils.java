@@ -26,36 +26,37 @@ import edu.wisc.library.ocfl.core.extension.layout.config.DefaultLayoutConfig;
 import edu.wisc.library.ocfl.core.storage.filesystem.FileSystemOcflStorage;
 
 import org.apache.http.impl.auth.UnsupportedDigestAlgorithmException;
-import org.apache.jena.rdf.model.Model;
+import org.apache.jena.graph.Triple;
 import org.apache.jena.riot.RDFDataMgr;
 import org.apache.jena.riot.RDFFormat;
 import org.apache.jena.riot.system.StreamRDF;
 import org.fcrepo.kernel.api.FedoraTypes;
 import org.fcrepo.kernel.api.RdfStream;
 import org.fcrepo.kernel.api.exception.RepositoryRuntimeException;
-import org.fcrepo.kernel.api.rdf.DefaultRdfStream;
 import org.fcrepo.kernel.api.utils.ContentDigest;
 import org.fcrepo.persistence.api.WriteOutcome;
 import org.fcrepo.persistence.api.exceptions.PersistentItemNotFoundException;
 import org.fcrepo.persistence.api.exceptions.PersistentStorageException;
 import org.fcrepo.persistence.ocfl.api.OCFLObjectSession;
-import org.fcrepo.persistence.ocfl.api.OCFLVersion;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Instant;
-import java.util.Collections;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Iterator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 import static java.lang.String.format;
-import static org.apache.jena.graph.NodeFactory.createURI;
-import static org.apache.jena.rdf.model.ModelFactory.createDefaultModel;
+import static java.util.Spliterator.IMMUTABLE;
+import static java.util.Spliterator.NONNULL;
+import static java.util.Spliterators.spliteratorUnknownSize;
+import static java.util.stream.StreamSupport.stream;
 import static org.apache.jena.riot.RDFFormat.NTRIPLES;
 import static org.apache.jena.riot.system.StreamRDFWriter.getWriterStream;
 import static org.fcrepo.kernel.api.FedoraTypes.FCR_ACL;
@@ -91,6 +92,17 @@ public class OCFLPersistentStorageUtils {
 
     private static final String FEDORA_METADATA_SUFFIX = "/" + FedoraTypes.FCR_METADATA;
 
+    /**
+     * The directory within an OCFL object which holds its mutable HEAD.
+     */
+    public static final String MUTABLE_HEAD_DIRECTORY = "extensions/0004-mutable-head";
+
+    /**
+     * Storage path of the content directory of a version or mutable HEAD revision, capturing the object root.
+     */
+    private static final Pattern CONTENT_DIRECTORY_PATTERN = Pattern.compile(
+            "^(.+?)(?:/" + MUTABLE_HEAD_DIRECTORY + ")?/v\\d+/content(?:/r\\d+)?$");
+
     /**
      * Maps a Fedora resource id to a subpath and then converts it into an OCFL subpath. This method
      * is a wrapper around {@link #relativizeSubpath} and {@link #resolveOCFLSubpath}.
@@ -197,21 +209,16 @@ public class OCFLPersistentStorageUtils {
      */
     public static WriteOutcome writeRDF(final OCFLObjectSession session, final RdfStream triples, final String subpath)
             throws PersistentStorageException {
-        try (final var os = new ByteArrayOutputStream()) {
+        final var outcome = session.write(resolveExtensions(subpath, true), os -> {
             final StreamRDF streamRDF = getWriterStream(os, getRdfFormat());
             streamRDF.start();
             if (triples != null) {
                 triples.forEach(streamRDF::triple);
             }
             streamRDF.finish();
-
-            final var is = new ByteArrayInputStream(os.toByteArray());
-            final var outcome = session.write(resolveExtensions(subpath, true), is);
-            log.debug("wrote {} to {}", subpath, session);
-            return outcome;
-        } catch (final IOException ex) {
-            throw new PersistentStorageException(format("failed to write subpath %s in %s", subpath, session), ex);
-        }
+        });
+        log.debug("wrote {} to {}", subpath, session);
+        return outcome;
     }
 
     private static InputStream readFile(final OCFLObjectSession objSession, final String subpath, final String version)
@@ -224,70 +231,77 @@ public class OCFLPersistentStorageUtils {
      *
      * @param objSession The OCFL object session
      * @param subpath The path to the desired file
-     * @param version The version. If null, the head state will be returned.
+     * @param versionId The OCFL version id. If null, the head state will be returned.
      * @return the binary content stream
      * @throws PersistentStorageException If unable to read the specified binary stream.
      */
     public static InputStream getBinaryStream(final OCFLObjectSession objSession,
-            final String subpath, final Instant version) throws PersistentStorageException {
-        final String versionId = resolveVersionId(objSession, version);
+            final String subpath, final String versionId) throws PersistentStorageException {
         return readFile(objSession, subpath, versionId);
     }
 
     /**
-     * Get an RDF stream for the specified file.
+     * Stream the triples of the specified file, parsing them as they are read. The file is closed when all of the
+     * triples have been read, or when the stream is closed.
      *
-     * @param identifier The resource identifier
-     * @param version    The version.  If null, the head state will be returned.
      * @param objSession The OCFL object session
      * @param subpath The path to the desired file.
-     * @return the RDF stream
-     * @throws PersistentStorageException If unable to read the specified rdf stream.
+     * @param versionId The OCFL version id. If null, the head state will be returned.
+     * @return the stream of triples
+     * @throws PersistentStorageException If unable to open the specified rdf file.
      */
-    public static RdfStream getRdfStream(final String identifier,
-                                         final OCFLObjectSession objSession,
-                                         final String subpath,
-                                         final Instant version) throws PersistentStorageException {
-        final String versionId = resolveVersionId(objSession, version);
-        try (final InputStream is = readFile(objSession, subpath, versionId)) {
-            final Model model = createDefaultModel();
-            RDFDataMgr.read(model, is, DEFAULT_RDF_FORMAT.getLang());
-            final String topic = resolveTopic(identifier);
-            return DefaultRdfStream.fromModel(createURI(topic), model);
+    public static Stream<Triple> streamTriples(final OCFLObjectSession objSession, final String subpath,
+                                               final String versionId) throws PersistentStorageException {
+        final InputStream is = readFile(objSession, subpath, versionId);
+        final Iterator<Triple> parser = RDFDataMgr.createIteratorTriples(is, DEFAULT_RDF_FORMAT.getLang(), null);
+        final Iterator<Triple> triples = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                final boolean hasNext = parser.hasNext();
+                if (!hasNext) {
+                    closeQuietly(is);
+                }
+                return hasNext;
+            }
+
+            @Override
+            public Triple next() {
+                return parser.next();
+            }
+        };
+        return stream(spliteratorUnknownSize(triples, IMMUTABLE | NONNULL), false)
+                .onClose(() -> closeQuietly(is));
+    }
+
+    private static void closeQuietly(final InputStream is) {
+        try {
+            is.close();
         } catch (final IOException ex) {
-            throw new PersistentStorageException(format("unable to read %s ;  version = %s", identifier, version), ex);
+            log.warn("Failed to close rdf file", ex);
         }
     }
 
     /**
      * Resolve an instant to a version
      *
-     * @param objSession session
+     * @param versions index of the versions of the object
      * @param version version time
-     * @return name of version
-     * @throws PersistentStorageException thrown if version not found
+     * @return name of version, or null if the version time is null
+     * @throws PersistentItemNotFoundException thrown if version not found
      */
-    public static String resolveVersionId(final OCFLObjectSession objSession, final Instant version)
-            throws PersistentStorageException {
-        if (version != null) {
-            final var versions = objSession.listVersions();
-            // reverse order so that the most recent version is matched first
-            Collections.reverse(versions);
-            return versions.stream()
-                    .filter(vd -> {
-                        return vd.getCreated().equals(version);
-                    }).map(OCFLVersion::getOcflVersionId)
-                    .findFirst()
-                    .orElseThrow(() -> {
-                        //otherwise throw an exception.
-                        return new PersistentItemNotFoundException(format(
-                                "There is no version in %s with a created date matchin %s",
-                                objSession, version));
-                    });
-        } else {
-            //return null if the instant is null
+    public static String resolveVersionId(final OCFLVersionIndex versions, final Instant version)
+            throws PersistentItemNotFoundException {
+        if (version == null) {
             return null;
         }
+
+        final var versionId = versions.getVersionId(version);
+        if (versionId == null) {
+            throw new PersistentItemNotFoundException(format(
+                    "There is no version in %s with a created date matching %s",
+                    versions.getOcflObjectId(), version));
+        }
+        return versionId;
     }
 
     /**
@@ -309,23 +323,6 @@ public class OCFLPersistentStorageUtils {
         return subpath.startsWith(getInternalFedoraDirectory()) && subpath.endsWith(RESOURCE_HEADER_EXTENSION);
     }
 
-    /**
-     * A utility method that returns a list of  {@link java.time.Instant} objects representing immutable versions
-     * accessible from the OCFL Object represented by the session.
-     *
-     * @param objSession The OCFL object session
-     * @param subpath The subpath within the object to list versions of; if blank all of the versions of the object are
-     *                listed
-     * @return A list of Instant objects
-     * @throws PersistentStorageException On read failure due to the session being closed or some other problem.
-     */
-    public static List<Instant> listVersions(final OCFLObjectSession objSession, final String subpath)
-            throws PersistentStorageException {
-        return  objSession.listVersions(subpath).stream()
-                .map(OCFLVersion::getCreated)
-                .collect(Collectors.toList());
-    }
-
     /**
      * @return the RDF Format. By default NTRIPLES are returned.
      */
@@ -378,6 +375,39 @@ public class OCFLPersistentStorageUtils {
         return bareFedoraIdentifier;
     }
 
+    /**
+     * Determine if two existing directories are on the same file store, so that files can be moved between them
+     * without being copied.
+     * @param dir1 a directory
+     * @param dir2 another directory
+     * @return true if both directories are on the same file store, false if they are not or can not be inspected
+     */
+    public static boolean isOnSameFileStore(final File dir1, final File dir2) {
+        try {
+            return Files.getFileStore(dir1.toPath()).equals(Files.getFileStore(dir2.toPath()));
+        } catch (final IOException e) {
+            log.debug("Unable to determine the file stores of {} and {}", dir1, dir2, e);
+            return false;
+        }
+    }
+
+    /**
+     * Determine the root directory of an OCFL object from the storage path of one of its files.
+     * @param storageRootPath the OCFL storage root directory
+     * @param storageRelativePath the path of the file relative to the storage root
+     * @param logicalPath the logical path of the file within the object
+     * @return the object root directory, or null if it can not be determined
+     */
+    public static Path resolveObjectRootPath(final Path storageRootPath, final String storageRelativePath,
+                                             final String logicalPath) {
+        if (!storageRelativePath.endsWith("/" + logicalPath)) {
+            return null;
+        }
+        final Matcher matcher = CONTENT_DIRECTORY_PATTERN.matcher(
+                storageRelativePath.substring(0, storageRelativePath.length() - logicalPath.length() - 1));
+        return matcher.matches() ? storageRootPath.resolve(matcher.group(1)) : null;
+    }
+
     /**
      * Create a new ocfl repository
      * @param ocflStorageRootDir The ocfl storage root directory
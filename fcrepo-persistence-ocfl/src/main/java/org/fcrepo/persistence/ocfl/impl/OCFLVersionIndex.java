@@ -0,0 +1,119 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.ocfl.impl;
+
+import org.fcrepo.persistence.ocfl.api.OCFLVersion;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static java.util.stream.Collectors.toUnmodifiableList;
+
+/**
+ * An immutable index of the versions of an OCFL object, or of a file within an OCFL object, which resolves the
+ * version created at an instant with a binary search.
+ *
+ * @author bbpennel
+ * @since 6.0.0
+ */
+public class OCFLVersionIndex {
+
+    private final String ocflObjectId;
+
+    /*
+     * Created instants of the versions, in version order.
+     */
+    private final List<Instant> versions;
+
+    /*
+     * Created instants and version ids of the versions, ordered by created instant. Versions created at the same
+     * instant keep their version order.
+     */
+    private final Instant[] createdInstants;
+
+    private final String[] versionIds;
+
+    /**
+     * Constructor
+     *
+     * @param ocflObjectId the OCFL object id
+     * @param versions the versions, in version order
+     */
+    public OCFLVersionIndex(final String ocflObjectId, final List<OCFLVersion> versions) {
+        this.ocflObjectId = ocflObjectId;
+        this.versions = versions.stream().map(OCFLVersion::getCreated).collect(toUnmodifiableList());
+
+        final var sorted = new ArrayList<>(versions);
+        sorted.sort(Comparator.comparing(OCFLVersion::getCreated));
+        this.createdInstants = new Instant[sorted.size()];
+        this.versionIds = new String[sorted.size()];
+        for (int i = 0; i < sorted.size(); i++) {
+            createdInstants[i] = sorted.get(i).getCreated();
+            versionIds[i] = sorted.get(i).getOcflVersionId();
+        }
+    }
+
+    /**
+     * @return the OCFL object id
+     */
+    public String getOcflObjectId() {
+        return ocflObjectId;
+    }
+
+    /**
+     * @return the created instants of the versions, in version order
+     */
+    public List<Instant> listVersions() {
+        return versions;
+    }
+
+    /**
+     * Find the version created at an instant. If several versions were created at the same instant, the most recent
+     * of them is returned.
+     *
+     * @param created the instant the version was created
+     * @return the OCFL version id, or null if no version was created at the instant
+     */
+    public String getVersionId(final Instant created) {
+        // Find the first version created after the instant
+        int low = 0;
+        int high = createdInstants.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (createdInstants[mid].compareTo(created) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        if (low > 0 && createdInstants[low - 1].equals(created)) {
+            return versionIds[low - 1];
+        }
+        return null;
+    }
+
+    /**
+     * @return the number of versions
+     */
+    public int size() {
+        return versionIds.length;
+    }
+}
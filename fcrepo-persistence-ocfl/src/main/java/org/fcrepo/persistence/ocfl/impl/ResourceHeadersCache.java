@@ -0,0 +1,45 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.ocfl.impl;
+
+import org.fcrepo.kernel.api.models.ResourceHeaders;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+
+/**
+ * Holds the most recently read committed resource headers, shared by all persistent storage sessions. Headers are
+ * keyed by OCFL object, sidecar subpath and version.
+ *
+ * @author bbpennel
+ * @since 6.0.0
+ */
+@Component
+public class ResourceHeadersCache extends OCFLObjectCache<ResourceHeaders> {
+
+    /**
+     * Constructor
+     *
+     * @param maximumSize the maximum number of headers to hold in memory.
+     */
+    @Inject
+    public ResourceHeadersCache(@Value("${fcrepo.ocfl.headers.cache.size:10000}") final long maximumSize) {
+        super(maximumSize, maximumSize, headers -> 1);
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.ocfl.impl;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static java.util.Spliterator.IMMUTABLE;
+import static java.util.Spliterator.NONNULL;
+import static java.util.Spliterators.spliteratorUnknownSize;
+import static java.util.stream.StreamSupport.stream;
+
+/**
+ * Holds the most recently read committed triples of RDF sources, shared by all persistent storage sessions. Triples
+ * are keyed by OCFL object, subpath and version, and the cache is bounded by the estimated memory used by the
+ * triples. Triples are collected as they are streamed to the reader, so only resources which are read in full and
+ * are small enough are cached.
+ *
+ * @author bbpennel
+ * @since 6.0.0
+ */
+@Component
+public class TriplesCache extends OCFLObjectCache<List<Triple>> {
+
+    /*
+     * Estimated bytes used by a triple and its nodes, excluding the characters of the nodes.
+     */
+    private static final int TRIPLE_OVERHEAD = 128;
+
+    private static final long MAXIMUM_OBJECTS = 100000;
+
+    /*
+     * Fraction of the cache which the triples of a single resource may take.
+     */
+    private static final int MAXIMUM_ENTRY_FRACTION = 16;
+
+    private final long maximumEntrySize;
+
+    /**
+     * Constructor
+     *
+     * @param maximumSize the maximum estimated bytes of triples to hold in memory.
+     */
+    @Inject
+    public TriplesCache(@Value("${fcrepo.ocfl.rdf.cache.size:67108864}") final long maximumSize) {
+        super(MAXIMUM_OBJECTS, maximumSize, TriplesCache::estimateSize);
+        this.maximumEntrySize = maximumSize / MAXIMUM_ENTRY_FRACTION;
+    }
+
+    /**
+     * Estimate the memory used by a list of triples.
+     *
+     * @param triples the triples
+     * @return the estimated size in bytes
+     */
+    static long estimateSize(final List<Triple> triples) {
+        long size = 0;
+        for (final Triple triple : triples) {
+            size += estimateSize(triple);
+        }
+        return size;
+    }
+
+    private static long estimateSize(final Triple triple) {
+        return TRIPLE_OVERHEAD + 2 * (length(triple.getSubject()) + length(triple.getPredicate()) +
+                length(triple.getObject()));
+    }
+
+    /**
+     * Wrap a stream of triples being read so that the triples are cached once they have all been read. Triples which
+     * would take more than a small part of the cache are not collected.
+     *
+     * @param key the key of the triples, resolved before they were read.
+     * @param triples the triples being read.
+     * @return the stream of triples.
+     */
+    Stream<Triple> cacheOnRead(final String key, final Stream<Triple> triples) {
+        final Iterator<Triple> source = triples.iterator();
+        final Iterator<Triple> caching = new Iterator<>() {
+            private List<Triple> read = new ArrayList<>();
+
+            private long size;
+
+            @Override
+            public boolean hasNext() {
+                final boolean hasNext = source.hasNext();
+                if (!hasNext && read != null) {
+                    put(key, List.copyOf(read));
+                    read = null;
+                }
+                return hasNext;
+            }
+
+            @Override
+            public Triple next() {
+                final Triple triple = source.next();
+                if (read != null) {
+                    size += estimateSize(triple);
+                    if (size > maximumEntrySize) {
+                        read = null;
+                    } else {
+                        read.add(triple);
+                    }
+                }
+                return triple;
+            }
+        };
+        return stream(spliteratorUnknownSize(caching, IMMUTABLE | NONNULL), false).onClose(triples::close);
+    }
+
+    private static int length(final Node node) {
+        if (node.isURI()) {
+            return node.getURI().length();
+        } else if (node.isLiteral()) {
+            return node.getLiteralLexicalForm().length();
+        }
+        return node.toString().length();
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.ocfl.impl;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+
+/**
+ * Holds the version indexes of the most recently read OCFL objects, shared by all persistent storage sessions.
+ * Indexes are keyed by OCFL object and by the subpath of the file whose versions they list, where the subpath is
+ * empty for the versions of the whole object. Versions are only created when a session is committed, so uncommitted
+ * changes never affect the cached indexes.
+ *
+ * @author bbpennel
+ * @since 6.0.0
+ */
+@Component
+public class VersionIndexCache extends OCFLObjectCache<OCFLVersionIndex> {
+
+    private static final long MAXIMUM_OBJECTS = 100000;
+
+    /**
+     * Constructor
+     *
+     * @param maximumSize the maximum number of versions to hold in memory.
+     */
+    @Inject
+    public VersionIndexCache(@Value("${fcrepo.ocfl.versions.cache.size:1000000}") final long maximumSize) {
+        super(MAXIMUM_OBJECTS, maximumSize, index -> index.size() + 1);
+    }
+}
@@ -0,0 +1,12 @@
+-- DDL for setting up the Fedora to OCFL index table in H2, PostgreSQL 12.3 and MariaDB 10.5
+-- MySQL 8 will only supports varchar up to 503 characters
+
+-- Holds the ID of each resource, the ID of the resource at the root of its OCFL object and the OCFL object ID.
+CREATE TABLE IF NOT EXISTS ocfl_id_map (
+    fedora_id varchar(503) NOT NULL PRIMARY KEY,
+    fedora_root_id varchar(503) NOT NULL,
+    ocfl_id varchar(503) NOT NULL
+);
+
+-- Create an index to speed finding the resources of an OCFL object.
+CREATE INDEX IF NOT EXISTS ocfl_id_map_idx ON ocfl_id_map (ocfl_id);
@@ -0,0 +1,116 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.ocfl.impl;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+
+/**
+ * Benchmark of the commit latency and throughput of each {@link DurabilityMode}, with concurrent commits which each
+ * write a content file and rewrite the inventory of their object, as a commit to an OCFL object does. The class name
+ * keeps it out of the default surefire run, use
+ * <code>mvn test -pl fcrepo-persistence-ocfl -Dtest=CommitFlusherBenchmark</code> to run it. The results depend on
+ * the storage device holding the temporary directory.
+ *
+ * @author bbpennel
+ */
+public class CommitFlusherBenchmark {
+
+    private static final Logger LOGGER = getLogger(CommitFlusherBenchmark.class);
+
+    private static final int THREADS = 16;
+
+    private static final int COMMITS_PER_THREAD = 100;
+
+    private static final int OBJECTS = 4;
+
+    private static final long WINDOW_MILLIS = 5;
+
+    private static final byte[] CONTENT = new byte[4096];
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void benchmarkDurabilityModes() throws Exception {
+        for (final DurabilityMode mode : DurabilityMode.values()) {
+            measure(mode, "warmup-" + mode, false);
+        }
+        for (final DurabilityMode mode : DurabilityMode.values()) {
+            measure(mode, mode.name(), true);
+        }
+    }
+
+    private void measure(final DurabilityMode mode, final String name, final boolean log) throws Exception {
+        final Path root = tempFolder.newFolder(name).toPath();
+        final CommitFlusher flusher = new CommitFlusher(mode, WINDOW_MILLIS);
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final long[] latencies = new long[THREADS * COMMITS_PER_THREAD];
+        final long start = System.nanoTime();
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                final int thread = t;
+                futures.add(executor.submit(() -> {
+                    // Threads share objects, as concurrent transactions changing the same containers would
+                    final Path object = Files.createDirectories(root.resolve("object" + thread % OBJECTS));
+                    final Path inventory = object.resolve("inventory.json");
+                    for (int i = 0; i < COMMITS_PER_THREAD; i++) {
+                        final long commitStart = System.nanoTime();
+                        final Path content = Files.write(object.resolve("content-" + thread + "-" + i), CONTENT);
+                        Files.write(inventory, CONTENT);
+                        flusher.flush(List.of(content, inventory, object));
+                        latencies[thread * COMMITS_PER_THREAD + i] = System.nanoTime() - commitStart;
+                    }
+                    return null;
+                }));
+            }
+            for (final var future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+            flusher.shutdown();
+        }
+        final double seconds = (System.nanoTime() - start) / 1e9;
+        if (!log) {
+            return;
+        }
+
+        Arrays.sort(latencies);
+        LOGGER.info("{}: {} commits/s, latency mean {} ms, p50 {} ms, p99 {} ms, {} flushes, {} files forced", mode,
+                String.format("%.0f", latencies.length / seconds),
+                String.format("%.2f", Arrays.stream(latencies).average().orElse(0) / 1e6),
+                String.format("%.2f", latencies[latencies.length / 2] / 1e6),
+                String.format("%.2f", latencies[latencies.length * 99 / 100] / 1e6),
+                flusher.getFlushCount(), flusher.getForcedCount());
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.ocfl.impl;
+
+import static org.fcrepo.persistence.ocfl.impl.DurabilityMode.ASYNC;
+import static org.fcrepo.persistence.ocfl.impl.DurabilityMode.FSYNC;
+import static org.fcrepo.persistence.ocfl.impl.DurabilityMode.GROUP;
+import static org.fcrepo.persistence.ocfl.impl.DurabilityMode.NONE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author bbpennel
+ */
+public class CommitFlusherTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private Path dir;
+
+    private Path file1;
+
+    private Path file2;
+
+    private CommitFlusher flusher;
+
+    @Before
+    public void setup() throws Exception {
+        dir = tempFolder.newFolder("object").toPath();
+        file1 = Files.writeString(dir.resolve("file1"), "content 1");
+        file2 = Files.writeString(dir.resolve("file2"), "content 2");
+    }
+
+    @After
+    public void teardown() {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+    }
+
+    @Test
+    public void testFromString() {
+        assertEquals(GROUP, DurabilityMode.fromString("group"));
+        assertEquals(FSYNC, DurabilityMode.fromString(" FSYNC "));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFromStringUnknown() {
+        DurabilityMode.fromString("sometimes");
+    }
+
+    @Test
+    public void testNoneDoesNotForce() throws Exception {
+        flusher = new CommitFlusher(NONE, 10);
+
+        flusher.flush(List.of(file1, dir));
+
+        assertEquals(0, flusher.getCommitCount());
+        assertEquals(0, flusher.getForcedCount());
+    }
+
+    @Test
+    public void testFsyncForcesFilesAndDirectories() throws Exception {
+        flusher = new CommitFlusher(FSYNC, 10);
+
+        flusher.flush(List.of(file1, file2, dir));
+
+        assertEquals(1, flusher.getCommitCount());
+        assertEquals(3, flusher.getForcedCount());
+        assertEquals(0, flusher.getFlushCount());
+    }
+
+    @Test
+    public void testMissingPathsIgnored() throws Exception {
+        flusher = new CommitFlusher(FSYNC, 10);
+
+        flusher.flush(List.of(dir.resolve("missing"), file1));
+
+        assertEquals(1, flusher.getForcedCount());
+    }
+
+    @Test
+    public void testGroupCoalescesConcurrentCommits() throws Exception {
+        flusher = new CommitFlusher(GROUP, 100);
+        final int commits = 8;
+        final var start = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(commits);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < commits; i++) {
+                final Path content = Files.writeString(dir.resolve("content" + i), "content " + i);
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    // Every commit rewrites the shared inventory
+                    flusher.flush(List.of(content, file1, dir));
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (final var future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(commits, flusher.getCommitCount());
+        assertTrue("Commits must share flushes", flusher.getFlushCount() < commits);
+        assertTrue("Shared files must be forced once per flush",
+                flusher.getForcedCount() <= commits + 2 * flusher.getFlushCount());
+    }
+
+    @Test
+    public void testAsyncForcedInBackground() throws Exception {
+        flusher = new CommitFlusher(ASYNC, 60000);
+
+        flusher.flush(List.of(file1, dir));
+        assertEquals(0, flusher.getForcedCount());
+
+        flusher.shutdown();
+        assertEquals(2, flusher.getForcedCount());
+        assertEquals(1, flusher.getFlushCount());
+    }
+
+    @Test
+    public void testGroupFlushAfterShutdown() throws Exception {
+        flusher = new CommitFlusher(GROUP, 10);
+        flusher.shutdown();
+
+        flusher.flush(List.of(file1));
+
+        assertEquals(1, flusher.getForcedCount());
+    }
+}
@@ -38,6 +38,9 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.withSettings;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
@@ -55,6 +58,7 @@ import org.fcrepo.persistence.api.exceptions.PersistentStorageException;
 import org.fcrepo.persistence.common.FileWriteOutcome;
 import org.fcrepo.persistence.ocfl.api.FedoraToOCFLObjectIndex;
 import org.fcrepo.persistence.ocfl.api.OCFLObjectSession;
+import org.fcrepo.persistence.ocfl.api.OCFLObjectSession.ContentWriter;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -90,7 +94,7 @@ public class CreateNonRdfSourcePersisterTest {
     private ArgumentCaptor<InputStream> userContentCaptor;
 
     @Captor
-    private ArgumentCaptor<InputStream> headersIsCaptor;
+    private ArgumentCaptor<ContentWriter> headersCaptor;
 
     @Mock
     private ResourceHeaders headers;
@@ -126,6 +130,7 @@ public class CreateNonRdfSourcePersisterTest {
         when(mapping.getRootObjectIdentifier()).thenReturn(ROOT_RESOURCE_ID);
 
         when(session.write(anyString(), any(InputStream.class))).thenReturn(writeOutcome);
+        when(session.write(anyString(), any(ContentWriter.class))).thenReturn(writeOutcome);
         when(session.getObjectDigestAlgorithm()).thenReturn(DIGEST_ALGORITHM.SHA1);
 
         nonRdfSourceOperation = mock(NonRdfSourceOperation.class, withSettings().extraInterfaces(
@@ -293,9 +298,8 @@ public class CreateNonRdfSourcePersisterTest {
 
     private ResourceHeaders retrievePersistedHeaders(final String subpath) throws Exception {
         verify(session).write(eq(getInternalFedoraDirectory() + subpath + RESOURCE_HEADER_EXTENSION),
-                headersIsCaptor.capture());
-        final var headersIs = headersIsCaptor.getValue();
-        return deserializeHeaders(headersIs);
+                headersCaptor.capture());
+        return deserializeHeaders(toInputStream(headersCaptor.getValue()));
     }
 
     private void assertModificationHeadersSet(final ResourceHeaders headers) {
@@ -304,4 +308,10 @@ public class CreateNonRdfSourcePersisterTest {
         assertEquals(USER_PRINCIPAL, headers.getLastModifiedBy());
         assertNotNull(headers.getLastModifiedDate());
     }
+
+    private static InputStream toInputStream(final ContentWriter writer) throws IOException {
+        final var out = new ByteArrayOutputStream();
+        writer.writeTo(out);
+        return new ByteArrayInputStream(out.toByteArray());
+    }
 }
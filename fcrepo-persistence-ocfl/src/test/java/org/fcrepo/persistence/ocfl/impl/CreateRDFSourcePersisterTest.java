@@ -32,6 +32,7 @@ import org.fcrepo.kernel.api.rdf.DefaultRdfStream;
 import org.fcrepo.persistence.api.WriteOutcome;
 import org.fcrepo.persistence.ocfl.api.FedoraToOCFLObjectIndex;
 import org.fcrepo.persistence.ocfl.api.OCFLObjectSession;
+import org.fcrepo.persistence.ocfl.api.OCFLObjectSession.ContentWriter;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -40,6 +41,9 @@ import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.time.Instant;
 import java.util.stream.Stream;
@@ -105,10 +109,10 @@ public class CreateRDFSourcePersisterTest {
     private WriteOutcome writeOutcome;
 
     @Captor
-    private ArgumentCaptor<InputStream> userTriplesIsCaptor;
+    private ArgumentCaptor<ContentWriter> userTriplesCaptor;
 
     @Captor
-    private ArgumentCaptor<InputStream> headersIsCaptor;
+    private ArgumentCaptor<ContentWriter> headersCaptor;
 
     private CreateRDFSourcePersister persister;
 
@@ -117,7 +121,7 @@ public class CreateRDFSourcePersisterTest {
         operation = mock(RdfSourceOperation.class, withSettings().extraInterfaces(
                 CreateResourceOperation.class));
 
-        when(session.write(anyString(), any(InputStream.class))).thenReturn(writeOutcome);
+        when(session.write(anyString(), any(ContentWriter.class))).thenReturn(writeOutcome);
         when(psSession.findOrCreateSession(anyString())).thenReturn(session);
         when(operation.getType()).thenReturn(CREATE);
 
@@ -206,16 +210,21 @@ public class CreateRDFSourcePersisterTest {
 
     private ResourceHeaders retrievePersistedHeaders(final String subpath) throws Exception {
         verify(session).write(eq(getInternalFedoraDirectory() + subpath + RESOURCE_HEADER_EXTENSION),
-                headersIsCaptor.capture());
-        final var headersIs = headersIsCaptor.getValue();
-        return deserializeHeaders(headersIs);
+                headersCaptor.capture());
+        return deserializeHeaders(toInputStream(headersCaptor.getValue()));
     }
 
     private Model retrievePersistedUserModel(final String subpath) throws Exception {
-        verify(session).write(eq(subpath + getRDFFileExtension()), userTriplesIsCaptor.capture());
-        final InputStream userTriplesIs = userTriplesIsCaptor.getValue();
+        verify(session).write(eq(subpath + getRDFFileExtension()), userTriplesCaptor.capture());
+        final InputStream userTriplesIs = toInputStream(userTriplesCaptor.getValue());
         final Model userModel = createDefaultModel();
         RDFDataMgr.read(userModel, userTriplesIs, Lang.NTRIPLES);
         return userModel;
     }
+
+    private static InputStream toInputStream(final ContentWriter writer) throws IOException {
+        final var out = new ByteArrayOutputStream();
+        writer.writeTo(out);
+        return new ByteArrayInputStream(out.toByteArray());
+    }
 }
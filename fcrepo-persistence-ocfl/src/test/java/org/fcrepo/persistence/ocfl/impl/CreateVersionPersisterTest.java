@@ -103,7 +103,8 @@ public class CreateVersionPersisterTest {
         when(session.getHeaders(resourceId, null)).thenReturn(headers);
     }
 
-    private OCFLObjectSession addMapping(final String resourceId, final String ocflId) {
+    private OCFLObjectSession addMapping(final String resourceId, final String ocflId)
+            throws PersistentStorageException {
         index.addMapping(resourceId, resourceId, ocflId);
         final var objectSession = mock(OCFLObjectSession.class);
         when(session.findOrCreateSession(ocflId)).thenReturn(objectSession);
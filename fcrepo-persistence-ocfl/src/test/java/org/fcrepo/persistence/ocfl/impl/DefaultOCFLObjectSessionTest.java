@@ -27,12 +27,15 @@ import edu.wisc.library.ocfl.core.OcflRepositoryBuilder;
 import edu.wisc.library.ocfl.core.extension.layout.config.DefaultLayoutConfig;
 import edu.wisc.library.ocfl.core.storage.filesystem.FileSystemOcflStorage;
 import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import static java.lang.String.format;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -41,6 +44,7 @@ import static org.fcrepo.persistence.api.CommitOption.NEW_VERSION;
 import static org.fcrepo.persistence.api.CommitOption.UNVERSIONED;
 
 import org.fcrepo.persistence.api.CommitOption;
+import org.fcrepo.persistence.api.exceptions.PersistentItemConflictException;
 import org.fcrepo.persistence.api.exceptions.PersistentItemNotFoundException;
 import org.fcrepo.persistence.api.exceptions.PersistentSessionClosedException;
 import org.fcrepo.persistence.api.exceptions.PersistentStorageException;
@@ -52,6 +56,10 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -69,6 +77,8 @@ public class DefaultOCFLObjectSessionTest {
 
     private final static String FILE2_SUBPATH = "test_file2.txt";
 
+    private final static int MEMORY_STAGING_THRESHOLD = 1024;
+
     private final static String FILE_CONTENT1 = "Some content";
 
     private final static String FILE_CONTENT2 = "Content, 6.0";
@@ -82,11 +92,13 @@ public class DefaultOCFLObjectSessionTest {
 
     private MutableOcflRepository ocflRepository;
 
+    private Path repoDir;
+
     @Before
     public void setup() throws Exception {
         tempFolder.create();
 
-        final var repoDir = tempFolder.newFolder("ocfl-repo").toPath();
+        repoDir = tempFolder.newFolder("ocfl-repo").toPath();
         final var workDir = tempFolder.newFolder("ocfl-work").toPath();
 
         ocflRepository = new OcflRepositoryBuilder()
@@ -98,6 +110,39 @@ public class DefaultOCFLObjectSessionTest {
         session = makeNewSession();
     }
 
+    private DefaultOCFLObjectSession makeMemoryStagingSession(final CommitOption commitOption) throws Exception {
+        makeNewSession();
+        return DefaultOCFLObjectSession.builder(OBJ_ID, stagingPath, ocflRepository, commitOption)
+                .memoryStagingThreshold(MEMORY_STAGING_THRESHOLD)
+                .build();
+    }
+
+    private DefaultOCFLObjectSession makeVersionStampedSession(final OCFLObjectVersionStamps versionStamps)
+            throws Exception {
+        makeNewSession();
+        return DefaultOCFLObjectSession.builder(OBJ_ID, stagingPath.resolve(UUID.randomUUID().toString()),
+                ocflRepository, NEW_VERSION)
+                .versionStamps(versionStamps)
+                .build();
+    }
+
+    private DefaultOCFLObjectSession makeFlushedSession(final List<Path> flushed, final CommitOption commitOption)
+            throws Exception {
+        makeNewSession();
+        final var commitFlusher = new CommitFlusher(DurabilityMode.FSYNC, 0) {
+            @Override
+            public void flush(final Collection<Path> paths) throws PersistentStorageException {
+                flushed.addAll(paths);
+                super.flush(paths);
+            }
+        };
+        return DefaultOCFLObjectSession.builder(OBJ_ID, stagingPath.resolve(UUID.randomUUID().toString()),
+                ocflRepository, commitOption)
+                .storageRootPath(repoDir)
+                .commitFlusher(commitFlusher)
+                .build();
+    }
+
     private DefaultOCFLObjectSession makeNewSession() throws Exception {
         if (stagingPath == null || !stagingPath.toFile().exists()) {
             stagingPath = tempFolder.newFolder("obj1-staging").toPath();
@@ -136,6 +181,65 @@ public class DefaultOCFLObjectSessionTest {
         assertFileInHeadVersion(OBJ_ID, FILE1_SUBPATH, FILE_CONTENT2);
     }
 
+    @Test
+    public void writeWithContentWriter_NewVersion_NewObject() throws Exception {
+        session.write(FILE1_SUBPATH, out -> out.write(FILE_CONTENT1.getBytes()));
+
+        assertStreamMatches(FILE_CONTENT1, session.read(FILE1_SUBPATH));
+
+        final String versionId = commit(NEW_VERSION);
+
+        assertEquals("v1", versionId);
+        assertFileInHeadVersion(OBJ_ID, FILE1_SUBPATH, FILE_CONTENT1);
+    }
+
+    @Test
+    public void stagedSizeReleasedOnCommit() throws Exception {
+        assertEquals(0, session.getStagedSize());
+
+        session.write(FILE1_SUBPATH, fileStream(FILE_CONTENT1));
+        session.write(FILE2_SUBPATH, fileStream(FILE_CONTENT2));
+
+        assertEquals(FILE_CONTENT1.length() + FILE_CONTENT2.length(), session.getStagedSize());
+
+        commit(NEW_VERSION);
+
+        assertEquals(0, session.getStagedSize());
+    }
+
+    @Test
+    public void stagedSizeCountsReplacedAndDeletedContent() throws Exception {
+        session.write(FILE1_SUBPATH, fileStream(FILE_CONTENT1));
+        session.write(FILE2_SUBPATH, out -> out.write(FILE_CONTENT2.getBytes()));
+        session.write(FILE1_SUBPATH, fileStream(FILE_CONTENT2));
+
+        assertEquals(2 * FILE_CONTENT2.length(), session.getStagedSize());
+
+        session.delete(FILE2_SUBPATH);
+
+        assertEquals(FILE_CONTENT2.length(), session.getStagedSize());
+    }
+
+    @Test
+    public void writeWithContentWriter_Failure_RemovesStagedFile() throws Exception {
+        try {
+            session.write(FILE1_SUBPATH, out -> {
+                out.write(FILE_CONTENT1.getBytes());
+                throw new IOException("Serialization failed");
+            });
+            fail("Write must fail when the content can not be written");
+        } catch (final PersistentStorageException e) {
+            // expected
+        }
+
+        try {
+            session.read(FILE1_SUBPATH);
+            fail("Partially written file must not be staged");
+        } catch (final PersistentItemNotFoundException e) {
+            // expected
+        }
+    }
+
     @Test
     public void write_ReplaceFile_NewVersion_ExistingObject() throws Exception {
         final var preStagingPath = tempFolder.newFolder("prestage").toPath();
@@ -678,6 +782,100 @@ public class DefaultOCFLObjectSessionTest {
         assertEquals("There should be exactly one version",1, versions.size());
     }
 
+    @Test
+    public void describeObjectCachedUntilCommitted() throws Exception {
+        final var inventoryCache = new InventoryCache(1000);
+        final var session1 = DefaultOCFLObjectSession.builder(OBJ_ID, stagingPath, ocflRepository, NEW_VERSION)
+                .inventoryCache(inventoryCache)
+                .build();
+        session1.write(FILE1_SUBPATH, fileStream(FILE_CONTENT1));
+        session1.commit();
+
+        final var session2 = DefaultOCFLObjectSession.builder(OBJ_ID, stagingPath, ocflRepository, NEW_VERSION)
+                .inventoryCache(inventoryCache)
+                .build();
+        assertEquals(1, session2.listVersions().size());
+        assertThat(session2.listHeadSubpaths().collect(Collectors.toList()), contains(FILE1_SUBPATH));
+        assertEquals("Inventory should only be read once", 1, inventoryCache.getHitCount());
+
+        session2.write(FILE2_SUBPATH, fileStream(FILE_CONTENT2));
+        session2.commit();
+
+        final var session3 = DefaultOCFLObjectSession.builder(OBJ_ID, stagingPath, ocflRepository, NEW_VERSION)
+                .inventoryCache(inventoryCache)
+                .build();
+        assertEquals(2, session3.listVersions().size());
+        assertEquals(2, session3.listHeadSubpaths().count());
+    }
+
+    @Test
+    public void memoryStagedWrite_NewVersion_NewObject() throws Exception {
+        final var memorySession = makeMemoryStagingSession(NEW_VERSION);
+        memorySession.write(FILE1_SUBPATH, out -> out.write(FILE_CONTENT1.getBytes()));
+
+        assertFalse("Small content must not be staged on disk",
+                stagingPath.resolve(OBJ_ID).resolve(FILE1_SUBPATH).toFile().exists());
+        assertStreamMatches(FILE_CONTENT1, memorySession.read(FILE1_SUBPATH));
+        assertEquals(FILE_CONTENT1.length(), memorySession.getStagedSize());
+
+        assertEquals("v1", commit(memorySession, NEW_VERSION));
+        assertFileInHeadVersion(OBJ_ID, FILE1_SUBPATH, FILE_CONTENT1);
+        assertEquals(0, memorySession.getStagedSize());
+    }
+
+    @Test
+    public void memoryStagedWrite_MutableHead_ExistingObject() throws Exception {
+        session.write(FILE1_SUBPATH, fileStream(FILE_CONTENT1));
+        commit(NEW_VERSION);
+
+        final var memorySession = makeMemoryStagingSession(UNVERSIONED);
+        memorySession.write(FILE1_SUBPATH, out -> out.write(FILE_CONTENT2.getBytes()));
+        memorySession.write(FILE2_SUBPATH, fileStream(FILE_CONTENT2));
+        commit(memorySession, UNVERSIONED);
+
+        assertMutableHeadPopulated(OBJ_ID);
+        assertFileInHeadVersion(OBJ_ID, FILE1_SUBPATH, FILE_CONTENT2);
+        assertFileInHeadVersion(OBJ_ID, FILE2_SUBPATH, FILE_CONTENT2);
+    }
+
+    @Test
+    public void memoryStagedWrite_LargeContentStagedOnDisk() throws Exception {
+        final var content = "a".repeat(MEMORY_STAGING_THRESHOLD + 1);
+        final var memorySession = makeMemoryStagingSession(NEW_VERSION);
+        memorySession.write(FILE1_SUBPATH, out -> out.write(FILE_CONTENT1.getBytes()));
+        memorySession.write(FILE1_SUBPATH, out -> out.write(content.getBytes()));
+
+        assertTrue("Large content must be staged on disk",
+                stagingPath.resolve(OBJ_ID).resolve(FILE1_SUBPATH).toFile().exists());
+        assertStreamMatches(content, memorySession.read(FILE1_SUBPATH));
+        assertEquals(content.length(), memorySession.getStagedSize());
+
+        commit(memorySession, NEW_VERSION);
+        assertFileInHeadVersion(OBJ_ID, FILE1_SUBPATH, content);
+    }
+
+    @Test
+    public void memoryStagedDelete() throws Exception {
+        final var memorySession = makeMemoryStagingSession(NEW_VERSION);
+        memorySession.write(FILE1_SUBPATH, out -> out.write(FILE_CONTENT1.getBytes()));
+        memorySession.write(FILE2_SUBPATH, out -> out.write(FILE_CONTENT2.getBytes()));
+        memorySession.delete(FILE1_SUBPATH);
+
+        commit(memorySession, NEW_VERSION);
+        assertFileNotInHeadVersion(OBJ_ID, FILE1_SUBPATH);
+        assertFileInHeadVersion(OBJ_ID, FILE2_SUBPATH, FILE_CONTENT2);
+    }
+
+    @Test
+    public void memoryStagedClose_DiscardsContent() throws Exception {
+        final var memorySession = makeMemoryStagingSession(NEW_VERSION);
+        memorySession.write(FILE1_SUBPATH, out -> out.write(FILE_CONTENT1.getBytes()));
+        memorySession.close();
+
+        assertEquals(0, memorySession.getStagedSize());
+        assertFalse(ocflRepository.containsObject(OBJ_ID));
+    }
+
     @Test
     public void listVersionsForSubpath() throws Exception {
         session.write(FILE1_SUBPATH, fileStream(FILE_CONTENT1));
@@ -875,4 +1073,92 @@ public class DefaultOCFLObjectSessionTest {
         return session.commit();
     }
 
+
+    @Test
+    public void readCommittedFile_FromLocalStorageRoot() throws Exception {
+        session.write(FILE1_SUBPATH, fileStream(FILE_CONTENT1));
+        commit(NEW_VERSION);
+
+        final var repositorySpy = spy(ocflRepository);
+        final var localSession = DefaultOCFLObjectSession.builder(OBJ_ID, stagingPath, repositorySpy, NEW_VERSION)
+                .storageRootPath(repoDir)
+                .build();
+        final var content = localSession.read(FILE1_SUBPATH);
+
+        assertTrue("Committed file must be read from the storage root", content instanceof FileInputStream);
+        assertStreamMatches(FILE_CONTENT1, content);
+        assertStreamMatches(FILE_CONTENT1, localSession.read(FILE1_SUBPATH, "v1"));
+        // The file is resolved from the description of the object, without loading the version
+        verify(repositorySpy, never()).getObject(any());
+    }
+
+    @Test
+    public void commit_FlushesVersionFiles() throws Exception {
+        final List<Path> flushed = new ArrayList<>();
+        final var flushedSession = makeFlushedSession(flushed, NEW_VERSION);
+        flushedSession.write(FILE1_SUBPATH, fileStream(FILE_CONTENT1));
+        flushedSession.commit();
+
+        final var contentFile = repoDir.resolve(ocflRepository.getObject(ObjectVersionId.head(OBJ_ID))
+                .getFile(FILE1_SUBPATH).getStorageRelativePath());
+        final var objectRoot = contentFile.getParent().getParent().getParent();
+        assertTrue(flushed.contains(contentFile));
+        assertTrue(flushed.contains(contentFile.getParent()));
+        assertTrue(flushed.contains(objectRoot.resolve("inventory.json")));
+        assertTrue(flushed.contains(objectRoot));
+    }
+
+    @Test
+    public void commit_FlushesMutableHeadFiles() throws Exception {
+        final List<Path> flushed = new ArrayList<>();
+        final var flushedSession = makeFlushedSession(flushed, UNVERSIONED);
+        flushedSession.write(FILE1_SUBPATH, fileStream(FILE_CONTENT1));
+        flushedSession.commit();
+
+        final var contentFile = repoDir.resolve(ocflRepository.getObject(ObjectVersionId.head(OBJ_ID))
+                .getFile(FILE1_SUBPATH).getStorageRelativePath());
+        assertTrue(flushed.contains(contentFile));
+        assertTrue(flushed.stream().anyMatch(path ->
+                path.endsWith(Path.of("extensions", "0004-mutable-head", "head", "inventory.json"))));
+    }
+
+    @Test
+    public void prepare_ConflictWithConcurrentCommit() throws Exception {
+        final var versionStamps = new OCFLObjectVersionStamps();
+        final var session1 = makeVersionStampedSession(versionStamps);
+        final var session2 = makeVersionStampedSession(versionStamps);
+
+        session1.write(FILE1_SUBPATH, fileStream(FILE_CONTENT1));
+        session2.write(FILE2_SUBPATH, fileStream(FILE_CONTENT2));
+
+        session1.prepare();
+        session1.commit();
+
+        try {
+            session2.prepare();
+            fail("Prepare must fail when the object was committed by another session");
+        } catch (final PersistentItemConflictException e) {
+            // expected
+        }
+        session2.close();
+
+        assertEquals(1, versionStamps.getConflictCount());
+        assertEquals(0, versionStamps.getObjectCount());
+        assertFileInHeadVersion(OBJ_ID, FILE1_SUBPATH, FILE_CONTENT1);
+    }
+
+    @Test
+    public void prepare_NoConflictWithoutChanges() throws Exception {
+        final var versionStamps = new OCFLObjectVersionStamps();
+        final var session1 = makeVersionStampedSession(versionStamps);
+        final var session2 = makeVersionStampedSession(versionStamps);
+
+        session1.write(FILE1_SUBPATH, fileStream(FILE_CONTENT1));
+        session1.prepare();
+        session1.commit();
+
+        // Sessions which only read the object do not conflict
+        session2.prepare();
+        assertEquals(0, versionStamps.getConflictCount());
+    }
 }
@@ -34,6 +34,7 @@ import org.fcrepo.persistence.api.exceptions.PersistentStorageException;
 import org.fcrepo.persistence.ocfl.api.FedoraOCFLMappingNotFoundException;
 import org.fcrepo.persistence.ocfl.api.FedoraToOCFLObjectIndex;
 import org.fcrepo.persistence.ocfl.api.OCFLObjectSession;
+import org.fcrepo.persistence.ocfl.api.OCFLObjectSession.ContentWriter;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -100,9 +101,9 @@ public class DeleteResourcePersisterTest {
         verify(session).delete("some-subpath");
         verify(session).delete("some-subpath-description.nt");
         verify(session).read(".fcrepo/some-subpath.json");
-        verify(session).write(eq(".fcrepo/some-subpath.json"), any());
+        verify(session).write(eq(".fcrepo/some-subpath.json"), any(ContentWriter.class));
         verify(session).read(".fcrepo/some-subpath-description.json");
-        verify(session).write(eq(".fcrepo/some-subpath-description.json"), any());
+        verify(session).write(eq(".fcrepo/some-subpath-description.json"), any(ContentWriter.class));
     }
 
     @Test
@@ -121,7 +122,7 @@ public class DeleteResourcePersisterTest {
         persister.persist(psSession, operation);
         verify(session).delete("some-subpath.nt");
         verify(session).read(".fcrepo/some-subpath.json");
-        verify(session).write(eq(".fcrepo/some-subpath.json"), any());
+        verify(session).write(eq(".fcrepo/some-subpath.json"), any(ContentWriter.class));
     }
 
     @Test(expected = PersistentStorageException.class)
@@ -166,7 +167,7 @@ public class DeleteResourcePersisterTest {
         persister.persist(psSession, operation);
         verify(session).delete("some-ocfl-id.nt");
         verify(session).read(".fcrepo/some-ocfl-id.json");
-        verify(session).write(eq(".fcrepo/some-ocfl-id.json"), any());
+        verify(session).write(eq(".fcrepo/some-ocfl-id.json"), any(ContentWriter.class));
     }
 
     @Test
@@ -196,10 +197,10 @@ public class DeleteResourcePersisterTest {
         persister.persist(psSession, operation);
         verify(session).delete("some-ocfl-id");
         verify(session).read(".fcrepo/some-ocfl-id.json");
-        verify(session).write(eq(".fcrepo/some-ocfl-id.json"), any());
+        verify(session).write(eq(".fcrepo/some-ocfl-id.json"), any(ContentWriter.class));
         verify(session).delete("some-ocfl-id-description.nt");
         verify(session).read(".fcrepo/some-ocfl-id-description.json");
-        verify(session).write(eq(".fcrepo/some-ocfl-id-description.json"), any());
+        verify(session).write(eq(".fcrepo/some-ocfl-id-description.json"), any(ContentWriter.class));
     }
 
     @Test(expected = IllegalArgumentException.class)
@@ -22,17 +22,18 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
 
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
-import java.nio.file.Files;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import javax.sql.DataSource;
 
 import org.fcrepo.persistence.ocfl.api.FedoraOCFLMappingNotFoundException;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
 
 /**
  * @author dbernstein
@@ -47,17 +48,29 @@ public class FedoraToOCFLObjectIndexImplTest {
     private static final String OCFL_ID = "ocfl-id";
     private static final String OCFL_ID_RESOURCE_3 = "ocfl-id-resource-3";
 
-    private File fedoraToOcflIndexFile;
+    private DataSource dataSource;
 
     @Before
     public void setup() {
-        fedoraToOcflIndexFile = new OCFLConstants().getFedoraToOCFLIndexFile();
-        removeIndexMappingFile();
+        dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+    }
+
+    /**
+     * Create an index backed by the test database.
+     * @param dataSource the database.
+     * @return the index.
+     */
+    static FedoraToOCFLObjectIndexImpl createIndex(final DataSource dataSource) {
+        final FedoraToOCFLObjectIndexImpl index = new FedoraToOCFLObjectIndexImpl();
+        setField(index, "dataSource", dataSource);
+        setField(index, "cacheSize", 100000L);
+        index.setup();
+        return index;
     }
 
     @Test
     public void test() throws Exception {
-        final FedoraToOCFLObjectIndexImpl index = new FedoraToOCFLObjectIndexImpl();
+        final FedoraToOCFLObjectIndexImpl index = createIndex(dataSource);
 
         index.addMapping(RESOURCE_ID_1, ROOT_RESOURCE_ID, OCFL_ID);
         index.addMapping(RESOURCE_ID_2, ROOT_RESOURCE_ID, OCFL_ID);
@@ -88,52 +101,83 @@ public class FedoraToOCFLObjectIndexImplTest {
 
     @Test(expected = FedoraOCFLMappingNotFoundException.class)
     public void testNotExists() throws Exception {
-        final FedoraToOCFLObjectIndexImpl index = new FedoraToOCFLObjectIndexImpl();
+        final FedoraToOCFLObjectIndexImpl index = createIndex(dataSource);
         index.getMapping(RESOURCE_ID_1);
     }
 
     @Test
-    public void testSaveToIndex() throws Exception {
-        assertFalse(fedoraToOcflIndexFile.exists());
-
-        final FedoraToOCFLObjectIndexImpl index = new FedoraToOCFLObjectIndexImpl();
+    public void testReadFromIndex() throws Exception {
+        final FedoraToOCFLObjectIndexImpl index = createIndex(dataSource);
+        assertTrue(index.isEmpty());
 
-        index.addMapping(RESOURCE_ID_1, ROOT_RESOURCE_ID, OCFL_ID);
         index.addMapping(RESOURCE_ID_2, ROOT_RESOURCE_ID, OCFL_ID);
-        index.addMapping(RESOURCE_ID_3, RESOURCE_ID_3, OCFL_ID_RESOURCE_3);
+        assertFalse(index.isEmpty());
 
-        assertTrue(fedoraToOcflIndexFile.exists());
-
-        final List<String> lines;
-        try (var l = Files.lines(fedoraToOcflIndexFile.toPath())) {
-            lines = l.collect(Collectors.toList());
+        // A new index only has the mappings in the database to read.
+        final FedoraToOCFLObjectIndexImpl restartedIndex = createIndex(dataSource);
+        try {
+            restartedIndex.getMapping(RESOURCE_ID_1);
+            fail();
+        } catch (FedoraOCFLMappingNotFoundException e) {
+            // We're okay
         }
 
-        assertEquals(4, lines.size());
+        final FedoraOCFLMapping mapping = restartedIndex.getMapping(RESOURCE_ID_2);
+        assertEquals(ROOT_RESOURCE_ID, mapping.getRootObjectIdentifier());
+        assertEquals(OCFL_ID, mapping.getOcflObjectId());
+        verifyMapping(restartedIndex.getMapping(ROOT_RESOURCE_ID), ROOT_RESOURCE_ID, OCFL_ID);
+
+        try {
+            restartedIndex.getMapping(RESOURCE_ID_3);
+            fail();
+        } catch (FedoraOCFLMappingNotFoundException e) {
+            // We're okay
+        }
     }
 
     @Test
-    public void testReadFromIndex() throws Exception {
-        assertFalse(fedoraToOcflIndexFile.exists());
+    public void testAddMappingsReplacesExisting() throws Exception {
+        final FedoraToOCFLObjectIndexImpl index = createIndex(dataSource);
+        index.addMapping(RESOURCE_ID_1, RESOURCE_ID_1, OCFL_ID);
 
-        final BufferedWriter output = new BufferedWriter(new FileWriter(fedoraToOcflIndexFile, true));
-        output.write(String.format("%s\t%s\t%s\n", RESOURCE_ID_2, ROOT_RESOURCE_ID, OCFL_ID));
-        output.close();
+        final var mapping = new FedoraOCFLMapping(ROOT_RESOURCE_ID, OCFL_ID);
+        index.addMappings(Map.of(ROOT_RESOURCE_ID, mapping, RESOURCE_ID_1, mapping, RESOURCE_ID_2, mapping));
 
-        assertTrue(fedoraToOcflIndexFile.exists());
+        assertEquals(mapping, index.getMapping(RESOURCE_ID_1));
+        assertEquals(mapping, createIndex(dataSource).getMapping(RESOURCE_ID_1));
+        assertEquals(mapping, createIndex(dataSource).getMapping(RESOURCE_ID_2));
+    }
 
-        final FedoraToOCFLObjectIndexImpl index = new FedoraToOCFLObjectIndexImpl();
+    @Test
+    public void testRemoveMappings() throws Exception {
+        final FedoraToOCFLObjectIndexImpl index = createIndex(dataSource);
+        index.addMapping(RESOURCE_ID_1, ROOT_RESOURCE_ID, OCFL_ID);
+        index.addMapping(RESOURCE_ID_2, ROOT_RESOURCE_ID, OCFL_ID);
+        index.addMapping(RESOURCE_ID_3, RESOURCE_ID_3, OCFL_ID_RESOURCE_3);
+        assertEquals(Set.of(ROOT_RESOURCE_ID, RESOURCE_ID_1, RESOURCE_ID_2), index.getFedoraIds(Set.of(OCFL_ID)));
+        assertEquals(Set.of(OCFL_ID, OCFL_ID_RESOURCE_3), index.getOcflObjectIds());
+
+        index.removeMappings(Set.of(RESOURCE_ID_1, RESOURCE_ID_3));
+
+        assertEquals(Set.of(ROOT_RESOURCE_ID, RESOURCE_ID_2), index.getFedoraIds(Set.of(OCFL_ID)));
+        assertEquals(Set.of(OCFL_ID), index.getOcflObjectIds());
         try {
             index.getMapping(RESOURCE_ID_1);
             fail();
         } catch (FedoraOCFLMappingNotFoundException e) {
             // We're okay
         }
+    }
 
-        final FedoraOCFLMapping mapping = index.getMapping(RESOURCE_ID_2);
-        assertEquals(ROOT_RESOURCE_ID, mapping.getRootObjectIdentifier());
-        assertEquals(OCFL_ID, mapping.getOcflObjectId());
+    @Test
+    public void testReset() throws Exception {
+        final FedoraToOCFLObjectIndexImpl index = createIndex(dataSource);
+        index.addMapping(RESOURCE_ID_3, RESOURCE_ID_3, OCFL_ID_RESOURCE_3);
+        index.getMapping(RESOURCE_ID_3);
+
+        index.reset();
 
+        assertTrue(index.isEmpty());
         try {
             index.getMapping(RESOURCE_ID_3);
             fail();
@@ -141,11 +185,4 @@ public class FedoraToOCFLObjectIndexImplTest {
             // We're okay
         }
     }
-
-    private void removeIndexMappingFile() {
-        if (fedoraToOcflIndexFile.exists() &&
-                !fedoraToOcflIndexFile.delete()) {
-            throw new RuntimeException("Could not delete file " + fedoraToOcflIndexFile);
-        }
-    }
-}
\ No newline at end of file
+}
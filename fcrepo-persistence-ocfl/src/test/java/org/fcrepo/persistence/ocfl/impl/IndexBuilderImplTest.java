@@ -17,13 +17,14 @@
  */
 package org.fcrepo.persistence.ocfl.impl;
 
+import edu.wisc.library.ocfl.api.MutableOcflRepository;
 import org.fcrepo.kernel.api.ContainmentIndex;
-import org.fcrepo.kernel.api.Transaction;
-import org.fcrepo.kernel.api.TransactionManager;
+import org.fcrepo.kernel.api.IndexRebuildStatus;
 import org.fcrepo.kernel.api.identifiers.FedoraId;
 import org.fcrepo.kernel.api.operations.CreateResourceOperation;
 import org.fcrepo.kernel.api.operations.NonRdfSourceOperation;
 import org.fcrepo.kernel.api.operations.RdfSourceOperation;
+import org.fcrepo.kernel.api.operations.ResourceOperation;
 import org.fcrepo.persistence.api.PersistentStorageSession;
 import org.fcrepo.persistence.api.PersistentStorageSessionManager;
 import org.fcrepo.persistence.api.exceptions.PersistentStorageException;
@@ -33,19 +34,38 @@ import org.fcrepo.persistence.ocfl.api.IndexBuilder;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.inject.Provider;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 
 import static java.lang.System.currentTimeMillis;
 import static org.fcrepo.kernel.api.operations.ResourceOperationType.CREATE;
+import static org.fcrepo.kernel.api.operations.ResourceOperationType.DELETE;
 import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.createRepository;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.withSettings;
@@ -61,12 +81,10 @@ public class IndexBuilderImplTest {
     private PersistentStorageSessionManager sessionManager;
     private FedoraToOCFLObjectIndex index;
     private IndexBuilder indexBuilder;
-
-    @Mock
-    private TransactionManager transactionManager;
-
-    @Mock
-    private Transaction transaction;
+    private MutableOcflRepository repository;
+    private DefaultOCFLObjectSessionFactory ocflObjectSessionFactory;
+    private File checkpointFile;
+    private OCFLObjectVersionStamps versionStamps;
 
     @Mock
     private ContainmentIndex containmentIndex;
@@ -83,27 +101,39 @@ public class IndexBuilderImplTest {
         final var workDir = new File(dataDir,"ocfl-work");
         final var staging = new File(dataDir,"ocfl-staging");
 
-        final var repository = createRepository(repoDir, workDir);
+        repository = createRepository(repoDir, workDir);
+        checkpointFile = new File(dataDir, "checkpoint.tsv");
+        versionStamps = new OCFLObjectVersionStamps();
 
-        index = new FedoraToOCFLObjectIndexImpl();
-        index.reset();
+        index = FedoraToOCFLObjectIndexImplTest.createIndex(
+                new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1"));
 
-        final var ocflObjectSessionFactory = new DefaultOCFLObjectSessionFactory(staging);
+        ocflObjectSessionFactory = new DefaultOCFLObjectSessionFactory(staging);
         setField(ocflObjectSessionFactory, "ocflRepository", repository);
+        setField(ocflObjectSessionFactory, "inventoryCache", new InventoryCache(1000));
 
         sessionManager = new OCFLPersistentSessionManager();
         setField(sessionManager, "fedoraOcflIndex", index);
         setField(sessionManager, "objectSessionFactory", ocflObjectSessionFactory);
+        setField(sessionManager, "headersCache", new ResourceHeadersCache(100));
+        setField(sessionManager, "triplesCache", new TriplesCache(1024 * 1024));
+        setField(sessionManager, "versionsCache", new VersionIndexCache(1000));
+        setField(sessionManager, "readOnlyObjectSessions", 10000L);
 
-        indexBuilder = new IndexBuilderImpl();
-        setField(indexBuilder, "ocflRepository", repository);
-        setField(indexBuilder, "fedoraToOCFLObjectIndex", index);
-        setField(indexBuilder, "objectSessionFactory", ocflObjectSessionFactory);
-        setField(indexBuilder, "containmentIndex", containmentIndex);
-        setField(indexBuilder, "transactionManager", transactionManager);
+        indexBuilder = createIndexBuilder();
+    }
 
-        when(transaction.getId()).thenReturn("tx-id");
-        when(transactionManager.create()).thenReturn(transaction);
+    private IndexBuilder createIndexBuilder() {
+        final var builder = new IndexBuilderImpl();
+        setField(builder, "ocflRepository", repository);
+        setField(builder, "fedoraToOCFLObjectIndex", index);
+        setField(builder, "objectSessionFactory", ocflObjectSessionFactory);
+        setField(builder, "containmentIndex", containmentIndex);
+        setField(builder, "versionStamps", versionStamps);
+        setField(builder, "checkpointFile", checkpointFile);
+        setField(builder, "batchSize", 1000);
+        setField(builder, "reportInterval", 30L);
+        return builder;
     }
 
     @Test
@@ -128,11 +158,7 @@ public class IndexBuilderImplTest {
         assertHasOcflId("resource1", resource1);
         assertHasOcflId("resource1", resource2);
 
-        verify(transaction).getId();
-        verify(transactionManager).create();
-        verify(containmentIndex).addContainedBy(transaction.getId(), FedoraId.getRepositoryRootId(), resource1);
-        verify(containmentIndex).addContainedBy(transaction.getId(), resource1, resource2);
-        verify(containmentIndex).commitTransaction(transaction);
+        assertContainment();
     }
 
     @Test
@@ -157,11 +183,227 @@ public class IndexBuilderImplTest {
         assertHasOcflId("resource1", resource1);
         assertHasOcflId("resource1_resource2", resource2);
 
-        verify(transaction).getId();
-        verify(transactionManager).create();
-        verify(containmentIndex).addContainedBy(transaction.getId(), FedoraId.getRepositoryRootId(), resource1);
-        verify(containmentIndex).addContainedBy(transaction.getId(), resource1, resource2);
-        verify(containmentIndex).commitTransaction(transaction);
+        assertContainment();
+    }
+
+    @Test
+    public void rebuildWhenObjectContainsDeletedResource() throws Exception {
+        final var session = sessionManager.getSession(session1Id);
+        createResource(session, resource1, true);
+        createChildResource(session, resource1, resource2);
+        session.commit();
+
+        final var session2 = sessionManager.getSession("session2");
+        final var deleteOperation = mock(ResourceOperation.class);
+        when(deleteOperation.getResourceId()).thenReturn(resource2.getResourceId());
+        when(deleteOperation.getType()).thenReturn(DELETE);
+        session2.persist(deleteOperation);
+        session2.commit();
+        index.reset();
+
+        indexBuilder.rebuild();
+
+        // The deleted resource is still mapped to its object, and resolves as deleted.
+        assertHasOcflId("resource1", resource2);
+        assertTrue(sessionManager.getReadOnlySession().getHeaders(resource2.getResourceId(), null).isDeleted());
+        assertContainment();
+        assertDeletedContainment(Set.of(resource2));
+    }
+
+    @Test
+    public void rebuildWithSmallBatches() throws Exception {
+        setField(indexBuilder, "batchSize", 1);
+        setField(indexBuilder, "threads", 2);
+        final var session = sessionManager.getSession(session1Id);
+
+        createResource(session, resource1, false);
+        createChildResource(session, resource1, resource2);
+
+        session.commit();
+        index.reset();
+
+        indexBuilder.rebuild();
+
+        assertHasOcflId("resource1", resource1);
+        assertHasOcflId("resource1_resource2", resource2);
+        assertContainment();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void rebuildChangedOnlyIndexesNewObjects() throws Exception {
+        final var session = sessionManager.getSession(session1Id);
+        createResource(session, resource1, false);
+        session.commit();
+
+        indexBuilder.rebuild();
+        assertFalse(indexBuilder.isRebuildIncomplete());
+
+        final var resource3 = FedoraId.create("info:fedora/resource3");
+        final var session2 = sessionManager.getSession("session2");
+        createResource(session2, resource3, false);
+        session2.commit();
+        reset(containmentIndex);
+
+        indexBuilder.rebuildChanged();
+
+        final ArgumentCaptor<Map<FedoraId, FedoraId>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(containmentIndex, never()).reset();
+        verify(containmentIndex, atLeastOnce()).addContainedByBatch(captor.capture(), any());
+        final var childToParent = new HashMap<FedoraId, FedoraId>();
+        captor.getAllValues().forEach(childToParent::putAll);
+        assertEquals(Map.of(resource3, FedoraId.getRepositoryRootId()), childToParent);
+        assertHasOcflId("resource3", resource3);
+    }
+
+    @Test
+    public void rebuildChangedRemovesEntriesNoLongerInRepository() throws Exception {
+        final var session = sessionManager.getSession(session1Id);
+        createResource(session, resource1, false);
+        final var resource3 = FedoraId.create("info:fedora/resource3");
+        createResource(session, resource3, false);
+        session.commit();
+        indexBuilder.rebuild();
+
+        // A resource indexed in an object it is no longer in, and an object removed from the repository.
+        final var staleId = FedoraId.create(resource1 + "/stale");
+        index.addMapping(staleId.getFullId(), resource1.getFullId(), "resource1");
+        repository.purgeObject("resource3");
+        reset(containmentIndex);
+
+        // A new checkpoint, so that every object is read again.
+        checkpointFile = new File(checkpointFile.getParentFile(), "checkpoint2.tsv");
+        createIndexBuilder().rebuildChanged();
+
+        assertHasOcflId("resource1", resource1);
+        assertDoesNotHaveOcflId(staleId);
+        assertDoesNotHaveOcflId(resource3);
+        verify(containmentIndex).removeContainedByBatch(Set.of(staleId));
+        verify(containmentIndex).removeContainedByBatch(Set.of(resource3));
+        verify(containmentIndex, never()).reset();
+    }
+
+    @Test
+    public void rebuildIsIncompleteUntilItCompletes() throws Exception {
+        final var session = sessionManager.getSession(session1Id);
+        createResource(session, resource1, false);
+        session.commit();
+
+        indexBuilder.rebuild();
+        // Simulate a later rebuild which was interrupted, as seen by a new builder after a restart.
+        Files.writeString(checkpointFile.toPath(), "#started\n", StandardOpenOption.APPEND);
+        final var restartedBuilder = createIndexBuilder();
+        assertTrue(restartedBuilder.isRebuildIncomplete());
+
+        restartedBuilder.rebuildChanged();
+
+        assertFalse(restartedBuilder.isRebuildIncomplete());
+        assertFalse(createIndexBuilder().isRebuildIncomplete());
+    }
+
+    @Test
+    public void rebuildInBackground() throws Exception {
+        final var session = sessionManager.getSession(session1Id);
+        createResource(session, resource1, false);
+        createChildResource(session, resource1, resource2);
+        session.commit();
+        index.reset();
+
+        indexBuilder.rebuildInBackground(false);
+
+        final var status = (IndexRebuildStatus) indexBuilder;
+        final long timeout = currentTimeMillis() + 30000;
+        while (status.getState() == IndexRebuildStatus.State.IN_PROGRESS && currentTimeMillis() < timeout) {
+            Thread.sleep(50);
+        }
+        assertEquals(IndexRebuildStatus.State.COMPLETE, status.getState());
+        assertEquals(2, status.getObjectsIndexed());
+        assertEquals(2, status.getResourcesIndexed());
+        assertNotNull(status.getCompleted());
+        assertHasOcflId("resource1", resource1);
+        assertHasOcflId("resource1_resource2", resource2);
+        assertContainment();
+    }
+
+    @Test
+    public void rebuildDefersObjectsInUseBySession() throws Exception {
+        final var session = sessionManager.getSession(session1Id);
+        createResource(session, resource1, false);
+        createChildResource(session, resource1, resource2);
+        session.commit();
+        index.reset();
+
+        final var liveSession = new Object();
+        versionStamps.join("resource1");
+        indexBuilder.rebuildInBackground(false);
+
+        final var status = (IndexRebuildStatus) indexBuilder;
+        final long timeout = currentTimeMillis() + 30000;
+        while (status.getObjectsIndexed() < 2 && currentTimeMillis() < timeout) {
+            Thread.sleep(50);
+        }
+        // The object in use is not written until the session is released.
+        assertEquals(IndexRebuildStatus.State.IN_PROGRESS, status.getState());
+        assertDoesNotHaveOcflId(resource1);
+
+        versionStamps.release("resource1", liveSession, false);
+        while (status.getState() == IndexRebuildStatus.State.IN_PROGRESS && currentTimeMillis() < timeout) {
+            Thread.sleep(50);
+        }
+        assertEquals(IndexRebuildStatus.State.COMPLETE, status.getState());
+        assertHasOcflId("resource1", resource1);
+        assertContainment();
+    }
+
+    @Test
+    public void indexOnDemandUntilRebuildCompletes() throws Exception {
+        final var session = sessionManager.getSession(session1Id);
+        createResource(session, resource1, false);
+        createChildResource(session, resource1, resource2);
+        session.commit();
+        index.reset();
+        setField(index, "indexBuilder", (Provider<IndexBuilder>) () -> indexBuilder);
+
+        // The index is complete, so missing mappings are not resolved.
+        assertFalse(indexBuilder.indexOnDemand(resource2.getResourceId()));
+        assertDoesNotHaveOcflId(resource2);
+
+        Files.writeString(checkpointFile.toPath(), "#started\n", StandardOpenOption.CREATE);
+        final var restartedBuilder = createIndexBuilder();
+        setField(index, "indexBuilder", (Provider<IndexBuilder>) () -> restartedBuilder);
+
+        // Resolving the child also indexes the object of its parent.
+        assertHasOcflId("resource1_resource2", resource2);
+        verify(containmentIndex, never()).reset();
+        assertContainment(Map.of(resource1, FedoraId.getRepositoryRootId(), resource2, resource1));
+        assertFalse(restartedBuilder.indexOnDemand(resource2.getResourceId()));
+
+        restartedBuilder.rebuildChanged();
+        assertEquals(2, ((IndexRebuildStatus) restartedBuilder).getObjectsSkipped());
+        assertEquals(IndexRebuildStatus.State.COMPLETE, ((IndexRebuildStatus) restartedBuilder).getState());
+    }
+
+    private void assertContainment() {
+        verify(containmentIndex).reset();
+        assertContainment(Map.of(resource1, FedoraId.getRepositoryRootId(), resource2, resource1));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void assertContainment(final Map<FedoraId, FedoraId> expected) {
+        final ArgumentCaptor<Map<FedoraId, FedoraId>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(containmentIndex, atLeastOnce()).addContainedByBatch(captor.capture(), any());
+        final var childToParent = new HashMap<FedoraId, FedoraId>();
+        captor.getAllValues().forEach(childToParent::putAll);
+        assertEquals(expected, childToParent);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void assertDeletedContainment(final Set<FedoraId> expected) {
+        final ArgumentCaptor<Set<FedoraId>> captor = ArgumentCaptor.forClass(Set.class);
+        verify(containmentIndex, atLeastOnce()).addContainedByBatch(any(), captor.capture());
+        final var deleted = new HashSet<FedoraId>();
+        captor.getAllValues().forEach(deleted::addAll);
+        assertEquals(expected, deleted);
     }
 
     private void assertDoesNotHaveOcflId(final FedoraId resourceId) {
@@ -0,0 +1,245 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.ocfl.impl;
+
+import static org.fcrepo.persistence.api.CommitOption.NEW_VERSION;
+import static org.fcrepo.persistence.api.CommitOption.UNVERSIONED;
+import static org.fcrepo.persistence.ocfl.impl.OCFLConstants.OCFL_STORAGE_ROOT_DIR_KEY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import edu.wisc.library.ocfl.api.MutableOcflRepository;
+import edu.wisc.library.ocfl.api.model.ObjectVersionId;
+import edu.wisc.library.ocfl.core.OcflRepositoryBuilder;
+import edu.wisc.library.ocfl.core.extension.layout.config.DefaultLayoutConfig;
+import edu.wisc.library.ocfl.core.storage.filesystem.FileSystemOcflStorage;
+import org.apache.commons.io.IOUtils;
+import org.fcrepo.persistence.api.CommitOption;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author bbpennel
+ */
+public class MutableHeadCompactorTest {
+
+    private static final String OCFL_STAGING_DIR_KEY = "fcrepo.ocfl.staging.dir";
+
+    private static final String OBJ_ID = "obj1";
+
+    private static final String FILE1_SUBPATH = "test_file1.txt";
+
+    private static final String FILE2_SUBPATH = "test_file2.txt";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private Path stagingPath;
+
+    private Path repoDir;
+
+    private MutableOcflRepository ocflRepository;
+
+    private OCFLObjectVersionStamps versionStamps;
+
+    private MutableHeadCompactor compactor;
+
+    @Before
+    public void setup() throws Exception {
+        repoDir = tempFolder.newFolder("ocfl-repo").toPath();
+        stagingPath = tempFolder.newFolder("ocfl-staging").toPath();
+        final var workDir = tempFolder.newFolder("ocfl-work").toPath();
+        System.setProperty(OCFL_STORAGE_ROOT_DIR_KEY, repoDir.toString());
+        System.setProperty(OCFL_STAGING_DIR_KEY, stagingPath.toString());
+
+        ocflRepository = new OcflRepositoryBuilder()
+                .layoutConfig(DefaultLayoutConfig.flatPairTreeConfig())
+                .workDir(workDir)
+                .storage(FileSystemOcflStorage.builder().repositoryRoot(repoDir).build())
+                .buildMutable();
+        versionStamps = new OCFLObjectVersionStamps();
+
+        compactor = new MutableHeadCompactor();
+        setField(compactor, "ocflRepository", ocflRepository);
+        setField(compactor, "inventoryCache", new InventoryCache(0));
+        setField(compactor, "versionStamps", versionStamps);
+        setField(compactor, "ocflConstants", new OCFLConstants());
+        setField(compactor, "headersCache", new ResourceHeadersCache(100));
+        setField(compactor, "triplesCache", new TriplesCache(1024 * 1024));
+        setField(compactor, "versionsCache", new VersionIndexCache(1000));
+        setField(compactor, "enabled", true);
+        setField(compactor, "revisionThreshold", 3);
+        setField(compactor, "sizeThreshold", 67108864L);
+        setField(compactor, "batchSize", 10);
+    }
+
+    @After
+    public void teardown() {
+        System.clearProperty(OCFL_STORAGE_ROOT_DIR_KEY);
+        System.clearProperty(OCFL_STAGING_DIR_KEY);
+    }
+
+    @Test
+    public void testCompactMutableHead() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            commitWrite(FILE1_SUBPATH, "revision " + i, UNVERSIONED);
+        }
+        commitWrite(FILE2_SUBPATH, "other content", UNVERSIONED);
+        assertEquals(1, compactor.getTrackedObjectCount());
+
+        compactor.compactMutableHeads();
+
+        assertEquals(1, compactor.getCompactedCount());
+        assertTrue(compactor.getReclaimedBytes() > 0);
+        assertTrue(compactor.getReclaimedInventoryEntries() > 0);
+        assertEquals(0, compactor.getTrackedObjectCount());
+        assertTrue(ocflRepository.hasStagedChanges(OBJ_ID));
+        assertHeadContent(FILE1_SUBPATH, "revision 2");
+        assertHeadContent(FILE2_SUBPATH, "other content");
+    }
+
+    @Test
+    public void testBelowThresholdNotCompacted() throws Exception {
+        commitWrite(FILE1_SUBPATH, "revision 0", UNVERSIONED);
+        commitWrite(FILE1_SUBPATH, "revision 1", UNVERSIONED);
+
+        compactor.compactMutableHeads();
+
+        assertEquals(0, compactor.getCompactedCount());
+        assertEquals(1, compactor.getTrackedObjectCount());
+    }
+
+    @Test
+    public void testNewVersionClearsTracking() throws Exception {
+        commitWrite(FILE1_SUBPATH, "revision 0", UNVERSIONED);
+        commitWrite(FILE1_SUBPATH, "revision 1", UNVERSIONED);
+        commitWrite(FILE1_SUBPATH, "revision 2", NEW_VERSION);
+
+        assertEquals(0, compactor.getTrackedObjectCount());
+        compactor.compactMutableHeads();
+        assertEquals(0, compactor.getCompactedCount());
+    }
+
+    @Test
+    public void testCompactPreservesRemovedFiles() throws Exception {
+        commitWrite(FILE1_SUBPATH, "version 1", NEW_VERSION);
+        commitWrite(FILE2_SUBPATH, "version 1", NEW_VERSION);
+        commitWrite(FILE1_SUBPATH, "revision 0", UNVERSIONED);
+        commitWrite(FILE1_SUBPATH, "revision 1", UNVERSIONED);
+
+        final var session = makeSession(UNVERSIONED);
+        session.delete(FILE2_SUBPATH);
+        session.commit();
+
+        assertTrue(compactor.compact(OBJ_ID));
+
+        assertHeadContent(FILE1_SUBPATH, "revision 1");
+        assertFalse(ocflRepository.getObject(ObjectVersionId.head(OBJ_ID)).containsFile(FILE2_SUBPATH));
+        assertTrue(ocflRepository.getObject(ObjectVersionId.version(OBJ_ID, "v2")).containsFile(FILE2_SUBPATH));
+    }
+
+    @Test
+    public void testNotCompactedWhileInTransaction() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            commitWrite(FILE1_SUBPATH, "revision " + i, UNVERSIONED);
+        }
+
+        final var transactionSession = makeSession(UNVERSIONED);
+
+        assertFalse(compactor.compact(OBJ_ID));
+        assertEquals(0, compactor.getCompactedCount());
+
+        transactionSession.close();
+        commitWrite(FILE1_SUBPATH, "revision 3", UNVERSIONED);
+        assertTrue(compactor.compact(OBJ_ID));
+        assertHeadContent(FILE1_SUBPATH, "revision 3");
+    }
+
+    @Test
+    public void testRecoverInterruptedCompaction() throws Exception {
+        commitWrite(FILE1_SUBPATH, "version 1", NEW_VERSION);
+        commitWrite(FILE1_SUBPATH, "revision 0", UNVERSIONED);
+        commitWrite(FILE2_SUBPATH, "revision 1", UNVERSIONED);
+
+        // Simulate a crash after the mutable HEAD was exported and purged, but before it was staged again
+        final Path compactionDir = Files.createDirectories(stagingPath.resolve("compaction"));
+        final Path exportPath = compactionDir.resolve("interrupted");
+        ocflRepository.getObject(ObjectVersionId.head(OBJ_ID), exportPath);
+        Files.writeString(compactionDir.resolve("interrupted.compacting"), OBJ_ID);
+        ocflRepository.purgeStagedChanges(OBJ_ID);
+        assertHeadContent(FILE1_SUBPATH, "version 1");
+
+        compactor.recoverCompactions();
+
+        assertTrue(ocflRepository.hasStagedChanges(OBJ_ID));
+        assertHeadContent(FILE1_SUBPATH, "revision 0");
+        assertHeadContent(FILE2_SUBPATH, "revision 1");
+        assertFalse(Files.exists(compactionDir.resolve("interrupted.compacting")));
+        assertFalse(Files.exists(exportPath));
+        assertTrue(versionStamps.tryLockExclusive(OBJ_ID));
+    }
+
+    @Test
+    public void testRecoverDiscardsCompletedCompaction() throws Exception {
+        commitWrite(FILE1_SUBPATH, "revision 0", UNVERSIONED);
+
+        // Simulate a crash after the mutable HEAD was staged again, but before the journal entry was removed
+        final Path compactionDir = Files.createDirectories(stagingPath.resolve("compaction"));
+        final Path exportPath = Files.createDirectories(compactionDir.resolve("completed"));
+        Files.writeString(compactionDir.resolve("completed.compacting"), OBJ_ID);
+
+        compactor.recoverCompactions();
+
+        assertHeadContent(FILE1_SUBPATH, "revision 0");
+        assertFalse(Files.exists(compactionDir.resolve("completed.compacting")));
+        assertFalse(Files.exists(exportPath));
+    }
+
+    private void commitWrite(final String subpath, final String content, final CommitOption commitOption)
+            throws Exception {
+        final var session = makeSession(commitOption);
+        session.write(subpath, new ByteArrayInputStream(content.getBytes()));
+        session.commit();
+    }
+
+    private DefaultOCFLObjectSession makeSession(final CommitOption commitOption) throws Exception {
+        return DefaultOCFLObjectSession.builder(OBJ_ID, stagingPath.resolve(UUID.randomUUID().toString()),
+                ocflRepository, commitOption)
+                .versionStamps(versionStamps)
+                .mutableHeadCompactor(compactor)
+                .build();
+    }
+
+    private void assertHeadContent(final String subpath, final String content) throws Exception {
+        try (final InputStream stream = ocflRepository.getObject(ObjectVersionId.head(OBJ_ID)).getFile(subpath)
+                .getStream()) {
+            assertEquals(content, IOUtils.toString(stream, "UTF-8"));
+        }
+    }
+}
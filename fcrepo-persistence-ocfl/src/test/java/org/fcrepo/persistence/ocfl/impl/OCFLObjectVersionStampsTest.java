@@ -0,0 +1,244 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.ocfl.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.slf4j.LoggerFactory.getLogger;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.fcrepo.persistence.api.exceptions.PersistentItemConflictException;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+
+/**
+ * @author bbpennel
+ */
+public class OCFLObjectVersionStampsTest {
+
+    private static final Logger LOGGER = getLogger(OCFLObjectVersionStampsTest.class);
+
+    private static final String OCFL_ID = "ocfl-id";
+
+    private static final String OCFL_ID_2 = "ocfl-id-2";
+
+    private OCFLObjectVersionStamps stamps;
+
+    @Before
+    public void setup() {
+        stamps = new OCFLObjectVersionStamps();
+        setField(stamps, "lockTimeout", 5000L);
+    }
+
+    @Test
+    public void testPrepareUnchanged() throws Exception {
+        final var session = new Object();
+        final long version = stamps.join(OCFL_ID);
+
+        stamps.prepare(OCFL_ID, version, session);
+        stamps.release(OCFL_ID, session, true);
+
+        assertEquals(0, stamps.getConflictCount());
+        assertEquals(0, stamps.getObjectCount());
+    }
+
+    @Test
+    public void testConflictAfterCommit() throws Exception {
+        final var session1 = new Object();
+        final var session2 = new Object();
+        final long version1 = stamps.join(OCFL_ID);
+        final long version2 = stamps.join(OCFL_ID);
+
+        stamps.prepare(OCFL_ID, version1, session1);
+        stamps.release(OCFL_ID, session1, true);
+
+        assertConflict(OCFL_ID, version2, session2);
+        assertEquals(1.0 / 2, stamps.getConflictRate(), 0.0);
+    }
+
+    @Test
+    public void testConflictWhilePrepared() throws Exception {
+        final var session1 = new Object();
+        final var session2 = new Object();
+        final long version1 = stamps.join(OCFL_ID);
+        final long version2 = stamps.join(OCFL_ID);
+
+        stamps.prepare(OCFL_ID, version1, session1);
+
+        assertConflict(OCFL_ID, version2, session2);
+    }
+
+    @Test
+    public void testNoConflictAfterClose() throws Exception {
+        final var session1 = new Object();
+        final var session2 = new Object();
+        final long version1 = stamps.join(OCFL_ID);
+        final long version2 = stamps.join(OCFL_ID);
+
+        // Prepared but closed without committing, so the object is unchanged
+        stamps.prepare(OCFL_ID, version1, session1);
+        stamps.release(OCFL_ID, session1, false);
+
+        stamps.prepare(OCFL_ID, version2, session2);
+        stamps.release(OCFL_ID, session2, true);
+        assertEquals(0, stamps.getConflictCount());
+    }
+
+    @Test
+    public void testOtherObjectsDoNotConflict() throws Exception {
+        final var session1 = new Object();
+        final var session2 = new Object();
+        final long version1 = stamps.join(OCFL_ID);
+        final long version2 = stamps.join(OCFL_ID_2);
+
+        stamps.prepare(OCFL_ID, version1, session1);
+        stamps.release(OCFL_ID, session1, true);
+
+        stamps.prepare(OCFL_ID_2, version2, session2);
+        assertEquals(1, stamps.getObjectCount());
+    }
+
+    /*
+     * Transactions repeatedly read a value held by an object, and write it back incremented, retrying on conflict.
+     * Any update which is lost means that conflicting transactions both committed.
+     */
+    @Test
+    public void testConcurrentWriteLoad() throws Exception {
+        final int threads = 8;
+        final int commitsPerThread = 500;
+        final var value = new int[1];
+        final var retries = new AtomicInteger();
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < commitsPerThread; i++) {
+                        while (true) {
+                            final var session = new Object();
+                            final long version = stamps.join(OCFL_ID);
+                            final int read;
+                            synchronized (value) {
+                                read = value[0];
+                            }
+                            try {
+                                stamps.prepare(OCFL_ID, version, session);
+                            } catch (final PersistentItemConflictException e) {
+                                stamps.release(OCFL_ID, session, false);
+                                retries.incrementAndGet();
+                                continue;
+                            }
+                            synchronized (value) {
+                                value[0] = read + 1;
+                            }
+                            stamps.release(OCFL_ID, session, true);
+                            break;
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (final var future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(threads * commitsPerThread, value[0]);
+        assertEquals(retries.get(), stamps.getConflictCount());
+        assertEquals(0, stamps.getObjectCount());
+        assertTrue(stamps.getConflictRate() < 1.0);
+        LOGGER.info("{} commits with {} conflicts, conflict rate {}", value[0], stamps.getConflictCount(),
+                String.format("%.2f", stamps.getConflictRate()));
+    }
+
+    @Test
+    public void testExclusiveLockRefusedWhileJoined() throws Exception {
+        final var session = new Object();
+        stamps.join(OCFL_ID);
+
+        assertFalse(stamps.tryLockExclusive(OCFL_ID));
+
+        stamps.release(OCFL_ID, session, false);
+        assertTrue(stamps.tryLockExclusive(OCFL_ID));
+        assertFalse(stamps.tryLockExclusive(OCFL_ID));
+        stamps.unlockExclusive(OCFL_ID);
+        assertEquals(0, stamps.getObjectCount());
+    }
+
+    @Test
+    public void testJoinWaitsForExclusiveLock() throws Exception {
+        assertTrue(stamps.tryLockExclusive(OCFL_ID));
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<Long> joined = executor.submit(() -> stamps.join(OCFL_ID));
+            try {
+                joined.get(200, TimeUnit.MILLISECONDS);
+                fail("Join must wait while the object is locked");
+            } catch (final TimeoutException e) {
+                // expected
+            }
+
+            stamps.unlockExclusive(OCFL_ID);
+            joined.get(5, TimeUnit.SECONDS);
+            assertFalse(stamps.tryLockExclusive(OCFL_ID));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testJoinTimesOutWhileLocked() throws Exception {
+        setField(stamps, "lockTimeout", 100L);
+        assertTrue(stamps.tryLockExclusive(OCFL_ID));
+
+        try {
+            stamps.join(OCFL_ID);
+            fail("Join must fail once the lock timeout has passed");
+        } catch (final PersistentItemConflictException e) {
+            // expected
+        }
+
+        stamps.unlockExclusive(OCFL_ID);
+        assertEquals(0, stamps.getObjectCount());
+    }
+
+    private void assertConflict(final String ocflId, final long version, final Object session) {
+        try {
+            stamps.prepare(ocflId, version, session);
+            fail("Prepare must fail with a conflict");
+        } catch (final PersistentItemConflictException e) {
+            // expected
+        }
+    }
+}
@@ -30,6 +30,9 @@ import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
 import static java.util.UUID.randomUUID;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
 /**
  * Test class for {@link OCFLPersistentSessionManager}
@@ -76,6 +79,20 @@ public class OCFLPersistentSessionManagerTest {
         readOnlySession.persist(mockOperation);
     }
 
+    @Test
+    public void testRemoveSession() {
+        assertSame(readWriteSession, this.sessionManager.getSession(testSessionId));
+        assertEquals(1, this.sessionManager.getSessionCount());
+
+        this.sessionManager.removeSession(testSessionId);
+        this.sessionManager.removeSession(testSessionId);
+
+        assertEquals(0, this.sessionManager.getSessionCount());
+        assertEquals(0, this.sessionManager.getStagedSize());
+        assertNotSame(readWriteSession, this.sessionManager.getSession(testSessionId));
+        assertSame(readOnlySession, this.sessionManager.getReadOnlySession());
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testNullSessionId() {
         this.sessionManager.getSession(null);
@@ -18,9 +18,11 @@
 package org.fcrepo.persistence.ocfl.impl;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
 import static org.apache.jena.graph.NodeFactory.createLiteral;
 import static org.apache.jena.graph.NodeFactory.createURI;
 import static org.fcrepo.kernel.api.operations.ResourceOperationType.CREATE;
+import static org.fcrepo.kernel.api.operations.ResourceOperationType.UPDATE;
 import static org.fcrepo.persistence.api.CommitOption.NEW_VERSION;
 import static org.fcrepo.persistence.api.CommitOption.UNVERSIONED;
 import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.createRepository;
@@ -28,24 +30,30 @@ import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.mintOC
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.hasItems;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.withSettings;
 import static org.springframework.test.util.ReflectionTestUtils.setField;
 
 import java.io.ByteArrayInputStream;
-import java.io.InputStream;
 import java.time.Instant;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
@@ -64,10 +72,12 @@ import org.fcrepo.kernel.api.rdf.DefaultRdfStream;
 import org.fcrepo.persistence.api.CommitOption;
 import org.fcrepo.persistence.api.PersistentStorageSession;
 import org.fcrepo.persistence.api.WriteOutcome;
+import org.fcrepo.persistence.api.exceptions.PersistentItemConflictException;
 import org.fcrepo.persistence.api.exceptions.PersistentStorageException;
 import org.fcrepo.persistence.ocfl.api.FedoraOCFLMappingNotFoundException;
 import org.fcrepo.persistence.ocfl.api.FedoraToOCFLObjectIndex;
 import org.fcrepo.persistence.ocfl.api.OCFLObjectSession;
+import org.fcrepo.persistence.ocfl.api.OCFLObjectSession.ContentWriter;
 import org.fcrepo.persistence.ocfl.api.OCFLObjectSessionFactory;
 import org.junit.Before;
 import org.junit.Ignore;
@@ -148,6 +158,7 @@ public class OCFLPersistentStorageSessionTest {
         final var repository = createRepository(repoDir, workDir);
         this.objectSessionFactory = new DefaultOCFLObjectSessionFactory(stagingDir);
         setField(this.objectSessionFactory, "ocflRepository", repository);
+        setField(this.objectSessionFactory, "inventoryCache", new InventoryCache(1000));
         session = createSession(index, objectSessionFactory);
 
         // Create rdf operations implement two interfaces
@@ -159,8 +170,8 @@ public class OCFLPersistentStorageSessionTest {
         createArchivalGroupOperation = mock(CreateRdfSourceOperation.class);
         when(createArchivalGroupOperation.isArchivalGroup()).thenReturn(true);
 
-        when(objectSession1.write(anyString(), any(InputStream.class))).thenReturn(writeOutcome);
-        when(objectSession2.write(anyString(), any(InputStream.class))).thenReturn(writeOutcome);
+        when(objectSession1.write(anyString(), any(ContentWriter.class))).thenReturn(writeOutcome);
+        when(objectSession2.write(anyString(), any(ContentWriter.class))).thenReturn(writeOutcome);
     }
 
     private OCFLPersistentStorageSession createSession(final FedoraToOCFLObjectIndex index,
@@ -241,6 +252,83 @@ public class OCFLPersistentStorageSessionTest {
         assertEquals(originalModifiedDate, headers2.getLastModifiedDate());
     }
 
+    @Test
+    public void getHeadersSharedUntilCommitted() throws Exception {
+        mockMappingAndIndex(mintOCFLObjectId(RESOURCE_ID), RESOURCE_ID, ROOT_OBJECT_ID, mapping);
+        final var headersCache = new ResourceHeadersCache(100);
+
+        mockResourceOperation(rdfSourceOperation, RESOURCE_ID);
+        session.persist(rdfSourceOperation);
+        session.commit();
+
+        //committed headers are read once and shared between sessions
+        final var readOnlySession = new OCFLPersistentStorageSession(index, objectSessionFactory, headersCache,
+                new TriplesCache(0), new VersionIndexCache(0), 100);
+        final var committedHeaders = readOnlySession.getHeaders(RESOURCE_ID, null);
+        assertSame(committedHeaders, readOnlySession.getHeaders(RESOURCE_ID, null));
+
+        final var updateSession = new OCFLPersistentStorageSession(new Random().nextLong() + "", index,
+                objectSessionFactory, headersCache, new TriplesCache(0), new VersionIndexCache(0), null);
+        assertSame(committedHeaders, updateSession.getHeaders(RESOURCE_ID, null));
+
+        final Node resourceUri = createURI(RESOURCE_ID);
+        when(rdfSourceOperation2.getTriples()).thenReturn(new DefaultRdfStream(resourceUri, Stream.empty()));
+        when(rdfSourceOperation2.getResourceId()).thenReturn(RESOURCE_ID);
+        when(rdfSourceOperation2.getType()).thenReturn(UPDATE);
+        when(rdfSourceOperation2.getUserPrincipal()).thenReturn("anotherUser");
+        updateSession.persist(rdfSourceOperation2);
+
+        //the transaction sees its own changes, while other sessions see the committed headers
+        final var stagedHeaders = updateSession.getHeaders(RESOURCE_ID, null);
+        assertEquals("anotherUser", stagedHeaders.getLastModifiedBy());
+        assertSame(stagedHeaders, updateSession.getHeaders(RESOURCE_ID, null));
+        assertSame(committedHeaders, readOnlySession.getHeaders(RESOURCE_ID, null));
+
+        updateSession.commit();
+
+        final var updatedHeaders = readOnlySession.getHeaders(RESOURCE_ID, null);
+        assertNotSame(committedHeaders, updatedHeaders);
+        assertEquals("anotherUser", updatedHeaders.getLastModifiedBy());
+    }
+
+    @Test
+    public void getTriplesSharedUntilCommitted() throws Exception {
+        mockMappingAndIndex(mintOCFLObjectId(RESOURCE_ID), RESOURCE_ID, ROOT_OBJECT_ID, mapping);
+        final var triplesCache = new TriplesCache(1024 * 1024);
+        final Node resourceUri = createURI(RESOURCE_ID);
+        final var originalTitle = Triple.create(resourceUri, DC.title.asNode(), createLiteral("original"));
+        final var updatedTitle = Triple.create(resourceUri, DC.title.asNode(), createLiteral("updated"));
+
+        mockResourceOperation(rdfSourceOperation, new DefaultRdfStream(resourceUri, Stream.of(originalTitle)),
+                USER_PRINCIPAL, RESOURCE_ID);
+        session.persist(rdfSourceOperation);
+        session.commit();
+
+        final var readOnlySession = new OCFLPersistentStorageSession(index, objectSessionFactory,
+                new ResourceHeadersCache(0), triplesCache, new VersionIndexCache(0), 100);
+        //triples are cached once they have been read in full
+        assertEquals(List.of(originalTitle), readOnlySession.getTriples(RESOURCE_ID, null).collect(toList()));
+        assertEquals(List.of(originalTitle), readOnlySession.getTriples(RESOURCE_ID, null).collect(toList()));
+        assertEquals(0.5, triplesCache.getHitRate(), 0.0);
+        assertNotEquals(0, triplesCache.getWeight());
+
+        final var updateSession = new OCFLPersistentStorageSession(new Random().nextLong() + "", index,
+                objectSessionFactory, new ResourceHeadersCache(0), triplesCache, new VersionIndexCache(0), null);
+        when(rdfSourceOperation2.getTriples()).thenReturn(new DefaultRdfStream(resourceUri, Stream.of(updatedTitle)));
+        when(rdfSourceOperation2.getResourceId()).thenReturn(RESOURCE_ID);
+        when(rdfSourceOperation2.getType()).thenReturn(UPDATE);
+        when(rdfSourceOperation2.getUserPrincipal()).thenReturn(USER_PRINCIPAL);
+        updateSession.persist(rdfSourceOperation2);
+
+        //the transaction sees its own changes, while other sessions see the committed triples
+        assertEquals(updatedTitle, updateSession.getTriples(RESOURCE_ID, null).findFirst().get());
+        assertEquals(originalTitle, readOnlySession.getTriples(RESOURCE_ID, null).findFirst().get());
+
+        updateSession.commit();
+
+        assertEquals(updatedTitle, readOnlySession.getTriples(RESOURCE_ID, null).findFirst().get());
+    }
+
     @Test(expected = UnsupportedOperationException.class)
     public void unsupportedPersistOperation() throws Exception {
         this.session.persist(unsupportedOperation);
@@ -404,6 +492,156 @@ public class OCFLPersistentStorageSessionTest {
         }
     }
 
+    @Test
+    public void resolveVersionsSharedUntilCommitted() throws Exception {
+        final var ocflId = mintOCFLObjectId(RESOURCE_ID);
+        mockMappingAndIndex(ocflId, RESOURCE_ID, ROOT_OBJECT_ID, mapping);
+        mockResourceOperation(rdfSourceOperation, RESOURCE_ID);
+        when(mockSessionFactory.create(eq(ocflId), anyString())).thenReturn(objectSession1);
+        mockOCFLObjectSession(objectSession1, NEW_VERSION);
+
+        final var v1Created = Instant.parse("2020-01-01T00:00:00Z");
+        final var v2Created = Instant.parse("2020-01-02T00:00:00Z");
+        final var v1 = new OCFLVersionImpl().setOcflVersionId("v1").setCreated(v1Created);
+        final var v2 = new OCFLVersionImpl().setOcflVersionId("v2").setCreated(v2Created);
+        when(objectSession1.listVersions(null)).thenReturn(List.of(v1), List.of(v1, v2));
+        when(objectSession1.read(anyString(), anyString()))
+                .thenAnswer(invocation -> new ByteArrayInputStream(new byte[0]));
+
+        final var versionsCache = new VersionIndexCache(100);
+        final var session1 = new OCFLPersistentStorageSession(new Random().nextLong() + "", index,
+                mockSessionFactory, new ResourceHeadersCache(0), new TriplesCache(0), versionsCache, null);
+        session1.getBinaryContent(RESOURCE_ID, v1Created);
+        session1.getBinaryContent(RESOURCE_ID, v1Created);
+        verify(objectSession1, times(2)).read(anyString(), eq("v1"));
+        verify(objectSession1, times(1)).listVersions(null);
+
+        //the versions of the object change once a version is committed
+        session1.persist(rdfSourceOperation);
+        session1.commit();
+
+        final var session2 = new OCFLPersistentStorageSession(new Random().nextLong() + "", index,
+                mockSessionFactory, new ResourceHeadersCache(0), new TriplesCache(0), versionsCache, null);
+        session2.getBinaryContent(RESOURCE_ID, v2Created);
+        verify(objectSession1).read(anyString(), eq("v2"));
+        verify(objectSession1, times(2)).listVersions(null);
+    }
+
+    @Test
+    public void readOnlySessionEvictsObjectSessions() throws Exception {
+        final var resourceIds = List.of("info:fedora/a", "info:fedora/b", "info:fedora/c");
+        for (final var resourceId : resourceIds) {
+            mockMappingAndIndex(mintOCFLObjectId(resourceId), resourceId, resourceId, mock(FedoraOCFLMapping.class));
+        }
+        when(mockSessionFactory.create(anyString(), eq(null))).thenAnswer(invocation -> mock(OCFLObjectSession.class));
+
+        final var readOnlySession = new OCFLPersistentStorageSession(index, mockSessionFactory,
+                new ResourceHeadersCache(0), new TriplesCache(0), new VersionIndexCache(0), 2);
+        for (final var resourceId : resourceIds) {
+            readOnlySession.getBinaryContent(resourceId, null);
+        }
+        assertEquals(2, readOnlySession.getObjectSessionCount());
+
+        //the least recently used object session was evicted, and is created again
+        readOnlySession.getBinaryContent(resourceIds.get(0), null);
+        verify(mockSessionFactory, times(2)).create(eq(mintOCFLObjectId(resourceIds.get(0))), eq(null));
+        assertEquals(2, readOnlySession.getObjectSessionCount());
+    }
+
+    @Test
+    public void commitObjectsInParallel() throws Exception {
+        final var ocflId1 = mintOCFLObjectId(RESOURCE_ID);
+        final var ocflId2 = mintOCFLObjectId(RESOURCE_ID2);
+        mockMappingAndIndex(ocflId1, RESOURCE_ID, ROOT_OBJECT_ID, mapping);
+        mockResourceOperation(rdfSourceOperation, RESOURCE_ID);
+        mockMappingAndIndex(ocflId2, RESOURCE_ID2, ROOT_OBJECT_ID_2, mapping2);
+        mockResourceOperation(rdfSourceOperation2, RESOURCE_ID2);
+
+        //each commit waits for the other to start, so they can only complete in parallel
+        final var bothCommitting = new CountDownLatch(2);
+        final Answer<String> awaitOtherCommit = invocation -> {
+            bothCommitting.countDown();
+            if (!bothCommitting.await(5, TimeUnit.SECONDS)) {
+                throw new PersistentStorageException("Objects were not committed in parallel");
+            }
+            return null;
+        };
+        when(mockSessionFactory.create(eq(ocflId1), anyString())).thenReturn(objectSession1);
+        when(objectSession1.commit()).thenAnswer(awaitOtherCommit);
+        mockOCFLObjectSession(objectSession1, UNVERSIONED);
+        when(mockSessionFactory.create(eq(ocflId2), anyString())).thenReturn(objectSession2);
+        when(objectSession2.commit()).thenAnswer(awaitOtherCommit);
+        mockOCFLObjectSession(objectSession2, UNVERSIONED);
+
+        final var executor = Executors.newFixedThreadPool(2);
+        try {
+            final var session1 = new OCFLPersistentStorageSession(new Random().nextLong() + "", index,
+                    mockSessionFactory, new ResourceHeadersCache(0), new TriplesCache(0), new VersionIndexCache(0),
+                    executor);
+            session1.persist(rdfSourceOperation);
+            session1.persist(rdfSourceOperation2);
+            session1.commit();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(objectSession1).prepare();
+        verify(objectSession2).prepare();
+    }
+
+    /*
+     * The same as rollbackOnSessionWithCommitsToMutableHeadShouldFail, with the objects committed in parallel.
+     */
+    @Test
+    public void rollbackAfterParallelCommitFailsShouldFail() throws Exception {
+        final var ocflId1 = mintOCFLObjectId(RESOURCE_ID);
+        final var ocflId2 = mintOCFLObjectId(RESOURCE_ID2);
+        mockMappingAndIndex(ocflId1, RESOURCE_ID, ROOT_OBJECT_ID, mapping);
+        mockResourceOperation(rdfSourceOperation, RESOURCE_ID);
+        mockMappingAndIndex(ocflId2, RESOURCE_ID2, ROOT_OBJECT_ID_2, mapping2);
+        mockResourceOperation(rdfSourceOperation2, RESOURCE_ID2);
+
+        //the failing commit waits for the other commit to complete, so that it is not skipped
+        final var firstCommitted = new CountDownLatch(1);
+        when(mockSessionFactory.create(eq(ocflId1), anyString())).thenReturn(objectSession1);
+        when(objectSession1.commit()).thenAnswer((Answer<String>) invocation -> {
+            firstCommitted.countDown();
+            return null;
+        });
+        mockOCFLObjectSession(objectSession1, UNVERSIONED);
+        when(mockSessionFactory.create(eq(ocflId2), anyString())).thenReturn(objectSession2);
+        when(objectSession2.commit()).thenAnswer((Answer<String>) invocation -> {
+            firstCommitted.await(5, TimeUnit.SECONDS);
+            throw new PersistentStorageException("commit failed");
+        });
+        mockOCFLObjectSession(objectSession2, UNVERSIONED);
+
+        final var executor = Executors.newFixedThreadPool(2);
+        try {
+            final var session1 = new OCFLPersistentStorageSession(new Random().nextLong() + "", index,
+                    mockSessionFactory, new ResourceHeadersCache(0), new TriplesCache(0), new VersionIndexCache(0),
+                    executor);
+            session1.persist(rdfSourceOperation);
+            session1.persist(rdfSourceOperation2);
+            try {
+                session1.commit();
+                fail("session1.commit(...) invocation should fail.");
+            } catch (final PersistentStorageException ex) {
+                //expected failure
+            }
+
+            //the first object was committed to the mutable head, so it can not be rolled back
+            try {
+                session1.rollback();
+                fail("session1.rollback(...) invocation should fail.");
+            } catch (final PersistentStorageException ex) {
+                assertTrue(ex.getMessage().contains("already committed to the unversioned head"));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     private void mockOCFLObjectSession(final OCFLObjectSession objectSession, final CommitOption option) {
         objectSessionFactory.setAutoVersioningEnabled(option == NEW_VERSION);
         when(objectSession.getCreated()).thenReturn(timestep.next());
@@ -492,6 +730,32 @@ public class OCFLPersistentStorageSessionTest {
         verify(objectSession1).close();
     }
 
+    @Test
+    public void commitReportsConflictOnPrepare() throws Exception {
+        final var ocflId = mintOCFLObjectId(RESOURCE_ID);
+        mockMappingAndIndex(ocflId, RESOURCE_ID, ROOT_OBJECT_ID, mapping);
+        mockResourceOperation(rdfSourceOperation, RESOURCE_ID);
+
+        when(mockSessionFactory.create(eq(ocflId), anyString())).thenReturn(objectSession1);
+        mockOCFLObjectSession(objectSession1, UNVERSIONED);
+
+        doThrow(new PersistentItemConflictException("conflict")).when(objectSession1).prepare();
+
+        final PersistentStorageSession session1 = createSession(index, mockSessionFactory);
+        session1.persist(rdfSourceOperation);
+
+        try {
+            session1.commit();
+            fail("Commit should fail with a conflict.");
+        } catch (final PersistentItemConflictException e) {
+            //expected
+        }
+
+        verify(objectSession1, never()).commit();
+        session1.rollback();
+        verify(objectSession1).close();
+    }
+
     @Test(expected = PersistentStorageException.class)
     public void rollbackFailsWhenAlreadyCommitted() throws Exception {
         mockMappingAndIndex(mintOCFLObjectId(RESOURCE_ID), RESOURCE_ID, ROOT_OBJECT_ID, mapping);
@@ -17,11 +17,28 @@
  */
 package org.fcrepo.persistence.ocfl.impl;
 
+import org.apache.jena.graph.Triple;
+import org.fcrepo.persistence.ocfl.api.OCFLObjectSession;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+import static org.apache.jena.graph.NodeFactory.createLiteral;
+import static org.apache.jena.graph.NodeFactory.createURI;
 import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.relativizeSubpath;
 import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.resolveOCFLSubpath;
+import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.resolveObjectRootPath;
+import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.streamTriples;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 /**
  * Test class for {@link OCFLPersistentStorageUtils}
@@ -30,6 +47,51 @@ import static org.junit.Assert.assertEquals;
  */
 public class OCFLPersistentStorageUtilsTest {
 
+    private static final String NTRIPLES = "<info:fedora/a> <http://purl.org/dc/elements/1.1/title> \"a\" .\n" +
+            "<info:fedora/a> <http://purl.org/dc/elements/1.1/title> \"b\" .\n";
+
+    private static final Triple TITLE_A = Triple.create(createURI("info:fedora/a"),
+            createURI("http://purl.org/dc/elements/1.1/title"), createLiteral("a"));
+
+    private static class TrackedInputStream extends ByteArrayInputStream {
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        TrackedInputStream(final String content) {
+            super(content.getBytes(UTF_8));
+        }
+
+        @Override
+        public void close() {
+            closed.set(true);
+        }
+    }
+
+    @Test
+    public void testStreamTriplesClosesFileWhenRead() throws Exception {
+        final var objSession = mock(OCFLObjectSession.class);
+        final var is = new TrackedInputStream(NTRIPLES);
+        when(objSession.read("a.nt")).thenReturn(is);
+
+        final var triples = streamTriples(objSession, "a.nt", null).collect(toList());
+
+        assertEquals(2, triples.size());
+        assertEquals(TITLE_A, triples.get(0));
+        assertTrue(is.closed.get());
+    }
+
+    @Test
+    public void testStreamTriplesClosesFileWhenStreamClosed() throws Exception {
+        final var objSession = mock(OCFLObjectSession.class);
+        final var is = new TrackedInputStream(NTRIPLES);
+        when(objSession.read("a.nt", "v1")).thenReturn(is);
+
+        try (final var triples = streamTriples(objSession, "a.nt", "v1")) {
+            assertEquals(TITLE_A, triples.findFirst().get());
+            assertFalse(is.closed.get());
+        }
+        assertTrue(is.closed.get());
+    }
+
     @Test
     public void testRelativizeSubpathWhereRootEqualsResource() {
         final var rootObjectId = "info:fedora/test/object";
@@ -129,4 +191,32 @@ public class OCFLPersistentStorageUtilsTest {
         assertEquals("nested-description", resolveOCFLSubpath(rootObjectId, fedoraSubpath));
     }
 
+    @Test
+    public void testResolveObjectRootPathOfVersion() {
+        final var storageRoot = Paths.get("/ocfl-root");
+        assertEquals(storageRoot.resolve("ab/cd/object"),
+                resolveObjectRootPath(storageRoot, "ab/cd/object/v2/content/nested/file.txt", "nested/file.txt"));
+    }
+
+    @Test
+    public void testResolveObjectRootPathOfMutableHead() {
+        final var storageRoot = Paths.get("/ocfl-root");
+        assertEquals(storageRoot.resolve("ab/cd/object"), resolveObjectRootPath(storageRoot,
+                "ab/cd/object/extensions/0004-mutable-head/v3/content/r2/file.txt", "file.txt"));
+    }
+
+    @Test
+    public void testResolveObjectRootPathOfVersionNamedObject() {
+        final var storageRoot = Paths.get("/ocfl-root");
+        assertEquals(storageRoot.resolve("ab/v1"),
+                resolveObjectRootPath(storageRoot, "ab/v1/v1/content/v1/content/file.txt", "v1/content/file.txt"));
+    }
+
+    @Test
+    public void testResolveObjectRootPathUnrecognized() {
+        final var storageRoot = Paths.get("/ocfl-root");
+        assertNull(resolveObjectRootPath(storageRoot, "ab/cd/object/file.txt", "file.txt"));
+        assertNull(resolveObjectRootPath(storageRoot, "ab/cd/object/v1/content/other.txt", "file.txt"));
+    }
+
 }
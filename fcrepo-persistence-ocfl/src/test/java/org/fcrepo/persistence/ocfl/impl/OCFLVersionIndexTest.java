@@ -0,0 +1,84 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.ocfl.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * @author bbpennel
+ */
+public class OCFLVersionIndexTest {
+
+    private static final String OCFL_ID = "ocfl-id";
+
+    private static final Instant T1 = Instant.parse("2020-01-01T00:00:00Z");
+
+    private static final Instant T2 = Instant.parse("2020-01-02T00:00:00Z");
+
+    private static final Instant T3 = Instant.parse("2020-01-03T00:00:00Z");
+
+    private static OCFLVersionImpl version(final String versionId, final Instant created) {
+        return new OCFLVersionImpl().setOcflObjectId(OCFL_ID).setOcflVersionId(versionId).setCreated(created);
+    }
+
+    @Test
+    public void testGetVersionId() {
+        final var index = new OCFLVersionIndex(OCFL_ID, List.of(version("v1", T1), version("v2", T2),
+                version("v3", T3)));
+
+        assertEquals("v1", index.getVersionId(T1));
+        assertEquals("v2", index.getVersionId(T2));
+        assertEquals("v3", index.getVersionId(T3));
+        assertEquals(3, index.size());
+        assertEquals(List.of(T1, T2, T3), index.listVersions());
+    }
+
+    @Test
+    public void testGetVersionIdNotFound() {
+        final var index = new OCFLVersionIndex(OCFL_ID, List.of(version("v1", T1), version("v3", T3)));
+
+        assertNull(index.getVersionId(T2));
+        assertNull(index.getVersionId(Instant.parse("2019-01-01T00:00:00Z")));
+        assertNull(index.getVersionId(Instant.parse("2021-01-01T00:00:00Z")));
+        assertNull(new OCFLVersionIndex(OCFL_ID, List.of()).getVersionId(T1));
+    }
+
+    @Test
+    public void testSameInstantResolvesMostRecentVersion() {
+        final var index = new OCFLVersionIndex(OCFL_ID, List.of(version("v1", T1), version("v2", T2),
+                version("v3", T2), version("v4", T3)));
+
+        assertEquals("v3", index.getVersionId(T2));
+    }
+
+    @Test
+    public void testVersionsOutOfChronologicalOrder() {
+        final var index = new OCFLVersionIndex(OCFL_ID, List.of(version("v1", T2), version("v2", T1),
+                version("v3", T3)));
+
+        assertEquals("v1", index.getVersionId(T2));
+        assertEquals("v2", index.getVersionId(T1));
+        assertEquals(List.of(T2, T1, T3), index.listVersions());
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.ocfl.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.fcrepo.kernel.api.models.ResourceHeaders;
+import org.fcrepo.persistence.api.exceptions.PersistentItemNotFoundException;
+import org.fcrepo.persistence.common.ResourceHeadersImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author bbpennel
+ */
+public class ResourceHeadersCacheTest {
+
+    private static final String OCFL_ID = "ocfl-id";
+
+    private static final String OCFL_ID_2 = "ocfl-id-2";
+
+    private static final String SIDECAR = ".fcrepo/child.json";
+
+    private ResourceHeadersCache cache;
+
+    private AtomicInteger loads;
+
+    @Before
+    public void setup() {
+        cache = new ResourceHeadersCache(100);
+        loads = new AtomicInteger();
+    }
+
+    private ResourceHeaders load() {
+        loads.incrementAndGet();
+        return new ResourceHeadersImpl();
+    }
+
+    @Test
+    public void testHeadersCached() throws Exception {
+        final var headers = cache.get(OCFL_ID, SIDECAR, null, this::load);
+        assertSame(headers, cache.get(OCFL_ID, SIDECAR, null, this::load));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testKeyedByVersion() throws Exception {
+        final var head = cache.get(OCFL_ID, SIDECAR, null, this::load);
+        final var v1 = cache.get(OCFL_ID, SIDECAR, "v1", this::load);
+        final var v2 = cache.get(OCFL_ID, SIDECAR, "v2", this::load);
+
+        assertNotSame(head, v1);
+        assertNotSame(v1, v2);
+        assertSame(v1, cache.get(OCFL_ID, SIDECAR, "v1", this::load));
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    public void testInvalidateObject() throws Exception {
+        final var headers = cache.get(OCFL_ID, SIDECAR, null, this::load);
+        final var otherHeaders = cache.get(OCFL_ID_2, SIDECAR, null, this::load);
+
+        cache.invalidate(OCFL_ID);
+
+        assertNotSame(headers, cache.get(OCFL_ID, SIDECAR, null, this::load));
+        assertSame(otherHeaders, cache.get(OCFL_ID_2, SIDECAR, null, this::load));
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    public void testNotFoundNotCached() throws Exception {
+        try {
+            cache.get(OCFL_ID, SIDECAR, null, () -> {
+                throw new PersistentItemNotFoundException("not found");
+            });
+            fail();
+        } catch (final PersistentItemNotFoundException e) {
+            // expected
+        }
+
+        cache.get(OCFL_ID, SIDECAR, null, this::load);
+        assertEquals(1, loads.get());
+    }
+}
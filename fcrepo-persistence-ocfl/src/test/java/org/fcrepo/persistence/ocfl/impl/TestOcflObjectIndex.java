@@ -25,6 +25,8 @@ import org.slf4j.LoggerFactory;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * An simple in-memory implementation of the {@link FedoraToOCFLObjectIndex} used for testing
@@ -67,6 +69,39 @@ public class TestOcflObjectIndex implements FedoraToOCFLObjectIndex {
         return mapping;
     }
 
+    @Override
+    public void addMappings(final Map<String, FedoraOCFLMapping> mappings) {
+        fedoraOCFLMappingMap.putAll(mappings);
+    }
+
+    @Override
+    public void removeMappings(final Set<String> fedoraResourceIdentifiers) {
+        fedoraOCFLMappingMap.keySet().removeAll(fedoraResourceIdentifiers);
+    }
+
+    @Override
+    public Set<String> getFedoraIds(final Set<String> ocflObjectIds) {
+        synchronized (fedoraOCFLMappingMap) {
+            return fedoraOCFLMappingMap.entrySet().stream()
+                    .filter(e -> ocflObjectIds.contains(e.getValue().getOcflObjectId()))
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toSet());
+        }
+    }
+
+    @Override
+    public Set<String> getOcflObjectIds() {
+        synchronized (fedoraOCFLMappingMap) {
+            return fedoraOCFLMappingMap.values().stream().map(FedoraOCFLMapping::getOcflObjectId)
+                    .collect(Collectors.toSet());
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return fedoraOCFLMappingMap.isEmpty();
+    }
+
     @Override
     public void reset() {
         fedoraOCFLMappingMap.clear();
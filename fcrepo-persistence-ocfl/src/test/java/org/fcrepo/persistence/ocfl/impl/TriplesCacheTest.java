@@ -0,0 +1,100 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.ocfl.impl;
+
+import static java.util.stream.Collectors.toList;
+import static org.apache.jena.graph.NodeFactory.createLiteral;
+import static org.apache.jena.graph.NodeFactory.createURI;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jena.graph.Triple;
+import org.apache.jena.vocabulary.DC;
+import org.junit.Test;
+
+/**
+ * @author bbpennel
+ */
+public class TriplesCacheTest {
+
+    private static final String OCFL_ID = "ocfl-id";
+
+    private static final List<Triple> TRIPLES = List.of(Triple.create(createURI("info:fedora/resource"),
+            DC.title.asNode(), createLiteral("title")));
+
+    @Test
+    public void testWeight() throws Exception {
+        final var cache = new TriplesCache(1024 * 1024);
+        final var size = TriplesCache.estimateSize(TRIPLES);
+
+        assertSame(TRIPLES, cache.get(OCFL_ID, "a.nt", null, () -> TRIPLES));
+        cache.get(OCFL_ID, "b.nt", null, () -> TRIPLES);
+        assertEquals(2, cache.getSize());
+        assertEquals(2 * size, cache.getWeight());
+    }
+
+    @Test
+    public void testCacheOnRead() throws Exception {
+        final var cache = new TriplesCache(1024 * 1024);
+        final var key = cache.key(OCFL_ID, "a.nt", null);
+
+        cache.cacheOnRead(key, TRIPLES.stream()).findFirst();
+        assertNull(cache.getIfPresent(key));
+
+        assertEquals(TRIPLES, cache.cacheOnRead(key, TRIPLES.stream()).collect(toList()));
+        assertEquals(TRIPLES, cache.getIfPresent(key));
+    }
+
+    @Test
+    public void testCacheOnReadTooLarge() throws Exception {
+        final var cache = new TriplesCache(TriplesCache.estimateSize(TRIPLES));
+        final var key = cache.key(OCFL_ID, "a.nt", null);
+
+        assertEquals(TRIPLES, cache.cacheOnRead(key, TRIPLES.stream()).collect(toList()));
+        assertNull(cache.getIfPresent(key));
+    }
+
+    @Test
+    public void testCacheOnReadAfterInvalidate() throws Exception {
+        final var cache = new TriplesCache(1024 * 1024);
+        final var key = cache.key(OCFL_ID, "a.nt", null);
+        final var triples = cache.cacheOnRead(key, TRIPLES.stream());
+
+        cache.invalidate(OCFL_ID);
+        triples.collect(toList());
+
+        assertNull(cache.getIfPresent(cache.key(OCFL_ID, "a.nt", null)));
+    }
+
+    @Test
+    public void testEvictedByWeight() throws Exception {
+        final var cache = new TriplesCache(0);
+
+        cache.get(OCFL_ID, "a.nt", null, () -> TRIPLES);
+
+        assertEquals(0, cache.getSize());
+        assertEquals(0, cache.getWeight());
+        assertNotSame(TRIPLES, cache.get(OCFL_ID, "a.nt", null, () -> new ArrayList<>(TRIPLES)));
+        assertEquals(0.0, cache.getHitRate(), 0.0);
+    }
+}
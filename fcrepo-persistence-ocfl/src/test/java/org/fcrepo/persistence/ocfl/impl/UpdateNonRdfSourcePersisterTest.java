@@ -37,6 +37,9 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.withSettings;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 
@@ -49,6 +52,7 @@ import org.fcrepo.kernel.api.utils.ContentDigest.DIGEST_ALGORITHM;
 import org.fcrepo.persistence.common.FileWriteOutcome;
 import org.fcrepo.persistence.ocfl.api.FedoraToOCFLObjectIndex;
 import org.fcrepo.persistence.ocfl.api.OCFLObjectSession;
+import org.fcrepo.persistence.ocfl.api.OCFLObjectSession.ContentWriter;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -82,7 +86,7 @@ public class UpdateNonRdfSourcePersisterTest {
     private ArgumentCaptor<InputStream> userContentCaptor;
 
     @Captor
-    private ArgumentCaptor<InputStream> headersIsCaptor;
+    private ArgumentCaptor<ContentWriter> headersCaptor;
 
     @Mock
     private OCFLPersistentStorageSession psSession;
@@ -105,6 +109,7 @@ public class UpdateNonRdfSourcePersisterTest {
         when(mapping.getRootObjectIdentifier()).thenReturn(ROOT_RESOURCE_ID);
 
         when(session.write(anyString(), any(InputStream.class))).thenReturn(writeOutcome);
+        when(session.write(anyString(), any(ContentWriter.class))).thenReturn(writeOutcome);
         when(session.getObjectDigestAlgorithm()).thenReturn(DIGEST_ALGORITHM.SHA1);
 
         nonRdfSourceOperation = mock(NonRdfSourceOperation.class, withSettings().extraInterfaces(
@@ -175,8 +180,13 @@ public class UpdateNonRdfSourcePersisterTest {
 
     private ResourceHeaders retrievePersistedHeaders(final String subpath) throws Exception {
         verify(session).write(eq(getInternalFedoraDirectory() + subpath + RESOURCE_HEADER_EXTENSION),
-                headersIsCaptor.capture());
-        final var headersIs = headersIsCaptor.getValue();
-        return deserializeHeaders(headersIs);
+                headersCaptor.capture());
+        return deserializeHeaders(toInputStream(headersCaptor.getValue()));
+    }
+
+    private static InputStream toInputStream(final ContentWriter writer) throws IOException {
+        final var out = new ByteArrayOutputStream();
+        writer.writeTo(out);
+        return new ByteArrayInputStream(out.toByteArray());
     }
 }
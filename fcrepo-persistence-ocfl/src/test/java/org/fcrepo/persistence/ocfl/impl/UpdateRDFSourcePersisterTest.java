@@ -40,6 +40,9 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.stream.Stream;
 
@@ -57,6 +60,7 @@ import org.fcrepo.kernel.api.rdf.DefaultRdfStream;
 import org.fcrepo.persistence.api.WriteOutcome;
 import org.fcrepo.persistence.ocfl.api.FedoraToOCFLObjectIndex;
 import org.fcrepo.persistence.ocfl.api.OCFLObjectSession;
+import org.fcrepo.persistence.ocfl.api.OCFLObjectSession.ContentWriter;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -99,10 +103,10 @@ public class UpdateRDFSourcePersisterTest {
     private WriteOutcome writeOutcome;
 
     @Captor
-    private ArgumentCaptor<InputStream> userTriplesIsCaptor;
+    private ArgumentCaptor<ContentWriter> userTriplesCaptor;
 
     @Captor
-    private ArgumentCaptor<InputStream> headersIsCaptor;
+    private ArgumentCaptor<ContentWriter> headersCaptor;
 
     private UpdateRDFSourcePersister persister;
 
@@ -110,7 +114,7 @@ public class UpdateRDFSourcePersisterTest {
     public void setup() throws Exception {
         operation = mock(RdfSourceOperation.class);
 
-        when(session.write(anyString(), any(InputStream.class))).thenReturn(writeOutcome);
+        when(session.write(anyString(), any(ContentWriter.class))).thenReturn(writeOutcome);
         when(psSession.findOrCreateSession(anyString())).thenReturn(session);
         when(index.getMapping(anyString())).thenReturn(mapping);
         when(operation.getType()).thenReturn(UPDATE);
@@ -175,17 +179,22 @@ public class UpdateRDFSourcePersisterTest {
 
     private ResourceHeaders retrievePersistedHeaders(final String subpath) throws Exception {
         verify(session).write(eq(getInternalFedoraDirectory() + subpath + RESOURCE_HEADER_EXTENSION),
-                headersIsCaptor.capture());
-        final var headersIs = headersIsCaptor.getValue();
-        return deserializeHeaders(headersIs);
+                headersCaptor.capture());
+        return deserializeHeaders(toInputStream(headersCaptor.getValue()));
     }
 
     private Model retrievePersistedUserModel(final String subpath) throws Exception {
-        verify(session).write(eq(subpath + getRDFFileExtension()), userTriplesIsCaptor.capture());
-        final InputStream userTriplesIs = userTriplesIsCaptor.getValue();
+        verify(session).write(eq(subpath + getRDFFileExtension()), userTriplesCaptor.capture());
+        final InputStream userTriplesIs = toInputStream(userTriplesCaptor.getValue());
 
         final Model userModel = createDefaultModel();
         RDFDataMgr.read(userModel, userTriplesIs, Lang.NTRIPLES);
         return userModel;
     }
+
+    private static InputStream toInputStream(final ContentWriter writer) throws IOException {
+        final var out = new ByteArrayOutputStream();
+        writer.writeTo(out);
+        return new ByteArrayInputStream(out.toByteArray());
+    }
 }